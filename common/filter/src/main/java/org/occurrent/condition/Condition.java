@@ -17,13 +17,17 @@
 package org.occurrent.condition;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.util.Objects.requireNonNull;
 import static org.occurrent.condition.Condition.MultiOperandConditionName.*;
+import static org.occurrent.condition.Condition.MultiValueConditionName.IN;
+import static org.occurrent.condition.Condition.MultiValueConditionName.NIN;
 import static org.occurrent.condition.Condition.SingleOperandConditionName.*;
 
 /**
@@ -60,6 +64,20 @@ public abstract class Condition<T> {
             requireNonNull(fn, "Mapping function cannot be null");
             return new SingleOperandCondition<>(singleOperandConditionName, fn.apply(operand), description);
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SingleOperandCondition)) return false;
+            SingleOperandCondition<?> that = (SingleOperandCondition<?>) o;
+            return singleOperandConditionName == that.singleOperandConditionName &&
+                    Objects.equals(operand, that.operand);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(singleOperandConditionName, operand);
+        }
     }
 
     public static class MultiOperandCondition<T> extends Condition<T> {
@@ -78,6 +96,79 @@ public abstract class Condition<T> {
                     operations.stream().map(condition -> condition.map(fn)).collect(Collectors.toList()),
                     description);
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MultiOperandCondition)) return false;
+            MultiOperandCondition<?> that = (MultiOperandCondition<?>) o;
+            return operationName == that.operationName &&
+                    Objects.equals(operations, that.operations);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operationName, operations);
+        }
+    }
+
+    public static class MultiValueCondition<T> extends Condition<T> {
+        public final MultiValueConditionName multiValueConditionName;
+        public final List<T> values;
+
+        private MultiValueCondition(MultiValueConditionName multiValueConditionName, List<T> values, String description) {
+            super(description);
+            this.multiValueConditionName = multiValueConditionName;
+            this.values = Collections.unmodifiableList(values);
+        }
+
+        @Override
+        public <T2> Condition<T2> map(Function<T, T2> fn) {
+            requireNonNull(fn, "Mapping function cannot be null");
+            return new MultiValueCondition<>(multiValueConditionName, values.stream().map(fn).collect(Collectors.toList()), description);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MultiValueCondition)) return false;
+            MultiValueCondition<?> that = (MultiValueCondition<?>) o;
+            return multiValueConditionName == that.multiValueConditionName &&
+                    Objects.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(multiValueConditionName, values);
+        }
+    }
+
+    public static class ExistsCondition<T> extends Condition<T> {
+        public final boolean exists;
+
+        private ExistsCondition(boolean exists, String description) {
+            super(description);
+            this.exists = exists;
+        }
+
+        @Override
+        public <T2> Condition<T2> map(Function<T, T2> fn) {
+            requireNonNull(fn, "Mapping function cannot be null");
+            return new ExistsCondition<>(exists, description);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ExistsCondition)) return false;
+            ExistsCondition<?> that = (ExistsCondition<?>) o;
+            return exists == that.exists;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(exists);
+        }
     }
 
     public static <T> Condition<T> eq(T t) {
@@ -104,6 +195,52 @@ public abstract class Condition<T> {
         return new SingleOperandCondition<>(NE, t, String.format("to not be equal to %s", t));
     }
 
+    /**
+     * @param values The values
+     * @param <T>    The type of the values
+     * @return A condition that is fulfilled if the value is equal to any of the supplied {@code values}. A condition with an empty collection of values
+     * is never fulfilled.
+     */
+    public static <T> Condition<T> in(Collection<T> values) {
+        requireNonNull(values, "Values cannot be null");
+        return new MultiValueCondition<>(IN, new ArrayList<>(values), String.format("to be any of %s", values));
+    }
+
+    @SafeVarargs
+    public static <T> Condition<T> in(T value, T... additionalValues) {
+        List<T> values = new ArrayList<>(1 + additionalValues.length);
+        values.add(value);
+        Collections.addAll(values, additionalValues);
+        return in(values);
+    }
+
+    /**
+     * @param values The values
+     * @param <T>    The type of the values
+     * @return A condition that is fulfilled if the value is not equal to any of the supplied {@code values} (or if the value is missing).
+     */
+    public static <T> Condition<T> nin(Collection<T> values) {
+        requireNonNull(values, "Values cannot be null");
+        return new MultiValueCondition<>(NIN, new ArrayList<>(values), String.format("to not be any of %s", values));
+    }
+
+    @SafeVarargs
+    public static <T> Condition<T> nin(T value, T... additionalValues) {
+        List<T> values = new ArrayList<>(1 + additionalValues.length);
+        values.add(value);
+        Collections.addAll(values, additionalValues);
+        return nin(values);
+    }
+
+    /**
+     * @param exists {@code true} if the field must exist, {@code false} if the field must not exist
+     * @param <T>    The type of the value of the field
+     * @return A condition that is fulfilled if the field exists (or doesn't exist if {@code exists} is {@code false}) regardless of its value.
+     */
+    public static <T> Condition<T> exists(boolean exists) {
+        return new ExistsCondition<>(exists, exists ? "to exist" : "to not exist");
+    }
+
     @SafeVarargs
     public static <T> Condition<T> and(Condition<T> firstCondition, Condition<T> secondCondition, Condition<T>... additionalConditions) {
         List<Condition<T>> conditions = createConditionsFrom(firstCondition, secondCondition, additionalConditions);
@@ -135,4 +272,8 @@ public abstract class Condition<T> {
     public enum MultiOperandConditionName {
         AND, OR, NOT
     }
+
+    public enum MultiValueConditionName {
+        IN, NIN
+    }
 }
\ No newline at end of file
@@ -45,6 +45,7 @@ public abstract class Filter {
     public static final String SUBJECT = "subject";
     public static final String DATA_SCHEMA = "dataschema";
     public static final String DATA_CONTENT_TYPE = "datacontenttype";
+    public static final String DATA = "data";
 
     private Filter() {
     }
@@ -236,6 +237,39 @@ public abstract class Filter {
         return filter(OccurrentCloudEventExtension.STREAM_VERSION, condition);
     }
 
+    /**
+     * Filter on a field in the data (payload) of the cloud event. The data must be represented as JSON for the filter to be applicable.
+     * Nested fields are separated by {@code .}, for example {@code data("player.name", "John")}. Operands are compared to the JSON values
+     * in the payload so they should be of type {@link String}, {@link Number} or {@link Boolean}.
+     *
+     * @param path      The path to the field in the data, for example {@code completedBy} or {@code player.name}.
+     * @param condition The condition that the field must fulfill
+     * @return A filter for the data field
+     */
+    public static <T> Filter data(String path, Condition<T> condition) {
+        requireNonNull(path, "Data path cannot be null");
+        if (path.trim().isEmpty()) {
+            throw new IllegalArgumentException("Data path cannot be empty");
+        }
+        return filter(DATA + "." + path, condition);
+    }
+
+    public static Filter data(String path, String value) {
+        return data(path, eq(value));
+    }
+
+    public static Filter data(String path, long value) {
+        return data(path, eq(value));
+    }
+
+    public static Filter data(String path, double value) {
+        return data(path, eq(value));
+    }
+
+    public static Filter data(String path, boolean value) {
+        return data(path, eq(value));
+    }
+
     public static Filter specVersion(SpecVersion value) {
         return specVersion(value.toString());
     }
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.filter;
+
+import org.occurrent.condition.Condition;
+import org.occurrent.condition.Condition.MultiOperandCondition;
+import org.occurrent.condition.Condition.MultiOperandConditionName;
+import org.occurrent.condition.Condition.MultiValueCondition;
+import org.occurrent.condition.Condition.MultiValueConditionName;
+import org.occurrent.condition.Condition.SingleOperandCondition;
+import org.occurrent.condition.Condition.SingleOperandConditionName;
+import org.occurrent.filter.Filter.CompositionFilter;
+import org.occurrent.filter.Filter.CompositionOperator;
+import org.occurrent.filter.Filter.SingleConditionFilter;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.condition.Condition.MultiOperandConditionName.AND;
+import static org.occurrent.condition.Condition.MultiOperandConditionName.OR;
+
+/**
+ * Rewrites a {@link Filter} into an equivalent filter that is simpler to evaluate and translate into a database query. The optimizer
+ * <ul>
+ *     <li>flattens nested compositions of the same kind, e.g. {@code a and (b and c)} becomes {@code a and b and c}, and removes duplicates,</li>
+ *     <li>merges conditions on the same field that are combined with "and" into a single condition, e.g. {@code gt(2) and gte(4) and lt(10)} becomes {@code gte(4) and lt(10)},</li>
+ *     <li>merges equality conditions on the same field that are combined with "or" into a single {@link Condition#in(java.util.Collection) in} condition,</li>
+ *     <li>replaces conditions that can never be fulfilled, e.g. {@code gt(5) and lt(3)}, with {@code in()} (an empty set that matches nothing)
+ *     and removes them from "or" filters,</li>
+ *     <li>and removes tautologies, i.e. {@link Filter#all()} in an "and" filter, and replaces an "or" filter containing {@link Filter#all()} with {@link Filter#all()}.</li>
+ * </ul>
+ * Conditions are only merged when all operands are of the same (comparable) type, otherwise they're left as is. Note that e.g. {@code lt(5) or gte(5)}
+ * is <i>not</i> a tautology since it doesn't match cloud events where the field is missing.
+ */
+public final class FilterOptimizer {
+
+    private FilterOptimizer() {
+    }
+
+    /**
+     * Optimize the supplied {@link Filter}
+     *
+     * @param filter The filter to optimize
+     * @return An equivalent, optimized, {@link Filter}.
+     */
+    public static Filter optimize(Filter filter) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        if (filter instanceof SingleConditionFilter) {
+            SingleConditionFilter singleConditionFilter = (SingleConditionFilter) filter;
+            Condition<?> condition = optimize(singleConditionFilter.condition);
+            return condition.equals(singleConditionFilter.condition) ? filter : Filter.filter(singleConditionFilter.fieldName, condition);
+        } else if (filter instanceof CompositionFilter) {
+            CompositionFilter compositionFilter = (CompositionFilter) filter;
+            List<Filter> filters = new ArrayList<>();
+            for (Filter nestedFilter : compositionFilter.filters) {
+                Filter optimized = optimize(nestedFilter);
+                if (optimized instanceof CompositionFilter && ((CompositionFilter) optimized).operator == compositionFilter.operator) {
+                    filters.addAll(((CompositionFilter) optimized).filters);
+                } else {
+                    filters.add(optimized);
+                }
+            }
+            return compositionFilter.operator == CompositionOperator.AND ? optimizeAnd(filters) : optimizeOr(filters);
+        }
+        return filter;
+    }
+
+    /**
+     * @param filter The filter
+     * @return {@code true} if the supplied {@link Filter} is the result of optimizing a filter that can never match any cloud event, {@code false} otherwise.
+     */
+    public static boolean isContradiction(Filter filter) {
+        return filter instanceof SingleConditionFilter && isContradiction(((SingleConditionFilter) filter).condition);
+    }
+
+    private static Filter optimizeAnd(List<Filter> filters) {
+        Map<Object, List<Condition<?>>> grouped = groupConditionsByFieldName(filters);
+        List<Filter> optimized = new ArrayList<>(grouped.size());
+        for (Map.Entry<Object, List<Condition<?>>> entry : grouped.entrySet()) {
+            if (entry.getKey() instanceof Filter) {
+                Filter filter = (Filter) entry.getKey();
+                if (!(filter instanceof Filter.All)) {
+                    optimized.add(filter);
+                }
+                continue;
+            }
+            String fieldName = (String) entry.getKey();
+            List<Condition<?>> conditions = entry.getValue();
+            Condition<?> condition = conditions.size() == 1 ? conditions.get(0) : optimize(compose(AND, conditions));
+            Filter filter = Filter.filter(fieldName, condition);
+            if (isContradiction(condition)) {
+                return filter;
+            }
+            optimized.add(filter);
+        }
+        return compose(CompositionOperator.AND, optimized);
+    }
+
+    private static Filter optimizeOr(List<Filter> filters) {
+        Filter contradiction = null;
+        List<Filter> filtersThatCanMatch = new ArrayList<>(filters.size());
+        for (Filter filter : filters) {
+            if (filter instanceof Filter.All) {
+                return filter;
+            } else if (isContradiction(filter)) {
+                contradiction = contradiction == null ? filter : contradiction;
+            } else {
+                filtersThatCanMatch.add(filter);
+            }
+        }
+        if (filtersThatCanMatch.isEmpty()) {
+            return contradiction;
+        }
+
+        Map<Object, List<Condition<?>>> grouped = groupConditionsByFieldName(filtersThatCanMatch);
+        List<Filter> optimized = new ArrayList<>(grouped.size());
+        for (Map.Entry<Object, List<Condition<?>>> entry : grouped.entrySet()) {
+            if (entry.getKey() instanceof Filter) {
+                optimized.add((Filter) entry.getKey());
+            } else {
+                List<Condition<?>> conditions = entry.getValue();
+                Condition<?> condition = conditions.size() == 1 ? conditions.get(0) : optimize(compose(OR, conditions));
+                optimized.add(Filter.filter((String) entry.getKey(), condition));
+            }
+        }
+        return compose(CompositionOperator.OR, optimized);
+    }
+
+    // Groups the conditions of single condition filters by field name, the other filters are used as keys themselves (which removes duplicates)
+    private static Map<Object, List<Condition<?>>> groupConditionsByFieldName(List<Filter> filters) {
+        Map<Object, List<Condition<?>>> grouped = new LinkedHashMap<>();
+        for (Filter filter : filters) {
+            if (filter instanceof SingleConditionFilter) {
+                SingleConditionFilter singleConditionFilter = (SingleConditionFilter) filter;
+                List<Condition<?>> conditions = grouped.computeIfAbsent(singleConditionFilter.fieldName, __ -> new ArrayList<>());
+                if (!conditions.contains(singleConditionFilter.condition)) {
+                    conditions.add(singleConditionFilter.condition);
+                }
+            } else {
+                grouped.put(filter, null);
+            }
+        }
+        return grouped;
+    }
+
+    // Conditions
+    private static Condition<?> optimize(Condition<?> condition) {
+        if (condition instanceof MultiValueCondition) {
+            MultiValueCondition<?> multiValueCondition = (MultiValueCondition<?>) condition;
+            boolean in = multiValueCondition.multiValueConditionName == MultiValueConditionName.IN;
+            List<Object> values = distinct(multiValueCondition.values);
+            if (values.size() == 1) {
+                return in ? Condition.eq(values.get(0)) : Condition.ne(values.get(0));
+            } else if (values.size() == multiValueCondition.values.size()) {
+                return condition;
+            }
+            return in ? Condition.in(values) : Condition.nin(values);
+        } else if (!(condition instanceof MultiOperandCondition)) {
+            return condition;
+        }
+
+        MultiOperandCondition<?> multiOperandCondition = (MultiOperandCondition<?>) condition;
+        MultiOperandConditionName operationName = multiOperandCondition.operationName;
+        List<Condition<?>> conditions = new ArrayList<>();
+        for (Condition<?> nestedCondition : multiOperandCondition.operations) {
+            Condition<?> optimized = optimize(nestedCondition);
+            if (operationName != MultiOperandConditionName.NOT && optimized instanceof MultiOperandCondition && ((MultiOperandCondition<?>) optimized).operationName == operationName) {
+                conditions.addAll(((MultiOperandCondition<?>) optimized).operations);
+            } else if (!conditions.contains(optimized)) {
+                conditions.add(optimized);
+            }
+        }
+
+        switch (operationName) {
+            case AND:
+                return optimizeAndCondition(conditions);
+            case OR:
+                return optimizeOrCondition(conditions);
+            default:
+                return Condition.not(conditions.get(0));
+        }
+    }
+
+    private static Condition<?> optimizeOrCondition(List<Condition<?>> conditions) {
+        Set<Object> values = new LinkedHashSet<>();
+        List<Condition<?>> otherConditions = new ArrayList<>();
+        for (Condition<?> condition : conditions) {
+            if (isEq(condition)) {
+                values.add(((SingleOperandCondition<?>) condition).operand);
+            } else if (isIn(condition)) {
+                // Contradictions (empty sets) are removed here as well since they don't contribute any values
+                values.addAll(((MultiValueCondition<?>) condition).values);
+            } else {
+                otherConditions.add(condition);
+            }
+        }
+
+        List<Condition<?>> optimized = new ArrayList<>(otherConditions.size() + 1);
+        if (values.size() == 1) {
+            optimized.add(Condition.eq(values.iterator().next()));
+        } else if (values.size() > 1) {
+            optimized.add(Condition.in(new ArrayList<>(values)));
+        }
+        optimized.addAll(otherConditions);
+        return optimized.isEmpty() ? Condition.in(Collections.emptyList()) : compose(OR, optimized);
+    }
+
+    private static Condition<?> optimizeAndCondition(List<Condition<?>> conditions) {
+        Set<Object> allowedValues = null;
+        List<Object> excludedValues = new ArrayList<>();
+        List<Condition<?>> otherConditions = new ArrayList<>();
+        List<Object> operands = new ArrayList<>();
+
+        for (Condition<?> condition : conditions) {
+            if (isContradiction(condition)) {
+                return condition;
+            } else if (condition instanceof SingleOperandCondition) {
+                SingleOperandCondition<?> singleOperandCondition = (SingleOperandCondition<?>) condition;
+                Object operand = singleOperandCondition.operand;
+                operands.add(operand);
+                switch (singleOperandCondition.singleOperandConditionName) {
+                    case EQ:
+                        allowedValues = intersect(allowedValues, Collections.singletonList(operand));
+                        break;
+                    case NE:
+                        excludedValues.add(operand);
+                        break;
+                    default:
+                        // Bounds are merged below
+                        break;
+                }
+            } else if (condition instanceof MultiValueCondition) {
+                List<?> values = ((MultiValueCondition<?>) condition).values;
+                operands.addAll(values);
+                if (isIn(condition)) {
+                    allowedValues = intersect(allowedValues, values);
+                } else {
+                    excludedValues.addAll(values);
+                }
+            } else {
+                otherConditions.add(condition);
+            }
+        }
+
+        if (!isMergeable(operands)) {
+            return compose(AND, conditions);
+        }
+
+        // Several bounds in the same direction are merged to the most restrictive bound
+        SingleOperandCondition<?> lowerBound = mostRestrictive(conditions, SingleOperandConditionName.GT, SingleOperandConditionName.GTE, 1);
+        SingleOperandCondition<?> upperBound = mostRestrictive(conditions, SingleOperandConditionName.LT, SingleOperandConditionName.LTE, -1);
+
+        List<Condition<?>> optimized = new ArrayList<>();
+        if (allowedValues != null) {
+            List<Object> values = new ArrayList<>();
+            for (Object value : allowedValues) {
+                if (!excludedValues.contains(value) && isWithin(value, lowerBound, upperBound)) {
+                    values.add(value);
+                }
+            }
+            if (values.isEmpty()) {
+                return Condition.in(Collections.emptyList());
+            }
+            optimized.add(values.size() == 1 ? Condition.eq(values.get(0)) : Condition.in(values));
+        } else if (lowerBound != null && upperBound != null && compare(lowerBound.operand, upperBound.operand) >= 0) {
+            boolean bothInclusive = lowerBound.singleOperandConditionName == SingleOperandConditionName.GTE && upperBound.singleOperandConditionName == SingleOperandConditionName.LTE;
+            if (compare(lowerBound.operand, upperBound.operand) > 0 || !bothInclusive || excludedValues.contains(lowerBound.operand)) {
+                return Condition.in(Collections.emptyList());
+            }
+            optimized.add(Condition.eq(lowerBound.operand));
+        } else {
+            if (lowerBound != null) {
+                optimized.add(lowerBound);
+            }
+            if (upperBound != null) {
+                optimized.add(upperBound);
+            }
+            // A value outside of the range is already excluded by the bounds
+            List<Object> valuesToExclude = new ArrayList<>();
+            for (Object excludedValue : distinct(excludedValues)) {
+                if (isWithin(excludedValue, lowerBound, upperBound)) {
+                    valuesToExclude.add(excludedValue);
+                }
+            }
+            if (valuesToExclude.size() == 1) {
+                optimized.add(Condition.ne(valuesToExclude.get(0)));
+            } else if (valuesToExclude.size() > 1) {
+                optimized.add(Condition.nin(valuesToExclude));
+            }
+        }
+        optimized.addAll(otherConditions);
+        return compose(AND, optimized);
+    }
+
+    private static SingleOperandCondition<?> mostRestrictive(List<Condition<?>> conditions, SingleOperandConditionName exclusive, SingleOperandConditionName inclusive, int direction) {
+        SingleOperandCondition<?> mostRestrictive = null;
+        for (Condition<?> condition : conditions) {
+            if (!(condition instanceof SingleOperandCondition)) {
+                continue;
+            }
+            SingleOperandCondition<?> bound = (SingleOperandCondition<?>) condition;
+            if (bound.singleOperandConditionName != exclusive && bound.singleOperandConditionName != inclusive) {
+                continue;
+            }
+            if (mostRestrictive == null) {
+                mostRestrictive = bound;
+            } else {
+                int comparison = compare(bound.operand, mostRestrictive.operand) * direction;
+                if (comparison > 0 || (comparison == 0 && bound.singleOperandConditionName == exclusive)) {
+                    mostRestrictive = bound;
+                }
+            }
+        }
+        return mostRestrictive;
+    }
+
+    private static boolean isWithin(Object value, SingleOperandCondition<?> lowerBound, SingleOperandCondition<?> upperBound) {
+        if (lowerBound != null) {
+            int comparison = compare(value, lowerBound.operand);
+            if (comparison < 0 || (comparison == 0 && lowerBound.singleOperandConditionName == SingleOperandConditionName.GT)) {
+                return false;
+            }
+        }
+        if (upperBound != null) {
+            int comparison = compare(value, upperBound.operand);
+            return comparison < 0 || (comparison == 0 && upperBound.singleOperandConditionName == SingleOperandConditionName.LTE);
+        }
+        return true;
+    }
+
+    // Only operands of the same comparable type are merged. Times are only merged when they have the same offset since they may be compared as strings by the database.
+    private static boolean isMergeable(List<Object> operands) {
+        Object first = null;
+        for (Object operand : operands) {
+            if (!(operand instanceof Comparable)) {
+                return false;
+            } else if (first == null) {
+                first = operand;
+            } else if (first.getClass() != operand.getClass()) {
+                return false;
+            } else if (operand instanceof OffsetDateTime && !Objects.equals(((OffsetDateTime) operand).getOffset(), ((OffsetDateTime) first).getOffset())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<Object> intersect(Set<Object> values, List<?> otherValues) {
+        if (values == null) {
+            return new LinkedHashSet<>(otherValues);
+        }
+        values.retainAll(otherValues);
+        return values;
+    }
+
+    private static boolean isEq(Condition<?> condition) {
+        return condition instanceof SingleOperandCondition && ((SingleOperandCondition<?>) condition).singleOperandConditionName == SingleOperandConditionName.EQ;
+    }
+
+    private static boolean isIn(Condition<?> condition) {
+        return condition instanceof MultiValueCondition && ((MultiValueCondition<?>) condition).multiValueConditionName == MultiValueConditionName.IN;
+    }
+
+    private static boolean isContradiction(Condition<?> condition) {
+        return isIn(condition) && ((MultiValueCondition<?>) condition).values.isEmpty();
+    }
+
+    private static List<Object> distinct(List<?> values) {
+        return values.stream().distinct().collect(Collectors.toList());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object value, Object operand) {
+        return ((Comparable) value).compareTo(operand);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Condition<?> compose(MultiOperandConditionName operationName, List<Condition<?>> conditions) {
+        if (conditions.size() == 1) {
+            return conditions.get(0);
+        }
+        Condition[] additionalConditions = conditions.subList(2, conditions.size()).toArray(new Condition[0]);
+        return operationName == AND ? Condition.and((Condition) conditions.get(0), conditions.get(1), additionalConditions) : Condition.or((Condition) conditions.get(0), conditions.get(1), additionalConditions);
+    }
+
+    private static Filter compose(CompositionOperator operator, List<Filter> filters) {
+        if (filters.isEmpty()) {
+            return Filter.all();
+        } else if (filters.size() == 1) {
+            return filters.get(0);
+        }
+        Filter[] additionalFilters = filters.subList(2, filters.size()).toArray(new Filter[0]);
+        return operator == CompositionOperator.AND ? filters.get(0).and(filters.get(1), additionalFilters) : filters.get(0).or(filters.get(1), additionalFilters);
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import org.occurrent.condition.Condition;
+import org.occurrent.condition.Condition.ExistsCondition;
+import org.occurrent.condition.Condition.MultiOperandCondition;
+import org.occurrent.condition.Condition.MultiValueCondition;
+import org.occurrent.condition.Condition.SingleOperandCondition;
+import org.occurrent.filter.Filter.CompositionFilter;
+import org.occurrent.filter.Filter.SingleConditionFilter;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+
+/**
+ * Compiles a {@link Filter} into a {@link Predicate} that can be used to evaluate the filter against a {@link CloudEvent} in the JVM, for example
+ * by an in-memory event store or when filtering a subscription on the client side.
+ * <p>
+ * The filter is analyzed once when it's compiled. The attribute accessor for each field is resolved up front, operands are converted to the type of the
+ * attribute (a primitive {@code long} for {@value org.occurrent.cloudevents.OccurrentCloudEventExtension#STREAM_VERSION} and an instant in time for
+ * {@link Filter#TIME}) and composition filters are evaluated in order and stop as soon as the result is known. Evaluating the compiled predicate
+ * doesn't box any values. The filter is optimized by the {@link FilterOptimizer} before it's compiled. Conditions on fields in the data of the
+ * cloud event (see {@link Filter#data(String, Condition)}) are evaluated against the JSON representation of the data and numbers are compared by
+ * their numeric value. The data of the cloud event that was most recently evaluated by a thread is remembered, so the data is only parsed once
+ * when it's evaluated by several data conditions, or by the predicates of several filters (such as when subscriptions are multiplexed).
+ * </p>
+ * <p>
+ * Example:
+ * <pre>
+ * Predicate&lt;CloudEvent&gt; predicate = FilterPredicateCompiler.compile(Filter.type("GameWon").and(Filter.streamVersion(gt(10L))));
+ * boolean matches = predicate.test(cloudEvent);
+ * </pre>
+ * </p>
+ */
+public final class FilterPredicateCompiler {
+    private static final String DATA_PATH_PREFIX = Filter.DATA + ".";
+
+    private FilterPredicateCompiler() {
+    }
+
+    /**
+     * Compile the supplied {@link Filter} into a {@link Predicate}.
+     *
+     * @param filter The filter to compile
+     * @return A {@link Predicate} that returns {@code true} if a {@link CloudEvent} matches the {@code filter}, {@code false} otherwise.
+     */
+    public static Predicate<CloudEvent> compile(Filter filter) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        return compileFilter(FilterOptimizer.optimize(filter));
+    }
+
+    private static Predicate<CloudEvent> compileFilter(Filter filter) {
+        if (filter instanceof Filter.All) {
+            return __ -> true;
+        } else if (filter instanceof SingleConditionFilter) {
+            SingleConditionFilter singleConditionFilter = (SingleConditionFilter) filter;
+            return compileSingleConditionFilter(singleConditionFilter.fieldName, singleConditionFilter.condition);
+        } else if (filter instanceof CompositionFilter) {
+            CompositionFilter compositionFilter = (CompositionFilter) filter;
+            Predicate<CloudEvent>[] predicates = compileAll(compositionFilter.filters);
+            return compositionFilter.operator == Filter.CompositionOperator.AND ? new AllMatch(predicates) : new AnyMatch(predicates);
+        }
+        throw new IllegalArgumentException("Unsupported filter: " + filter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate<CloudEvent>[] compileAll(List<Filter> filters) {
+        Predicate<CloudEvent>[] predicates = new Predicate[filters.size()];
+        for (int i = 0; i < predicates.length; i++) {
+            predicates[i] = compileFilter(filters.get(i));
+        }
+        return predicates;
+    }
+
+    private static Predicate<CloudEvent> compileSingleConditionFilter(String fieldName, Condition<?> condition) {
+        // The result when the attribute is missing from the cloud event is known up front so it's only computed once
+        final boolean matchesMissingValue = matchesMissingValue(condition);
+        switch (fieldName) {
+            case STREAM_VERSION:
+                final LongPredicate longPredicate = compileLongCondition(condition);
+                return cloudEvent -> {
+                    Object value = cloudEvent.getExtension(STREAM_VERSION);
+                    if (value == null) {
+                        return matchesMissingValue;
+                    }
+                    return value instanceof Number && longPredicate.test(((Number) value).longValue());
+                };
+            case Filter.TIME:
+                final Predicate<OffsetDateTime> timePredicate = compileTimeCondition(condition);
+                return cloudEvent -> {
+                    OffsetDateTime value = cloudEvent.getTime();
+                    return value == null ? matchesMissingValue : timePredicate.test(value);
+                };
+            case Filter.ID:
+                return stringAttribute(CloudEvent::getId, condition, matchesMissingValue);
+            case Filter.TYPE:
+                return stringAttribute(CloudEvent::getType, condition, matchesMissingValue);
+            case Filter.SUBJECT:
+                return stringAttribute(CloudEvent::getSubject, condition, matchesMissingValue);
+            case Filter.DATA_CONTENT_TYPE:
+                return stringAttribute(CloudEvent::getDataContentType, condition, matchesMissingValue);
+            case Filter.SPEC_VERSION:
+                return stringAttribute(cloudEvent -> cloudEvent.getSpecVersion().toString(), condition, matchesMissingValue);
+            case Filter.SOURCE:
+                return stringAttribute(cloudEvent -> toStringOrNull(cloudEvent.getSource()), condition, matchesMissingValue);
+            case Filter.DATA_SCHEMA:
+                return stringAttribute(cloudEvent -> toStringOrNull(cloudEvent.getDataSchema()), condition, matchesMissingValue);
+            case STREAM_ID:
+                return stringAttribute(cloudEvent -> toStringOrNull(cloudEvent.getExtension(STREAM_ID)), condition, matchesMissingValue);
+            default:
+                if (fieldName.startsWith(DATA_PATH_PREFIX)) {
+                    return dataAttribute(fieldName.substring(DATA_PATH_PREFIX.length()), condition, matchesMissingValue);
+                }
+                final Predicate<Object> objectPredicate = compileObjectCondition(condition, FilterPredicateCompiler::normalize);
+                return cloudEvent -> {
+                    Object value = cloudEvent.getExtension(fieldName);
+                    return value == null ? matchesMissingValue : objectPredicate.test(normalize(value));
+                };
+        }
+    }
+
+    private static Predicate<CloudEvent> stringAttribute(Function<CloudEvent, String> accessor, Condition<?> condition, boolean matchesMissingValue) {
+        final Predicate<String> stringPredicate = compileStringCondition(condition);
+        return cloudEvent -> {
+            String value = accessor.apply(cloudEvent);
+            return value == null ? matchesMissingValue : stringPredicate.test(value);
+        };
+    }
+
+    private static Predicate<CloudEvent> dataAttribute(String path, Condition<?> condition, boolean matchesMissingValue) {
+        final DataPath dataPath = new DataPath(path);
+        final Predicate<Object> objectPredicate = compileObjectCondition(condition, FilterPredicateCompiler::normalizeDataValue);
+        return cloudEvent -> {
+            Object value = dataPath.read(cloudEvent);
+            return value == null ? matchesMissingValue : objectPredicate.test(value);
+        };
+    }
+
+    // Conditions on a long value
+    @FunctionalInterface
+    private interface LongPredicate {
+        boolean test(long value);
+    }
+
+    private static LongPredicate compileLongCondition(Condition<?> condition) {
+        if (condition instanceof MultiOperandCondition) {
+            MultiOperandCondition<?> multiOperandCondition = (MultiOperandCondition<?>) condition;
+            LongPredicate[] predicates = multiOperandCondition.operations.stream().map(FilterPredicateCompiler::compileLongCondition).toArray(LongPredicate[]::new);
+            switch (multiOperandCondition.operationName) {
+                case AND:
+                    return value -> {
+                        for (LongPredicate predicate : predicates) {
+                            if (!predicate.test(value)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    };
+                case OR:
+                    return value -> {
+                        for (LongPredicate predicate : predicates) {
+                            if (predicate.test(value)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    };
+                case NOT:
+                    return value -> {
+                        for (LongPredicate predicate : predicates) {
+                            if (predicate.test(value)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    };
+            }
+        } else if (condition instanceof SingleOperandCondition) {
+            SingleOperandCondition<?> singleOperandCondition = (SingleOperandCondition<?>) condition;
+            Object operandValue = singleOperandCondition.operand;
+            if (operandValue == null) {
+                return value -> singleOperandCondition.singleOperandConditionName == Condition.SingleOperandConditionName.NE;
+            } else if (!(operandValue instanceof Number)) {
+                throw new IllegalArgumentException("Operand " + operandValue + " of condition \"" + condition + "\" must be a number");
+            }
+            final long operand = ((Number) operandValue).longValue();
+            switch (singleOperandCondition.singleOperandConditionName) {
+                case EQ:
+                    return value -> value == operand;
+                case NE:
+                    return value -> value != operand;
+                case LT:
+                    return value -> value < operand;
+                case GT:
+                    return value -> value > operand;
+                case LTE:
+                    return value -> value <= operand;
+                case GTE:
+                    return value -> value >= operand;
+            }
+        } else if (condition instanceof MultiValueCondition) {
+            MultiValueCondition<?> multiValueCondition = (MultiValueCondition<?>) condition;
+            final long[] values = multiValueCondition.values.stream().filter(Objects::nonNull).mapToLong(value -> {
+                if (!(value instanceof Number)) {
+                    throw new IllegalArgumentException("Value " + value + " of condition \"" + condition + "\" must be a number");
+                }
+                return ((Number) value).longValue();
+            }).sorted().toArray();
+            return isIn(multiValueCondition) ? value -> Arrays.binarySearch(values, value) >= 0 : value -> Arrays.binarySearch(values, value) < 0;
+        } else if (condition instanceof ExistsCondition) {
+            boolean exists = ((ExistsCondition<?>) condition).exists;
+            return value -> exists;
+        }
+        throw new IllegalArgumentException("Unsupported condition: " + condition);
+    }
+
+    // Conditions on a point in time
+    private static Predicate<OffsetDateTime> compileTimeCondition(Condition<?> condition) {
+        if (condition instanceof MultiOperandCondition) {
+            MultiOperandCondition<?> multiOperandCondition = (MultiOperandCondition<?>) condition;
+            return compose(multiOperandCondition, FilterPredicateCompiler::compileTimeCondition);
+        } else if (condition instanceof SingleOperandCondition) {
+            SingleOperandCondition<?> singleOperandCondition = (SingleOperandCondition<?>) condition;
+            if (singleOperandCondition.operand == null) {
+                return value -> singleOperandCondition.singleOperandConditionName == Condition.SingleOperandConditionName.NE;
+            }
+            final OffsetDateTime operand = toOffsetDateTime(singleOperandCondition.operand, condition);
+            switch (singleOperandCondition.singleOperandConditionName) {
+                case EQ:
+                    return value -> value.isEqual(operand);
+                case NE:
+                    return value -> !value.isEqual(operand);
+                case LT:
+                    return value -> value.isBefore(operand);
+                case GT:
+                    return value -> value.isAfter(operand);
+                case LTE:
+                    return value -> !value.isAfter(operand);
+                case GTE:
+                    return value -> !value.isBefore(operand);
+            }
+        } else if (condition instanceof MultiValueCondition) {
+            MultiValueCondition<?> multiValueCondition = (MultiValueCondition<?>) condition;
+            final boolean in = isIn(multiValueCondition);
+            final OffsetDateTime[] values = multiValueCondition.values.stream().filter(Objects::nonNull).map(value -> toOffsetDateTime(value, condition)).toArray(OffsetDateTime[]::new);
+            return value -> {
+                for (OffsetDateTime offsetDateTime : values) {
+                    if (value.isEqual(offsetDateTime)) {
+                        return in;
+                    }
+                }
+                return !in;
+            };
+        } else if (condition instanceof ExistsCondition) {
+            boolean exists = ((ExistsCondition<?>) condition).exists;
+            return value -> exists;
+        }
+        throw new IllegalArgumentException("Unsupported condition: " + condition);
+    }
+
+    // Conditions on a string value
+    private static Predicate<String> compileStringCondition(Condition<?> condition) {
+        if (condition instanceof MultiOperandCondition) {
+            MultiOperandCondition<?> multiOperandCondition = (MultiOperandCondition<?>) condition;
+            return compose(multiOperandCondition, FilterPredicateCompiler::compileStringCondition);
+        } else if (condition instanceof SingleOperandCondition) {
+            SingleOperandCondition<?> singleOperandCondition = (SingleOperandCondition<?>) condition;
+            if (singleOperandCondition.operand == null) {
+                return value -> singleOperandCondition.singleOperandConditionName == Condition.SingleOperandConditionName.NE;
+            }
+            final String operand = singleOperandCondition.operand.toString();
+            switch (singleOperandCondition.singleOperandConditionName) {
+                case EQ:
+                    return operand::equals;
+                case NE:
+                    return value -> !operand.equals(value);
+                case LT:
+                    return value -> value.compareTo(operand) < 0;
+                case GT:
+                    return value -> value.compareTo(operand) > 0;
+                case LTE:
+                    return value -> value.compareTo(operand) <= 0;
+                case GTE:
+                    return value -> value.compareTo(operand) >= 0;
+            }
+        } else if (condition instanceof MultiValueCondition) {
+            MultiValueCondition<?> multiValueCondition = (MultiValueCondition<?>) condition;
+            final Set<String> values = multiValueCondition.values.stream().filter(Objects::nonNull).map(Object::toString).collect(Collectors.toCollection(HashSet::new));
+            return isIn(multiValueCondition) ? values::contains : value -> !values.contains(value);
+        } else if (condition instanceof ExistsCondition) {
+            boolean exists = ((ExistsCondition<?>) condition).exists;
+            return value -> exists;
+        }
+        throw new IllegalArgumentException("Unsupported condition: " + condition);
+    }
+
+    // Conditions on values whose type is not known up front (such as custom extensions)
+    private static Predicate<Object> compileObjectCondition(Condition<?> condition, Function<Object, Object> normalizer) {
+        if (condition instanceof MultiOperandCondition) {
+            MultiOperandCondition<?> multiOperandCondition = (MultiOperandCondition<?>) condition;
+            return compose(multiOperandCondition, operation -> compileObjectCondition(operation, normalizer));
+        } else if (condition instanceof SingleOperandCondition) {
+            SingleOperandCondition<?> singleOperandCondition = (SingleOperandCondition<?>) condition;
+            final Object operand = normalizer.apply(singleOperandCondition.operand);
+            switch (singleOperandCondition.singleOperandConditionName) {
+                case EQ:
+                    return value -> Objects.equals(value, operand);
+                case NE:
+                    return value -> !Objects.equals(value, operand);
+                case LT:
+                    return value -> isComparable(value, operand) && compare(value, operand) < 0;
+                case GT:
+                    return value -> isComparable(value, operand) && compare(value, operand) > 0;
+                case LTE:
+                    return value -> isComparable(value, operand) && compare(value, operand) <= 0;
+                case GTE:
+                    return value -> isComparable(value, operand) && compare(value, operand) >= 0;
+            }
+        } else if (condition instanceof MultiValueCondition) {
+            MultiValueCondition<?> multiValueCondition = (MultiValueCondition<?>) condition;
+            final Set<Object> values = multiValueCondition.values.stream().map(normalizer).collect(Collectors.toCollection(HashSet::new));
+            return isIn(multiValueCondition) ? values::contains : value -> !values.contains(value);
+        } else if (condition instanceof ExistsCondition) {
+            boolean exists = ((ExistsCondition<?>) condition).exists;
+            return value -> exists;
+        }
+        throw new IllegalArgumentException("Unsupported condition: " + condition);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Predicate<T> compose(MultiOperandCondition<?> multiOperandCondition, Function<Condition<?>, Predicate<T>> compiler) {
+        Predicate<T>[] predicates = multiOperandCondition.operations.stream().map(compiler).toArray(Predicate[]::new);
+        switch (multiOperandCondition.operationName) {
+            case AND:
+                return new AllMatch<>(predicates);
+            case OR:
+                return new AnyMatch<>(predicates);
+            case NOT:
+                return new AnyMatch<>(predicates).negate();
+        }
+        throw new IllegalArgumentException("Unsupported condition: " + multiOperandCondition);
+    }
+
+    private static boolean matchesMissingValue(Condition<?> condition) {
+        if (condition instanceof MultiOperandCondition) {
+            MultiOperandCondition<?> multiOperandCondition = (MultiOperandCondition<?>) condition;
+            switch (multiOperandCondition.operationName) {
+                case AND:
+                    return multiOperandCondition.operations.stream().allMatch(FilterPredicateCompiler::matchesMissingValue);
+                case OR:
+                    return multiOperandCondition.operations.stream().anyMatch(FilterPredicateCompiler::matchesMissingValue);
+                case NOT:
+                    return multiOperandCondition.operations.stream().noneMatch(FilterPredicateCompiler::matchesMissingValue);
+            }
+        } else if (condition instanceof SingleOperandCondition) {
+            SingleOperandCondition<?> singleOperandCondition = (SingleOperandCondition<?>) condition;
+            switch (singleOperandCondition.singleOperandConditionName) {
+                case EQ:
+                    return singleOperandCondition.operand == null;
+                case NE:
+                    return singleOperandCondition.operand != null;
+                default:
+                    return false;
+            }
+        } else if (condition instanceof MultiValueCondition) {
+            MultiValueCondition<?> multiValueCondition = (MultiValueCondition<?>) condition;
+            return isIn(multiValueCondition) == multiValueCondition.values.contains(null);
+        } else if (condition instanceof ExistsCondition) {
+            return !((ExistsCondition<?>) condition).exists;
+        }
+        throw new IllegalArgumentException("Unsupported condition: " + condition);
+    }
+
+    private static boolean isIn(MultiValueCondition<?> multiValueCondition) {
+        return multiValueCondition.multiValueConditionName == Condition.MultiValueConditionName.IN;
+    }
+
+    private static OffsetDateTime toOffsetDateTime(Object operand, Condition<?> condition) {
+        if (operand instanceof OffsetDateTime) {
+            return (OffsetDateTime) operand;
+        } else if (operand instanceof ZonedDateTime) {
+            return ((ZonedDateTime) operand).toOffsetDateTime();
+        } else if (operand instanceof Instant) {
+            return ((Instant) operand).atOffset(ZoneOffset.UTC);
+        } else if (operand instanceof Date) {
+            return ((Date) operand).toInstant().atOffset(ZoneOffset.UTC);
+        }
+        throw new IllegalArgumentException("Operand " + operand + " of condition \"" + condition + "\" must be a point in time");
+    }
+
+    // Make sure that values of different types representing the same thing are comparable
+    private static Object normalize(Object value) {
+        if (value instanceof OffsetDateTime) {
+            return ((OffsetDateTime) value).toInstant();
+        } else if (value instanceof URI) {
+            return value.toString();
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    // Numbers in JSON have no type so they're compared by numeric value regardless of their type in Java
+    private static Object normalizeDataValue(Object value) {
+        Object normalized = normalize(value);
+        if (normalized instanceof BigDecimal) {
+            return ((BigDecimal) normalized).stripTrailingZeros();
+        } else if (normalized instanceof BigInteger) {
+            return new BigDecimal((BigInteger) normalized).stripTrailingZeros();
+        } else if (normalized instanceof Long) {
+            return BigDecimal.valueOf((Long) normalized).stripTrailingZeros();
+        } else if (normalized instanceof Double || normalized instanceof Float) {
+            double doubleValue = ((Number) normalized).doubleValue();
+            return Double.isNaN(doubleValue) || Double.isInfinite(doubleValue) ? normalized : BigDecimal.valueOf(doubleValue).stripTrailingZeros();
+        }
+        return normalized;
+    }
+
+    // Values of different types are never less than or greater than each other
+    private static boolean isComparable(Object value, Object operand) {
+        return operand != null && value instanceof Comparable && value.getClass() == operand.getClass();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object value, Object operand) {
+        return ((Comparable) value).compareTo(operand);
+    }
+
+    private static String toStringOrNull(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    // Reads the value of a (possibly nested) field from the JSON data of a cloud event
+    private static final class DataPath {
+        private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+        private final String[] segments;
+
+        private DataPath(String path) {
+            this.segments = path.split("\\.");
+        }
+
+        private Object read(CloudEvent cloudEvent) {
+            JsonNode node = ParsedData.of(cloudEvent);
+            if (node == null) {
+                return null;
+            }
+            for (String segment : segments) {
+                node = node.isArray() && isIndex(segment) ? node.path(Integer.parseInt(segment)) : node.path(segment);
+            }
+            return toValue(node);
+        }
+
+        private static JsonNode parse(CloudEvent cloudEvent) {
+            byte[] data = cloudEvent.getData();
+            if (data == null || !isJson(cloudEvent.getDataContentType())) {
+                return null;
+            }
+            try {
+                return OBJECT_MAPPER.readTree(data);
+            } catch (IOException e) {
+                // Data that is not valid JSON doesn't contain any fields
+                return null;
+            }
+        }
+
+        private static Object toValue(JsonNode node) {
+            if (node.isMissingNode() || node.isNull()) {
+                return null;
+            } else if (node.isTextual()) {
+                return node.textValue();
+            } else if (node.isNumber()) {
+                return normalizeDataValue(node.decimalValue());
+            } else if (node.isBoolean()) {
+                return node.booleanValue();
+            }
+            // Objects and arrays exist but are never equal to, or comparable with, an operand
+            return node;
+        }
+
+        // A cloud event without a data content type is assumed to be JSON according to the specification
+        private static boolean isJson(String dataContentType) {
+            return dataContentType == null || dataContentType.toLowerCase().contains("json");
+        }
+
+        private static boolean isIndex(String segment) {
+            return !segment.isEmpty() && segment.length() < 10 && segment.chars().allMatch(Character::isDigit);
+        }
+    }
+
+    // The parsed JSON data of the cloud event that was most recently evaluated by the current thread. The cloud event is weakly referenced
+    // so that it's not retained by the thread after it has been evaluated.
+    private static final class ParsedData {
+        private static final ThreadLocal<ParsedData> MOST_RECENT = new ThreadLocal<>();
+
+        private final WeakReference<CloudEvent> cloudEvent;
+        private final JsonNode data;
+
+        private ParsedData(CloudEvent cloudEvent, JsonNode data) {
+            this.cloudEvent = new WeakReference<>(cloudEvent);
+            this.data = data;
+        }
+
+        // Returns null if the cloud event has no JSON data
+        private static JsonNode of(CloudEvent cloudEvent) {
+            ParsedData parsedData = MOST_RECENT.get();
+            if (parsedData == null || parsedData.cloudEvent.get() != cloudEvent) {
+                parsedData = new ParsedData(cloudEvent, DataPath.parse(cloudEvent));
+                MOST_RECENT.set(parsedData);
+            }
+            return parsedData.data;
+        }
+    }
+
+    private static final class AllMatch<T> implements Predicate<T> {
+        private final Predicate<T>[] predicates;
+
+        private AllMatch(Predicate<T>[] predicates) {
+            this.predicates = predicates;
+        }
+
+        @Override
+        public boolean test(T t) {
+            for (Predicate<T> predicate : predicates) {
+                if (!predicate.test(t)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class AnyMatch<T> implements Predicate<T> {
+        private final Predicate<T>[] predicates;
+
+        private AnyMatch(Predicate<T>[] predicates) {
+            this.predicates = predicates;
+        }
+
+        @Override
+        public boolean test(T t) {
+            for (Predicate<T> predicate : predicates) {
+                if (predicate.test(t)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
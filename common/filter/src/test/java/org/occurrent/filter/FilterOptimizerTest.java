@@ -0,0 +1,224 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.filter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.occurrent.condition.Condition.MultiOperandCondition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.condition.Condition.*;
+import static org.occurrent.filter.Filter.*;
+
+class FilterOptimizerTest {
+
+    @Nested
+    @DisplayName("flattening")
+    class Flattening {
+
+        @Test
+        void nested_and_filters_are_flattened() {
+            // Given
+            Filter filter = type("GameStarted").and(subject("game").and(streamId("stream")));
+
+            // When
+            Filter optimized = FilterOptimizer.optimize(filter);
+
+            // Then
+            assertThat(optimized).isEqualTo(type("GameStarted").and(subject("game"), streamId("stream")));
+        }
+
+        @Test
+        void duplicate_filters_are_removed() {
+            // Given
+            Filter filter = type("GameStarted").and(subject("game")).and(type("GameStarted"));
+
+            // When
+            Filter optimized = FilterOptimizer.optimize(filter);
+
+            // Then
+            assertThat(optimized).isEqualTo(type("GameStarted").and(subject("game")));
+        }
+
+        @Test
+        void nested_conditions_are_flattened() {
+            // Given
+            Filter filter = streamVersion(or(eq(1L), or(eq(2L), gt(10L))));
+
+            // When
+            Filter optimized = FilterOptimizer.optimize(filter);
+
+            // Then
+            assertThat(optimized).isEqualTo(streamVersion(or(in(1L, 2L), gt(10L))));
+        }
+    }
+
+    @Nested
+    @DisplayName("ranges")
+    class Ranges {
+
+        @Test
+        void bounds_on_the_same_field_are_merged_to_the_most_restrictive_bounds() {
+            // Given
+            Filter filter = streamVersion(gt(2L)).and(streamVersion(gte(4L)), streamVersion(lt(10L)), streamVersion(lte(10L)));
+
+            // When
+            Filter optimized = FilterOptimizer.optimize(filter);
+
+            // Then
+            assertThat(optimized).isEqualTo(streamVersion(and(gte(4L), lt(10L))));
+        }
+
+        @Test
+        void exclusive_bound_is_more_restrictive_than_inclusive_bound_with_same_operand() {
+            Filter optimized = FilterOptimizer.optimize(streamVersion(and(gte(4L), gt(4L))));
+
+            assertThat(optimized).isEqualTo(streamVersion(gt(4L)));
+        }
+
+        @Test
+        void inclusive_bounds_with_same_operand_are_replaced_by_equality() {
+            Filter optimized = FilterOptimizer.optimize(streamVersion(and(gte(4L), lte(4L))));
+
+            assertThat(optimized).isEqualTo(streamVersion(4L));
+        }
+
+        @Test
+        void not_equal_conditions_outside_of_range_are_removed() {
+            Filter optimized = FilterOptimizer.optimize(streamVersion(and(gt(4L), ne(2L), ne(6L))));
+
+            assertThat(optimized).isEqualTo(streamVersion(and(gt(4L), ne(6L))));
+        }
+
+        @Test
+        void conditions_with_operands_of_different_types_are_not_merged() {
+            Filter filter = streamVersion(gt(4L)).and(filter(STREAM_VERSION, gt(5)));
+
+            Filter optimized = FilterOptimizer.optimize(filter);
+
+            assertThat(optimized).isInstanceOfSatisfying(SingleConditionFilter.class, singleConditionFilter ->
+                    assertThat(new ArrayList<Object>(((MultiOperandCondition<?>) singleConditionFilter.condition).operations)).containsExactly(gt(4L), gt(5)));
+        }
+    }
+
+    @Nested
+    @DisplayName("set membership")
+    class SetMembership {
+
+        @Test
+        void equality_filters_on_the_same_field_combined_with_or_are_merged_into_in() {
+            // Given
+            Filter filter = type("GameStarted").or(type("GameEnded"), subject("game"), type("GameWon"));
+
+            // When
+            Filter optimized = FilterOptimizer.optimize(filter);
+
+            // Then
+            assertThat(optimized).isEqualTo(type(in("GameStarted", "GameEnded", "GameWon")).or(subject("game")));
+        }
+
+        @Test
+        void in_conditions_combined_with_and_are_intersected() {
+            Filter optimized = FilterOptimizer.optimize(type(in("A", "B", "C")).and(type(in("B", "C", "D")), type(ne("C"))));
+
+            assertThat(optimized).isEqualTo(type("B"));
+        }
+
+        @Test
+        void in_condition_is_restricted_by_bounds() {
+            Filter optimized = FilterOptimizer.optimize(streamVersion(and(in(1L, 5L, 7L), gt(3L))));
+
+            assertThat(optimized).isEqualTo(streamVersion(in(5L, 7L)));
+        }
+
+        @Test
+        void not_equal_and_nin_conditions_combined_with_and_are_merged_into_nin() {
+            Filter optimized = FilterOptimizer.optimize(type(ne("A")).and(type(nin("B", "C")), type(ne("B"))));
+
+            assertThat(optimized).isEqualTo(type(nin("A", "B", "C")));
+        }
+
+        @Test
+        void nin_condition_is_subtracted_from_in_condition() {
+            Filter optimized = FilterOptimizer.optimize(type(and(in("A", "B", "C"), nin("A", "C"))));
+
+            assertThat(optimized).isEqualTo(type("B"));
+        }
+
+        @Test
+        void exists_condition_is_left_as_is() {
+            Filter optimized = FilterOptimizer.optimize(subject(and(exists(true), ne("game"))));
+
+            assertThat(optimized).isEqualTo(subject(and(ne("game"), exists(true))));
+        }
+    }
+
+    @Nested
+    @DisplayName("contradictions and tautologies")
+    class ContradictionsAndTautologies {
+
+        @Test
+        void disjoint_range_is_replaced_by_empty_in() {
+            // When
+            Filter optimized = FilterOptimizer.optimize(streamVersion(gt(5L)).and(streamVersion(lt(3L))));
+
+            // Then
+            assertThat(optimized).isEqualTo(streamVersion(in(Collections.emptyList())));
+            assertThat(FilterOptimizer.isContradiction(optimized)).isTrue();
+        }
+
+        @Test
+        void different_equality_conditions_on_the_same_field_combined_with_and_is_a_contradiction() {
+            Filter optimized = FilterOptimizer.optimize(type("A").and(subject("game"), type("B")));
+
+            assertThat(FilterOptimizer.isContradiction(optimized)).isTrue();
+        }
+
+        @Test
+        void contradictions_are_removed_from_or_filters() {
+            Filter optimized = FilterOptimizer.optimize(streamVersion(and(gt(5L), lt(3L))).or(type("A")));
+
+            assertThat(optimized).isEqualTo(type("A"));
+        }
+
+        @Test
+        void all_is_removed_from_and_filters() {
+            Filter optimized = FilterOptimizer.optimize(all().and(type("A")));
+
+            assertThat(optimized).isEqualTo(type("A"));
+        }
+
+        @Test
+        void or_filter_containing_all_is_replaced_by_all() {
+            Filter optimized = FilterOptimizer.optimize(type("A").or(all()));
+
+            assertThat(optimized).isInstanceOf(Filter.All.class);
+        }
+
+        @Test
+        void filter_that_cannot_be_optimized_is_returned_as_is() {
+            Filter filter = type("A").and(subject("x"));
+
+            assertThat(FilterOptimizer.optimize(filter)).isEqualTo(filter);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.filter;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.condition.Condition.*;
+
+class FilterPredicateCompilerTest {
+
+    private static final OffsetDateTime TIME = OffsetDateTime.of(2020, 7, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    void all_matches_every_cloud_event() {
+        assertThat(FilterPredicateCompiler.compile(Filter.all()).test(cloudEvent())).isTrue();
+    }
+
+    @Nested
+    @DisplayName("string attributes")
+    class StringAttributes {
+
+        @Test
+        void evaluates_conditions_on_type() {
+            CloudEvent cloudEvent = cloudEvent();
+
+            assertThat(FilterPredicateCompiler.compile(Filter.type("GameStarted")).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.type("GameEnded")).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.type(ne("GameEnded"))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.type(lt("GameT"))).test(cloudEvent)).isTrue();
+        }
+
+        @Test
+        void evaluates_conditions_on_source_and_stream_id() {
+            CloudEvent cloudEvent = cloudEvent();
+
+            assertThat(FilterPredicateCompiler.compile(Filter.source(URI.create("urn:game"))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.streamId("game1")).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.streamId("game2")).test(cloudEvent)).isFalse();
+        }
+
+        @Test
+        void missing_attribute_only_matches_ne_conditions() {
+            CloudEvent cloudEvent = cloudEvent();
+
+            assertThat(FilterPredicateCompiler.compile(Filter.subject("subject")).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.subject(ne("subject"))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.subject(gt("a"))).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.subject(not(gt("a")))).test(cloudEvent)).isTrue();
+        }
+    }
+
+    @Nested
+    @DisplayName("stream version")
+    class StreamVersion {
+
+        @Test
+        void evaluates_conditions_on_stream_version() {
+            CloudEvent cloudEvent = cloudEvent();
+
+            assertThat(FilterPredicateCompiler.compile(Filter.streamVersion(3)).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.streamVersion(gt(3L))).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.streamVersion(and(gte(2L), lt(4L)))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.streamVersion(or(eq(1L), eq(5L)))).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.streamVersion(in(1L, 3L))).test(cloudEvent)).isTrue();
+        }
+
+        @Test
+        void operands_of_other_numeric_types_are_compared_as_longs() {
+            assertThat(FilterPredicateCompiler.compile(Filter.filter(STREAM_VERSION, eq(3))).test(cloudEvent())).isTrue();
+        }
+
+        @Test
+        void throws_iae_when_operand_is_not_a_number() {
+            Throwable throwable = catchThrowable(() -> FilterPredicateCompiler.compile(Filter.filter(STREAM_VERSION, eq("3"))));
+
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("time")
+    class Time {
+
+        @Test
+        void compares_time_as_an_instant_regardless_of_offset() {
+            CloudEvent cloudEvent = cloudEvent();
+            OffsetDateTime sameInstantInOtherOffset = TIME.withOffsetSameInstant(ZoneOffset.ofHours(2));
+
+            assertThat(FilterPredicateCompiler.compile(Filter.time(sameInstantInOtherOffset)).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.time(lte(sameInstantInOtherOffset))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.time(gt(TIME.minusSeconds(1)))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.time(lt(TIME))).test(cloudEvent)).isFalse();
+        }
+
+        @Test
+        void supports_instant_operands() {
+            assertThat(FilterPredicateCompiler.compile(Filter.filter(Filter.TIME, eq(TIME.toInstant()))).test(cloudEvent())).isTrue();
+        }
+    }
+
+    @Nested
+    @DisplayName("composition")
+    class Composition {
+
+        @Test
+        void and_matches_when_all_filters_match() {
+            CloudEvent cloudEvent = cloudEvent();
+
+            assertThat(FilterPredicateCompiler.compile(Filter.type("GameStarted").and(Filter.streamId("game1"))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.type("GameStarted").and(Filter.streamId("game2"))).test(cloudEvent)).isFalse();
+        }
+
+        @Test
+        void or_matches_when_any_filter_matches() {
+            CloudEvent cloudEvent = cloudEvent();
+
+            assertThat(FilterPredicateCompiler.compile(Filter.type("GameEnded").or(Filter.streamId("game1"))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.type("GameEnded").or(Filter.streamId("game2"))).test(cloudEvent)).isFalse();
+        }
+
+        @Test
+        void and_stops_evaluating_as_soon_as_a_filter_does_not_match() {
+            // Given
+            Predicate<CloudEvent> predicate = FilterPredicateCompiler.compile(Filter.type("GameEnded").and(Filter.filter("custom", eq(new Object() {
+                @Override
+                public boolean equals(Object obj) {
+                    throw new AssertionError("Should not be evaluated");
+                }
+            }))));
+
+            // When
+            boolean matches = predicate.test(cloudEventWithExtension());
+
+            // Then
+            assertThat(matches).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("set membership and existence")
+    class SetMembershipAndExistence {
+
+        @Test
+        void evaluates_in_and_nin_conditions() {
+            CloudEvent cloudEvent = cloudEvent();
+
+            assertThat(FilterPredicateCompiler.compile(Filter.type(in("GameStarted", "GameEnded"))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.type(nin("GameStarted", "GameEnded"))).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.streamVersion(nin(1L, 2L))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.time(nin(TIME.withOffsetSameInstant(ZoneOffset.ofHours(2))))).test(cloudEvent)).isFalse();
+        }
+
+        @Test
+        void missing_attribute_matches_nin_but_not_in() {
+            CloudEvent cloudEvent = cloudEvent();
+
+            assertThat(FilterPredicateCompiler.compile(Filter.subject(in("a", "b"))).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.subject(nin("a", "b"))).test(cloudEvent)).isTrue();
+        }
+
+        @Test
+        void evaluates_exists_conditions() {
+            CloudEvent cloudEvent = cloudEventWithExtension();
+
+            assertThat(FilterPredicateCompiler.compile(Filter.filter("custom", exists(true))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.filter("custom", exists(false))).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.subject(exists(true))).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.subject(exists(false))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.streamVersion(exists(true))).test(cloudEvent)).isTrue();
+        }
+    }
+
+    @Nested
+    @DisplayName("data")
+    class Data {
+
+        @Test
+        void evaluates_conditions_on_fields_in_json_data() {
+            CloudEvent cloudEvent = cloudEventWithData("application/json", "{\"completedBy\": \"John\", \"score\": 42, \"won\": true}");
+
+            assertThat(FilterPredicateCompiler.compile(Filter.data("completedBy", "John")).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("completedBy", ne("John"))).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("won", true)).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("score", gt(40L))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("score", lt(42))).test(cloudEvent)).isFalse();
+        }
+
+        @Test
+        void numbers_are_compared_by_numeric_value_regardless_of_type() {
+            CloudEvent cloudEvent = cloudEventWithData("application/json", "{\"score\": 42.0, \"ratio\": 0.5}");
+
+            assertThat(FilterPredicateCompiler.compile(Filter.data("score", 42)).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("score", in(41L, 42L))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("ratio", and(gt(0L), lte(0.5d)))).test(cloudEvent)).isTrue();
+        }
+
+        @Test
+        void evaluates_conditions_on_nested_fields_and_array_elements() {
+            CloudEvent cloudEvent = cloudEventWithData(null, "{\"player\": {\"name\": \"John\"}, \"guesses\": [3, 7]}");
+
+            assertThat(FilterPredicateCompiler.compile(Filter.data("player.name", "John")).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("guesses.1", 7)).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("player", exists(true))).test(cloudEvent)).isTrue();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("player.age", exists(false))).test(cloudEvent)).isTrue();
+        }
+
+        @Test
+        void data_that_is_not_json_does_not_contain_any_fields() {
+            CloudEvent cloudEvent = cloudEventWithData("text/plain", "{\"completedBy\": \"John\"}");
+
+            assertThat(FilterPredicateCompiler.compile(Filter.data("completedBy", "John")).test(cloudEvent)).isFalse();
+            assertThat(FilterPredicateCompiler.compile(Filter.data("completedBy", exists(false))).test(cloudEvent)).isTrue();
+        }
+
+        @Test
+        void data_is_only_parsed_once_per_cloud_event_when_evaluated_by_several_conditions_and_predicates() {
+            // Given
+            AtomicInteger numberOfReads = new AtomicInteger();
+            CloudEvent cloudEvent = countingDataReads(cloudEventWithData("application/json", "{\"completedBy\": \"John\", \"score\": 42}"), numberOfReads);
+            Predicate<CloudEvent> predicate1 = FilterPredicateCompiler.compile(Filter.data("completedBy", "John").and(Filter.data("score", gt(40L))));
+            Predicate<CloudEvent> predicate2 = FilterPredicateCompiler.compile(Filter.data("score", lt(50L)));
+
+            // When
+            boolean matches1 = predicate1.test(cloudEvent);
+            boolean matches2 = predicate2.test(cloudEvent);
+
+            // Then
+            assertThat(matches1).isTrue();
+            assertThat(matches2).isTrue();
+            assertThat(numberOfReads).hasValue(1);
+        }
+
+        @Test
+        void data_of_each_cloud_event_is_parsed() {
+            // Given
+            Predicate<CloudEvent> predicate = FilterPredicateCompiler.compile(Filter.data("completedBy", "John"));
+
+            // When
+            boolean matches1 = predicate.test(cloudEventWithData("application/json", "{\"completedBy\": \"John\"}"));
+            boolean matches2 = predicate.test(cloudEventWithData("application/json", "{\"completedBy\": \"Jane\"}"));
+
+            // Then
+            assertThat(matches1).isTrue();
+            assertThat(matches2).isFalse();
+        }
+
+        @Test
+        void throws_iae_when_data_path_is_empty() {
+            Throwable throwable = catchThrowable(() -> Filter.data(" ", "John"));
+
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void evaluates_conditions_on_custom_extensions() {
+        CloudEvent cloudEvent = cloudEventWithExtension();
+
+        assertThat(FilterPredicateCompiler.compile(Filter.filter("custom", eq("value"))).test(cloudEvent)).isTrue();
+        assertThat(FilterPredicateCompiler.compile(Filter.filter("custom", gt(2))).test(cloudEvent)).isFalse();
+        assertThat(FilterPredicateCompiler.compile(Filter.filter("missing", eq("value"))).test(cloudEvent)).isFalse();
+    }
+
+    private static CloudEvent cloudEvent() {
+        return CloudEventBuilder.v1()
+                .withId("id")
+                .withSource(URI.create("urn:game"))
+                .withType("GameStarted")
+                .withTime(TIME)
+                .withExtension(STREAM_ID, "game1")
+                .withExtension(STREAM_VERSION, 3L)
+                .build();
+    }
+
+    private static CloudEvent cloudEventWithData(String dataContentType, String data) {
+        return CloudEventBuilder.v1(cloudEvent()).withData(dataContentType, data.getBytes(StandardCharsets.UTF_8)).build();
+    }
+
+    private static CloudEvent countingDataReads(CloudEvent cloudEvent, AtomicInteger numberOfReads) {
+        return (CloudEvent) Proxy.newProxyInstance(CloudEvent.class.getClassLoader(), new Class[]{CloudEvent.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getData")) {
+                numberOfReads.incrementAndGet();
+            }
+            return method.invoke(cloudEvent, args);
+        });
+    }
+
+    private static CloudEvent cloudEventWithExtension() {
+        return CloudEventBuilder.v1(cloudEvent()).withExtension("custom", "value").build();
+    }
+}
@@ -19,7 +19,9 @@ package org.occurrent.mongodb.spring.filterbsonfilterconversion.internal;
 import com.mongodb.client.model.Filters;
 import org.bson.conversions.Bson;
 import org.occurrent.condition.Condition;
+import org.occurrent.condition.Condition.ExistsCondition;
 import org.occurrent.condition.Condition.MultiOperandCondition;
+import org.occurrent.condition.Condition.MultiValueCondition;
 import org.occurrent.condition.Condition.SingleOperandCondition;
 import org.occurrent.condition.Condition.SingleOperandConditionName;
 
@@ -66,6 +68,18 @@ public class ConditionConverter {
                 default:
                     throw new IllegalStateException("Unexpected value: " + singleOperandConditionName);
             }
+        } else if (condition instanceof MultiValueCondition) {
+            MultiValueCondition<T> multiValueCondition = (MultiValueCondition<T>) condition;
+            switch (multiValueCondition.multiValueConditionName) {
+                case IN:
+                    return Filters.in(fieldName, multiValueCondition.values);
+                case NIN:
+                    return Filters.nin(fieldName, multiValueCondition.values);
+                default:
+                    throw new IllegalStateException("Unexpected value: " + multiValueCondition.multiValueConditionName);
+            }
+        } else if (condition instanceof ExistsCondition) {
+            return Filters.exists(fieldName, ((ExistsCondition<T>) condition).exists);
         } else {
             throw new IllegalArgumentException("Unsupported condition: " + condition.getClass());
         }
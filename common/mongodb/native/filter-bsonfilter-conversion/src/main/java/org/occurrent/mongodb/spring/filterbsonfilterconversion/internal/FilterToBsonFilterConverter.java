@@ -23,6 +23,7 @@ import org.occurrent.condition.Condition;
 import org.occurrent.filter.Filter;
 import org.occurrent.filter.Filter.All;
 import org.occurrent.filter.Filter.CompositionFilter;
+import org.occurrent.filter.FilterOptimizer;
 import org.occurrent.filter.Filter.SingleConditionFilter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 
@@ -31,7 +32,8 @@ import static org.occurrent.mongodb.specialfilterhandling.internal.SpecialFilter
 import static org.occurrent.mongodb.spring.filterbsonfilterconversion.internal.ConditionConverter.convertConditionToBsonCriteria;
 
 /**
- * Converts a {@link Filter} into a {@link Bson} filter that can be used when querying MongoDB.
+ * Converts a {@link Filter} into a {@link Bson} filter that can be used when querying MongoDB. The filter is optimized by the {@link FilterOptimizer}
+ * before it's converted.
  */
 public class FilterToBsonFilterConverter {
     public static Bson convertFilterToBsonFilter(TimeRepresentation timeRepresentation, Filter filter) {
@@ -42,13 +44,8 @@ public class FilterToBsonFilterConverter {
         requireNonNull(filter, "Filter cannot be null");
         requireNonNull(timeRepresentation, "TimeRepresentation cannot be null");
 
-        final Bson query;
-        if (filter instanceof All) {
-            query = new BsonDocument();
-        } else {
-            query = innerConvert(fieldNamePrefix, timeRepresentation, filter);
-        }
-        return query;
+        Filter optimizedFilter = FilterOptimizer.optimize(filter);
+        return innerConvert(fieldNamePrefix, timeRepresentation, optimizedFilter);
     }
 
     private static Bson innerConvert(String fieldNamePrefix, TimeRepresentation timeRepresentation, Filter filter) {
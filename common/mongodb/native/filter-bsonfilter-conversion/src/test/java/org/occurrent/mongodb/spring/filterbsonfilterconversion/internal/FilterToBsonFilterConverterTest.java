@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.mongodb.spring.filterbsonfilterconversion.internal;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.occurrent.filter.Filter;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.occurrent.condition.Condition.*;
+import static org.occurrent.mongodb.timerepresentation.TimeRepresentation.DATE;
+import static org.occurrent.mongodb.timerepresentation.TimeRepresentation.RFC_3339_STRING;
+
+class FilterToBsonFilterConverterTest {
+
+    @Test
+    void filters_with_the_same_shape_but_different_operands_are_converted_using_their_own_operands() {
+        // When
+        Bson first = FilterToBsonFilterConverter.convertFilterToBsonFilter(DATE, Filter.type("GameStarted").and(Filter.streamVersion(gt(2L))));
+        Bson second = FilterToBsonFilterConverter.convertFilterToBsonFilter(DATE, Filter.type("GameEnded").and(Filter.streamVersion(gt(5L))));
+
+        // Then
+        assertThat(render(first)).isEqualTo(BsonDocument.parse("{ $and: [ { type: 'GameStarted' }, { streamVersion: { $gt: { $numberLong: '2' } } } ] }"));
+        assertThat(render(second)).isEqualTo(BsonDocument.parse("{ $and: [ { type: 'GameEnded' }, { streamVersion: { $gt: { $numberLong: '5' } } } ] }"));
+    }
+
+    @Test
+    void the_same_filter_is_converted_according_to_the_field_name_prefix_and_time_representation() {
+        // Given
+        OffsetDateTime time = OffsetDateTime.of(2020, 7, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+        FilterToBsonFilterConverter.convertFilterToBsonFilter("prefix", DATE, Filter.time(time));
+
+        // When
+        Bson otherPrefix = FilterToBsonFilterConverter.convertFilterToBsonFilter("other", DATE, Filter.time(time));
+        Bson otherTimeRepresentation = FilterToBsonFilterConverter.convertFilterToBsonFilter("prefix", RFC_3339_STRING, Filter.time(time));
+
+        // Then
+        assertThat(render(otherPrefix)).isEqualTo(new BsonDocument("other.time", new BsonDateTime(Date.from(time.toInstant()).getTime())));
+        assertThat(render(otherTimeRepresentation)).isEqualTo(new BsonDocument("prefix.time", new BsonString("2020-07-01T10:00:00Z")));
+    }
+
+    @Test
+    void time_operands_are_converted_according_to_the_time_representation() {
+        // Given
+        OffsetDateTime time = OffsetDateTime.of(2020, 7, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+
+        // When
+        Bson rfc3339 = FilterToBsonFilterConverter.convertFilterToBsonFilter(RFC_3339_STRING, Filter.time(time));
+        Bson date = FilterToBsonFilterConverter.convertFilterToBsonFilter(DATE, Filter.time(time));
+
+        // Then
+        assertThat(render(rfc3339)).isEqualTo(new BsonDocument("time", new BsonString("2020-07-01T10:00:00Z")));
+        assertThat(render(date)).isEqualTo(new BsonDocument("time", new BsonDateTime(Date.from(time.toInstant()).getTime())));
+    }
+
+    @Test
+    void in_conditions_are_converted_to_in_operator() {
+        Bson bson = FilterToBsonFilterConverter.convertFilterToBsonFilter(DATE, Filter.type("A").or(Filter.type("B")));
+
+        assertThat(render(bson)).isEqualTo(BsonDocument.parse("{ type: { $in: [ 'A', 'B' ] } }"));
+    }
+
+    @Test
+    void nin_conditions_are_converted_to_nin_operator() {
+        Bson bson = FilterToBsonFilterConverter.convertFilterToBsonFilter(DATE, Filter.type(nin("A", "B")));
+
+        assertThat(render(bson)).isEqualTo(BsonDocument.parse("{ type: { $nin: [ 'A', 'B' ] } }"));
+    }
+
+    @Test
+    void exists_conditions_are_converted_to_exists_operator() {
+        // When
+        Bson exists = FilterToBsonFilterConverter.convertFilterToBsonFilter("prefix", DATE, Filter.subject(exists(true)));
+        Bson notExists = FilterToBsonFilterConverter.convertFilterToBsonFilter("prefix", DATE, Filter.subject(exists(false)));
+
+        // Then
+        assertThat(render(exists)).isEqualTo(BsonDocument.parse("{ 'prefix.subject': { $exists: true } }"));
+        assertThat(render(notExists)).isEqualTo(BsonDocument.parse("{ 'prefix.subject': { $exists: false } }"));
+    }
+
+    @Test
+    void data_filters_are_converted_to_conditions_on_the_data_field_including_the_prefix() {
+        // When
+        Bson bson = FilterToBsonFilterConverter.convertFilterToBsonFilter("fullDocument", DATE, Filter.data("completedBy", "John").and(Filter.data("player.score", gte(10L))));
+
+        // Then
+        assertThat(render(bson)).isEqualTo(BsonDocument.parse("{ $and: [ { 'fullDocument.data.completedBy': 'John' }, { 'fullDocument.data.player.score': { $gte: { $numberLong: '10' } } } ] }"));
+    }
+
+    @Test
+    void all_filter_is_converted_to_empty_document() {
+        assertThat(render(FilterToBsonFilterConverter.convertFilterToBsonFilter(DATE, Filter.all()))).isEqualTo(new BsonDocument());
+    }
+
+    private static BsonDocument render(Bson bson) {
+        return bson.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+    }
+}
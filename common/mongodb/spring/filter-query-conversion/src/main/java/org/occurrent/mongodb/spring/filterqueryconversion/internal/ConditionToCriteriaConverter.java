@@ -17,7 +17,9 @@
 package org.occurrent.mongodb.spring.filterqueryconversion.internal;
 
 import org.occurrent.condition.Condition;
+import org.occurrent.condition.Condition.ExistsCondition;
 import org.occurrent.condition.Condition.MultiOperandCondition;
+import org.occurrent.condition.Condition.MultiValueCondition;
 import org.occurrent.condition.Condition.SingleOperandCondition;
 import org.springframework.data.mongodb.core.query.Criteria;
 
@@ -64,6 +66,18 @@ public class ConditionToCriteriaConverter {
                 default:
                     throw new IllegalStateException("Unexpected value: " + singleOperandConditionName);
             }
+        } else if (condition instanceof MultiValueCondition) {
+            MultiValueCondition<T> multiValueCondition = (MultiValueCondition<T>) condition;
+            switch (multiValueCondition.multiValueConditionName) {
+                case IN:
+                    return Criteria.where(fieldName).in(multiValueCondition.values);
+                case NIN:
+                    return Criteria.where(fieldName).nin(multiValueCondition.values);
+                default:
+                    throw new IllegalStateException("Unexpected value: " + multiValueCondition.multiValueConditionName);
+            }
+        } else if (condition instanceof ExistsCondition) {
+            return Criteria.where(fieldName).exists(((ExistsCondition<T>) condition).exists);
         } else {
             throw new IllegalArgumentException("Unsupported condition: " + condition.getClass());
         }
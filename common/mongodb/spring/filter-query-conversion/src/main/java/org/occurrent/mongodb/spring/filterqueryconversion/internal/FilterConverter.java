@@ -21,6 +21,7 @@ import org.occurrent.filter.Filter;
 import org.occurrent.filter.Filter.All;
 import org.occurrent.filter.Filter.CompositionFilter;
 import org.occurrent.filter.Filter.SingleConditionFilter;
+import org.occurrent.filter.FilterOptimizer;
 import org.occurrent.mongodb.specialfilterhandling.internal.SpecialFilterHandling;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -30,7 +31,7 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * Converts a {@link Filter} into either a {@link Query} or {@link Criteria} that can be used for e.g. querying
- * an event store using Spring.
+ * an event store using Spring. The filter is optimized by the {@link FilterOptimizer} before it's converted.
  */
 public class FilterConverter {
 
@@ -42,16 +43,23 @@ public class FilterConverter {
         requireNonNull(filter, "Filter cannot be null");
         requireNonNull(timeRepresentation, "TimeRepresentation cannot be null");
 
+        Filter optimizedFilter = FilterOptimizer.optimize(filter);
         final Query query;
-        if (filter instanceof All) {
+        if (optimizedFilter instanceof All) {
             query = new Query();
         } else {
-            query = Query.query(convertFilterToCriteria(fieldNamePrefix, timeRepresentation, filter));
+            query = Query.query(innerConvert(fieldNamePrefix, timeRepresentation, optimizedFilter));
         }
         return query;
     }
 
     public static Criteria convertFilterToCriteria(String fieldNamePrefix, TimeRepresentation timeRepresentation, Filter filter) {
+        requireNonNull(filter, "Filter cannot be null");
+        requireNonNull(timeRepresentation, "TimeRepresentation cannot be null");
+        return innerConvert(fieldNamePrefix, timeRepresentation, FilterOptimizer.optimize(filter));
+    }
+
+    private static Criteria innerConvert(String fieldNamePrefix, TimeRepresentation timeRepresentation, Filter filter) {
         final Criteria criteria;
         if (filter instanceof All) {
             criteria = new Criteria();
@@ -62,7 +70,7 @@ public class FilterConverter {
             criteria = ConditionToCriteriaConverter.convertConditionToCriteria(fieldName, conditionToUse);
         } else if (filter instanceof CompositionFilter) {
             CompositionFilter cf = (CompositionFilter) filter;
-            Criteria[] composedCriteria = cf.filters.stream().map(f -> FilterConverter.convertFilterToCriteria(fieldNamePrefix, timeRepresentation, f)).toArray(Criteria[]::new);
+            Criteria[] composedCriteria = cf.filters.stream().map(f -> innerConvert(fieldNamePrefix, timeRepresentation, f)).toArray(Criteria[]::new);
             Criteria c = new Criteria();
             switch (cf.operator) {
                 case AND:
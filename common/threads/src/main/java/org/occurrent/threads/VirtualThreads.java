@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.threads;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Creates the threads used by Occurrent. Virtual threads are used when running on a JVM that supports them (Java 21 or later) and the
+ * {@value #ENABLED_PROPERTY} system property is set to <code>true</code>, otherwise daemon platform threads are used. Since Occurrent
+ * is compiled for Java 8, virtual threads are created using reflection.
+ * <p>
+ * To run the subscription threads themselves on virtual threads, pass the executor returned by {@link #newVirtualThreadPerTaskExecutor(String)}
+ * to the subscription, for example:
+ * <pre>
+ * new BlockingSubscriptionForMongoDB(database, "events", TimeRepresentation.DATE, VirtualThreads.newVirtualThreadPerTaskExecutor("subscription"), RetryStrategy.fixed(200));
+ * </pre>
+ * This makes it possible to run thousands of subscriptions in the same JVM without sizing a thread pool.
+ * </p>
+ * <p>
+ * Code in Occurrent that may run on these threads uses {@link java.util.concurrent.locks.ReentrantLock} rather than <code>synchronized</code>
+ * whenever blocking I/O is performed while holding the lock, since blocking inside a <code>synchronized</code> block pins the virtual thread to its carrier thread.
+ * </p>
+ */
+public final class VirtualThreads {
+    /**
+     * The system property that enables virtual threads for the threads created by Occurrent.
+     */
+    public static final String ENABLED_PROPERTY = "occurrent.virtual-threads.enabled";
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderUnstarted = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class);
+            builderUnstarted = builderClass.getMethod("unstarted", Runnable.class);
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // Virtual threads are a preview feature in Java 19 and 20 and cannot be created unless preview features are enabled
+            builderUnstarted.invoke(ofVirtual.invoke(null), (Runnable) () -> {
+            });
+        } catch (Throwable e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_UNSTARTED = builderUnstarted;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return <code>true</code> if the JVM supports virtual threads, <code>false</code> otherwise.
+     */
+    public static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return <code>true</code> if the JVM supports virtual threads and the {@value #ENABLED_PROPERTY} system property is <code>true</code>.
+     */
+    public static boolean isEnabled() {
+        return isAvailable() && Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Create a new, unstarted, thread. The thread is virtual if {@link #isEnabled()}, otherwise it's a daemon platform thread.
+     *
+     * @param name The name of the thread
+     * @param task The task to run
+     * @return The new thread
+     */
+    public static Thread newThread(String name, Runnable task) {
+        requireNonNull(name, "Name cannot be null");
+        requireNonNull(task, "Task cannot be null");
+        return isEnabled() ? newVirtualThread(name, task) : newPlatformThread(name, task);
+    }
+
+    /**
+     * @param namePrefix The prefix of the name of the threads, the threads are named "namePrefix-1", "namePrefix-2" etc.
+     * @return A {@link ThreadFactory} that creates virtual threads if {@link #isEnabled()}, otherwise daemon platform threads.
+     */
+    public static ThreadFactory threadFactory(String namePrefix) {
+        requireNonNull(namePrefix, "Name prefix cannot be null");
+        AtomicLong threadCounter = new AtomicLong();
+        return task -> newThread(namePrefix + "-" + threadCounter.incrementAndGet(), task);
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task. If the JVM doesn't support virtual threads, a cached thread pool
+     * of daemon platform threads is returned instead. Note that this method doesn't consider the {@value #ENABLED_PROPERTY} system property.
+     *
+     * @param namePrefix The prefix of the name of the threads, the threads are named "namePrefix-1", "namePrefix-2" etc.
+     * @return A new {@link ExecutorService}
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        requireNonNull(namePrefix, "Name prefix cannot be null");
+        AtomicLong threadCounter = new AtomicLong();
+        if (!isAvailable()) {
+            return Executors.newCachedThreadPool(task -> newPlatformThread(namePrefix + "-" + threadCounter.incrementAndGet(), task));
+        }
+        ThreadFactory threadFactory = task -> newVirtualThread(namePrefix + "-" + threadCounter.incrementAndGet(), task);
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create virtual thread executor", e);
+        }
+    }
+
+    private static Thread newVirtualThread(String name, Runnable task) {
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+            return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create virtual thread " + name, e);
+        }
+    }
+
+    private static Thread newPlatformThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
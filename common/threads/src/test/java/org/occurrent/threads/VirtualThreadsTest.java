@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.threads;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Timeout(10)
+class VirtualThreadsTest {
+
+    @AfterEach
+    void clear_system_property() {
+        System.clearProperty(VirtualThreads.ENABLED_PROPERTY);
+    }
+
+    @Test
+    void platform_daemon_threads_are_created_when_virtual_threads_are_not_enabled() {
+        // Given
+        System.setProperty(VirtualThreads.ENABLED_PROPERTY, "false");
+
+        // When
+        Thread thread = VirtualThreads.newThread("name", () -> {
+        });
+
+        // Then
+        assertThat(thread.getName()).isEqualTo("name");
+        assertThat(thread.isDaemon()).isTrue();
+        assertThat(isVirtual(thread)).isFalse();
+    }
+
+    @Test
+    void virtual_threads_are_created_when_virtual_threads_are_enabled() {
+        // Given
+        assumeTrue(VirtualThreads.isAvailable(), "Virtual threads are not supported by this JVM");
+        System.setProperty(VirtualThreads.ENABLED_PROPERTY, "true");
+
+        // When
+        Thread thread = VirtualThreads.newThread("name", () -> {
+        });
+
+        // Then
+        assertThat(thread.getName()).isEqualTo("name");
+        assertThat(isVirtual(thread)).isTrue();
+    }
+
+    @Test
+    void virtual_threads_are_not_enabled_when_the_jvm_does_not_support_them() {
+        // Given
+        assumeFalse(VirtualThreads.isAvailable());
+
+        // When
+        System.setProperty(VirtualThreads.ENABLED_PROPERTY, "true");
+
+        // Then
+        assertThat(VirtualThreads.isEnabled()).isFalse();
+    }
+
+    @Test
+    void thread_factory_numbers_the_threads() {
+        // Given
+        ThreadFactory threadFactory = VirtualThreads.threadFactory("prefix");
+
+        // When
+        Thread thread1 = threadFactory.newThread(() -> {
+        });
+        Thread thread2 = threadFactory.newThread(() -> {
+        });
+
+        // Then
+        assertThat(thread1.getName()).isEqualTo("prefix-1");
+        assertThat(thread2.getName()).isEqualTo("prefix-2");
+    }
+
+    @Test
+    void virtual_thread_per_task_executor_runs_each_task_in_a_new_thread() throws Exception {
+        // Given
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor("task");
+
+        // When
+        Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // Then
+        assertThat(thread.getName()).startsWith("task-");
+        assertThat(isVirtual(thread)).isEqualTo(VirtualThreads.isAvailable());
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        return thread.getClass().getName().contains("VirtualThread");
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.api.blocking;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.filter.Filter;
+
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Parallel querying capabilities that may be supported by an {@link EventStore} implementation. This is typically useful when
+ * (re-)building read models from all, or a large portion of, the events in the event store. The event store is split into partitions
+ * (for example by insertion order) that are queried concurrently, so that throughput can scale with the number of cores and database connections.
+ * <p>
+ * Note that the cloud events are <i>not</i> returned in a global order.
+ * </p>
+ */
+public interface EventStoreParallelQueries {
+
+    /**
+     * Query the event store in parallel using {@code parallelism} concurrent cursors. The cloud events are returned in an unspecified order.
+     * The returned {@link Stream} must be closed (or fully consumed) in order to release the resources used by the query.
+     *
+     * @param filter      The filter to apply
+     * @param parallelism The maximum number of partitions that are queried concurrently
+     * @return All cloud events matching the specified filter, in an unspecified order.
+     */
+    Stream<CloudEvent> parallelQuery(Filter filter, int parallelism);
+
+    /**
+     * Query the event store in parallel using {@code parallelism} concurrent cursors. The cloud events of a partition are delivered to
+     * the {@code action} in insertion order by a single thread, but different partitions are delivered concurrently. This method blocks
+     * until all partitions have been processed. If the {@code action} throws an exception, the query is aborted and the exception is rethrown.
+     *
+     * @param filter      The filter to apply
+     * @param parallelism The maximum number of partitions that are queried concurrently
+     * @param action      The action to invoke for each cloud event. The first argument is the (zero-based) index of the partition.
+     */
+    void parallelQuery(Filter filter, int parallelism, BiConsumer<Integer, CloudEvent> action);
+
+    /**
+     * @param parallelism The maximum number of partitions that are queried concurrently
+     * @return All cloud events in the event store, in an unspecified order.
+     * @see #parallelQuery(Filter, int)
+     */
+    default Stream<CloudEvent> parallelAll(int parallelism) {
+        return parallelQuery(Filter.all(), parallelism);
+    }
+
+    /**
+     * @param parallelism The maximum number of partitions that are queried concurrently
+     * @param action      The action to invoke for each cloud event. The first argument is the (zero-based) index of the partition.
+     * @see #parallelQuery(Filter, int, BiConsumer)
+     */
+    default void parallelAll(int parallelism, BiConsumer<Integer, CloudEvent> action) {
+        parallelQuery(Filter.all(), parallelism, action);
+    }
+}
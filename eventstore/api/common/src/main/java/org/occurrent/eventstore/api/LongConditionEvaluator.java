@@ -17,8 +17,10 @@
 package org.occurrent.eventstore.api;
 
 import org.occurrent.condition.Condition;
+import org.occurrent.condition.Condition.ExistsCondition;
 import org.occurrent.condition.Condition.MultiOperandCondition;
 import org.occurrent.condition.Condition.MultiOperandConditionName;
+import org.occurrent.condition.Condition.MultiValueCondition;
 import org.occurrent.condition.Condition.SingleOperandCondition;
 import org.occurrent.condition.Condition.SingleOperandConditionName;
 
@@ -67,6 +69,20 @@ public class LongConditionEvaluator {
                 default:
                     throw new IllegalStateException("Unexpected value: " + singleOperandConditionName);
             }
+        } else if (condition instanceof MultiValueCondition) {
+            MultiValueCondition<Long> multiValueCondition = (MultiValueCondition<Long>) condition;
+            boolean containsValue = multiValueCondition.values.stream().anyMatch(operand -> operand != null && operand == value);
+            switch (multiValueCondition.multiValueConditionName) {
+                case IN:
+                    return containsValue;
+                case NIN:
+                    return !containsValue;
+                default:
+                    throw new IllegalStateException("Unexpected value: " + multiValueCondition.multiValueConditionName);
+            }
+        } else if (condition instanceof ExistsCondition) {
+            // The value is always present
+            return ((ExistsCondition<Long>) condition).exists;
         } else {
             throw new IllegalArgumentException("Unsupported condition: " + condition.getClass());
         }
@@ -61,7 +61,13 @@ class LongConditionEvaluatorTest {
                 Arguments.of(3L, Condition.and(Condition.eq(3L), Condition.lt(20L)), true),
                 Arguments.of(3L, Condition.and(Condition.eq(3L), Condition.lt(2L)), false),
                 Arguments.of(3L, Condition.not(Condition.and(Condition.eq(3L), Condition.lt(2L))), true),
-                Arguments.of(3L, Condition.not(Condition.or(Condition.gt(3L), Condition.ne(2L))), false)
+                Arguments.of(3L, Condition.not(Condition.or(Condition.gt(3L), Condition.ne(2L))), false),
+                Arguments.of(3L, Condition.in(2L, 3L), true),
+                Arguments.of(4L, Condition.in(2L, 3L), false),
+                Arguments.of(3L, Condition.nin(2L, 3L), false),
+                Arguments.of(4L, Condition.nin(2L, 3L), true),
+                Arguments.of(3L, Condition.exists(true), true),
+                Arguments.of(3L, Condition.exists(false), false)
         );
     }
 }
\ No newline at end of file
@@ -17,6 +17,7 @@
 package org.occurrent.eventstore.api.reactor;
 
 import io.cloudevents.CloudEvent;
+import org.occurrent.filter.Filter;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
@@ -57,5 +58,23 @@ public interface EventStoreOperations {
      */
     Mono<CloudEvent> updateEvent(String cloudEventId, URI cloudEventSource, Function<CloudEvent, CloudEvent> updateFunction);
 
-    // TODO Implement generic delete method with a Condition
+    /**
+     * Delete all cloud events matching the supplied {@code filter}. This is typically much faster than deleting the cloud events one by one
+     * using {@link #deleteEvent(String, URI)}, for example when applying a retention policy. Note that it's possible to delete cloud events
+     * in the middle of an event stream.
+     *
+     * @param filter The filter that selects the cloud events to delete, use {@link Filter#all()} to delete all cloud events.
+     */
+    Mono<Void> delete(Filter filter);
+
+    /**
+     * Update all cloud events matching the supplied {@code filter}. This is mainly useful as a strategy for complying with e.g. GDPR if you need to
+     * remove some attributes that are sensitive from many cloud events. The cloud events are updated in batches and in contrast to
+     * {@link #updateEvent(String, URI, Function)} the cloud events are <i>not</i> updated in a single transaction.
+     *
+     * @param filter         The filter that selects the cloud events to update
+     * @param updateFunction A function that takes an existing cloud event and you're expected to return an updated cloud event (cannot be <code>null</code>).
+     *                       If the function returns a cloud event equal to the existing cloud event then nothing is written for this cloud event.
+     */
+    Mono<Void> update(Filter filter, Function<CloudEvent, CloudEvent> updateFunction);
 }
\ No newline at end of file
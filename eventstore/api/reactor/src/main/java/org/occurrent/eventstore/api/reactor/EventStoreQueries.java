@@ -88,6 +88,10 @@ public interface EventStoreQueries {
         return query(filter, 0, Integer.MAX_VALUE);
     }
 
+    /**
+     * Sort order of the events. Events with the same time are sorted by stream id and stream version (in the same direction as the time),
+     * so {@link #TIME_ASC} and {@link #TIME_DESC} define a unique order that can be used for keyset pagination.
+     */
     enum SortBy {
         TIME_ASC, TIME_DESC, NATURAL_ASC, NATURAL_DESC
     }
@@ -17,8 +17,16 @@
 package org.occurrent.eventstore.api.reactor;
 
 import io.cloudevents.CloudEvent;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
 /**
  * An interface that should be implemented by event stores that supports reading an {@link EventStream}.
  */
@@ -40,4 +48,54 @@ public interface ReadEventStream {
      * @return An {@link EventStream} containing the events of the stream. Will return an {@link EventStream} with version {@code 0} if event stream doesn't exists.
      */
     Mono<EventStream<CloudEvent>> read(String streamId, int skip, int limit);
+
+    /**
+     * Read the events of a particular event stream that have a stream version within the supplied range. Event stores are expected to
+     * implement this using a range query on the stream version rather than skipping events, which makes it cheap to read e.g. the events
+     * that have been written after a snapshot.
+     *
+     * @param streamId             The id of the stream to read.
+     * @param fromVersionExclusive Only include events with a stream version greater than this version.
+     * @param toVersionInclusive   Only include events with a stream version less than or equal to this version.
+     * @return An {@link EventStream} containing the events within the version range in ascending version order. The version of the {@link EventStream} is
+     * the current version of the event stream (regardless of the range). Will return an {@link EventStream} with version {@code 0} if event stream doesn't exists.
+     */
+    Mono<EventStream<CloudEvent>> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive);
+
+    /**
+     * Read the events of a particular event stream that have a stream version greater than {@code fromVersionExclusive}.
+     *
+     * @param streamId             The id of the stream to read.
+     * @param fromVersionExclusive Only include events with a stream version greater than this version.
+     * @return An {@link EventStream} containing the events after {@code fromVersionExclusive} in ascending version order. Will return an {@link EventStream} with version {@code 0} if event stream doesn't exists.
+     * @see #readVersionRange(String, long, long)
+     */
+    default Mono<EventStream<CloudEvent>> readFromVersion(String streamId, long fromVersionExclusive) {
+        return readVersionRange(streamId, fromVersionExclusive, Long.MAX_VALUE);
+    }
+
+    /**
+     * Read the latest events of a particular event stream in reverse order, i.e. the event with the highest stream version first. This is useful
+     * for example to show the most recent activity of an aggregate without reading the entire event stream.
+     *
+     * @param streamId The id of the stream to read.
+     * @param limit    The maximum number of events to read
+     * @return An {@link EventStream} containing (at most) {@code limit} events in descending version order. Will return an {@link EventStream} with version {@code 0} if event stream doesn't exists.
+     */
+    Mono<EventStream<CloudEvent>> readReversed(String streamId, int limit);
+
+    /**
+     * Read all events from several event streams. Event stores are expected to read all event streams using a single query, which is
+     * much more efficient than reading each event stream individually when many event streams are needed at once.
+     *
+     * @param streamIds The ids of the streams to read.
+     * @return A {@link Map} from stream id to {@link EventStream}, in the same order as {@code streamIds}. The map contains an {@link EventStream} with version {@code 0}
+     * for each event stream that doesn't exist.
+     */
+    default Mono<Map<String, EventStream<CloudEvent>>> read(Collection<String> streamIds) {
+        requireNonNull(streamIds, "Stream ids cannot be null");
+        return Flux.fromIterable(new LinkedHashSet<>(streamIds))
+                .concatMap(this::read)
+                .collect(LinkedHashMap::new, (eventStreams, eventStream) -> eventStreams.put(eventStream.id(), eventStream));
+    }
 }
@@ -28,6 +28,8 @@ import org.occurrent.eventstore.api.blocking.EventStore;
 import org.occurrent.eventstore.api.blocking.EventStoreOperations;
 import org.occurrent.eventstore.api.blocking.EventStream;
 import org.occurrent.eventstore.api.internal.functional.FunctionalSupport.Pair;
+import org.occurrent.filter.Filter;
+import org.occurrent.filter.FilterPredicateCompiler;
 
 import java.net.URI;
 import java.util.*;
@@ -60,7 +62,32 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations {
         } else if (skip == 0 && limit == Integer.MAX_VALUE) {
             return new EventStreamImpl(streamId, calculateStreamVersion(events), events);
         }
-        return new EventStreamImpl(streamId, calculateStreamVersion(events), events.subList(skip, limit));
+        int fromIndex = Math.min(skip, events.size());
+        int toIndex = (int) Math.min(events.size(), (long) skip + limit);
+        return new EventStreamImpl(streamId, calculateStreamVersion(events), events.subList(fromIndex, toIndex));
+    }
+
+    @Override
+    public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        List<CloudEvent> events = state.get(streamId);
+        if (events == null) {
+            return new EventStreamImpl(streamId, 0, Collections.emptyList());
+        }
+        // Events are stored in stream version order so the range can be found using binary search
+        int fromIndex = indexOfFirstEventWithStreamVersionGreaterThan(events, fromVersionExclusive);
+        int toIndex = Math.max(fromIndex, indexOfFirstEventWithStreamVersionGreaterThan(events, toVersionInclusive));
+        return new EventStreamImpl(streamId, calculateStreamVersion(events), events.subList(fromIndex, toIndex));
+    }
+
+    @Override
+    public EventStream<CloudEvent> readReversed(String streamId, int limit) {
+        List<CloudEvent> events = state.get(streamId);
+        if (events == null) {
+            return new EventStreamImpl(streamId, 0, Collections.emptyList());
+        }
+        List<CloudEvent> latestEvents = new ArrayList<>(events.subList(Math.max(0, events.size() - limit), events.size()));
+        Collections.reverse(latestEvents);
+        return new EventStreamImpl(streamId, calculateStreamVersion(events), latestEvents);
     }
 
     @Override
@@ -85,7 +112,7 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations {
 
     private static List<CloudEvent> applyOccurrentCloudEventExtension(Stream<CloudEvent> events, String streamId, long streamVersion) {
         return zip(LongStream.iterate(streamVersion + 1, i -> i + 1).boxed(), events, Pair::new)
-                .map(pair -> modifyCloudEvent(e -> e.withExtension(new OccurrentCloudEventExtension(streamId, streamVersion + pair.t1))).apply(pair.t2))
+                .map(pair -> modifyCloudEvent(e -> e.withExtension(new OccurrentCloudEventExtension(streamId, pair.t1))).apply(pair.t2))
                 .collect(Collectors.toList());
     }
 
@@ -156,6 +183,32 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations {
                 .flatMap(events -> events.stream().filter(cloudEventPredicate).findFirst());
     }
 
+    @Override
+    public void delete(Filter filter) {
+        Predicate<CloudEvent> cloudEventMatchesFilter = FilterPredicateCompiler.compile(requireNonNull(filter, "Filter cannot be null"));
+        state.keySet().forEach(streamId -> state.computeIfPresent(streamId, (__, events) -> {
+            List<CloudEvent> newEvents = events.stream().filter(cloudEventMatchesFilter.negate()).collect(Collectors.toList());
+            return newEvents.isEmpty() ? null : newEvents;
+        }));
+    }
+
+    @Override
+    public void update(Filter filter, Function<CloudEvent, CloudEvent> updateFunction) {
+        requireNonNull(updateFunction, "Update function cannot be null");
+        Predicate<CloudEvent> cloudEventMatchesFilter = FilterPredicateCompiler.compile(requireNonNull(filter, "Filter cannot be null"));
+        state.keySet().forEach(streamId -> state.computeIfPresent(streamId, (__, events) ->
+                events.stream().map(cloudEvent -> {
+                    if (!cloudEventMatchesFilter.test(cloudEvent)) {
+                        return cloudEvent;
+                    }
+                    CloudEvent updatedCloudEvent = updateFunction.apply(cloudEvent);
+                    if (updatedCloudEvent == null) {
+                        throw new IllegalArgumentException("It's not allowed to return a null CloudEvent from the update function.");
+                    }
+                    return updatedCloudEvent;
+                }).collect(Collectors.toList())));
+    }
+
     private static class EventStreamImpl implements EventStream<CloudEvent> {
         private final String streamId;
         private final long version;
@@ -230,6 +283,25 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations {
                 .findFirst();
     }
 
+    private static int indexOfFirstEventWithStreamVersionGreaterThan(List<CloudEvent> events, long version) {
+        int low = 0;
+        int high = events.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (streamVersionOf(events.get(middle)) <= version) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    private static long streamVersionOf(CloudEvent cloudEvent) {
+        return (long) cloudEvent.getExtension(STREAM_VERSION);
+    }
+
     @SuppressWarnings("ConstantConditions")
     private static long calculateStreamVersion(List<CloudEvent> events) {
         if (events == null || events.isEmpty()) {
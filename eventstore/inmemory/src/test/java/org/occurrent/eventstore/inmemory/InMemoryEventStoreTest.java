@@ -34,10 +34,13 @@ import org.occurrent.eventstore.api.WriteCondition;
 import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
 import org.occurrent.eventstore.api.blocking.EventStore;
 import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.filter.Filter;
 
 import java.net.URI;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Function;
@@ -117,6 +120,161 @@ public class InMemoryEventStoreTest {
         assertThat(eventStream.events().map(e -> e.getExtension(STREAM_VERSION))).containsExactly(1L, 2L);
     }
 
+    @Test
+    void stream_version_extension_continues_from_current_stream_version_when_writing_to_existing_stream() {
+        // Given
+        InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+        LocalDateTime now = LocalDateTime.now();
+        unconditionallyPersist(inMemoryEventStore, "name", Stream.of(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+
+        // When
+        unconditionallyPersist(inMemoryEventStore, "name", Stream.of(new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe")));
+
+        // Then
+        EventStream<CloudEvent> eventStream = inMemoryEventStore.read("name");
+        assertThat(eventStream.version()).isEqualTo(3);
+        assertThat(eventStream.events().map(e -> e.getExtension(STREAM_VERSION))).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void read_with_skip_and_limit_returns_events_within_skip_and_limit() {
+        // Given
+        InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+        LocalDateTime now = LocalDateTime.now();
+        DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+        DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+        DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+        unconditionallyPersist(inMemoryEventStore, "name", Stream.of(event1, event2, event3));
+
+        // When
+        EventStream<CloudEvent> skipOneLimitOne = inMemoryEventStore.read("name", 1, 1);
+        EventStream<CloudEvent> skipTwoWithoutLimit = inMemoryEventStore.read("name", 2, Integer.MAX_VALUE);
+        EventStream<CloudEvent> skipAll = inMemoryEventStore.read("name", 5, Integer.MAX_VALUE);
+
+        // Then
+        assertThat(skipOneLimitOne.events().map(deserialize(objectMapper))).containsExactly(event2);
+        assertThat(skipTwoWithoutLimit.events().map(deserialize(objectMapper))).containsExactly(event3);
+        assertThat(skipAll.events()).isEmpty();
+        assertThat(skipAll.version()).isEqualTo(3);
+    }
+
+    @Nested
+    @DisplayName("version range reads")
+    class VersionRangeReads {
+
+        @Test
+        void read_version_range_returns_events_with_stream_version_greater_than_from_and_less_than_or_equal_to_to() {
+            // Given
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            DomainEvent event4 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Smith");
+            unconditionallyPersist(inMemoryEventStore, "name", Stream.of(event1, event2, event3, event4));
+
+            // When
+            EventStream<CloudEvent> eventStream = inMemoryEventStore.readVersionRange("name", 1, 3);
+
+            // Then
+            assertThat(eventStream.version()).isEqualTo(4);
+            assertThat(eventStream.events().map(deserialize(objectMapper))).containsExactly(event2, event3);
+        }
+
+        @Test
+        void read_from_version_returns_all_events_after_the_supplied_version() {
+            // Given
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            unconditionallyPersist(inMemoryEventStore, "name", Stream.of(event1, event2, event3));
+
+            // When
+            EventStream<CloudEvent> afterVersionOne = inMemoryEventStore.readFromVersion("name", 1);
+            EventStream<CloudEvent> afterCurrentVersion = inMemoryEventStore.readFromVersion("name", 3);
+
+            // Then
+            assertThat(afterVersionOne.events().map(deserialize(objectMapper))).containsExactly(event2, event3);
+            assertThat(afterCurrentVersion.events()).isEmpty();
+            assertThat(afterCurrentVersion.version()).isEqualTo(3);
+        }
+
+        @Test
+        void read_reversed_returns_the_latest_events_in_descending_stream_version_order() {
+            // Given
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            unconditionallyPersist(inMemoryEventStore, "name", Stream.of(event1, event2, event3));
+
+            // When
+            EventStream<CloudEvent> latestTwo = inMemoryEventStore.readReversed("name", 2);
+            EventStream<CloudEvent> all = inMemoryEventStore.readReversed("name", 10);
+
+            // Then
+            assertThat(latestTwo.version()).isEqualTo(3);
+            assertThat(latestTwo.events().map(deserialize(objectMapper))).containsExactly(event3, event2);
+            assertThat(all.events().map(deserialize(objectMapper))).containsExactly(event3, event2, event1);
+        }
+
+        @Test
+        void read_reversed_returns_empty_event_stream_when_stream_does_not_exist() {
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+
+            EventStream<CloudEvent> eventStream = inMemoryEventStore.readReversed("name", 2);
+
+            assertThat(eventStream.version()).isZero();
+            assertThat(eventStream.events()).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("multi-stream reads")
+    class MultiStreamReads {
+
+        @Test
+        void read_multiple_streams_returns_an_event_stream_per_stream_id_in_the_requested_order() {
+            // Given
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe");
+            unconditionallyPersist(inMemoryEventStore, "name1", Stream.of(event1, event2));
+            unconditionallyPersist(inMemoryEventStore, "name2", Stream.of(event3));
+
+            // When
+            Map<String, EventStream<CloudEvent>> eventStreams = inMemoryEventStore.read(Arrays.asList("name2", "name1", "name2"));
+
+            // Then
+            assertThat(eventStreams.keySet()).containsExactly("name2", "name1");
+            assertThat(eventStreams.get("name1").version()).isEqualTo(2);
+            assertThat(eventStreams.get("name1").events().map(deserialize(objectMapper))).containsExactly(event1, event2);
+            assertThat(eventStreams.get("name2").version()).isEqualTo(1);
+            assertThat(eventStreams.get("name2").events().map(deserialize(objectMapper))).containsExactly(event3);
+        }
+
+        @Test
+        void read_multiple_streams_returns_empty_event_stream_for_streams_that_does_not_exist() {
+            // Given
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), LocalDateTime.now(), "John Doe");
+            unconditionallyPersist(inMemoryEventStore, "name1", Stream.of(event1));
+
+            // When
+            Map<String, EventStream<CloudEvent>> eventStreams = inMemoryEventStore.read(Arrays.asList("name1", "missing"));
+
+            // Then
+            assertThat(eventStreams.get("missing").version()).isZero();
+            assertThat(eventStreams.get("missing").events()).isEmpty();
+            assertThat(eventStreams.get("name1").events().map(deserialize(objectMapper))).containsExactly(event1);
+        }
+    }
+
     @Nested
     @DisplayName("exists")
     class Exists {
@@ -188,6 +346,43 @@ public class InMemoryEventStoreTest {
             softly.assertThat(eventStream.events().map(deserialize(objectMapper))).containsOnly(event1);
             softly.assertThat(inMemoryEventStore.exists(streamId)).isTrue();
         }
+
+        @Test
+        void delete_by_filter_deletes_all_matching_events_in_all_event_streams(SoftAssertions softly) {
+            // Given
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+            LocalDateTime now = LocalDateTime.now();
+
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe");
+            unconditionallyPersist(inMemoryEventStore, "name1", Stream.of(event1, event2));
+            unconditionallyPersist(inMemoryEventStore, "name2", Stream.of(event3));
+
+            // When
+            inMemoryEventStore.delete(Filter.type(NameDefined.class.getName()));
+
+            // Then
+            softly.assertThat(inMemoryEventStore.read("name1").events().map(deserialize(objectMapper))).containsExactly(event2);
+            softly.assertThat(inMemoryEventStore.exists("name2")).isFalse();
+        }
+
+        @Test
+        void delete_by_filter_deletes_nothing_when_no_events_match_the_filter() {
+            // Given
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+            LocalDateTime now = LocalDateTime.now();
+
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            unconditionallyPersist(inMemoryEventStore, "name", Stream.of(event1, event2));
+
+            // When
+            inMemoryEventStore.delete(Filter.subject("Jane Doe").and(Filter.streamVersion(gte(1L))));
+
+            // Then
+            assertThat(inMemoryEventStore.read("name").events().map(deserialize(objectMapper))).containsExactly(event1, event2);
+        }
     }
 
     @Nested
@@ -633,6 +828,23 @@ public class InMemoryEventStoreTest {
             // Then
             assertThat(updatedEvent).isEmpty();
         }
+
+        @Test
+        void update_by_filter_updates_all_matching_events_in_all_event_streams() {
+            // Given
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe");
+            unconditionallyPersist(inMemoryEventStore, "name1", Stream.of(event1, event2));
+            unconditionallyPersist(inMemoryEventStore, "name2", Stream.of(event3));
+
+            // When
+            inMemoryEventStore.update(Filter.type(NameDefined.class.getName()), c -> CloudEventBuilder.v1(c).withSubject("anonymous").build());
+
+            // Then
+            Stream<CloudEvent> events = Stream.concat(inMemoryEventStore.read("name1").events(), inMemoryEventStore.read("name2").events());
+            assertThat(events.map(CloudEvent::getSubject)).containsExactly("anonymous", "Jan Doe", "anonymous");
+        }
     }
 
     private void unconditionallyPersist(EventStore inMemoryEventStore, String eventStreamId, List<DomainEvent> events) {
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.index;
+
+import org.occurrent.filter.Filter;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The "shape" of a {@link Filter} (or of one branch of an "or" filter), i.e. the field names that are constrained by the filter
+ * regardless of the actual values. This is what determines whether an index can be used to serve the query.
+ */
+public class FilterShape {
+    public final SortedSet<String> fieldNames;
+
+    public FilterShape(SortedSet<String> fieldNames) {
+        requireNonNull(fieldNames, "Field names cannot be null");
+        this.fieldNames = Collections.unmodifiableSortedSet(new TreeSet<>(fieldNames));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FilterShape)) return false;
+        FilterShape that = (FilterShape) o;
+        return Objects.equals(fieldNames, that.fieldNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fieldNames);
+    }
+
+    @Override
+    public String toString() {
+        return "FilterShape{" +
+                "fieldNames=" + fieldNames +
+                '}';
+    }
+}
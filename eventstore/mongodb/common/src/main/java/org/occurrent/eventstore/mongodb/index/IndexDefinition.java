@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.index;
+
+import org.occurrent.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.eventstore.mongodb.index.IndexDefinition.Direction.ASCENDING;
+import static org.occurrent.eventstore.mongodb.index.IndexDefinition.Direction.DESCENDING;
+
+/**
+ * Defines an index in the event store collection. The index is expressed in terms of the field names used by {@link Filter}
+ * (for example {@link Filter#TYPE} and {@link Filter#TIME}) so that it's easy to create indexes that match the queries
+ * issued by the application. An index can be compound (several fields), unique and/or partial (only index the cloud events
+ * matching a {@link Filter}).
+ * <p>
+ * Example:
+ * <pre>
+ * IndexDefinition.compound(IndexField.ascending(Filter.SUBJECT), IndexField.descending(Filter.TIME)).partial(Filter.type("GameWon"))
+ * </pre>
+ */
+public class IndexDefinition {
+    /**
+     * The prefix of the names of the indexes that are managed by the event store
+     */
+    public static final String OCCURRENT_INDEX_NAME_PREFIX = "occurrent_";
+
+    public final List<IndexField> fields;
+    public final Filter partialFilter;
+    public final boolean unique;
+    public final String name;
+
+    private IndexDefinition(List<IndexField> fields, Filter partialFilter, boolean unique, String name) {
+        requireNonNull(fields, "Fields cannot be null");
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("An index must contain at least one field");
+        }
+        this.fields = Collections.unmodifiableList(fields);
+        this.partialFilter = partialFilter;
+        this.unique = unique;
+        this.name = name == null ? generateName(fields) : name;
+    }
+
+    /**
+     * Create an index in ascending order for the supplied field names. If more than one field name is supplied then a compound index is created.
+     *
+     * @param fieldName            The field name, for example {@link Filter#TYPE}.
+     * @param additionalFieldNames Additional fields that should be included in a compound index
+     * @return An {@link IndexDefinition}
+     */
+    public static IndexDefinition ascending(String fieldName, String... additionalFieldNames) {
+        return compound(toFields(ASCENDING, fieldName, additionalFieldNames));
+    }
+
+    /**
+     * Create an index in descending order for the supplied field names. If more than one field name is supplied then a compound index is created.
+     *
+     * @param fieldName            The field name, for example {@link Filter#TIME}.
+     * @param additionalFieldNames Additional fields that should be included in a compound index
+     * @return An {@link IndexDefinition}
+     */
+    public static IndexDefinition descending(String fieldName, String... additionalFieldNames) {
+        return compound(toFields(DESCENDING, fieldName, additionalFieldNames));
+    }
+
+    /**
+     * Create a compound index where the direction of each field is specified individually.
+     *
+     * @param field            The first field in the index
+     * @param additionalFields Additional fields in the index
+     * @return An {@link IndexDefinition}
+     */
+    public static IndexDefinition compound(IndexField field, IndexField... additionalFields) {
+        requireNonNull(field, IndexField.class.getSimpleName() + " cannot be null");
+        List<IndexField> fields = new ArrayList<>();
+        fields.add(field);
+        if (additionalFields != null) {
+            Collections.addAll(fields, additionalFields);
+        }
+        return compound(fields);
+    }
+
+    private static IndexDefinition compound(List<IndexField> fields) {
+        return new IndexDefinition(fields, null, false, null);
+    }
+
+    /**
+     * @param filter Only index the cloud events matching the supplied filter.
+     * @return A new partial {@link IndexDefinition}
+     */
+    public IndexDefinition partial(Filter filter) {
+        requireNonNull(filter, "Partial filter cannot be null");
+        return new IndexDefinition(fields, filter, unique, nameIfExplicitlyDefined());
+    }
+
+    /**
+     * @return A new unique {@link IndexDefinition}
+     */
+    public IndexDefinition unique() {
+        return new IndexDefinition(fields, partialFilter, true, nameIfExplicitlyDefined());
+    }
+
+    /**
+     * Specify the name of the index. By default the name is generated from the fields and is prefixed with {@value #OCCURRENT_INDEX_NAME_PREFIX}.
+     * Note that the event store only drops indexes that are prefixed with {@value #OCCURRENT_INDEX_NAME_PREFIX} when they're removed from the
+     * {@link IndexProfile}.
+     *
+     * @param name The name of the index
+     * @return A new {@link IndexDefinition} with the given name
+     */
+    public IndexDefinition named(String name) {
+        requireNonNull(name, "Index name cannot be null");
+        return new IndexDefinition(fields, partialFilter, unique, name);
+    }
+
+    /**
+     * @return The field names that are part of this index, in order.
+     */
+    public List<String> fieldNames() {
+        return fields.stream().map(field -> field.fieldName).collect(Collectors.toList());
+    }
+
+    /**
+     * @return {@code true} if the index is partial, {@code false} otherwise.
+     */
+    public boolean isPartial() {
+        return partialFilter != null;
+    }
+
+    private String nameIfExplicitlyDefined() {
+        return Objects.equals(name, generateName(fields)) ? null : name;
+    }
+
+    private static String generateName(List<IndexField> fields) {
+        return OCCURRENT_INDEX_NAME_PREFIX + fields.stream().map(field -> field.fieldName + "_" + (field.direction == ASCENDING ? 1 : -1)).collect(Collectors.joining("_"));
+    }
+
+    private static List<IndexField> toFields(Direction direction, String fieldName, String[] additionalFieldNames) {
+        requireNonNull(fieldName, "Field name cannot be null");
+        Stream<String> additional = additionalFieldNames == null ? Stream.empty() : Stream.of(additionalFieldNames);
+        return Stream.concat(Stream.of(fieldName), additional).map(name -> new IndexField(name, direction)).collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IndexDefinition)) return false;
+        IndexDefinition that = (IndexDefinition) o;
+        return unique == that.unique &&
+                Objects.equals(fields, that.fields) &&
+                Objects.equals(partialFilter, that.partialFilter) &&
+                Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fields, partialFilter, unique, name);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexDefinition{" +
+                "fields=" + fields +
+                ", partialFilter=" + partialFilter +
+                ", unique=" + unique +
+                ", name='" + name + '\'' +
+                '}';
+    }
+
+    /**
+     * A field in an {@link IndexDefinition}
+     */
+    public static final class IndexField {
+        public final String fieldName;
+        public final Direction direction;
+
+        private IndexField(String fieldName, Direction direction) {
+            requireNonNull(fieldName, "Field name cannot be null");
+            requireNonNull(direction, Direction.class.getSimpleName() + " cannot be null");
+            this.fieldName = fieldName;
+            this.direction = direction;
+        }
+
+        public static IndexField ascending(String fieldName) {
+            return new IndexField(fieldName, ASCENDING);
+        }
+
+        public static IndexField descending(String fieldName) {
+            return new IndexField(fieldName, DESCENDING);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof IndexField)) return false;
+            IndexField that = (IndexField) o;
+            return Objects.equals(fieldName, that.fieldName) &&
+                    direction == that.direction;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fieldName, direction);
+        }
+
+        @Override
+        public String toString() {
+            return "IndexField{" +
+                    "fieldName='" + fieldName + '\'' +
+                    ", direction=" + direction +
+                    '}';
+        }
+    }
+
+    public enum Direction {
+        ASCENDING, DESCENDING
+    }
+}
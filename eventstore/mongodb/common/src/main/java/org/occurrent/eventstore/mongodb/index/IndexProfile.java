@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.index;
+
+import org.occurrent.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An index profile defines the secondary indexes that the event store should maintain, in addition to the indexes
+ * required by the event store itself (a unique index on cloud event {@code id} and {@code source} as well as a unique compound
+ * index on {@code streamId} and {@code streamVersion}). Use an index profile to create indexes that match the {@link Filter}s used
+ * by your queries and subscriptions, for example:
+ * <pre>
+ * IndexProfile.of(IndexDefinition.ascending(Filter.TYPE, Filter.TIME), IndexDefinition.ascending(Filter.SUBJECT))
+ * </pre>
+ * <p>
+ * When the event store is initialized it reconciles the indexes in the database with the profile. Indexes that are missing are created
+ * and indexes previously created from a profile (i.e. indexes whose name starts with {@code occurrent_}) that are no longer part of the
+ * profile are dropped.
+ */
+public class IndexProfile {
+    public final List<IndexDefinition> indexes;
+
+    private IndexProfile(List<IndexDefinition> indexes) {
+        requireNonNull(indexes, "Indexes cannot be null");
+        this.indexes = Collections.unmodifiableList(indexes);
+    }
+
+    /**
+     * @return An index profile without any secondary indexes. Only the indexes required by the event store will be created.
+     */
+    public static IndexProfile none() {
+        return new IndexProfile(Collections.emptyList());
+    }
+
+    /**
+     * @param indexDefinitions The secondary indexes that the event store should maintain
+     * @return An {@link IndexProfile} containing the supplied index definitions
+     */
+    public static IndexProfile of(IndexDefinition... indexDefinitions) {
+        return none().and(indexDefinitions);
+    }
+
+    /**
+     * @param indexDefinitions Additional secondary indexes that the event store should maintain
+     * @return A new {@link IndexProfile} containing the index definitions of this profile as well as the supplied index definitions
+     */
+    public IndexProfile and(IndexDefinition... indexDefinitions) {
+        requireNonNull(indexDefinitions, IndexDefinition.class.getSimpleName() + " cannot be null");
+        List<IndexDefinition> newIndexes = new ArrayList<>(indexes);
+        for (IndexDefinition indexDefinition : indexDefinitions) {
+            requireNonNull(indexDefinition, IndexDefinition.class.getSimpleName() + " cannot be null");
+            if (newIndexes.stream().anyMatch(existing -> existing.name.equals(indexDefinition.name))) {
+                throw new IllegalArgumentException("An index with name " + indexDefinition.name + " is already defined in the index profile");
+            }
+            newIndexes.add(indexDefinition);
+        }
+        return new IndexProfile(newIndexes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IndexProfile)) return false;
+        IndexProfile that = (IndexProfile) o;
+        return Objects.equals(indexes, that.indexes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(indexes);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexProfile{" +
+                "indexes=" + indexes +
+                '}';
+    }
+}
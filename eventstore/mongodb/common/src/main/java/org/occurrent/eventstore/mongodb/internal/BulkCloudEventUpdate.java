@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.format.EventFormat;
+import org.bson.Document;
+import org.occurrent.cloudevents.OccurrentExtensionGetter;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.threads.VirtualThreads;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.mongodb.client.model.Filters.eq;
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDBDocumentMapper.convertToCloudEvent;
+import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDBDocumentMapper.convertToDocument;
+
+/**
+ * Support for updating many cloud events at once. Updated cloud events are written back to MongoDB as batches of {@link ReplaceOneModel}'s
+ * (keyed by the MongoDB {@code _id}) using unordered bulk writes, with a bounded number of bulk writes in flight at the same time.
+ * The cloud events to update are read in pages ordered by {@code _id} (see {@link #readInIdOrder(Function)}) rather than by a single cursor,
+ * since a cursor may return a document that has been rewritten (and thus update it twice) if the update changes an indexed field.
+ */
+public class BulkCloudEventUpdate {
+    /**
+     * The maximum number of replacements included in a single bulk write
+     */
+    public static final int BATCH_SIZE = 500;
+    /**
+     * The maximum number of bulk writes that are executed concurrently
+     */
+    public static final int PARALLELISM = 4;
+    /**
+     * Cloud events that are updated independently of each other so there's no need for MongoDB to apply the replacements in order
+     */
+    public static final BulkWriteOptions BULK_WRITE_OPTIONS = new BulkWriteOptions().ordered(false);
+
+    private static final String ID = "_id";
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Apply the {@code updateFunction} to the cloud event stored in the supplied {@code document}.
+     *
+     * @return A {@link ReplaceOneModel} that replaces the {@code document} with the updated cloud event, or {@code null} if the cloud event was not changed
+     * by the {@code updateFunction}.
+     */
+    public static WriteModel<Document> replacementOf(EventFormat cloudEventSerializer, TimeRepresentation timeRepresentation, Document document, Function<CloudEvent, CloudEvent> updateFunction) {
+        CloudEvent currentCloudEvent = convertToCloudEvent(cloudEventSerializer, timeRepresentation, document);
+        CloudEvent updatedCloudEvent = updateFunction.apply(currentCloudEvent);
+        if (updatedCloudEvent == null) {
+            throw new IllegalArgumentException("Cloud event update function is not allowed to return null");
+        } else if (Objects.equals(updatedCloudEvent, currentCloudEvent)) {
+            return null;
+        }
+
+        String streamId = OccurrentExtensionGetter.getStreamId(currentCloudEvent);
+        long streamVersion = OccurrentExtensionGetter.getStreamVersion(currentCloudEvent);
+        Document updatedDocument = convertToDocument(cloudEventSerializer, timeRepresentation, streamId, streamVersion, updatedCloudEvent);
+        Object id = document.get(ID);
+        updatedDocument.put(ID, id); // Insert the Mongo ObjectID
+        return new ReplaceOneModel<>(eq(ID, id), updatedDocument);
+    }
+
+    /**
+     * Read documents page by page in {@code _id} order. Each page contains at most {@link #BATCH_SIZE} documents and is read by a new query
+     * for the documents with an {@code _id} greater than the last {@code _id} of the previous page. This means that documents that are
+     * rewritten while iterating are never returned again.
+     *
+     * @param readPageAfter Reads at most {@link #BATCH_SIZE} documents, sorted by {@code _id}, whose {@code _id} is greater than the supplied {@code _id}
+     *                      (which is {@code null} for the first page).
+     * @return An iterator that lazily reads the next page when the current page is exhausted
+     */
+    public static Iterator<Document> readInIdOrder(Function<Object, List<Document>> readPageAfter) {
+        requireNonNull(readPageAfter, "Read page function cannot be null");
+        return new Iterator<Document>() {
+            private Iterator<Document> page = Collections.emptyIterator();
+            private Object lastId = null;
+            private boolean lastPageRead = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !lastPageRead) {
+                    List<Document> documents = readPageAfter.apply(lastId);
+                    lastPageRead = documents.size() < BATCH_SIZE;
+                    if (!documents.isEmpty()) {
+                        lastId = documents.get(documents.size() - 1).get(ID);
+                    }
+                    page = documents.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public Document next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+    }
+
+    /**
+     * Group the {@code replacements} into batches of at most {@link #BATCH_SIZE} and hand each batch to the {@code bulkWriter}. The {@code replacements}
+     * are consumed by the calling thread while at most {@link #PARALLELISM} batches are written concurrently. This method blocks until all batches
+     * are written. If a bulk write fails no more batches are written and the exception is rethrown.
+     *
+     * @param replacements The replacements to write, {@code null} elements (unchanged cloud events) are ignored.
+     * @param bulkWriter   Writes a batch of replacements to MongoDB
+     */
+    public static void writeInBatches(Iterator<WriteModel<Document>> replacements, Consumer<List<WriteModel<Document>>> bulkWriter) {
+        requireNonNull(replacements, "Replacements cannot be null");
+        requireNonNull(bulkWriter, "Bulk writer cannot be null");
+
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM, BulkCloudEventUpdate::newThread);
+        Semaphore batchesInFlight = new Semaphore(PARALLELISM);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            List<WriteModel<Document>> batch = new ArrayList<>(BATCH_SIZE);
+            while (failure.get() == null && replacements.hasNext()) {
+                WriteModel<Document> replacement = replacements.next();
+                if (replacement != null) {
+                    batch.add(replacement);
+                }
+                if (batch.size() == BATCH_SIZE || (!replacements.hasNext() && !batch.isEmpty())) {
+                    List<WriteModel<Document>> batchToWrite = batch;
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    batchesInFlight.acquire();
+                    executor.execute(() -> {
+                        try {
+                            if (failure.get() == null) {
+                                bulkWriter.accept(batchToWrite);
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            batchesInFlight.release();
+                        }
+                    });
+                }
+            }
+            // Wait for the batches that are still being written
+            batchesInFlight.acquire(PARALLELISM);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        return VirtualThreads.newThread("occurrent-bulk-update-" + THREAD_COUNTER.incrementAndGet(), runnable);
+    }
+}
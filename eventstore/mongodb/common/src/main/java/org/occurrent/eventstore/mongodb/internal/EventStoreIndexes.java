@@ -0,0 +1,244 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import org.bson.BsonDocument;
+import org.bson.BsonNumber;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.occurrent.eventstore.mongodb.index.FilterShape;
+import org.occurrent.eventstore.mongodb.index.IndexDefinition;
+import org.occurrent.eventstore.mongodb.index.IndexDefinition.IndexField;
+import org.occurrent.eventstore.mongodb.index.IndexProfile;
+import org.occurrent.filter.Filter;
+import org.occurrent.filter.Filter.All;
+import org.occurrent.filter.Filter.CompositionFilter;
+import org.occurrent.filter.Filter.SingleConditionFilter;
+import org.occurrent.mongodb.spring.filterbsonfilterconversion.internal.FilterToBsonFilterConverter;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.eventstore.mongodb.index.IndexDefinition.Direction.ASCENDING;
+import static org.occurrent.eventstore.mongodb.index.IndexDefinition.OCCURRENT_INDEX_NAME_PREFIX;
+
+/**
+ * Shared logic for creating, reconciling and diagnosing the indexes of the MongoDB event store collection.
+ */
+public class EventStoreIndexes {
+    private static final String ID_INDEX_NAME = "_id_";
+    // The standalone stream id index created by earlier versions of the event store. It's redundant since the
+    // compound (streamId, streamVersion) index can serve all queries on streamId alone.
+    private static final String LEGACY_STREAM_ID_INDEX_NAME = STREAM_ID + "_1";
+
+    private static final List<IndexDefinition> REQUIRED_INDEXES = Collections.unmodifiableList(Arrays.asList(
+            // Cloud spec defines id + source must be unique!
+            IndexDefinition.ascending(Filter.ID, Filter.SOURCE).unique().named("id_1_source_1"),
+            // Create a streamId + streamVersion index
+            IndexDefinition.compound(IndexField.ascending(STREAM_ID), IndexField.descending(STREAM_VERSION)).unique().named(STREAM_ID + "_1_" + STREAM_VERSION + "_-1")
+    ));
+
+    /**
+     * @param indexProfile The index profile
+     * @return All index definitions that should be maintained by the event store, i.e. the indexes required by the event store itself and
+     * the secondary indexes defined by the supplied {@code indexProfile}.
+     */
+    public static List<IndexDefinition> indexDefinitions(IndexProfile indexProfile) {
+        requireNonNull(indexProfile, IndexProfile.class.getSimpleName() + " cannot be null");
+        List<IndexDefinition> indexDefinitions = new ArrayList<>(REQUIRED_INDEXES);
+        for (IndexDefinition indexDefinition : indexProfile.indexes) {
+            if (indexDefinitions.stream().anyMatch(existing -> existing.name.equals(indexDefinition.name))) {
+                throw new IllegalArgumentException("Index " + indexDefinition.name + " is reserved by the event store");
+            }
+            indexDefinitions.add(indexDefinition);
+        }
+        return Collections.unmodifiableList(indexDefinitions);
+    }
+
+    /**
+     * Compare the indexes that currently exists in the database with the desired index definitions and figure out which indexes
+     * that needs to be dropped and which that needs to be created.
+     *
+     * @param existingIndexes    The indexes that exists in the database (as returned by {@code listIndexes()})
+     * @param indexDefinitions   The index definitions that should exist (see {@link #indexDefinitions(IndexProfile)})
+     * @param timeRepresentation The time representation, used when creating partial index filter expressions
+     * @return A {@link IndexReconciliationPlan}
+     */
+    public static IndexReconciliationPlan reconcile(Iterable<Document> existingIndexes, List<IndexDefinition> indexDefinitions, TimeRepresentation timeRepresentation) {
+        requireNonNull(existingIndexes, "Existing indexes cannot be null");
+        requireNonNull(indexDefinitions, "Index definitions cannot be null");
+        requireNonNull(timeRepresentation, TimeRepresentation.class.getSimpleName() + " cannot be null");
+
+        Map<IndexDefinition, IndexModel> desired = new LinkedHashMap<>();
+        indexDefinitions.forEach(indexDefinition -> desired.put(indexDefinition, toIndexModel(indexDefinition, timeRepresentation)));
+        Set<String> desiredIndexNames = indexDefinitions.stream().map(indexDefinition -> indexDefinition.name).collect(Collectors.toSet());
+
+        List<String> indexesToDrop = new ArrayList<>();
+        for (Document existingIndex : existingIndexes) {
+            String name = existingIndex.getString("name");
+            if (ID_INDEX_NAME.equals(name)) {
+                continue;
+            }
+
+            Optional<IndexDefinition> matchingIndexDefinition = desired.entrySet().stream()
+                    .filter(entry -> isSameIndex(existingIndex, entry.getValue()))
+                    .map(Map.Entry::getKey)
+                    .findFirst();
+
+            if (matchingIndexDefinition.isPresent()) {
+                desired.remove(matchingIndexDefinition.get());
+            } else if (name.startsWith(OCCURRENT_INDEX_NAME_PREFIX) || desiredIndexNames.contains(name) || isLegacyStreamIdIndex(existingIndex)) {
+                indexesToDrop.add(name);
+            }
+        }
+        return new IndexReconciliationPlan(indexesToDrop, new ArrayList<>(desired.values()));
+    }
+
+    /**
+     * Find the shapes of the supplied {@code filter} that cannot be served by any of the supplied indexes. An "or" filter is split into
+     * several shapes, one for each branch, since MongoDB needs an index for each branch in order to avoid a collection scan.
+     *
+     * @param indexDefinitions The index definitions that exists
+     * @param filter           The filter to diagnose
+     * @return A list of {@link FilterShape}'s that are not covered by any index, or an empty list if all shapes are covered.
+     */
+    public static List<FilterShape> filterShapesNotCoveredBy(List<IndexDefinition> indexDefinitions, Filter filter) {
+        requireNonNull(indexDefinitions, "Index definitions cannot be null");
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        return shapesOf(filter).stream()
+                .filter(fieldNames -> !fieldNames.isEmpty())
+                .filter(fieldNames -> indexDefinitions.stream().noneMatch(indexDefinition -> covers(indexDefinition, fieldNames)))
+                .distinct()
+                .map(FilterShape::new)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean covers(IndexDefinition indexDefinition, SortedSet<String> fieldNames) {
+        // An index can only be used if the query constrains the leading field of the index
+        boolean leadingFieldIsConstrained = fieldNames.contains(indexDefinition.fields.get(0).fieldName);
+        if (!leadingFieldIsConstrained) {
+            return false;
+        } else if (indexDefinition.isPartial()) {
+            // A partial index can only be used if the query is a subset of the partial filter expression, we approximate
+            // this by requiring that the query constrains all fields in the partial filter expression.
+            return shapesOf(indexDefinition.partialFilter).stream().allMatch(fieldNames::containsAll);
+        } else {
+            return true;
+        }
+    }
+
+    private static List<SortedSet<String>> shapesOf(Filter filter) {
+        final List<SortedSet<String>> shapes;
+        if (filter instanceof All) {
+            shapes = Collections.singletonList(new TreeSet<>());
+        } else if (filter instanceof SingleConditionFilter) {
+            shapes = Collections.singletonList(new TreeSet<>(Collections.singleton(((SingleConditionFilter) filter).fieldName)));
+        } else if (filter instanceof CompositionFilter) {
+            CompositionFilter cf = (CompositionFilter) filter;
+            switch (cf.operator) {
+                case AND:
+                    List<SortedSet<String>> combined = Collections.singletonList(new TreeSet<>());
+                    for (Filter f : cf.filters) {
+                        List<SortedSet<String>> shapesOfFilter = shapesOf(f);
+                        combined = combined.stream()
+                                .flatMap(shape -> shapesOfFilter.stream().map(other -> {
+                                    SortedSet<String> union = new TreeSet<>(shape);
+                                    union.addAll(other);
+                                    return union;
+                                }))
+                                .collect(Collectors.toList());
+                    }
+                    shapes = combined;
+                    break;
+                case OR:
+                    shapes = cf.filters.stream().flatMap(f -> shapesOf(f).stream()).collect(Collectors.toList());
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected value: " + cf.operator);
+            }
+        } else {
+            throw new IllegalStateException("Unexpected filter: " + filter.getClass().getName());
+        }
+        return shapes;
+    }
+
+    private static IndexModel toIndexModel(IndexDefinition indexDefinition, TimeRepresentation timeRepresentation) {
+        Document keys = new Document();
+        indexDefinition.fields.forEach(field -> keys.append(field.fieldName, field.direction == ASCENDING ? 1 : -1));
+        IndexOptions indexOptions = new IndexOptions().name(indexDefinition.name).unique(indexDefinition.unique);
+        if (indexDefinition.isPartial()) {
+            indexOptions.partialFilterExpression(FilterToBsonFilterConverter.convertFilterToBsonFilter(timeRepresentation, indexDefinition.partialFilter));
+        }
+        return new IndexModel(keys, indexOptions);
+    }
+
+    private static boolean isSameIndex(Document existingIndex, IndexModel indexModel) {
+        IndexOptions options = indexModel.getOptions();
+        Document existingPartialFilterExpression = existingIndex.get("partialFilterExpression", Document.class);
+        return Objects.equals(normalizeKeys(existingIndex.get("key", Document.class)), normalizeKeys(toBsonDocument(indexModel.getKeys())))
+                && existingIndex.getBoolean("unique", false) == options.isUnique()
+                && Objects.equals(toBsonDocument(existingPartialFilterExpression), toBsonDocument(options.getPartialFilterExpression()));
+    }
+
+    private static boolean isLegacyStreamIdIndex(Document existingIndex) {
+        return LEGACY_STREAM_ID_INDEX_NAME.equals(existingIndex.getString("name"))
+                && normalizeKeys(existingIndex.get("key", Document.class)).equals(Collections.singletonMap(STREAM_ID, 1));
+    }
+
+    private static Map<String, Integer> normalizeKeys(Map<String, ?> keys) {
+        Map<String, Integer> normalized = new LinkedHashMap<>();
+        if (keys != null) {
+            keys.forEach((field, direction) -> normalized.put(field, toDirection(direction)));
+        }
+        return normalized;
+    }
+
+    private static int toDirection(Object direction) {
+        if (direction instanceof Number) {
+            return ((Number) direction).intValue();
+        } else if (direction instanceof BsonNumber) {
+            return ((BsonNumber) direction).intValue();
+        }
+        // Special index types such as "text" or "hashed" are never created by the event store
+        return 0;
+    }
+
+    private static BsonDocument toBsonDocument(Bson bson) {
+        return bson == null ? null : bson.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+    }
+
+    /**
+     * The result of {@link #reconcile(Iterable, List, TimeRepresentation)}. The indexes in {@link #indexesToDrop} should be dropped
+     * before the indexes in {@link #indexesToCreate} are created.
+     */
+    public static class IndexReconciliationPlan {
+        public final List<String> indexesToDrop;
+        public final List<IndexModel> indexesToCreate;
+
+        IndexReconciliationPlan(List<String> indexesToDrop, List<IndexModel> indexesToCreate) {
+            this.indexesToDrop = Collections.unmodifiableList(indexesToDrop);
+            this.indexesToCreate = Collections.unmodifiableList(indexesToCreate);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.client.model.Filters;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Splits the event store collection into ranges of MongoDB {@link ObjectId}'s. Since an {@code ObjectId} starts with a timestamp, the ranges
+ * are created by dividing the time span between the smallest and the largest {@code ObjectId} into equally sized intervals. Each range
+ * can be queried by the {@code _id} index independently of the others.
+ */
+public class ObjectIdPartitioner {
+    private static final String ID = "_id";
+
+    /**
+     * @param min                The smallest {@link ObjectId} in the collection (inclusive)
+     * @param max                The largest {@link ObjectId} in the collection (inclusive)
+     * @param numberOfPartitions The desired number of partitions. Fewer partitions may be returned if the time span between {@code min} and {@code max} is too small.
+     * @return A list of non-overlapping {@link ObjectIdRange}'s that together covers all {@code ObjectId}'s between {@code min} and {@code max}.
+     */
+    public static List<ObjectIdRange> partition(ObjectId min, ObjectId max, int numberOfPartitions) {
+        requireNonNull(min, "Min cannot be null");
+        requireNonNull(max, "Max cannot be null");
+        if (numberOfPartitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be greater than zero");
+        } else if (min.compareTo(max) > 0) {
+            throw new IllegalArgumentException("Min cannot be greater than max");
+        }
+
+        long minTimestamp = Integer.toUnsignedLong(min.getTimestamp());
+        long maxTimestamp = Integer.toUnsignedLong(max.getTimestamp());
+        long numberOfSeconds = maxTimestamp - minTimestamp;
+        if (numberOfPartitions == 1 || numberOfSeconds == 0) {
+            return Collections.singletonList(new ObjectIdRange(min, max, true));
+        }
+
+        // We can't create more partitions than there are seconds between min and max since the timestamp of an ObjectId has second precision
+        int partitionsToCreate = (int) Math.min(numberOfPartitions, numberOfSeconds);
+        List<ObjectIdRange> ranges = new ArrayList<>(partitionsToCreate);
+        ObjectId from = min;
+        for (int i = 1; i < partitionsToCreate; i++) {
+            long boundaryTimestamp = minTimestamp + Math.round((double) numberOfSeconds * i / partitionsToCreate);
+            ObjectId boundary = smallestObjectIdWithTimestamp(boundaryTimestamp);
+            if (boundary.compareTo(from) > 0) {
+                ranges.add(new ObjectIdRange(from, boundary, false));
+                from = boundary;
+            }
+        }
+        ranges.add(new ObjectIdRange(from, max, true));
+        return ranges;
+    }
+
+    private static ObjectId smallestObjectIdWithTimestamp(long timestamp) {
+        return new ObjectId(String.format("%08x%016x", timestamp, 0));
+    }
+
+    /**
+     * A range of {@link ObjectId}'s
+     */
+    public static class ObjectIdRange {
+        public final ObjectId fromInclusive;
+        public final ObjectId to;
+        public final boolean toInclusive;
+
+        ObjectIdRange(ObjectId fromInclusive, ObjectId to, boolean toInclusive) {
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        /**
+         * @return A {@link Bson} filter that matches the documents whose {@code _id} is within this range
+         */
+        public Bson toBsonFilter() {
+            return Filters.and(Filters.gte(ID, fromInclusive), toInclusive ? Filters.lte(ID, to) : Filters.lt(ID, to));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ObjectIdRange)) return false;
+            ObjectIdRange that = (ObjectIdRange) o;
+            return toInclusive == that.toInclusive &&
+                    Objects.equals(fromInclusive, that.fromInclusive) &&
+                    Objects.equals(to, that.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fromInclusive, to, toInclusive);
+        }
+
+        @Override
+        public String toString() {
+            return "ObjectIdRange{" +
+                    "fromInclusive=" + fromInclusive +
+                    ", to=" + to +
+                    ", toInclusive=" + toInclusive +
+                    '}';
+        }
+    }
+}
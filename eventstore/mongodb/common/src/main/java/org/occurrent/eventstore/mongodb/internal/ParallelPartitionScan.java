@@ -0,0 +1,226 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import org.occurrent.threads.VirtualThreads;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Executes a number of partition queries concurrently on a bounded thread pool. Each partition is represented by a {@link Supplier}
+ * that opens a (lazy) {@link Stream} over the partition.
+ */
+public class ParallelPartitionScan {
+    /**
+     * The number of partitions to create per thread. Creating more partitions than threads evens out the work when the partitions
+     * are unevenly sized.
+     */
+    public static final int PARTITIONS_PER_THREAD = 4;
+    private static final int QUEUE_CAPACITY_PER_THREAD = 256;
+    private static final Object PARTITION_COMPLETED = new Object();
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Query all partitions concurrently and merge the results into a single {@link Stream} in an unspecified order. At most {@code parallelism}
+     * partitions are queried at the same time, and the number of elements that are fetched but not yet consumed is bounded. Closing
+     * the returned stream aborts the query.
+     *
+     * @param partitions  The partitions to query
+     * @param parallelism The maximum number of partitions to query concurrently
+     * @param <T>         The type of the elements
+     * @return A {@link Stream} containing the elements of all partitions
+     */
+    public static <T> Stream<T> unordered(List<Supplier<Stream<T>>> partitions, int parallelism) {
+        requireNonNull(partitions, "Partitions cannot be null");
+        if (partitions.isEmpty()) {
+            return Stream.empty();
+        }
+
+        int numberOfThreads = numberOfThreads(partitions, parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads, ParallelPartitionScan::newThread);
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY_PER_THREAD * numberOfThreads);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        for (Supplier<Stream<T>> partition : partitions) {
+            executor.execute(() -> {
+                Object lastElement = PARTITION_COMPLETED;
+                try (Stream<T> stream = partition.get()) {
+                    Iterator<T> iterator = stream.iterator();
+                    while (!cancelled.get() && iterator.hasNext()) {
+                        put(queue, iterator.next(), cancelled);
+                    }
+                } catch (Throwable t) {
+                    lastElement = new PartitionFailure(t);
+                }
+                put(queue, lastElement, cancelled);
+            });
+        }
+        executor.shutdown();
+
+        Iterator<T> iterator = new Iterator<T>() {
+            private int numberOfCompletedPartitions = 0;
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && numberOfCompletedPartitions < partitions.size()) {
+                    Object element = take(queue);
+                    if (element == PARTITION_COMPLETED) {
+                        numberOfCompletedPartitions++;
+                    } else if (element instanceof PartitionFailure) {
+                        cancel(cancelled, executor, queue);
+                        throw rethrow(((PartitionFailure) element).cause);
+                    } else {
+                        @SuppressWarnings("unchecked") T t = (T) element;
+                        next = t;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T t = next;
+                next = null;
+                return t;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(() -> cancel(cancelled, executor, queue));
+    }
+
+    /**
+     * Query all partitions concurrently and invoke the {@code action} for each element. Elements in the same partition are delivered to the
+     * {@code action} in order, by the same thread. This method blocks until all partitions are processed. If a partition fails, the
+     * remaining partitions are aborted and the exception is rethrown.
+     *
+     * @param partitions  The partitions to query
+     * @param parallelism The maximum number of partitions to query concurrently
+     * @param action      The action to invoke for each element. The first argument is the index of the partition.
+     * @param <T>         The type of the elements
+     */
+    public static <T> void orderedPerPartition(List<Supplier<Stream<T>>> partitions, int parallelism, BiConsumer<Integer, T> action) {
+        requireNonNull(partitions, "Partitions cannot be null");
+        requireNonNull(action, "Action cannot be null");
+        if (partitions.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads(partitions, parallelism), ParallelPartitionScan::newThread);
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        try {
+            for (int i = 0; i < partitions.size(); i++) {
+                int partitionIndex = i;
+                Supplier<Stream<T>> partition = partitions.get(partitionIndex);
+                completionService.submit(() -> {
+                    try (Stream<T> stream = partition.get()) {
+                        Iterator<T> iterator = stream.iterator();
+                        while (!cancelled.get() && iterator.hasNext()) {
+                            action.accept(partitionIndex, iterator.next());
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            for (int i = 0; i < partitions.size(); i++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    cancelled.set(true);
+                    throw rethrow(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int numberOfThreads(List<?> partitions, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero");
+        }
+        return Math.min(parallelism, partitions.size());
+    }
+
+    private static void put(BlockingQueue<Object> queue, Object element, AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get()) {
+                if (queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Object take(BlockingQueue<Object> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void cancel(AtomicBoolean cancelled, ExecutorService executor, BlockingQueue<Object> queue) {
+        cancelled.set(true);
+        executor.shutdownNow();
+        queue.clear();
+    }
+
+    private static RuntimeException rethrow(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        } else {
+            return new RuntimeException(throwable);
+        }
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        return VirtualThreads.newThread("occurrent-parallel-query-" + THREAD_COUNTER.incrementAndGet(), runnable);
+    }
+
+    private static class PartitionFailure {
+        private final Throwable cause;
+
+        private PartitionFailure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+}
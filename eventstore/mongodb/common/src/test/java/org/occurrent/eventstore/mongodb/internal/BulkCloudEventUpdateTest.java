@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class BulkCloudEventUpdateTest {
+
+    @Test
+    void writes_all_replacements_in_batches_of_at_most_batch_size() {
+        // Given
+        List<WriteModel<Document>> replacements = replacements(BulkCloudEventUpdate.BATCH_SIZE * 3 + 7);
+        List<List<WriteModel<Document>>> writtenBatches = new CopyOnWriteArrayList<>();
+
+        // When
+        BulkCloudEventUpdate.writeInBatches(replacements.iterator(), writtenBatches::add);
+
+        // Then
+        assertThat(writtenBatches).hasSize(4).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(BulkCloudEventUpdate.BATCH_SIZE));
+        assertThat(writtenBatches.stream().flatMap(List::stream)).containsExactlyInAnyOrderElementsOf(replacements);
+    }
+
+    @Test
+    void ignores_null_replacements() {
+        // Given
+        List<WriteModel<Document>> replacements = replacements(3);
+        replacements.add(1, null);
+        replacements.add(null);
+        List<List<WriteModel<Document>>> writtenBatches = new CopyOnWriteArrayList<>();
+
+        // When
+        BulkCloudEventUpdate.writeInBatches(replacements.iterator(), writtenBatches::add);
+
+        // Then
+        assertThat(writtenBatches).hasSize(1);
+        assertThat(writtenBatches.get(0)).hasSize(3).doesNotContainNull();
+    }
+
+    @Test
+    void does_not_write_anything_when_there_are_no_replacements() {
+        // Given
+        List<List<WriteModel<Document>>> writtenBatches = new CopyOnWriteArrayList<>();
+
+        // When
+        BulkCloudEventUpdate.writeInBatches(replacements(0).iterator(), writtenBatches::add);
+
+        // Then
+        assertThat(writtenBatches).isEmpty();
+    }
+
+    @Test
+    void rethrows_exception_thrown_by_bulk_writer() {
+        // Given
+        List<WriteModel<Document>> replacements = replacements(BulkCloudEventUpdate.BATCH_SIZE * 10);
+
+        // When
+        Throwable throwable = catchThrowable(() -> BulkCloudEventUpdate.writeInBatches(replacements.iterator(), batch -> {
+            throw new IllegalStateException("expected");
+        }));
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalStateException.class).hasMessage("expected");
+    }
+
+    @Test
+    void reads_documents_in_pages_after_the_id_of_the_last_document_of_the_previous_page() {
+        // Given
+        List<Document> collection = documents(BulkCloudEventUpdate.BATCH_SIZE * 2 + 1);
+        List<Object> requestedPagesAfter = new CopyOnWriteArrayList<>();
+
+        // When
+        Iterator<Document> documents = BulkCloudEventUpdate.readInIdOrder(lastId -> {
+            requestedPagesAfter.add(lastId == null ? "first" : lastId);
+            return readPageAfter(collection, lastId);
+        });
+
+        // Then
+        assertThat(documents).toIterable().extracting(document -> document.get("_id")).containsExactlyElementsOf(IntStream.range(0, collection.size()).boxed().collect(Collectors.toList()));
+        assertThat(requestedPagesAfter).containsExactly("first", BulkCloudEventUpdate.BATCH_SIZE - 1, BulkCloudEventUpdate.BATCH_SIZE * 2 - 1);
+    }
+
+    @Test
+    void documents_that_are_rewritten_while_reading_are_not_read_again() {
+        // Given
+        List<Document> collection = documents(BulkCloudEventUpdate.BATCH_SIZE + 10);
+        List<Object> readIds = new ArrayList<>();
+
+        // When
+        Iterator<Document> documents = BulkCloudEventUpdate.readInIdOrder(lastId -> readPageAfter(collection, lastId));
+        while (documents.hasNext()) {
+            Document document = documents.next();
+            readIds.add(document.get("_id"));
+            // Simulate an update that moves the document to the end of a cursor on an indexed field
+            collection.remove(document);
+            collection.add(new Document(document).append("updated", true));
+        }
+
+        // Then
+        assertThat(readIds).doesNotHaveDuplicates().hasSize(collection.size());
+    }
+
+    private static List<Document> readPageAfter(List<Document> collection, Object lastId) {
+        return collection.stream()
+                .filter(document -> lastId == null || (int) document.get("_id") > (int) lastId)
+                .sorted(Comparator.comparing(document -> (int) document.get("_id")))
+                .limit(BulkCloudEventUpdate.BATCH_SIZE)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Document> documents(int numberOfDocuments) {
+        return IntStream.range(0, numberOfDocuments).mapToObj(i -> new Document("_id", i)).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static List<WriteModel<Document>> replacements(int numberOfReplacements) {
+        return IntStream.range(0, numberOfReplacements)
+                .<WriteModel<Document>>mapToObj(i -> new InsertOneModel<>(new Document("_id", i)))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.client.model.IndexModel;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.occurrent.eventstore.mongodb.index.FilterShape;
+import org.occurrent.eventstore.mongodb.index.IndexDefinition;
+import org.occurrent.eventstore.mongodb.index.IndexProfile;
+import org.occurrent.eventstore.mongodb.internal.EventStoreIndexes.IndexReconciliationPlan;
+import org.occurrent.filter.Filter;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.occurrent.mongodb.timerepresentation.TimeRepresentation.RFC_3339_STRING;
+
+class EventStoreIndexesTest {
+
+    @Nested
+    @DisplayName("reconcile")
+    class Reconcile {
+
+        @Test
+        void creates_required_indexes_when_no_indexes_exists() {
+            // When
+            IndexReconciliationPlan plan = EventStoreIndexes.reconcile(Collections.singletonList(idIndex()), EventStoreIndexes.indexDefinitions(IndexProfile.none()), RFC_3339_STRING);
+
+            // Then
+            assertThat(plan.indexesToDrop).isEmpty();
+            assertThat(namesOf(plan.indexesToCreate)).containsExactly("id_1_source_1", "streamId_1_streamVersion_-1");
+        }
+
+        @Test
+        void drops_legacy_stream_id_index_since_its_redundant() {
+            // Given
+            List<Document> existingIndexes = Arrays.asList(idIndex(),
+                    index("streamId_1", new Document("streamId", 1)),
+                    index("id_1_source_1", new Document("id", 1).append("source", 1)).append("unique", true),
+                    index("streamId_1_streamVersion_-1", new Document("streamId", 1).append("streamVersion", -1)).append("unique", true));
+
+            // When
+            IndexReconciliationPlan plan = EventStoreIndexes.reconcile(existingIndexes, EventStoreIndexes.indexDefinitions(IndexProfile.none()), RFC_3339_STRING);
+
+            // Then
+            assertThat(plan.indexesToDrop).containsExactly("streamId_1");
+            assertThat(plan.indexesToCreate).isEmpty();
+        }
+
+        @Test
+        void creates_indexes_defined_in_index_profile_and_drops_those_that_are_no_longer_defined() {
+            // Given
+            List<Document> existingIndexes = Arrays.asList(idIndex(),
+                    index("id_1_source_1", new Document("id", 1).append("source", 1)).append("unique", true),
+                    index("streamId_1_streamVersion_-1", new Document("streamId", 1).append("streamVersion", -1)).append("unique", true),
+                    index("occurrent_subject_1", new Document("subject", 1)),
+                    index("my_own_index", new Document("source", 1)));
+            IndexProfile indexProfile = IndexProfile.of(IndexDefinition.ascending(Filter.TYPE, Filter.TIME));
+
+            // When
+            IndexReconciliationPlan plan = EventStoreIndexes.reconcile(existingIndexes, EventStoreIndexes.indexDefinitions(indexProfile), RFC_3339_STRING);
+
+            // Then
+            assertThat(plan.indexesToDrop).containsExactly("occurrent_subject_1");
+            assertThat(namesOf(plan.indexesToCreate)).containsExactly("occurrent_type_1_time_1");
+            assertThat(plan.indexesToCreate.get(0).getKeys()).isEqualTo(new Document("type", 1).append("time", 1));
+        }
+
+        @Test
+        void recreates_index_when_partial_filter_has_changed() {
+            // Given
+            List<Document> existingIndexes = Arrays.asList(idIndex(),
+                    index("id_1_source_1", new Document("id", 1).append("source", 1)).append("unique", true),
+                    index("streamId_1_streamVersion_-1", new Document("streamId", 1).append("streamVersion", -1)).append("unique", true),
+                    index("occurrent_subject_1", new Document("subject", 1)).append("partialFilterExpression", new Document("type", "GameStarted")));
+            IndexProfile indexProfile = IndexProfile.of(IndexDefinition.ascending(Filter.SUBJECT).partial(Filter.type("GameWon")));
+
+            // When
+            IndexReconciliationPlan plan = EventStoreIndexes.reconcile(existingIndexes, EventStoreIndexes.indexDefinitions(indexProfile), RFC_3339_STRING);
+
+            // Then
+            assertThat(plan.indexesToDrop).containsExactly("occurrent_subject_1");
+            assertThat(namesOf(plan.indexesToCreate)).containsExactly("occurrent_subject_1");
+        }
+
+        @Test
+        void keeps_partial_index_when_partial_filter_is_unchanged() {
+            // Given
+            List<Document> existingIndexes = Arrays.asList(idIndex(),
+                    index("id_1_source_1", new Document("id", 1).append("source", 1)).append("unique", true),
+                    index("streamId_1_streamVersion_-1", new Document("streamId", 1).append("streamVersion", -1)).append("unique", true),
+                    index("occurrent_subject_1", new Document("subject", 1)).append("partialFilterExpression", new Document("type", "GameWon")));
+            IndexProfile indexProfile = IndexProfile.of(IndexDefinition.ascending(Filter.SUBJECT).partial(Filter.type("GameWon")));
+
+            // When
+            IndexReconciliationPlan plan = EventStoreIndexes.reconcile(existingIndexes, EventStoreIndexes.indexDefinitions(indexProfile), RFC_3339_STRING);
+
+            // Then
+            assertThat(plan.indexesToDrop).isEmpty();
+            assertThat(plan.indexesToCreate).isEmpty();
+        }
+
+        @Test
+        void index_profile_is_not_allowed_to_redefine_required_indexes() {
+            IndexProfile indexProfile = IndexProfile.of(IndexDefinition.ascending(Filter.ID).named("id_1_source_1"));
+
+            assertThatThrownBy(() -> EventStoreIndexes.indexDefinitions(indexProfile))
+                    .isExactlyInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Index id_1_source_1 is reserved by the event store");
+        }
+    }
+
+    @Nested
+    @DisplayName("filter shapes not covered by index")
+    class FilterShapesNotCoveredByIndex {
+
+        @Test
+        void filter_on_stream_id_is_covered_by_required_index() {
+            List<IndexDefinition> indexDefinitions = EventStoreIndexes.indexDefinitions(IndexProfile.none());
+
+            assertThat(EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, Filter.streamId("name"))).isEmpty();
+        }
+
+        @Test
+        void all_filter_is_never_reported() {
+            List<IndexDefinition> indexDefinitions = EventStoreIndexes.indexDefinitions(IndexProfile.none());
+
+            assertThat(EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, Filter.all())).isEmpty();
+        }
+
+        @Test
+        void and_filter_is_covered_when_leading_field_of_compound_index_is_constrained() {
+            List<IndexDefinition> indexDefinitions = EventStoreIndexes.indexDefinitions(IndexProfile.of(IndexDefinition.ascending(Filter.TYPE, Filter.TIME)));
+
+            assertThat(EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, Filter.type("GameWon").and(Filter.subject("game")))).isEmpty();
+            assertThat(EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, Filter.subject("game"))).containsExactly(shape(Filter.SUBJECT));
+        }
+
+        @Test
+        void each_branch_of_or_filter_needs_to_be_covered() {
+            List<IndexDefinition> indexDefinitions = EventStoreIndexes.indexDefinitions(IndexProfile.of(IndexDefinition.ascending(Filter.TYPE)));
+
+            List<FilterShape> shapes = EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, Filter.type("GameWon").or(Filter.subject("game").and(Filter.dataSchema(URI.create("urn:schema")))));
+
+            assertThat(shapes).containsExactly(shape(Filter.DATA_SCHEMA, Filter.SUBJECT));
+        }
+
+        @Test
+        void partial_index_only_covers_filters_that_constrains_the_fields_in_the_partial_filter() {
+            List<IndexDefinition> indexDefinitions = EventStoreIndexes.indexDefinitions(IndexProfile.of(IndexDefinition.ascending(Filter.SUBJECT).partial(Filter.type("GameWon"))));
+
+            assertThat(EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, Filter.subject("game").and(Filter.type("GameWon")))).isEmpty();
+            assertThat(EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, Filter.subject("game"))).containsExactly(shape(Filter.SUBJECT));
+        }
+    }
+
+    private static FilterShape shape(String... fieldNames) {
+        return new FilterShape(new TreeSet<>(Arrays.asList(fieldNames)));
+    }
+
+    private static List<String> namesOf(List<IndexModel> indexModels) {
+        return indexModels.stream().map(indexModel -> indexModel.getOptions().getName()).collect(Collectors.toList());
+    }
+
+    private static Document idIndex() {
+        return index("_id_", new Document("_id", 1));
+    }
+
+    private static Document index(String name, Document key) {
+        return new Document("v", 2).append("key", key).append("name", name);
+    }
+}
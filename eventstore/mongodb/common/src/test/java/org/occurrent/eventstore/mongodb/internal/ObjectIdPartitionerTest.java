@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.occurrent.eventstore.mongodb.internal.ObjectIdPartitioner.ObjectIdRange;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjectIdPartitionerTest {
+
+    @Test
+    void returns_single_partition_when_min_and_max_has_the_same_timestamp() {
+        // Given
+        ObjectId min = new ObjectId(new Date(1000_000));
+        ObjectId max = new ObjectId(new Date(1000_000));
+
+        // When
+        List<ObjectIdRange> ranges = ObjectIdPartitioner.partition(min, max, 4);
+
+        // Then
+        assertThat(ranges).containsExactly(new ObjectIdRange(min, max, true));
+    }
+
+    @Test
+    void returns_adjacent_ranges_that_covers_min_to_max() {
+        // Given
+        ObjectId min = new ObjectId(new Date(1000_000));
+        ObjectId max = new ObjectId(new Date(2000_000));
+
+        // When
+        List<ObjectIdRange> ranges = ObjectIdPartitioner.partition(min, max, 4);
+
+        // Then
+        assertThat(ranges).hasSize(4);
+        assertThat(ranges.get(0).fromInclusive).isEqualTo(min);
+        assertThat(ranges.get(3).to).isEqualTo(max);
+        assertThat(ranges.get(3).toInclusive).isTrue();
+        for (int i = 1; i < ranges.size(); i++) {
+            assertThat(ranges.get(i).fromInclusive).isEqualTo(ranges.get(i - 1).to);
+            assertThat(ranges.get(i - 1).toInclusive).isFalse();
+        }
+        assertThat(ranges.get(1).fromInclusive.getTimestamp()).isEqualTo(1250);
+    }
+
+    @Test
+    void number_of_partitions_is_limited_by_the_number_of_seconds_between_min_and_max() {
+        // Given
+        ObjectId min = new ObjectId(new Date(1000_000));
+        ObjectId max = new ObjectId(new Date(1002_000));
+
+        // When
+        List<ObjectIdRange> ranges = ObjectIdPartitioner.partition(min, max, 10);
+
+        // Then
+        assertThat(ranges).hasSize(2);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.awaitility.Awaitility.await;
+
+class ParallelPartitionScanTest {
+
+    @Test
+    void unordered_returns_all_elements_from_all_partitions() {
+        // Given
+        List<Supplier<Stream<Integer>>> partitions = partitions(10, 1000);
+
+        // When
+        List<Integer> result;
+        try (Stream<Integer> stream = ParallelPartitionScan.unordered(partitions, 4)) {
+            result = stream.collect(Collectors.toList());
+        }
+
+        // Then
+        assertThat(result).hasSize(10_000).containsExactlyInAnyOrderElementsOf(IntStream.range(0, 10_000).boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    void unordered_rethrows_exception_thrown_by_partition() {
+        // Given
+        List<Supplier<Stream<Integer>>> partitions = new ArrayList<>(partitions(2, 10));
+        partitions.add(() -> Stream.of(1, 2).map(i -> {
+            throw new IllegalStateException("expected");
+        }));
+
+        // When
+        Throwable throwable = catchThrowable(() -> {
+            try (Stream<Integer> stream = ParallelPartitionScan.unordered(partitions, 2)) {
+                stream.forEach(__ -> {
+                });
+            }
+        });
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalStateException.class).hasMessage("expected");
+    }
+
+    @Test
+    void closing_unordered_stream_closes_the_partition_streams() {
+        // Given
+        AtomicBoolean closed = new AtomicBoolean(false);
+        List<Supplier<Stream<Integer>>> partitions = Collections.singletonList(() -> Stream.iterate(0, i -> i + 1).onClose(() -> closed.set(true)));
+
+        // When
+        try (Stream<Integer> stream = ParallelPartitionScan.unordered(partitions, 1)) {
+            assertThat(stream.limit(10).count()).isEqualTo(10);
+        }
+
+        // Then
+        await().untilTrue(closed);
+    }
+
+    @Test
+    void ordered_per_partition_delivers_elements_of_each_partition_in_order() {
+        // Given
+        List<Supplier<Stream<Integer>>> partitions = partitions(8, 500);
+        Map<Integer, List<Integer>> elementsByPartition = new ConcurrentHashMap<>();
+
+        // When
+        ParallelPartitionScan.orderedPerPartition(partitions, 3, (partition, element) -> elementsByPartition.computeIfAbsent(partition, __ -> new CopyOnWriteArrayList<>()).add(element));
+
+        // Then
+        assertThat(elementsByPartition).hasSize(8);
+        elementsByPartition.forEach((partition, elements) ->
+                assertThat(elements).containsExactlyElementsOf(IntStream.range(partition * 500, (partition + 1) * 500).boxed().collect(Collectors.toList())));
+    }
+
+    @Test
+    void ordered_per_partition_rethrows_exception_thrown_by_action() {
+        // Given
+        List<Supplier<Stream<Integer>>> partitions = partitions(4, 100);
+
+        // When
+        Throwable throwable = catchThrowable(() -> ParallelPartitionScan.orderedPerPartition(partitions, 2, (partition, element) -> {
+            if (element == 150) {
+                throw new IllegalArgumentException("expected");
+            }
+        }));
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("expected");
+    }
+
+    private static List<Supplier<Stream<Integer>>> partitions(int numberOfPartitions, int elementsPerPartition) {
+        return IntStream.range(0, numberOfPartitions)
+                .<Supplier<Stream<Integer>>>mapToObj(partition -> () -> IntStream.range(partition * elementsPerPartition, (partition + 1) * elementsPerPartition).boxed())
+                .collect(Collectors.toList());
+    }
+}
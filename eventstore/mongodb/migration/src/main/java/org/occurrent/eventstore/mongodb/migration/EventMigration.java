@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.migration;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.filter.Filter;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Describes a migration of the cloud events stored in the event store, for example after the schema of an event has changed.
+ * The {@link #transformation} is applied to all cloud events matching the {@link #filter}. A migration is identified by its
+ * {@link #migrationId}, which is used to keep track of the progress of the migration so that it can be resumed if it's interrupted.
+ * <p>
+ * Note that since a migration can be resumed from the last checkpoint, the last batch of cloud events before an interruption may be
+ * transformed twice. The {@link #transformation} should thus be idempotent.
+ * </p>
+ */
+public class EventMigration {
+    public final String migrationId;
+    public final Filter filter;
+    public final Function<CloudEvent, CloudEvent> transformation;
+
+    private EventMigration(String migrationId, Filter filter, Function<CloudEvent, CloudEvent> transformation) {
+        requireNonNull(migrationId, "Migration id cannot be null");
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        requireNonNull(transformation, "Transformation cannot be null");
+        this.migrationId = migrationId;
+        this.filter = filter;
+        this.transformation = transformation;
+    }
+
+    /**
+     * Create a new {@link EventMigration}
+     *
+     * @param migrationId    The unique id of the migration
+     * @param filter         The cloud events to migrate
+     * @param transformation A function that takes an existing cloud event and you're expected to return the migrated cloud event (cannot be <code>null</code>).
+     *                       If the function returns a cloud event equal to the existing cloud event then nothing is written for this cloud event.
+     * @return A new {@link EventMigration}
+     */
+    public static EventMigration migration(String migrationId, Filter filter, Function<CloudEvent, CloudEvent> transformation) {
+        return new EventMigration(migrationId, filter, transformation);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EventMigration)) return false;
+        EventMigration that = (EventMigration) o;
+        return Objects.equals(migrationId, that.migrationId) &&
+                Objects.equals(filter, that.filter) &&
+                Objects.equals(transformation, that.transformation);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(migrationId, filter, transformation);
+    }
+
+    @Override
+    public String toString() {
+        return "EventMigration{" +
+                "migrationId='" + migrationId + '\'' +
+                ", filter=" + filter +
+                ", transformation=" + transformation +
+                '}';
+    }
+}
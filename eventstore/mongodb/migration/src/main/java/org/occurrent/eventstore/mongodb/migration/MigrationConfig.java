@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.migration;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Configuration for the {@link MongoEventMigrator}
+ */
+public class MigrationConfig {
+    public static final String DEFAULT_CHECKPOINT_COLLECTION_NAME = "eventMigrations";
+    public static final int DEFAULT_INITIAL_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    public static final Duration DEFAULT_LATENCY_BUDGET = Duration.ofMillis(200);
+
+    public final TimeRepresentation timeRepresentation;
+    public final String checkpointCollectionName;
+    public final int initialBatchSize;
+    public final int maxBatchSize;
+    public final Duration latencyBudget;
+    public final Consumer<MigrationProgress> progressListener;
+
+    /**
+     * Create a new instance of {@code MigrationConfig}, see {@link Builder} for a more convenient way to create an instance.
+     *
+     * @param timeRepresentation       How the time field in the {@link CloudEvent} is represented in the event store, must be the same as configured for the event store.
+     * @param checkpointCollectionName The collection in which the progress of the migrations are stored
+     * @param initialBatchSize         The number of cloud events to read and write in the first batch
+     * @param maxBatchSize             The maximum number of cloud events to read and write in a single batch
+     * @param latencyBudget            The maximum time that reading and writing a single batch should take. If a batch takes longer, the batch size is decreased and the
+     *                                 migrator pauses before the next batch in order to leave room for live traffic. If a batch is faster, the batch size is gradually increased.
+     * @param progressListener         Is invoked with the {@link MigrationProgress} after each batch
+     */
+    public MigrationConfig(TimeRepresentation timeRepresentation, String checkpointCollectionName, int initialBatchSize, int maxBatchSize, Duration latencyBudget, Consumer<MigrationProgress> progressListener) {
+        requireNonNull(timeRepresentation, TimeRepresentation.class.getSimpleName() + " cannot be null");
+        requireNonNull(checkpointCollectionName, "Checkpoint collection name cannot be null");
+        requireNonNull(latencyBudget, "Latency budget cannot be null");
+        requireNonNull(progressListener, "Progress listener cannot be null");
+        if (initialBatchSize < 1) {
+            throw new IllegalArgumentException("Initial batch size must be greater than zero");
+        } else if (maxBatchSize < initialBatchSize) {
+            throw new IllegalArgumentException("Max batch size must be greater than or equal to the initial batch size");
+        } else if (latencyBudget.isNegative() || latencyBudget.isZero()) {
+            throw new IllegalArgumentException("Latency budget must be greater than zero");
+        }
+        this.timeRepresentation = timeRepresentation;
+        this.checkpointCollectionName = checkpointCollectionName;
+        this.initialBatchSize = initialBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.latencyBudget = latencyBudget;
+        this.progressListener = progressListener;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MigrationConfig)) return false;
+        MigrationConfig that = (MigrationConfig) o;
+        return initialBatchSize == that.initialBatchSize &&
+                maxBatchSize == that.maxBatchSize &&
+                timeRepresentation == that.timeRepresentation &&
+                Objects.equals(checkpointCollectionName, that.checkpointCollectionName) &&
+                Objects.equals(latencyBudget, that.latencyBudget) &&
+                Objects.equals(progressListener, that.progressListener);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timeRepresentation, checkpointCollectionName, initialBatchSize, maxBatchSize, latencyBudget, progressListener);
+    }
+
+    @Override
+    public String toString() {
+        return "MigrationConfig{" +
+                "timeRepresentation=" + timeRepresentation +
+                ", checkpointCollectionName='" + checkpointCollectionName + '\'' +
+                ", initialBatchSize=" + initialBatchSize +
+                ", maxBatchSize=" + maxBatchSize +
+                ", latencyBudget=" + latencyBudget +
+                ", progressListener=" + progressListener +
+                '}';
+    }
+
+    public static final class Builder {
+        private TimeRepresentation timeRepresentation;
+        private String checkpointCollectionName = DEFAULT_CHECKPOINT_COLLECTION_NAME;
+        private int initialBatchSize = DEFAULT_INITIAL_BATCH_SIZE;
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        private Duration latencyBudget = DEFAULT_LATENCY_BUDGET;
+        private Consumer<MigrationProgress> progressListener = __ -> {
+        };
+
+        /**
+         * @param timeRepresentation How time is represented in the event store
+         * @return A same {@code Builder instance}
+         */
+        public Builder timeRepresentation(TimeRepresentation timeRepresentation) {
+            this.timeRepresentation = timeRepresentation;
+            return this;
+        }
+
+        /**
+         * @param checkpointCollectionName The collection in which the progress of the migrations are stored. Default is {@value #DEFAULT_CHECKPOINT_COLLECTION_NAME}.
+         * @return A same {@code Builder instance}
+         */
+        public Builder checkpointCollectionName(String checkpointCollectionName) {
+            this.checkpointCollectionName = checkpointCollectionName;
+            return this;
+        }
+
+        /**
+         * @param initialBatchSize The number of cloud events to read and write in the first batch. Default is {@value #DEFAULT_INITIAL_BATCH_SIZE}.
+         * @return A same {@code Builder instance}
+         */
+        public Builder initialBatchSize(int initialBatchSize) {
+            this.initialBatchSize = initialBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize The maximum number of cloud events to read and write in a single batch. Default is {@value #DEFAULT_MAX_BATCH_SIZE}.
+         * @return A same {@code Builder instance}
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param latencyBudget The maximum time that reading and writing a single batch should take. Default is 200 milliseconds.
+         * @return A same {@code Builder instance}
+         */
+        public Builder latencyBudget(Duration latencyBudget) {
+            this.latencyBudget = latencyBudget;
+            return this;
+        }
+
+        /**
+         * @param progressListener Is invoked with the {@link MigrationProgress} after each batch, for example to log the throughput of the migration.
+         * @return A same {@code Builder instance}
+         */
+        public Builder progressListener(Consumer<MigrationProgress> progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        public MigrationConfig build() {
+            return new MigrationConfig(timeRepresentation, checkpointCollectionName, initialBatchSize, maxBatchSize, latencyBudget, progressListener);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.migration;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * The progress of an {@link EventMigration}. An instance of {@code MigrationProgress} is reported after each batch and when the migration is completed.
+ */
+public class MigrationProgress {
+    /**
+     * The id of the migration
+     */
+    public final String migrationId;
+    /**
+     * The total number of cloud events that have been read by the migration, including the events read by previous (interrupted) runs.
+     */
+    public final long scannedEvents;
+    /**
+     * The total number of cloud events that have been changed by the migration, including the events changed by previous (interrupted) runs.
+     */
+    public final long migratedEvents;
+    /**
+     * The size of the batch that will be used for the next batch, adapted to the latency budget (see {@link MigrationConfig#latencyBudget}).
+     */
+    public final int batchSize;
+    /**
+     * The time it took to read and write the last batch
+     */
+    public final Duration lastBatchDuration;
+    /**
+     * The number of cloud events read per second by the current run
+     */
+    public final double eventsPerSecond;
+    /**
+     * {@code true} if all cloud events matching the migration filter have been processed
+     */
+    public final boolean completed;
+
+    public MigrationProgress(String migrationId, long scannedEvents, long migratedEvents, int batchSize, Duration lastBatchDuration, double eventsPerSecond, boolean completed) {
+        this.migrationId = migrationId;
+        this.scannedEvents = scannedEvents;
+        this.migratedEvents = migratedEvents;
+        this.batchSize = batchSize;
+        this.lastBatchDuration = lastBatchDuration;
+        this.eventsPerSecond = eventsPerSecond;
+        this.completed = completed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MigrationProgress)) return false;
+        MigrationProgress that = (MigrationProgress) o;
+        return scannedEvents == that.scannedEvents &&
+                migratedEvents == that.migratedEvents &&
+                batchSize == that.batchSize &&
+                Double.compare(that.eventsPerSecond, eventsPerSecond) == 0 &&
+                completed == that.completed &&
+                Objects.equals(migrationId, that.migrationId) &&
+                Objects.equals(lastBatchDuration, that.lastBatchDuration);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(migrationId, scannedEvents, migratedEvents, batchSize, lastBatchDuration, eventsPerSecond, completed);
+    }
+
+    @Override
+    public String toString() {
+        return "MigrationProgress{" +
+                "migrationId='" + migrationId + '\'' +
+                ", scannedEvents=" + scannedEvents +
+                ", migratedEvents=" + migratedEvents +
+                ", batchSize=" + batchSize +
+                ", lastBatchDuration=" + lastBatchDuration +
+                ", eventsPerSecond=" + eventsPerSecond +
+                ", completed=" + completed +
+                '}';
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.migration;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.occurrent.eventstore.mongodb.internal.BulkCloudEventUpdate;
+import org.occurrent.eventstore.mongodb.migration.internal.LatencyBudgetThrottle;
+import org.occurrent.mongodb.spring.filterbsonfilterconversion.internal.FilterToBsonFilterConverter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Sorts.ascending;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Migrates cloud events stored in a MongoDB event store (such as the {@code MongoEventStore}, {@code SpringBlockingMongoEventStore} or
+ * {@code SpringReactorMongoEventStore}) according to an {@link EventMigration}. The cloud events matching the migration filter are read in
+ * {@code _id} order and the transformed cloud events are written back in batches using unordered bulk writes.
+ * <p>
+ * After each batch the position of the migration is stored in the checkpoint collection (see {@link MigrationConfig#checkpointCollectionName}) so
+ * that the migration is resumed from where it left off if it's interrupted, for example if the application crashes. The size of the batches
+ * is adapted to the {@link MigrationConfig#latencyBudget} and the {@link MigrationConfig#progressListener} is notified of the throughput after each batch.
+ * </p>
+ * <p>
+ * Note that the cloud events are not migrated in a transaction. Applications reading the event store during the migration may see both
+ * migrated and non-migrated cloud events.
+ * </p>
+ */
+public class MongoEventMigrator {
+    private static final String ID = "_id";
+    private static final String LAST_PROCESSED_ID = "lastProcessedId";
+    private static final String SCANNED_EVENTS = "scannedEvents";
+    private static final String MIGRATED_EVENTS = "migratedEvents";
+    private static final String COMPLETED = "completed";
+    private static final String UPDATED_AT = "updatedAt";
+
+    private final MongoCollection<Document> eventCollection;
+    private final MongoCollection<Document> checkpointCollection;
+    private final EventFormat cloudEventSerializer;
+    private final MigrationConfig config;
+
+    /**
+     * Create a new {@link MongoEventMigrator}
+     *
+     * @param database            The database that contains the event store
+     * @param eventCollectionName The name of the collection in which the event store persists the cloud events
+     * @param config              The {@link MigrationConfig}
+     */
+    public MongoEventMigrator(MongoDatabase database, String eventCollectionName, MigrationConfig config) {
+        requireNonNull(database, MongoDatabase.class.getSimpleName() + " cannot be null");
+        requireNonNull(eventCollectionName, "Event collection name cannot be null");
+        requireNonNull(config, MigrationConfig.class.getSimpleName() + " cannot be null");
+        this.eventCollection = database.getCollection(eventCollectionName);
+        this.checkpointCollection = database.getCollection(config.checkpointCollectionName);
+        this.cloudEventSerializer = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+        this.config = config;
+    }
+
+    /**
+     * Run the supplied {@code migration}. This method blocks until all cloud events matching the migration filter have been processed. If the
+     * migration has been run before, it's resumed from the last checkpoint. If the migration has already been completed, nothing is done.
+     *
+     * @param migration The migration to run
+     * @return The {@link MigrationProgress} of the completed migration
+     */
+    public MigrationProgress migrate(EventMigration migration) {
+        requireNonNull(migration, EventMigration.class.getSimpleName() + " cannot be null");
+
+        Document checkpoint = checkpointCollection.find(eq(ID, migration.migrationId)).first();
+        Object lastProcessedId = checkpoint == null ? null : checkpoint.get(LAST_PROCESSED_ID);
+        long scannedEvents = checkpoint == null ? 0 : checkpoint.getLong(SCANNED_EVENTS);
+        long migratedEvents = checkpoint == null ? 0 : checkpoint.getLong(MIGRATED_EVENTS);
+        if (checkpoint != null && checkpoint.getBoolean(COMPLETED, false)) {
+            return new MigrationProgress(migration.migrationId, scannedEvents, migratedEvents, 0, Duration.ZERO, 0, true);
+        }
+
+        Bson query = FilterToBsonFilterConverter.convertFilterToBsonFilter(config.timeRepresentation, migration.filter);
+        LatencyBudgetThrottle throttle = new LatencyBudgetThrottle(config.latencyBudget, config.initialBatchSize, config.maxBatchSize);
+        long startTime = System.nanoTime();
+        long scannedEventsInThisRun = 0;
+        while (true) {
+            long batchStartTime = System.nanoTime();
+            Bson batchQuery = lastProcessedId == null ? query : and(query, gt(ID, lastProcessedId));
+            List<Document> documents = eventCollection.find(batchQuery).sort(ascending(ID)).limit(throttle.batchSize()).into(new ArrayList<>());
+            if (documents.isEmpty()) {
+                saveCheckpoint(migration.migrationId, lastProcessedId, scannedEvents, migratedEvents, true);
+                MigrationProgress progress = new MigrationProgress(migration.migrationId, scannedEvents, migratedEvents, throttle.batchSize(), elapsedSince(batchStartTime),
+                        eventsPerSecond(scannedEventsInThisRun, startTime), true);
+                config.progressListener.accept(progress);
+                return progress;
+            }
+
+            List<WriteModel<Document>> replacements = documents.stream()
+                    .map(document -> BulkCloudEventUpdate.replacementOf(cloudEventSerializer, config.timeRepresentation, document, migration.transformation))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            if (!replacements.isEmpty()) {
+                eventCollection.bulkWrite(replacements, BulkCloudEventUpdate.BULK_WRITE_OPTIONS);
+            }
+
+            lastProcessedId = documents.get(documents.size() - 1).get(ID);
+            scannedEvents += documents.size();
+            scannedEventsInThisRun += documents.size();
+            migratedEvents += replacements.size();
+            saveCheckpoint(migration.migrationId, lastProcessedId, scannedEvents, migratedEvents, false);
+
+            Duration batchDuration = elapsedSince(batchStartTime);
+            Duration pause = throttle.batchCompleted(batchDuration);
+            config.progressListener.accept(new MigrationProgress(migration.migrationId, scannedEvents, migratedEvents, throttle.batchSize(), batchDuration,
+                    eventsPerSecond(scannedEventsInThisRun, startTime), false));
+            pause(pause);
+        }
+    }
+
+    /**
+     * Remove the checkpoint of the supplied migration so that the migration is started from the beginning the next time it's run.
+     *
+     * @param migrationId The id of the migration
+     */
+    public void reset(String migrationId) {
+        requireNonNull(migrationId, "Migration id cannot be null");
+        checkpointCollection.deleteOne(eq(ID, migrationId));
+    }
+
+    private void saveCheckpoint(String migrationId, Object lastProcessedId, long scannedEvents, long migratedEvents, boolean completed) {
+        Document checkpoint = new Document(ID, migrationId)
+                .append(LAST_PROCESSED_ID, lastProcessedId)
+                .append(SCANNED_EVENTS, scannedEvents)
+                .append(MIGRATED_EVENTS, migratedEvents)
+                .append(COMPLETED, completed)
+                .append(UPDATED_AT, new Date());
+        checkpointCollection.replaceOne(eq(ID, migrationId), checkpoint, new ReplaceOptions().upsert(true));
+    }
+
+    private static Duration elapsedSince(long startTime) {
+        return Duration.ofNanos(System.nanoTime() - startTime);
+    }
+
+    private static double eventsPerSecond(long events, long startTime) {
+        long elapsedNanos = System.nanoTime() - startTime;
+        return elapsedNanos <= 0 ? 0 : events / (elapsedNanos / 1_000_000_000d);
+    }
+
+    private static void pause(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
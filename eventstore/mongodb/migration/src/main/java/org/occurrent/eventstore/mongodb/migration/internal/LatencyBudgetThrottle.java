@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.migration.internal;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Adapts the batch size to a latency budget using additive increase and multiplicative decrease. When a batch completes within
+ * the budget the batch size is increased by a constant step (up to the max batch size). When a batch exceeds the budget the
+ * batch size is halved and the caller is asked to pause for the time by which the budget was exceeded, so that the database
+ * gets a chance to serve other (live) traffic.
+ */
+public class LatencyBudgetThrottle {
+    private final Duration latencyBudget;
+    private final int maxBatchSize;
+    private final int increment;
+    private int batchSize;
+
+    public LatencyBudgetThrottle(Duration latencyBudget, int initialBatchSize, int maxBatchSize) {
+        requireNonNull(latencyBudget, "Latency budget cannot be null");
+        if (initialBatchSize < 1 || maxBatchSize < initialBatchSize) {
+            throw new IllegalArgumentException("Batch size must be greater than zero and less than or equal to max batch size");
+        }
+        this.latencyBudget = latencyBudget;
+        this.maxBatchSize = maxBatchSize;
+        this.increment = Math.max(1, initialBatchSize / 10);
+        this.batchSize = initialBatchSize;
+    }
+
+    /**
+     * @return The size of the next batch
+     */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Register that a batch has been completed.
+     *
+     * @param batchDuration The time it took to complete the batch
+     * @return The time to pause before starting the next batch, {@link Duration#ZERO} if the batch completed within the latency budget.
+     */
+    public Duration batchCompleted(Duration batchDuration) {
+        requireNonNull(batchDuration, "Batch duration cannot be null");
+        if (batchDuration.compareTo(latencyBudget) > 0) {
+            batchSize = Math.max(1, batchSize / 2);
+            return batchDuration.minus(latencyBudget);
+        }
+        batchSize = Math.min(maxBatchSize, batchSize + increment);
+        return Duration.ZERO;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.migration;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.occurrent.eventstore.mongodb.nativedriver.EventStoreConfig;
+import org.occurrent.eventstore.mongodb.nativedriver.MongoEventStore;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.occurrent.eventstore.mongodb.migration.EventMigration.migration;
+import static org.occurrent.filter.Filter.type;
+
+@Timeout(20)
+@Testcontainers
+class MongoEventMigratorTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer;
+
+    static {
+        mongoDBContainer = new MongoDBContainer("mongo:4.2.8");
+        List<String> ports = new ArrayList<>();
+        ports.add("27017:27017");
+        mongoDBContainer.setPortBindings(ports);
+    }
+
+    private static final URI SOURCE = URI.create("http://name");
+
+    @RegisterExtension
+    FlushMongoDBExtension flushMongoDBExtension = new FlushMongoDBExtension(new ConnectionString(mongoDBContainer.getReplicaSetUrl()));
+
+    private MongoClient mongoClient;
+    private MongoDatabase database;
+    private MongoEventStore eventStore;
+
+    @BeforeEach
+    void create_mongo_event_store() {
+        ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl());
+        mongoClient = MongoClients.create(connectionString);
+        database = mongoClient.getDatabase(connectionString.getDatabase());
+        eventStore = new MongoEventStore(mongoClient, connectionString.getDatabase(), "events", new EventStoreConfig(TimeRepresentation.RFC_3339_STRING));
+    }
+
+    @AfterEach
+    void mongo_client_is_closed_after_each_test() {
+        mongoClient.close();
+    }
+
+    @Test
+    void migrates_all_cloud_events_matching_the_filter() {
+        // Given
+        eventStore.write("stream1", Stream.of(cloudEvent("NameDefined"), cloudEvent("NameWasChanged")));
+        eventStore.write("stream2", Stream.of(cloudEvent("NameDefined")));
+        MongoEventMigrator migrator = new MongoEventMigrator(database, "events", new MigrationConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).build());
+
+        // When
+        MigrationProgress progress = migrator.migrate(migration("rename", type("NameDefined"), e -> CloudEventBuilder.v1(e).withType("NameDefinedV2").build()));
+
+        // Then
+        assertThat(progress.completed).isTrue();
+        assertThat(progress.scannedEvents).isEqualTo(2);
+        assertThat(progress.migratedEvents).isEqualTo(2);
+        assertThat(eventStore.all().map(CloudEvent::getType)).containsExactly("NameDefinedV2", "NameWasChanged", "NameDefinedV2");
+    }
+
+    @Test
+    void migrates_cloud_events_in_batches_and_reports_progress_after_each_batch() {
+        // Given
+        eventStore.write("stream", IntStream.range(0, 25).mapToObj(__ -> cloudEvent("NameDefined")));
+        List<MigrationProgress> reportedProgress = new CopyOnWriteArrayList<>();
+        MongoEventMigrator migrator = new MongoEventMigrator(database, "events", new MigrationConfig.Builder()
+                .timeRepresentation(TimeRepresentation.RFC_3339_STRING)
+                .initialBatchSize(10)
+                .maxBatchSize(10)
+                .latencyBudget(Duration.ofSeconds(10))
+                .progressListener(reportedProgress::add)
+                .build());
+
+        // When
+        migrator.migrate(migration("rename", type("NameDefined"), e -> CloudEventBuilder.v1(e).withType("NameDefinedV2").build()));
+
+        // Then
+        assertThat(reportedProgress.stream().map(progress -> progress.scannedEvents).collect(Collectors.toList())).containsExactly(10L, 20L, 25L, 25L);
+        assertThat(reportedProgress.get(reportedProgress.size() - 1).completed).isTrue();
+        assertThat(eventStore.all().map(CloudEvent::getType)).containsOnly("NameDefinedV2");
+    }
+
+    @Test
+    void resumes_interrupted_migration_from_last_checkpoint() {
+        // Given
+        eventStore.write("stream", IntStream.range(0, 30).mapToObj(__ -> cloudEvent("NameDefined")));
+        MigrationConfig config = new MigrationConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).initialBatchSize(10).maxBatchSize(10).latencyBudget(Duration.ofSeconds(10)).build();
+        AtomicInteger numberOfInvocations = new AtomicInteger();
+        EventMigration failingMigration = migration("rename", type("NameDefined"), e -> {
+            if (numberOfInvocations.incrementAndGet() > 15) {
+                throw new IllegalStateException("expected");
+            }
+            return CloudEventBuilder.v1(e).withSubject("migrated").build();
+        });
+        Throwable throwable = catchThrowable(() -> new MongoEventMigrator(database, "events", config).migrate(failingMigration));
+
+        // When
+        AtomicInteger numberOfInvocationsAfterResume = new AtomicInteger();
+        MigrationProgress progress = new MongoEventMigrator(database, "events", config).migrate(migration("rename", type("NameDefined"), e -> {
+            numberOfInvocationsAfterResume.incrementAndGet();
+            return CloudEventBuilder.v1(e).withSubject("migrated").build();
+        }));
+
+        // Then
+        assertThat(throwable).hasMessage("expected");
+        assertThat(numberOfInvocationsAfterResume).hasValue(20);
+        assertThat(progress.scannedEvents).isEqualTo(30);
+        assertThat(eventStore.all().map(CloudEvent::getSubject)).containsOnly("migrated");
+    }
+
+    @Test
+    void does_nothing_when_migration_is_already_completed() {
+        // Given
+        eventStore.write("stream", Stream.of(cloudEvent("NameDefined")));
+        MongoEventMigrator migrator = new MongoEventMigrator(database, "events", new MigrationConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).build());
+        migrator.migrate(migration("rename", type("NameDefined"), e -> CloudEventBuilder.v1(e).withSubject("migrated").build()));
+        eventStore.write("stream", Stream.of(cloudEvent("NameDefined")));
+
+        // When
+        AtomicInteger numberOfInvocations = new AtomicInteger();
+        MigrationProgress progress = migrator.migrate(migration("rename", type("NameDefined"), e -> {
+            numberOfInvocations.incrementAndGet();
+            return e;
+        }));
+
+        // Then
+        assertThat(progress.completed).isTrue();
+        assertThat(numberOfInvocations).hasValue(0);
+    }
+
+    private static CloudEvent cloudEvent(String type) {
+        return CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(SOURCE)
+                .withType(type)
+                .withSubject("subject")
+                .withDataContentType("application/json")
+                .withData("{}".getBytes(UTF_8))
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.migration.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyBudgetThrottleTest {
+
+    @Test
+    void increases_batch_size_additively_when_batch_completes_within_latency_budget() {
+        // Given
+        LatencyBudgetThrottle throttle = new LatencyBudgetThrottle(Duration.ofMillis(100), 100, 1000);
+
+        // When
+        Duration pause1 = throttle.batchCompleted(Duration.ofMillis(50));
+        Duration pause2 = throttle.batchCompleted(Duration.ofMillis(100));
+
+        // Then
+        assertThat(pause1).isZero();
+        assertThat(pause2).isZero();
+        assertThat(throttle.batchSize()).isEqualTo(120);
+    }
+
+    @Test
+    void never_increases_batch_size_beyond_max_batch_size() {
+        // Given
+        LatencyBudgetThrottle throttle = new LatencyBudgetThrottle(Duration.ofMillis(100), 100, 105);
+
+        // When
+        throttle.batchCompleted(Duration.ofMillis(1));
+        throttle.batchCompleted(Duration.ofMillis(1));
+
+        // Then
+        assertThat(throttle.batchSize()).isEqualTo(105);
+    }
+
+    @Test
+    void halves_batch_size_and_pauses_for_the_exceeded_time_when_batch_exceeds_latency_budget() {
+        // Given
+        LatencyBudgetThrottle throttle = new LatencyBudgetThrottle(Duration.ofMillis(100), 100, 1000);
+
+        // When
+        Duration pause = throttle.batchCompleted(Duration.ofMillis(250));
+
+        // Then
+        assertThat(pause).isEqualTo(Duration.ofMillis(150));
+        assertThat(throttle.batchSize()).isEqualTo(50);
+    }
+
+    @Test
+    void batch_size_is_never_less_than_one() {
+        // Given
+        LatencyBudgetThrottle throttle = new LatencyBudgetThrottle(Duration.ofMillis(100), 1, 10);
+
+        // When
+        throttle.batchCompleted(Duration.ofMillis(200));
+
+        // Then
+        assertThat(throttle.batchSize()).isEqualTo(1);
+    }
+}
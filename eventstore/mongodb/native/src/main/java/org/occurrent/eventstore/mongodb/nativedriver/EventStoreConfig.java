@@ -18,6 +18,7 @@ package org.occurrent.eventstore.mongodb.nativedriver;
 
 import com.mongodb.TransactionOptions;
 import io.cloudevents.CloudEvent;
+import org.occurrent.eventstore.mongodb.index.IndexProfile;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 
 import java.util.Objects;
@@ -28,6 +29,7 @@ import java.util.Objects;
 public class EventStoreConfig {
     public final TransactionOptions transactionOptions;
     public final TimeRepresentation timeRepresentation;
+    public final IndexProfile indexProfile;
 
     /**
      * Create an {@link EventStoreConfig} indicating to the event store that it should represent time according to the supplied
@@ -52,13 +54,30 @@ public class EventStoreConfig {
      * @see TimeRepresentation
      */
     public EventStoreConfig(TimeRepresentation timeRepresentation, TransactionOptions transactionOptions) {
+        this(timeRepresentation, transactionOptions, IndexProfile.none());
+    }
+
+    /**
+     * Create an {@link EventStoreConfig} indicating to the event store that it should represent time according to the supplied
+     * {@code timeRepresentation}, use the supplied default {@link TransactionOptions} and maintain the secondary indexes defined
+     * by the supplied {@link IndexProfile}.
+     *
+     * @param timeRepresentation How the time field in the {@link CloudEvent} should be represented.
+     * @param transactionOptions The default {@link TransactionOptions} that the event store will use when starting transactions.
+     * @param indexProfile       The secondary indexes that the event store should create and maintain.
+     * @see TimeRepresentation
+     * @see IndexProfile
+     */
+    public EventStoreConfig(TimeRepresentation timeRepresentation, TransactionOptions transactionOptions, IndexProfile indexProfile) {
         Objects.requireNonNull(timeRepresentation, "Time representation cannot be null");
+        Objects.requireNonNull(indexProfile, IndexProfile.class.getSimpleName() + " cannot be null");
         if (transactionOptions == null) {
             this.transactionOptions = TransactionOptions.builder().build();
         } else {
             this.transactionOptions = transactionOptions;
         }
         this.timeRepresentation = timeRepresentation;
+        this.indexProfile = indexProfile;
     }
 
     @Override
@@ -67,12 +86,13 @@ public class EventStoreConfig {
         if (!(o instanceof EventStoreConfig)) return false;
         EventStoreConfig that = (EventStoreConfig) o;
         return Objects.equals(transactionOptions, that.transactionOptions) &&
-                timeRepresentation == that.timeRepresentation;
+                timeRepresentation == that.timeRepresentation &&
+                Objects.equals(indexProfile, that.indexProfile);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(transactionOptions, timeRepresentation);
+        return Objects.hash(transactionOptions, timeRepresentation, indexProfile);
     }
 
     @Override
@@ -80,6 +100,7 @@ public class EventStoreConfig {
         return "EventStoreConfig{" +
                 "transactionOptions=" + transactionOptions +
                 ", timeRepresentation=" + timeRepresentation +
+                ", indexProfile=" + indexProfile +
                 '}';
     }
 }
\ No newline at end of file
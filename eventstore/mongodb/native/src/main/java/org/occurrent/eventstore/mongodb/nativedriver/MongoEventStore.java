@@ -19,10 +19,9 @@ package org.occurrent.eventstore.mongodb.nativedriver;
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.TransactionOptions;
 import com.mongodb.client.*;
-import com.mongodb.client.model.IndexOptions;
-import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.UpdateResult;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.format.EventFormat;
@@ -38,17 +37,26 @@ import org.occurrent.eventstore.api.WriteCondition;
 import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
 import org.occurrent.eventstore.api.blocking.EventStore;
 import org.occurrent.eventstore.api.blocking.EventStoreOperations;
+import org.occurrent.eventstore.api.blocking.EventStoreParallelQueries;
 import org.occurrent.eventstore.api.blocking.EventStoreQueries;
 import org.occurrent.eventstore.api.blocking.EventStream;
 import org.occurrent.eventstore.api.internal.functional.FunctionalSupport.Pair;
+import org.occurrent.eventstore.mongodb.index.FilterShape;
+import org.occurrent.eventstore.mongodb.index.IndexDefinition;
+import org.occurrent.eventstore.mongodb.index.IndexProfile;
+import org.occurrent.eventstore.mongodb.internal.BulkCloudEventUpdate;
+import org.occurrent.eventstore.mongodb.internal.EventStoreIndexes;
+import org.occurrent.eventstore.mongodb.internal.EventStoreIndexes.IndexReconciliationPlan;
+import org.occurrent.eventstore.mongodb.internal.ObjectIdPartitioner;
+import org.occurrent.eventstore.mongodb.internal.ParallelPartitionScan;
 import org.occurrent.filter.Filter;
 import org.occurrent.mongodb.spring.filterbsonfilterconversion.internal.FilterToBsonFilterConverter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 
 import java.net.URI;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -58,6 +66,9 @@ import java.util.stream.StreamSupport;
 
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lte;
 import static com.mongodb.client.model.Sorts.ascending;
 import static com.mongodb.client.model.Sorts.descending;
 import static java.util.Objects.requireNonNull;
@@ -67,13 +78,14 @@ import static org.occurrent.eventstore.api.internal.functional.FunctionalSupport
 import static org.occurrent.eventstore.mongodb.internal.MongoBulkWriteExceptionToDuplicateCloudEventExceptionTranslator.translateToDuplicateCloudEventException;
 import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDBDocumentMapper.convertToCloudEvent;
 import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDBDocumentMapper.convertToDocument;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
 import static org.occurrent.filter.Filter.TIME;
 
 /**
  * This is an {@link EventStore} that stores events in MongoDB using the "native" synchronous java driver MongoDB.
- * It also supports the {@link EventStoreOperations} and {@link EventStoreQueries} contracts.
+ * It also supports the {@link EventStoreOperations}, {@link EventStoreQueries} and {@link EventStoreParallelQueries} contracts.
  */
-public class MongoEventStore implements EventStore, EventStoreOperations, EventStoreQueries {
+public class MongoEventStore implements EventStore, EventStoreOperations, EventStoreQueries, EventStoreParallelQueries {
     private static final String ID = "_id";
 
     private final MongoCollection<Document> eventCollection;
@@ -81,6 +93,7 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
     private final MongoClient mongoClient;
     private final TimeRepresentation timeRepresentation;
     private final TransactionOptions transactionOptions;
+    private final List<IndexDefinition> indexDefinitions;
 
     /**
      * Create a new instance of {@code MongoEventStore}
@@ -114,16 +127,67 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
         this.eventCollection = eventCollection;
         transactionOptions = config.transactionOptions;
         this.timeRepresentation = config.timeRepresentation;
-        initializeEventStore(eventCollection, database);
+        this.indexDefinitions = EventStoreIndexes.indexDefinitions(config.indexProfile);
+        initializeEventStore(eventCollection, database, indexDefinitions, timeRepresentation);
     }
 
     @Override
     public EventStream<CloudEvent> read(String streamId, int skip, int limit) {
-        EventStream<Document> eventStream = readEventStream(streamId, skip, limit, transactionOptions);
+        EventStream<Document> eventStream = readEventStream(streamId, (clientSession, currentStreamVersion) -> readCloudEvents(streamIdEqualTo(streamId), skip, limit, SortBy.NATURAL_ASC, clientSession));
         return eventStream.map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
     }
 
-    private EventStreamImpl<Document> readEventStream(String streamId, int skip, int limit, TransactionOptions transactionOptions) {
+    @Override
+    public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        EventStream<Document> eventStream = readEventStream(streamId, (clientSession, currentStreamVersion) -> {
+            if (fromVersionExclusive >= Math.min(currentStreamVersion, toVersionInclusive)) {
+                // There are no events in the range so there's no need to query the database
+                return Stream.empty();
+            }
+            Bson query = and(streamIdEqualTo(streamId), gt(STREAM_VERSION, fromVersionExclusive), lte(STREAM_VERSION, toVersionInclusive));
+            return StreamSupport.stream(eventCollection.find(clientSession, query).sort(ascending(STREAM_VERSION)).spliterator(), false);
+        });
+        return eventStream.map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
+    }
+
+    @Override
+    public EventStream<CloudEvent> readReversed(String streamId, int limit) {
+        EventStream<Document> eventStream = readEventStream(streamId, (clientSession, currentStreamVersion) ->
+                StreamSupport.stream(eventCollection.find(clientSession, streamIdEqualTo(streamId)).sort(descending(STREAM_VERSION)).limit(limit).spliterator(), false));
+        return eventStream.map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
+    }
+
+    @Override
+    public Map<String, EventStream<CloudEvent>> read(Collection<String> streamIds) {
+        requireNonNull(streamIds, "Stream ids cannot be null");
+        Set<String> distinctStreamIds = new LinkedHashSet<>(streamIds);
+        final Map<String, List<CloudEvent>> eventsByStreamId;
+        if (distinctStreamIds.isEmpty()) {
+            eventsByStreamId = Collections.emptyMap();
+        } else {
+            try (ClientSession clientSession = mongoClient.startSession()) {
+                // All event streams are read using a single query that is served by the stream id and stream version index
+                eventsByStreamId = clientSession.withTransaction(() -> {
+                    Map<String, List<CloudEvent>> events = new HashMap<>();
+                    eventCollection.find(clientSession, in(OccurrentCloudEventExtension.STREAM_ID, distinctStreamIds))
+                            .sort(ascending(OccurrentCloudEventExtension.STREAM_ID, STREAM_VERSION))
+                            .forEach(document -> events.computeIfAbsent(document.getString(OccurrentCloudEventExtension.STREAM_ID), __ -> new ArrayList<>())
+                                    .add(convertToCloudEvent(cloudEventSerializer, timeRepresentation, document)));
+                    return events;
+                }, transactionOptions);
+            }
+        }
+
+        Map<String, EventStream<CloudEvent>> eventStreams = new LinkedHashMap<>();
+        for (String streamId : distinctStreamIds) {
+            List<CloudEvent> events = eventsByStreamId.getOrDefault(streamId, Collections.emptyList());
+            long version = events.isEmpty() ? 0 : OccurrentExtensionGetter.getStreamVersion(events.get(events.size() - 1));
+            eventStreams.put(streamId, new EventStreamImpl<>(streamId, version, events.stream()));
+        }
+        return eventStreams;
+    }
+
+    private EventStreamImpl<Document> readEventStream(String streamId, BiFunction<ClientSession, Long, Stream<Document>> readCloudEvents) {
         try (ClientSession clientSession = mongoClient.startSession()) {
             return clientSession.withTransaction(() -> {
                 long currentStreamVersion = currentStreamVersion(streamId);
@@ -131,7 +195,7 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
                     return new EventStreamImpl<>(streamId, 0, Stream.empty());
                 }
 
-                Stream<Document> stream = readCloudEvents(streamIdEqualTo(streamId), skip, limit, SortBy.NATURAL_ASC, clientSession);
+                Stream<Document> stream = readCloudEvents.apply(clientSession, currentStreamVersion);
                 return new EventStreamImpl<>(streamId, currentStreamVersion, stream);
             }, transactionOptions);
         }
@@ -165,10 +229,10 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
 
         switch (sortBy) {
             case TIME_ASC:
-                documentsWithoutSkipAndLimit.sort(ascending(TIME));
+                documentsWithoutSkipAndLimit.sort(ascending(TIME, OccurrentCloudEventExtension.STREAM_ID, STREAM_VERSION));
                 break;
             case TIME_DESC:
-                documentsWithoutSkipAndLimit.sort(descending(TIME));
+                documentsWithoutSkipAndLimit.sort(descending(TIME, OccurrentCloudEventExtension.STREAM_ID, STREAM_VERSION));
                 break;
             case NATURAL_ASC:
                 break;
@@ -257,6 +321,26 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
         return result;
     }
 
+    @Override
+    public void delete(Filter filter) {
+        requireNonNull(filter, "Filter cannot be null");
+        eventCollection.deleteMany(FilterToBsonFilterConverter.convertFilterToBsonFilter(timeRepresentation, filter));
+    }
+
+    @Override
+    public void update(Filter filter, Function<CloudEvent, CloudEvent> updateFunction) {
+        requireNonNull(filter, "Filter cannot be null");
+        requireNonNull(updateFunction, "Update function cannot be null");
+
+        final Bson query = FilterToBsonFilterConverter.convertFilterToBsonFilter(timeRepresentation, filter);
+        Iterator<Document> documents = BulkCloudEventUpdate.readInIdOrder(lastId -> eventCollection.find(lastId == null ? query : and(query, gt(ID, lastId)))
+                .sort(ascending(ID)).limit(BulkCloudEventUpdate.BATCH_SIZE).into(new ArrayList<>()));
+        Iterator<WriteModel<Document>> replacements = StreamSupport.stream(Spliterators.spliteratorUnknownSize(documents, Spliterator.ORDERED), false)
+                .map(document -> BulkCloudEventUpdate.replacementOf(cloudEventSerializer, timeRepresentation, document, updateFunction))
+                .iterator();
+        BulkCloudEventUpdate.writeInBatches(replacements, batch -> eventCollection.bulkWrite(batch, BulkCloudEventUpdate.BULK_WRITE_OPTIONS));
+    }
+
     private Optional<CloudEvent> updateCloudEvent(Function<CloudEvent, CloudEvent> fn, Supplier<FindIterable<Document>> cloudEventFinder, Function<Document, UpdateResult> cloudEventUpdater) {
         Document document = cloudEventFinder.get().first();
         if (document == null) {
@@ -285,6 +369,47 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
                 .map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
     }
 
+    @Override
+    public Stream<CloudEvent> parallelQuery(Filter filter, int parallelism) {
+        return ParallelPartitionScan.unordered(partitionQueries(filter, parallelism), parallelism);
+    }
+
+    @Override
+    public void parallelQuery(Filter filter, int parallelism, BiConsumer<Integer, CloudEvent> action) {
+        ParallelPartitionScan.orderedPerPartition(partitionQueries(filter, parallelism), parallelism, action);
+    }
+
+    // Split the documents matching the filter into _id ranges, each range is read (and deserialized) by its own cursor
+    private List<Supplier<Stream<CloudEvent>>> partitionQueries(Filter filter, int parallelism) {
+        requireNonNull(filter, "Filter cannot be null");
+        final Bson query = FilterToBsonFilterConverter.convertFilterToBsonFilter(timeRepresentation, filter);
+        Document first = eventCollection.find(query).sort(ascending(ID)).projection(Projections.include(ID)).first();
+        Document last = eventCollection.find(query).sort(descending(ID)).projection(Projections.include(ID)).first();
+        if (first == null || last == null) {
+            return Collections.emptyList();
+        }
+
+        return ObjectIdPartitioner.partition(first.getObjectId(ID), last.getObjectId(ID), parallelism * ParallelPartitionScan.PARTITIONS_PER_THREAD).stream()
+                .<Supplier<Stream<CloudEvent>>>map(range -> () -> {
+                    MongoCursor<Document> cursor = eventCollection.find(and(query, range.toBsonFilter())).sort(ascending(ID)).iterator();
+                    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                            .onClose(cursor::close)
+                            .map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Diagnose whether the supplied {@code filter} can be served by the indexes maintained by this event store (the indexes required by the
+     * event store as well as the indexes defined in the {@link IndexProfile}). Use this to find queries that would result in a collection scan.
+     *
+     * @param filter The filter to diagnose
+     * @return The {@link FilterShape}'s of the {@code filter} that are not covered by any index, or an empty list if the filter is covered.
+     */
+    public List<FilterShape> filterShapesNotCoveredByIndex(Filter filter) {
+        return EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, filter);
+    }
+
     private static class EventStreamImpl<T> implements EventStream<T> {
         private final String id;
         private final long version;
@@ -313,17 +438,18 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
 
     }
 
-    private static void initializeEventStore(MongoCollection<Document> eventStoreCollection, MongoDatabase mongoDatabase) {
+    private static void initializeEventStore(MongoCollection<Document> eventStoreCollection, MongoDatabase mongoDatabase, List<IndexDefinition> indexDefinitions, TimeRepresentation timeRepresentation) {
         String eventStoreCollectionName = eventStoreCollection.getNamespace().getCollectionName();
         if (!collectionExists(mongoDatabase, eventStoreCollectionName)) {
             mongoDatabase.createCollection(eventStoreCollectionName);
         }
-        // Create a streamId index
-        eventStoreCollection.createIndex(Indexes.ascending(OccurrentCloudEventExtension.STREAM_ID));
-        // Cloud spec defines id + source must be unique!
-        eventStoreCollection.createIndex(Indexes.compoundIndex(Indexes.ascending("id"), Indexes.ascending("source")), new IndexOptions().unique(true));
-        // Create a streamId + streamVersion index
-        eventStoreCollection.createIndex(Indexes.compoundIndex(Indexes.ascending(OccurrentCloudEventExtension.STREAM_ID), Indexes.descending(OccurrentCloudEventExtension.STREAM_VERSION)), new IndexOptions().unique(true));
+
+        // Create the indexes required by the event store as well as the indexes in the index profile, and drop indexes that are no longer needed
+        IndexReconciliationPlan plan = EventStoreIndexes.reconcile(eventStoreCollection.listIndexes(), indexDefinitions, timeRepresentation);
+        plan.indexesToDrop.forEach(eventStoreCollection::dropIndex);
+        if (!plan.indexesToCreate.isEmpty()) {
+            eventStoreCollection.createIndexes(plan.indexesToCreate);
+        }
     }
 
     private static boolean collectionExists(MongoDatabase mongoDatabase, String collectionName) {
@@ -23,11 +23,14 @@ import com.mongodb.ConnectionString;
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.builder.CloudEventBuilder;
 import io.github.artsok.RepeatedIfExceptionsTest;
+import org.bson.Document;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.condition.EnabledForJreRange;
@@ -42,6 +45,9 @@ import org.occurrent.eventstore.api.WriteCondition;
 import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
 import org.occurrent.eventstore.api.blocking.EventStoreQueries;
 import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.mongodb.index.FilterShape;
+import org.occurrent.eventstore.mongodb.index.IndexDefinition;
+import org.occurrent.eventstore.mongodb.index.IndexProfile;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
 import org.testcontainers.containers.MongoDBContainer;
@@ -56,14 +62,17 @@ import java.time.ZoneId;
 import java.util.List;
 import java.util.Map;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static io.vavr.API.*;
 import static io.vavr.Predicates.is;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.ZoneOffset.UTC;
+import static java.util.Objects.requireNonNull;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.junit.jupiter.api.Assertions.assertAll;
@@ -230,6 +239,91 @@ class MongoEventStoreTest {
         );
     }
 
+    @Test
+    void read_version_range_returns_events_within_the_version_range() {
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+        NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+
+        // When
+        persist("name", streamVersionEq(0), Stream.of(nameDefined, nameWasChanged1, nameWasChanged2));
+
+        // Then
+        EventStream<CloudEvent> eventStream = eventStore.readVersionRange("name", 1, 2);
+        List<DomainEvent> readEvents = deserialize(eventStream.events());
+
+        assertAll(
+                () -> assertThat(eventStream.version()).isEqualTo(3),
+                () -> assertThat(readEvents).containsExactly(nameWasChanged1)
+        );
+    }
+
+    @Test
+    void read_from_version_returns_events_after_the_version() {
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+        NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+
+        // When
+        persist("name", streamVersionEq(0), Stream.of(nameDefined, nameWasChanged1, nameWasChanged2));
+
+        // Then
+        EventStream<CloudEvent> eventStream = eventStore.readFromVersion("name", 1);
+        List<DomainEvent> readEvents = deserialize(eventStream.events());
+
+        assertAll(
+                () -> assertThat(eventStream.version()).isEqualTo(3),
+                () -> assertThat(readEvents).containsExactly(nameWasChanged1, nameWasChanged2)
+        );
+    }
+
+    @Test
+    void read_reversed_returns_the_latest_events_in_descending_order() {
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+        NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+
+        // When
+        persist("name", streamVersionEq(0), Stream.of(nameDefined, nameWasChanged1, nameWasChanged2));
+
+        // Then
+        EventStream<CloudEvent> eventStream = eventStore.readReversed("name", 2);
+        List<DomainEvent> readEvents = deserialize(eventStream.events());
+
+        assertAll(
+                () -> assertThat(eventStream.version()).isEqualTo(3),
+                () -> assertThat(readEvents).containsExactly(nameWasChanged2, nameWasChanged1)
+        );
+    }
+
+    @Test
+    void read_multiple_streams_returns_an_event_stream_per_stream_id_in_the_requested_order() {
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+
+        // When
+        persist("name1", streamVersionEq(0), Stream.of(nameDefined1, nameWasChanged1));
+        persist("name2", streamVersionEq(0), Stream.of(nameDefined2));
+
+        // Then
+        Map<String, EventStream<CloudEvent>> eventStreams = eventStore.read(Arrays.asList("name2", "missing", "name1"));
+
+        assertAll(
+                () -> assertThat(eventStreams.keySet()).containsExactly("name2", "missing", "name1"),
+                () -> assertThat(eventStreams.get("name1").version()).isEqualTo(2),
+                () -> assertThat(deserialize(eventStreams.get("name1").events())).containsExactly(nameDefined1, nameWasChanged1),
+                () -> assertThat(eventStreams.get("name2").version()).isEqualTo(1),
+                () -> assertThat(deserialize(eventStreams.get("name2").events())).containsExactly(nameDefined2),
+                () -> assertThat(eventStreams.get("missing").version()).isZero(),
+                () -> assertThat(eventStreams.get("missing").events()).isEmpty()
+        );
+    }
+
     @Test
     void read_skew_is_not_allowed_for_native_implementation() {
         LocalDateTime now = LocalDateTime.now();
@@ -356,6 +450,27 @@ class MongoEventStoreTest {
                     () -> assertThat(database.getCollection("events").countDocuments(Filters.eq(STREAM_ID, "name"))).isNotZero()
             );
         }
+
+        @Test
+        void delete_by_filter_deletes_all_matching_events_in_all_event_streams() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+            persist("name1", Stream.of(nameDefined1, nameWasChanged1));
+            persist("name2", nameDefined2);
+
+            // When
+            eventStore.delete(type(NameDefined.class.getSimpleName()));
+
+            // Then
+            assertAll(
+                    () -> assertThat(deserialize(eventStore.read("name1").events())).containsExactly(nameWasChanged1),
+                    () -> assertThat(eventStore.exists("name2")).isFalse(),
+                    () -> assertThat(database.getCollection("events").countDocuments()).isEqualTo(1)
+            );
+        }
     }
 
     @Nested
@@ -449,6 +564,38 @@ class MongoEventStoreTest {
             // Then
             assertThat(updatedCloudEvent).isEmpty();
         }
+
+        @Test
+        void update_by_filter_updates_all_matching_events_in_all_event_streams() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+            persist("name1", Stream.of(nameDefined1, nameWasChanged1));
+            persist("name2", nameDefined2);
+
+            // When
+            eventStore.update(type(NameDefined.class.getSimpleName()), cloudEvent -> CloudEventBuilder.v1(cloudEvent).withSubject("anonymous").build());
+
+            // Then
+            Stream<CloudEvent> events = eventStore.all();
+            assertThat(events.map(CloudEvent::getSubject)).containsExactly("anonymous", "WasChanged", "anonymous");
+        }
+
+        @Test
+        void update_by_filter_writes_all_events_when_events_span_several_batches() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            int numberOfEvents = 1234;
+            persist("name", IntStream.range(0, numberOfEvents).mapToObj(i -> new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(i), "name" + i)));
+
+            // When
+            eventStore.update(streamId("name"), cloudEvent -> CloudEventBuilder.v1(cloudEvent).withSubject("anonymous").build());
+
+            // Then
+            assertThat(eventStore.query(subject("anonymous")).count()).isEqualTo(numberOfEvents);
+        }
     }
 
     @Nested
@@ -1325,6 +1472,102 @@ class MongoEventStoreTest {
         }
     }
 
+    @Nested
+    @DisplayName("parallel queries")
+    class ParallelQueriesTest {
+
+        @Test
+        void parallel_all_returns_all_cloud_events() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            List<DomainEvent> events = IntStream.range(0, 100).mapToObj(i -> new NameDefined(UUID.randomUUID().toString(), now, "name" + i)).collect(Collectors.toList());
+            events.forEach(event -> persist("name" + event.getName(), event));
+
+            // When
+            List<String> ids;
+            try (Stream<CloudEvent> stream = eventStore.parallelAll(4)) {
+                ids = stream.map(CloudEvent::getId).collect(Collectors.toList());
+            }
+
+            // Then
+            assertThat(ids).containsExactlyInAnyOrderElementsOf(events.stream().map(DomainEvent::getEventId).collect(Collectors.toList()));
+        }
+
+        @Test
+        void parallel_query_invokes_action_for_each_cloud_event_matching_filter() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name1", nameDefined);
+            persist("name2", Stream.of(nameWasChanged1, nameWasChanged2));
+            List<String> ids = new CopyOnWriteArrayList<>();
+
+            // When
+            eventStore.parallelQuery(type(NameWasChanged.class.getSimpleName()), 2, (partition, cloudEvent) -> ids.add(cloudEvent.getId()));
+
+            // Then
+            assertThat(ids).containsExactlyInAnyOrder(nameWasChanged1.getEventId(), nameWasChanged2.getEventId());
+        }
+
+        @Test
+        void parallel_query_returns_empty_stream_when_no_cloud_events_matches_filter() {
+            try (Stream<CloudEvent> stream = eventStore.parallelQuery(type("unknown"), 4)) {
+                assertThat(stream).isEmpty();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("indexes")
+    class IndexesTest {
+
+        @Test
+        void creates_indexes_defined_in_index_profile_and_drops_legacy_stream_id_index() {
+            // Given
+            ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl());
+            MongoCollection<Document> eventCollection = mongoClient.getDatabase(requireNonNull(connectionString.getDatabase())).getCollection("events");
+            eventCollection.createIndex(Indexes.ascending(STREAM_ID));
+            IndexProfile indexProfile = IndexProfile.of(IndexDefinition.ascending(TYPE, TIME), IndexDefinition.ascending(SUBJECT).partial(type("NameDefined")));
+
+            // When
+            new MongoEventStore(mongoClient, connectionString.getDatabase(), "events", new EventStoreConfig(TimeRepresentation.RFC_3339_STRING, null, indexProfile));
+
+            // Then
+            List<String> indexNames = eventCollection.listIndexes().map(index -> index.getString("name")).into(new ArrayList<>());
+            assertThat(indexNames).containsExactlyInAnyOrder("_id_", "id_1_source_1", "streamId_1_streamVersion_-1", "occurrent_type_1_time_1", "occurrent_subject_1");
+        }
+
+        @Test
+        void drops_indexes_that_are_removed_from_index_profile() {
+            // Given
+            ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl());
+            MongoCollection<Document> eventCollection = mongoClient.getDatabase(requireNonNull(connectionString.getDatabase())).getCollection("events");
+            new MongoEventStore(mongoClient, connectionString.getDatabase(), "events", new EventStoreConfig(TimeRepresentation.RFC_3339_STRING, null, IndexProfile.of(IndexDefinition.ascending(TYPE))));
+
+            // When
+            new MongoEventStore(mongoClient, connectionString.getDatabase(), "events", new EventStoreConfig(TimeRepresentation.RFC_3339_STRING, null, IndexProfile.of(IndexDefinition.descending(TIME))));
+
+            // Then
+            List<String> indexNames = eventCollection.listIndexes().map(index -> index.getString("name")).into(new ArrayList<>());
+            assertThat(indexNames).containsExactlyInAnyOrder("_id_", "id_1_source_1", "streamId_1_streamVersion_-1", "occurrent_time_-1");
+        }
+
+        @Test
+        void reports_filter_shapes_that_are_not_covered_by_an_index() {
+            // Given
+            ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl());
+            MongoEventStore eventStore = new MongoEventStore(mongoClient, connectionString.getDatabase(), "events", new EventStoreConfig(TimeRepresentation.RFC_3339_STRING, null, IndexProfile.of(IndexDefinition.ascending(TYPE))));
+
+            // When
+            List<FilterShape> filterShapes = eventStore.filterShapesNotCoveredByIndex(type("NameDefined").or(subject("Defined")));
+
+            // Then
+            assertThat(filterShapes).containsExactly(new FilterShape(new TreeSet<>(Collections.singleton(SUBJECT))));
+        }
+    }
+
     private List<DomainEvent> deserialize(Stream<CloudEvent> events) {
         return events
                 .map(CloudEvent::getData)
@@ -16,6 +16,7 @@
 
 package org.occurrent.eventstore.mongodb.spring.blocking;
 
+import org.occurrent.eventstore.mongodb.index.IndexProfile;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.springframework.data.mongodb.MongoTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
@@ -31,6 +32,7 @@ public class EventStoreConfig {
     public final String eventStoreCollectionName;
     public final TransactionTemplate transactionTemplate;
     public final TimeRepresentation timeRepresentation;
+    public final IndexProfile indexProfile;
 
     /**
      * Create a new instance of {@code EventStoreConfig}.
@@ -40,12 +42,26 @@ public class EventStoreConfig {
      * @param timeRepresentation       How time should be represented in the database
      */
     public EventStoreConfig(String eventStoreCollectionName, TransactionTemplate transactionTemplate, TimeRepresentation timeRepresentation) {
+        this(eventStoreCollectionName, transactionTemplate, timeRepresentation, IndexProfile.none());
+    }
+
+    /**
+     * Create a new instance of {@code EventStoreConfig}.
+     *
+     * @param eventStoreCollectionName The collection in which the events are persisted
+     * @param transactionTemplate      The transaction template responsible to starting MongoDB transactions (see {@link Builder} for overloads).
+     * @param timeRepresentation       How time should be represented in the database
+     * @param indexProfile             The secondary indexes that the event store should create and maintain
+     */
+    public EventStoreConfig(String eventStoreCollectionName, TransactionTemplate transactionTemplate, TimeRepresentation timeRepresentation, IndexProfile indexProfile) {
         requireNonNull(eventStoreCollectionName, "Event store collection name cannot be null");
         requireNonNull(transactionTemplate, TransactionTemplate.class.getSimpleName() + " cannot be null");
         requireNonNull(timeRepresentation, TimeRepresentation.class.getSimpleName() + " cannot be null");
+        requireNonNull(indexProfile, IndexProfile.class.getSimpleName() + " cannot be null");
         this.eventStoreCollectionName = eventStoreCollectionName;
         this.transactionTemplate = transactionTemplate;
         this.timeRepresentation = timeRepresentation;
+        this.indexProfile = indexProfile;
     }
 
     @Override
@@ -55,12 +71,13 @@ public class EventStoreConfig {
         EventStoreConfig that = (EventStoreConfig) o;
         return Objects.equals(eventStoreCollectionName, that.eventStoreCollectionName) &&
                 Objects.equals(transactionTemplate, that.transactionTemplate) &&
-                timeRepresentation == that.timeRepresentation;
+                timeRepresentation == that.timeRepresentation &&
+                Objects.equals(indexProfile, that.indexProfile);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(eventStoreCollectionName, transactionTemplate, timeRepresentation);
+        return Objects.hash(eventStoreCollectionName, transactionTemplate, timeRepresentation, indexProfile);
     }
 
     @Override
@@ -69,6 +86,7 @@ public class EventStoreConfig {
                 "eventStoreCollectionName='" + eventStoreCollectionName + '\'' +
                 ", transactionTemplate=" + transactionTemplate +
                 ", timeRepresentation=" + timeRepresentation +
+                ", indexProfile=" + indexProfile +
                 '}';
     }
 
@@ -76,6 +94,7 @@ public class EventStoreConfig {
         private String eventStoreCollectionName;
         private TransactionTemplate transactionTemplate;
         private TimeRepresentation timeRepresentation;
+        private IndexProfile indexProfile = IndexProfile.none();
 
         /**
          * @param eventStoreCollectionName The collection in which the events are persisted
@@ -113,9 +132,17 @@ public class EventStoreConfig {
             return this;
         }
 
+        /**
+         * @param indexProfile The secondary indexes that the event store should create and maintain (see {@link IndexProfile}). Default is {@link IndexProfile#none()}.
+         * @return A same {@code Builder instance}
+         */
+        public Builder indexProfile(IndexProfile indexProfile) {
+            this.indexProfile = indexProfile;
+            return this;
+        }
 
         public EventStoreConfig build() {
-            return new EventStoreConfig(eventStoreCollectionName, transactionTemplate, timeRepresentation);
+            return new EventStoreConfig(eventStoreCollectionName, transactionTemplate, timeRepresentation, indexProfile);
         }
     }
 }
\ No newline at end of file
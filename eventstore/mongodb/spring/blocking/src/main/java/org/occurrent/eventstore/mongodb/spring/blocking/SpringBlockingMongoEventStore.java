@@ -18,8 +18,7 @@ package org.occurrent.eventstore.mongodb.spring.blocking;
 
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.model.IndexOptions;
-import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.WriteModel;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.format.EventFormat;
 import io.cloudevents.core.provider.EventFormatProvider;
@@ -33,22 +32,44 @@ import org.occurrent.eventstore.api.WriteCondition.StreamVersionWriteCondition;
 import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
 import org.occurrent.eventstore.api.blocking.EventStore;
 import org.occurrent.eventstore.api.blocking.EventStoreOperations;
+import org.occurrent.eventstore.api.blocking.EventStoreParallelQueries;
 import org.occurrent.eventstore.api.blocking.EventStoreQueries;
 import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.mongodb.index.FilterShape;
+import org.occurrent.eventstore.mongodb.index.IndexDefinition;
+import org.occurrent.eventstore.mongodb.index.IndexProfile;
+import org.occurrent.eventstore.mongodb.internal.BulkCloudEventUpdate;
+import org.occurrent.eventstore.mongodb.internal.EventStoreIndexes;
+import org.occurrent.eventstore.mongodb.internal.EventStoreIndexes.IndexReconciliationPlan;
+import org.occurrent.eventstore.mongodb.internal.ObjectIdPartitioner;
+import org.occurrent.eventstore.mongodb.internal.ObjectIdPartitioner.ObjectIdRange;
+import org.occurrent.eventstore.mongodb.internal.ParallelPartitionScan;
 import org.occurrent.filter.Filter;
 import org.occurrent.mongodb.spring.filterqueryconversion.internal.FilterConverter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.util.StreamUtils;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -69,7 +90,7 @@ import static org.springframework.data.mongodb.core.query.Criteria.where;
  * This is an {@link EventStore} that stores events in MongoDB using Spring's {@link MongoTemplate}.
  * It also supports the {@link EventStoreOperations} and {@link EventStoreQueries} contracts.
  */
-public class SpringBlockingMongoEventStore implements EventStore, EventStoreOperations, EventStoreQueries {
+public class SpringBlockingMongoEventStore implements EventStore, EventStoreOperations, EventStoreQueries, EventStoreParallelQueries {
 
     private static final String ID = "_id";
 
@@ -78,6 +99,7 @@ public class SpringBlockingMongoEventStore implements EventStore, EventStoreOper
     private final EventFormat cloudEventSerializer;
     private final TimeRepresentation timeRepresentation;
     private final TransactionTemplate transactionTemplate;
+    private final List<IndexDefinition> indexDefinitions;
 
     /**
      * Create a new instance of {@code SpringBlockingMongoEventStore}
@@ -87,13 +109,14 @@ public class SpringBlockingMongoEventStore implements EventStore, EventStoreOper
      */
     public SpringBlockingMongoEventStore(MongoTemplate mongoTemplate, EventStoreConfig config) {
         requireNonNull(mongoTemplate, MongoTemplate.class.getSimpleName() + " cannot be null");
-        requireNonNull(mongoTemplate, EventStoreConfig.class.getSimpleName() + " cannot be null");
+        requireNonNull(config, EventStoreConfig.class.getSimpleName() + " cannot be null");
         this.mongoTemplate = mongoTemplate;
         this.eventStoreCollectionName = config.eventStoreCollectionName;
         this.transactionTemplate = config.transactionTemplate;
         this.timeRepresentation = config.timeRepresentation;
+        this.indexDefinitions = EventStoreIndexes.indexDefinitions(config.indexProfile);
         cloudEventSerializer = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
-        initializeEventStore(eventStoreCollectionName, mongoTemplate);
+        initializeEventStore(eventStoreCollectionName, mongoTemplate, indexDefinitions, timeRepresentation);
     }
 
     @Override
@@ -102,6 +125,56 @@ public class SpringBlockingMongoEventStore implements EventStore, EventStoreOper
         return requireNonNull(eventStream).map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
     }
 
+    @Override
+    public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        final EventStream<Document> eventStream = transactionTemplate.execute(transactionStatus -> readEventStream(streamId, currentStreamVersion -> {
+            if (fromVersionExclusive >= Math.min(currentStreamVersion, toVersionInclusive)) {
+                // There are no events in the range so there's no need to query the database
+                return Stream.empty();
+            }
+            Query query = Query.query(where(STREAM_ID).is(streamId).and(STREAM_VERSION).gt(fromVersionExclusive).lte(toVersionInclusive)).with(Sort.by(ASC, STREAM_VERSION));
+            return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, Document.class, eventStoreCollectionName));
+        }));
+        return requireNonNull(eventStream).map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
+    }
+
+    @Override
+    public EventStream<CloudEvent> readReversed(String streamId, int limit) {
+        final EventStream<Document> eventStream = transactionTemplate.execute(transactionStatus -> readEventStream(streamId, currentStreamVersion -> {
+            Query query = streamIdEqualTo(streamId).with(Sort.by(DESC, STREAM_VERSION)).limit(limit);
+            return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, Document.class, eventStoreCollectionName));
+        }));
+        return requireNonNull(eventStream).map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
+    }
+
+    @Override
+    public Map<String, EventStream<CloudEvent>> read(Collection<String> streamIds) {
+        requireNonNull(streamIds, "Stream ids cannot be null");
+        Set<String> distinctStreamIds = new LinkedHashSet<>(streamIds);
+        final Map<String, List<CloudEvent>> eventsByStreamId;
+        if (distinctStreamIds.isEmpty()) {
+            eventsByStreamId = Collections.emptyMap();
+        } else {
+            // All event streams are read using a single query that is served by the stream id and stream version index
+            Query query = Query.query(where(STREAM_ID).in(distinctStreamIds)).with(Sort.by(ASC, STREAM_ID, STREAM_VERSION));
+            eventsByStreamId = transactionTemplate.execute(transactionStatus -> {
+                Map<String, List<CloudEvent>> events = new HashMap<>();
+                mongoTemplate.find(query, Document.class, eventStoreCollectionName)
+                        .forEach(document -> events.computeIfAbsent(document.getString(STREAM_ID), __ -> new ArrayList<>())
+                                .add(convertToCloudEvent(cloudEventSerializer, timeRepresentation, document)));
+                return events;
+            });
+        }
+
+        Map<String, EventStream<CloudEvent>> eventStreams = new LinkedHashMap<>();
+        for (String streamId : distinctStreamIds) {
+            List<CloudEvent> events = requireNonNull(eventsByStreamId).getOrDefault(streamId, Collections.emptyList());
+            long version = events.isEmpty() ? 0 : OccurrentExtensionGetter.getStreamVersion(events.get(events.size() - 1));
+            eventStreams.put(streamId, new EventStreamImpl<>(streamId, version, events.stream()));
+        }
+        return eventStreams;
+    }
+
     @Override
     public void write(String streamId, WriteCondition writeCondition, Stream<CloudEvent> events) {
         if (writeCondition == null) {
@@ -174,6 +247,33 @@ public class SpringBlockingMongoEventStore implements EventStore, EventStoreOper
         return transactionTemplate.execute(__ -> logic.apply(updateFunction));
     }
 
+    @Override
+    public void delete(Filter filter) {
+        requireNonNull(filter, "Filter cannot be null");
+        mongoTemplate.remove(FilterConverter.convertFilterToQuery(timeRepresentation, filter), eventStoreCollectionName);
+    }
+
+    @Override
+    public void update(Filter filter, Function<CloudEvent, CloudEvent> updateFunction) {
+        requireNonNull(filter, "Filter cannot be null");
+        requireNonNull(updateFunction, "Update function cannot be null");
+
+        MongoCollection<Document> eventCollection = mongoTemplate.getCollection(eventStoreCollectionName);
+        Iterator<Document> documents = BulkCloudEventUpdate.readInIdOrder(lastId -> mongoTemplate.find(pageQuery(filter, lastId), Document.class, eventStoreCollectionName));
+        Iterator<WriteModel<Document>> replacements = StreamUtils.createStreamFromIterator(documents)
+                .map(document -> BulkCloudEventUpdate.replacementOf(cloudEventSerializer, timeRepresentation, document, updateFunction))
+                .iterator();
+        BulkCloudEventUpdate.writeInBatches(replacements, batch -> eventCollection.bulkWrite(batch, BulkCloudEventUpdate.BULK_WRITE_OPTIONS));
+    }
+
+    private Query pageQuery(Filter filter, Object lastId) {
+        Query query = FilterConverter.convertFilterToQuery(timeRepresentation, filter);
+        if (lastId != null) {
+            query.addCriteria(where(ID).gt(lastId));
+        }
+        return query.with(Sort.by(ASC, ID)).limit(BulkCloudEventUpdate.BATCH_SIZE);
+    }
+
     // Queries
     @Override
     public Stream<CloudEvent> query(Filter filter, int skip, int limit, SortBy sortBy) {
@@ -183,6 +283,57 @@ public class SpringBlockingMongoEventStore implements EventStore, EventStoreOper
                 .map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
     }
 
+    @Override
+    public Stream<CloudEvent> parallelQuery(Filter filter, int parallelism) {
+        return ParallelPartitionScan.unordered(partitionQueries(filter, parallelism), parallelism);
+    }
+
+    @Override
+    public void parallelQuery(Filter filter, int parallelism, BiConsumer<Integer, CloudEvent> action) {
+        ParallelPartitionScan.orderedPerPartition(partitionQueries(filter, parallelism), parallelism, action);
+    }
+
+    // Split the documents matching the filter into _id ranges, each range is read (and deserialized) by its own cursor
+    private List<Supplier<Stream<CloudEvent>>> partitionQueries(Filter filter, int parallelism) {
+        requireNonNull(filter, "Filter cannot be null");
+        Document first = findIdOfFirstDocumentMatching(filter, ASC);
+        Document last = findIdOfFirstDocumentMatching(filter, DESC);
+        if (first == null || last == null) {
+            return Collections.emptyList();
+        }
+
+        return ObjectIdPartitioner.partition(first.getObjectId(ID), last.getObjectId(ID), parallelism * ParallelPartitionScan.PARTITIONS_PER_THREAD).stream()
+                .<Supplier<Stream<CloudEvent>>>map(range -> () -> {
+                    Criteria criteria = new Criteria().andOperator(FilterConverter.convertFilterToCriteria(null, timeRepresentation, filter), idWithin(range));
+                    Query query = Query.query(criteria).with(Sort.by(ASC, ID));
+                    return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, Document.class, eventStoreCollectionName))
+                            .map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
+                })
+                .collect(Collectors.toList());
+    }
+
+    private Document findIdOfFirstDocumentMatching(Filter filter, Sort.Direction direction) {
+        Query query = FilterConverter.convertFilterToQuery(timeRepresentation, filter).with(Sort.by(direction, ID)).limit(1);
+        query.fields().include(ID);
+        return mongoTemplate.findOne(query, Document.class, eventStoreCollectionName);
+    }
+
+    private static Criteria idWithin(ObjectIdRange range) {
+        Criteria criteria = where(ID).gte(range.fromInclusive);
+        return range.toInclusive ? criteria.lte(range.to) : criteria.lt(range.to);
+    }
+
+    /**
+     * Diagnose whether the supplied {@code filter} can be served by the indexes maintained by this event store (the indexes required by the
+     * event store as well as the indexes defined in the {@link IndexProfile}). Use this to find queries that would result in a collection scan.
+     *
+     * @param filter The filter to diagnose
+     * @return The {@link FilterShape}'s of the {@code filter} that are not covered by any index, or an empty list if the filter is covered.
+     */
+    public List<FilterShape> filterShapesNotCoveredByIndex(Filter filter) {
+        return EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, filter);
+    }
+
     // Data structures etc
     @SuppressWarnings("unused")
     private static class EventStreamImpl<T> implements EventStream<T> {
@@ -255,12 +406,16 @@ public class SpringBlockingMongoEventStore implements EventStore, EventStoreOper
     }
 
     private EventStreamImpl<Document> readEventStream(String streamId, int skip, int limit) {
+        return readEventStream(streamId, currentStreamVersion -> readCloudEvents(streamIdEqualTo(streamId), skip, limit, SortBy.NATURAL_ASC));
+    }
+
+    private EventStreamImpl<Document> readEventStream(String streamId, Function<Long, Stream<Document>> readCloudEvents) {
         long currentStreamVersion = currentStreamVersion(streamId);
         if (currentStreamVersion == 0) {
             return new EventStreamImpl<>(streamId, 0, Stream.empty());
         }
 
-        Stream<Document> stream = readCloudEvents(streamIdEqualTo(streamId), skip, limit, SortBy.NATURAL_ASC);
+        Stream<Document> stream = readCloudEvents.apply(currentStreamVersion);
         return new EventStreamImpl<>(streamId, currentStreamVersion, stream);
     }
 
@@ -284,10 +439,10 @@ public class SpringBlockingMongoEventStore implements EventStore, EventStoreOper
 
         switch (sortBy) {
             case TIME_ASC:
-                query.with(Sort.by(ASC, TIME));
+                query.with(Sort.by(ASC, TIME, STREAM_ID, STREAM_VERSION));
                 break;
             case TIME_DESC:
-                query.with(Sort.by(DESC, TIME));
+                query.with(Sort.by(DESC, TIME, STREAM_ID, STREAM_VERSION));
                 break;
             case NATURAL_ASC:
                 break;
@@ -302,16 +457,17 @@ public class SpringBlockingMongoEventStore implements EventStore, EventStoreOper
     }
 
     // Initialization
-    private static void initializeEventStore(String eventStoreCollectionName, MongoTemplate mongoTemplate) {
+    private static void initializeEventStore(String eventStoreCollectionName, MongoTemplate mongoTemplate, List<IndexDefinition> indexDefinitions, TimeRepresentation timeRepresentation) {
         if (!mongoTemplate.collectionExists(eventStoreCollectionName)) {
             mongoTemplate.createCollection(eventStoreCollectionName);
         }
         MongoCollection<Document> eventStoreCollection = mongoTemplate.getCollection(eventStoreCollectionName);
-        eventStoreCollection.createIndex(Indexes.ascending(STREAM_ID));
-        // Cloud spec defines id + source must be unique!
-        eventStoreCollection.createIndex(Indexes.compoundIndex(Indexes.ascending("id"), Indexes.ascending("source")), new IndexOptions().unique(true));
-        // Create a streamId + streamVersion index
-        eventStoreCollection.createIndex(Indexes.compoundIndex(Indexes.ascending(STREAM_ID), Indexes.descending(STREAM_VERSION)), new IndexOptions().unique(true));
+        // Create the indexes required by the event store as well as the indexes in the index profile, and drop indexes that are no longer needed
+        IndexReconciliationPlan plan = EventStoreIndexes.reconcile(eventStoreCollection.listIndexes(), indexDefinitions, timeRepresentation);
+        plan.indexesToDrop.forEach(eventStoreCollection::dropIndex);
+        if (!plan.indexesToCreate.isEmpty()) {
+            eventStoreCollection.createIndexes(plan.indexesToCreate);
+        }
 
         // SessionSynchronization need to be "ALWAYS" in order for TransactionTemplate to work with mongo template!
         // See https://docs.spring.io/spring-data/mongodb/docs/current/reference/html/#mongo.transactions.transaction-template
@@ -16,6 +16,7 @@
 
 package org.occurrent.eventstore.mongodb.spring.reactor;
 
+import org.occurrent.eventstore.mongodb.index.IndexProfile;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.springframework.transaction.ReactiveTransactionManager;
 import org.springframework.transaction.reactive.TransactionalOperator;
@@ -31,6 +32,7 @@ public class EventStoreConfig {
     public final String eventStoreCollectionName;
     public final TransactionalOperator transactionalOperator;
     public final TimeRepresentation timeRepresentation;
+    public final IndexProfile indexProfile;
 
     /**
      * Create a new instance of {@code EventStoreConfig}.
@@ -40,12 +42,26 @@ public class EventStoreConfig {
      * @param timeRepresentation       How time should be represented in the database
      */
     public EventStoreConfig(String eventStoreCollectionName, TransactionalOperator transactionalOperator, TimeRepresentation timeRepresentation) {
+        this(eventStoreCollectionName, transactionalOperator, timeRepresentation, IndexProfile.none());
+    }
+
+    /**
+     * Create a new instance of {@code EventStoreConfig}.
+     *
+     * @param eventStoreCollectionName The collection in which the events are persisted
+     * @param transactionalOperator    The transactional operator responsible to starting MongoDB transactions (see {@link Builder} for overloads).
+     * @param timeRepresentation       How time should be represented in the database
+     * @param indexProfile             The secondary indexes that the event store should create and maintain
+     */
+    public EventStoreConfig(String eventStoreCollectionName, TransactionalOperator transactionalOperator, TimeRepresentation timeRepresentation, IndexProfile indexProfile) {
         requireNonNull(eventStoreCollectionName, "Event store collection name cannot be null");
         requireNonNull(transactionalOperator, TransactionalOperator.class.getSimpleName() + " cannot be null");
         requireNonNull(timeRepresentation, TimeRepresentation.class.getSimpleName() + " cannot be null");
+        requireNonNull(indexProfile, IndexProfile.class.getSimpleName() + " cannot be null");
         this.eventStoreCollectionName = eventStoreCollectionName;
         this.transactionalOperator = transactionalOperator;
         this.timeRepresentation = timeRepresentation;
+        this.indexProfile = indexProfile;
     }
 
 
@@ -56,12 +72,13 @@ public class EventStoreConfig {
         EventStoreConfig that = (EventStoreConfig) o;
         return Objects.equals(eventStoreCollectionName, that.eventStoreCollectionName) &&
                 Objects.equals(transactionalOperator, that.transactionalOperator) &&
-                timeRepresentation == that.timeRepresentation;
+                timeRepresentation == that.timeRepresentation &&
+                Objects.equals(indexProfile, that.indexProfile);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(eventStoreCollectionName, transactionalOperator, timeRepresentation);
+        return Objects.hash(eventStoreCollectionName, transactionalOperator, timeRepresentation, indexProfile);
     }
 
     @Override
@@ -70,6 +87,7 @@ public class EventStoreConfig {
                 "eventStoreCollectionName='" + eventStoreCollectionName + '\'' +
                 ", transactionTemplate=" + transactionalOperator +
                 ", timeRepresentation=" + timeRepresentation +
+                ", indexProfile=" + indexProfile +
                 '}';
     }
 
@@ -77,6 +95,7 @@ public class EventStoreConfig {
         private String eventStoreCollectionName;
         private TransactionalOperator transactionalOperator;
         private TimeRepresentation timeRepresentation;
+        private IndexProfile indexProfile = IndexProfile.none();
 
         /**
          * @param eventStoreCollectionName The collection in which the events are persisted
@@ -114,9 +133,17 @@ public class EventStoreConfig {
             return this;
         }
 
+        /**
+         * @param indexProfile The secondary indexes that the event store should create and maintain (see {@link IndexProfile}). Default is {@link IndexProfile#none()}.
+         * @return A same {@code Builder instance}
+         */
+        public Builder indexProfile(IndexProfile indexProfile) {
+            this.indexProfile = indexProfile;
+            return this;
+        }
 
         public EventStoreConfig build() {
-            return new EventStoreConfig(eventStoreCollectionName, transactionalOperator, timeRepresentation);
+            return new EventStoreConfig(eventStoreCollectionName, transactionalOperator, timeRepresentation, indexProfile);
         }
     }
 }
\ No newline at end of file
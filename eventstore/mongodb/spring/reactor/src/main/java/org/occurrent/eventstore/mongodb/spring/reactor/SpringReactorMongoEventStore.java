@@ -17,15 +17,13 @@
 package org.occurrent.eventstore.mongodb.spring.reactor;
 
 import com.mongodb.MongoBulkWriteException;
-import com.mongodb.client.model.IndexOptions;
-import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.reactivestreams.client.MongoCollection;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.format.EventFormat;
 import io.cloudevents.core.provider.EventFormatProvider;
 import io.cloudevents.jackson.JsonFormat;
 import org.bson.Document;
-import org.bson.conversions.Bson;
 import org.occurrent.cloudevents.OccurrentCloudEventExtension;
 import org.occurrent.cloudevents.OccurrentExtensionGetter;
 import org.occurrent.eventstore.api.LongConditionEvaluator;
@@ -33,9 +31,18 @@ import org.occurrent.eventstore.api.WriteCondition;
 import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
 import org.occurrent.eventstore.api.reactor.EventStore;
 import org.occurrent.eventstore.api.reactor.EventStoreOperations;
+import org.occurrent.eventstore.api.reactor.EventStoreParallelQueries;
 import org.occurrent.eventstore.api.reactor.EventStoreQueries;
 import org.occurrent.eventstore.api.reactor.EventStream;
+import org.occurrent.eventstore.mongodb.index.FilterShape;
+import org.occurrent.eventstore.mongodb.index.IndexDefinition;
+import org.occurrent.eventstore.mongodb.index.IndexProfile;
+import org.occurrent.eventstore.mongodb.internal.BulkCloudEventUpdate;
+import org.occurrent.eventstore.mongodb.internal.EventStoreIndexes;
 import org.occurrent.eventstore.mongodb.internal.MongoBulkWriteExceptionToDuplicateCloudEventExceptionTranslator;
+import org.occurrent.eventstore.mongodb.internal.ObjectIdPartitioner;
+import org.occurrent.eventstore.mongodb.internal.ObjectIdPartitioner.ObjectIdRange;
+import org.occurrent.eventstore.mongodb.internal.ParallelPartitionScan;
 import org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDBDocumentMapper;
 import org.occurrent.filter.Filter;
 import org.occurrent.mongodb.spring.filterqueryconversion.internal.FilterConverter;
@@ -43,13 +50,24 @@ import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
@@ -62,9 +80,9 @@ import static org.springframework.data.mongodb.core.query.Criteria.where;
 /**
  * This is a reactive {@link EventStore} implementation that stores events in MongoDB using
  * Spring's {@link ReactiveMongoTemplate} that is based on <a href="https://projectreactor.io/">project reactor</a>.
- * It also supports the {@link EventStoreOperations} and {@link EventStoreQueries} contracts.
+ * It also supports the {@link EventStoreOperations}, {@link EventStoreQueries} and {@link EventStoreParallelQueries} contracts.
  */
-public class SpringReactorMongoEventStore implements EventStore, EventStoreOperations, EventStoreQueries {
+public class SpringReactorMongoEventStore implements EventStore, EventStoreOperations, EventStoreQueries, EventStoreParallelQueries {
 
     private static final String ID = "_id";
 
@@ -73,6 +91,7 @@ public class SpringReactorMongoEventStore implements EventStore, EventStoreOpera
     private final EventFormat cloudEventSerializer;
     private final TimeRepresentation timeRepresentation;
     private final TransactionalOperator transactionalOperator;
+    private final List<IndexDefinition> indexDefinitions;
 
     /**
      * Create a new instance of {@code SpringReactorMongoEventStore}
@@ -87,8 +106,9 @@ public class SpringReactorMongoEventStore implements EventStore, EventStoreOpera
         this.eventStoreCollectionName = config.eventStoreCollectionName;
         this.transactionalOperator = config.transactionalOperator;
         this.timeRepresentation = config.timeRepresentation;
+        this.indexDefinitions = EventStoreIndexes.indexDefinitions(config.indexProfile);
         cloudEventSerializer = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
-        initializeEventStore(eventStoreCollectionName, mongoTemplate).block();
+        initializeEventStore(eventStoreCollectionName, mongoTemplate, indexDefinitions, timeRepresentation).block();
     }
 
     @Override
@@ -145,11 +165,66 @@ public class SpringReactorMongoEventStore implements EventStore, EventStoreOpera
         return convertToCloudEvent(cloudEventSerializer, timeRepresentation, eventStream);
     }
 
+    @Override
+    public Mono<EventStream<CloudEvent>> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        Mono<EventStreamImpl> eventStream = transactionalOperator.execute(transactionStatus -> readEventStream(streamId, currentStreamVersion -> {
+            if (fromVersionExclusive >= Math.min(currentStreamVersion, toVersionInclusive)) {
+                // There are no events in the range so there's no need to query the database
+                return Flux.empty();
+            }
+            Query query = Query.query(where(OccurrentCloudEventExtension.STREAM_ID).is(streamId).and(OccurrentCloudEventExtension.STREAM_VERSION).gt(fromVersionExclusive).lte(toVersionInclusive))
+                    .with(Sort.by(ASC, OccurrentCloudEventExtension.STREAM_VERSION));
+            return mongoTemplate.find(query, Document.class, eventStoreCollectionName);
+        })).single();
+        return convertToCloudEvent(cloudEventSerializer, timeRepresentation, eventStream);
+    }
+
+    @Override
+    public Mono<EventStream<CloudEvent>> readReversed(String streamId, int limit) {
+        Mono<EventStreamImpl> eventStream = transactionalOperator.execute(transactionStatus -> readEventStream(streamId, currentStreamVersion -> {
+            Query query = streamIdEqualTo(streamId).with(Sort.by(DESC, OccurrentCloudEventExtension.STREAM_VERSION)).limit(limit);
+            return mongoTemplate.find(query, Document.class, eventStoreCollectionName);
+        })).single();
+        return convertToCloudEvent(cloudEventSerializer, timeRepresentation, eventStream);
+    }
+
+    @Override
+    public Mono<Map<String, EventStream<CloudEvent>>> read(Collection<String> streamIds) {
+        requireNonNull(streamIds, "Stream ids cannot be null");
+        Set<String> distinctStreamIds = new LinkedHashSet<>(streamIds);
+        final Mono<Map<String, List<Document>>> documentsByStreamId;
+        if (distinctStreamIds.isEmpty()) {
+            documentsByStreamId = Mono.just(Collections.emptyMap());
+        } else {
+            // All event streams are read using a single query that is served by the stream id and stream version index
+            Query query = Query.query(where(OccurrentCloudEventExtension.STREAM_ID).in(distinctStreamIds))
+                    .with(Sort.by(ASC, OccurrentCloudEventExtension.STREAM_ID, OccurrentCloudEventExtension.STREAM_VERSION));
+            documentsByStreamId = transactionalOperator.execute(transactionStatus -> mongoTemplate.find(query, Document.class, eventStoreCollectionName))
+                    .collect(HashMap::new, (documents, document) -> documents.computeIfAbsent(document.getString(OccurrentCloudEventExtension.STREAM_ID), __ -> new ArrayList<>()).add(document));
+        }
+
+        return documentsByStreamId.map(documents -> {
+            Map<String, EventStream<CloudEvent>> eventStreams = new LinkedHashMap<>();
+            for (String streamId : distinctStreamIds) {
+                List<Document> documentsForStream = documents.getOrDefault(streamId, Collections.emptyList());
+                long version = documentsForStream.isEmpty() ? 0 : documentsForStream.get(documentsForStream.size() - 1).getLong(OccurrentCloudEventExtension.STREAM_VERSION);
+                EventStream<CloudEvent> eventStream = new EventStreamImpl(streamId, version, Flux.fromIterable(documentsForStream))
+                        .map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
+                eventStreams.put(streamId, eventStream);
+            }
+            return eventStreams;
+        });
+    }
+
     // Read
     private Mono<EventStreamImpl> readEventStream(String streamId, int skip, int limit) {
+        return readEventStream(streamId, currentStreamVersion -> readCloudEvents(streamIdEqualTo(streamId), skip, limit, SortBy.NATURAL_ASC));
+    }
+
+    private Mono<EventStreamImpl> readEventStream(String streamId, Function<Long, Flux<Document>> readCloudEvents) {
         return currentStreamVersion(streamId)
                 .flatMap(currentStreamVersion -> {
-                    Flux<Document> cloudEventDocuments = readCloudEvents(streamIdEqualTo(streamId), skip, limit, SortBy.NATURAL_ASC);
+                    Flux<Document> cloudEventDocuments = readCloudEvents.apply(currentStreamVersion);
                     return Mono.just(new EventStreamImpl(streamId, currentStreamVersion, cloudEventDocuments));
                 })
                 .switchIfEmpty(Mono.fromSupplier(() -> new EventStreamImpl(streamId, 0, Flux.empty())));
@@ -162,10 +237,10 @@ public class SpringReactorMongoEventStore implements EventStore, EventStoreOpera
 
         switch (sortBy) {
             case TIME_ASC:
-                query.with(Sort.by(ASC, TIME));
+                query.with(Sort.by(ASC, TIME, OccurrentCloudEventExtension.STREAM_ID, OccurrentCloudEventExtension.STREAM_VERSION));
                 break;
             case TIME_DESC:
-                query.with(Sort.by(DESC, TIME));
+                query.with(Sort.by(DESC, TIME, OccurrentCloudEventExtension.STREAM_ID, OccurrentCloudEventExtension.STREAM_VERSION));
                 break;
             case NATURAL_ASC:
                 break;
@@ -208,27 +283,21 @@ public class SpringReactorMongoEventStore implements EventStore, EventStoreOpera
     }
 
     // Initialization
-    private static Mono<Void> initializeEventStore(String eventStoreCollectionName, ReactiveMongoTemplate mongoTemplate) {
+    private static Mono<Void> initializeEventStore(String eventStoreCollectionName, ReactiveMongoTemplate mongoTemplate, List<IndexDefinition> indexDefinitions, TimeRepresentation timeRepresentation) {
         Mono<MongoCollection<Document>> createEventStoreCollection = createCollection(eventStoreCollectionName, mongoTemplate);
 
-        // Stream id
-        Mono<String> indexStreamId = createIndex(eventStoreCollectionName, mongoTemplate, Indexes.ascending(OccurrentCloudEventExtension.STREAM_ID), new IndexOptions());
-
-        // Cloud spec defines id + source must be unique!
-        Mono<String> indexIdAndSource = createIndex(eventStoreCollectionName, mongoTemplate, Indexes.compoundIndex(Indexes.ascending("id"), Indexes.ascending("source")), new IndexOptions().unique(true));
-
-        // Create a streamId + streamVersion index
-        Mono<String> indexStreamIdAndStreamVersion = createIndex(eventStoreCollectionName, mongoTemplate, Indexes.compoundIndex(Indexes.ascending(OccurrentCloudEventExtension.STREAM_ID), Indexes.descending(OccurrentCloudEventExtension.STREAM_VERSION)), new IndexOptions().unique(true));
+        // Create the indexes required by the event store as well as the indexes in the index profile, and drop indexes that are no longer needed
+        Mono<Void> reconcileIndexes = mongoTemplate.getCollection(eventStoreCollectionName)
+                .flatMap(collection -> Flux.from(collection.listIndexes()).collectList()
+                        .map(existingIndexes -> EventStoreIndexes.reconcile(existingIndexes, indexDefinitions, timeRepresentation))
+                        .flatMap(plan -> Flux.fromIterable(plan.indexesToDrop).concatMap(indexName -> Mono.from(collection.dropIndex(indexName))).then(
+                                plan.indexesToCreate.isEmpty() ? Mono.empty() : Flux.from(collection.createIndexes(plan.indexesToCreate)).then())));
 
         // SessionSynchronization need to be "ALWAYS" in order for TransactionTemplate to work with mongo template!
         // See https://docs.spring.io/spring-data/mongodb/docs/current/reference/html/#mongo.transactions.transaction-template
         mongoTemplate.setSessionSynchronization(ALWAYS);
 
-        return createEventStoreCollection.then(indexStreamId).then(indexIdAndSource).then(indexStreamIdAndStreamVersion).then();
-    }
-
-    private static Mono<String> createIndex(String eventStoreCollectionName, ReactiveMongoTemplate mongoTemplate, Bson index, IndexOptions indexOptions) {
-        return mongoTemplate.getCollection(eventStoreCollectionName).flatMap(collection -> Mono.from(collection.createIndex(index, indexOptions)));
+        return createEventStoreCollection.then(reconcileIndexes);
     }
 
     private static Mono<MongoCollection<Document>> createCollection(String eventStoreCollectionName, ReactiveMongoTemplate mongoTemplate) {
@@ -290,6 +359,41 @@ public class SpringReactorMongoEventStore implements EventStore, EventStoreOpera
         return transactionalOperator.transactional(logic.apply(updateFunction));
     }
 
+    @Override
+    public Mono<Void> delete(Filter filter) {
+        requireNonNull(filter, "Filter cannot be null");
+        return mongoTemplate.remove(FilterConverter.convertFilterToQuery(timeRepresentation, filter), eventStoreCollectionName).then();
+    }
+
+    @Override
+    public Mono<Void> update(Filter filter, Function<CloudEvent, CloudEvent> updateFunction) {
+        requireNonNull(filter, "Filter cannot be null");
+        requireNonNull(updateFunction, "Update function cannot be null");
+
+        // Read the cloud events in pages ordered by _id so that a rewritten cloud event is never returned again (see BulkCloudEventUpdate)
+        return mongoTemplate.getCollection(eventStoreCollectionName)
+                .flatMap(eventCollection -> readPageAfter(filter, null)
+                        .expand(page -> page.size() < BulkCloudEventUpdate.BATCH_SIZE ? Mono.empty() : readPageAfter(filter, page.get(page.size() - 1).get(ID)))
+                        .concatMapIterable(Function.identity())
+                        .<WriteModel<Document>>handle((document, sink) -> {
+                            WriteModel<Document> replacement = BulkCloudEventUpdate.replacementOf(cloudEventSerializer, timeRepresentation, document, updateFunction);
+                            if (replacement != null) {
+                                sink.next(replacement);
+                            }
+                        })
+                        .buffer(BulkCloudEventUpdate.BATCH_SIZE)
+                        .flatMap(batch -> Mono.from(eventCollection.bulkWrite(batch, BulkCloudEventUpdate.BULK_WRITE_OPTIONS)), BulkCloudEventUpdate.PARALLELISM)
+                        .then());
+    }
+
+    private Mono<List<Document>> readPageAfter(Filter filter, Object lastId) {
+        Query query = FilterConverter.convertFilterToQuery(timeRepresentation, filter);
+        if (lastId != null) {
+            query.addCriteria(where(ID).gt(lastId));
+        }
+        return mongoTemplate.find(query.with(Sort.by(ASC, ID)).limit(BulkCloudEventUpdate.BATCH_SIZE), Document.class, eventStoreCollectionName).collectList();
+    }
+
     @Override
     public Flux<CloudEvent> query(Filter filter, int skip, int limit, SortBy sortBy) {
         requireNonNull(filter, "Filter cannot be null");
@@ -298,6 +402,58 @@ public class SpringReactorMongoEventStore implements EventStore, EventStoreOpera
                 .map(document -> convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
     }
 
+    @Override
+    public Flux<CloudEvent> parallelQuery(Filter filter, int parallelism) {
+        return partitionQueries(filter, parallelism).flatMap(Function.identity(), parallelism);
+    }
+
+    @Override
+    public Mono<Void> parallelQuery(Filter filter, int parallelism, BiFunction<Integer, CloudEvent, Mono<Void>> action) {
+        requireNonNull(action, "Action cannot be null");
+        return partitionQueries(filter, parallelism)
+                .index()
+                .flatMap(partition -> partition.getT2().concatMap(cloudEvent -> action.apply(partition.getT1().intValue(), cloudEvent)), parallelism)
+                .then();
+    }
+
+    // Split the documents matching the filter into _id ranges, each range is read (and deserialized) by its own cursor
+    private Flux<Flux<CloudEvent>> partitionQueries(Filter filter, int parallelism) {
+        requireNonNull(filter, "Filter cannot be null");
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero");
+        }
+        return Mono.zip(findIdOfFirstDocumentMatching(filter, ASC), findIdOfFirstDocumentMatching(filter, DESC))
+                .flatMapIterable(firstAndLast -> ObjectIdPartitioner.partition(firstAndLast.getT1().getObjectId(ID), firstAndLast.getT2().getObjectId(ID), parallelism * ParallelPartitionScan.PARTITIONS_PER_THREAD))
+                .map(range -> {
+                    Criteria criteria = new Criteria().andOperator(FilterConverter.convertFilterToCriteria(null, timeRepresentation, filter), idWithin(range));
+                    Query query = Query.query(criteria).with(Sort.by(ASC, ID));
+                    return mongoTemplate.find(query, Document.class, eventStoreCollectionName)
+                            .map(document -> OccurrentCloudEventMongoDBDocumentMapper.convertToCloudEvent(cloudEventSerializer, timeRepresentation, document));
+                });
+    }
+
+    private Mono<Document> findIdOfFirstDocumentMatching(Filter filter, Sort.Direction direction) {
+        Query query = FilterConverter.convertFilterToQuery(timeRepresentation, filter).with(Sort.by(direction, ID)).limit(1);
+        query.fields().include(ID);
+        return mongoTemplate.findOne(query, Document.class, eventStoreCollectionName);
+    }
+
+    private static Criteria idWithin(ObjectIdRange range) {
+        Criteria criteria = where(ID).gte(range.fromInclusive);
+        return range.toInclusive ? criteria.lte(range.to) : criteria.lt(range.to);
+    }
+
+    /**
+     * Diagnose whether the supplied {@code filter} can be served by the indexes maintained by this event store (the indexes required by the
+     * event store as well as the indexes defined in the {@link IndexProfile}). Use this to find queries that would result in a collection scan.
+     *
+     * @param filter The filter to diagnose
+     * @return The {@link FilterShape}'s of the {@code filter} that are not covered by any index, or an empty list if the filter is covered.
+     */
+    public List<FilterShape> filterShapesNotCoveredByIndex(Filter filter) {
+        return EventStoreIndexes.filterShapesNotCoveredBy(indexDefinitions, filter);
+    }
+
     @SuppressWarnings("unused")
     private static class EventStreamImpl implements EventStream<Document> {
         private String id;
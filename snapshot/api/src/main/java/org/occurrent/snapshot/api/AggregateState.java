@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.api;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * The state loaded by the {@link SnapshottingRepository} or the {@link AggregateStateCache}
+ *
+ * @param <S> The type of the state
+ */
+public class AggregateState<S> {
+    /**
+     * The id of the event stream
+     */
+    public final String streamId;
+    /**
+     * The state, derived from the latest snapshot and the events written after the snapshot
+     */
+    public final S state;
+    /**
+     * The version of the event stream when the state was loaded
+     */
+    public final long version;
+    /**
+     * The version of the snapshot that the state was loaded from, or {@code 0} if there was no snapshot (always {@code 0} for the {@link AggregateStateCache})
+     */
+    public final long snapshotVersion;
+    /**
+     * The time it took to load the state
+     */
+    public final Duration loadDuration;
+
+    public AggregateState(String streamId, S state, long version, long snapshotVersion, Duration loadDuration) {
+        this.streamId = streamId;
+        this.state = state;
+        this.version = version;
+        this.snapshotVersion = snapshotVersion;
+        this.loadDuration = loadDuration;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AggregateState)) return false;
+        AggregateState<?> that = (AggregateState<?>) o;
+        return version == that.version &&
+                snapshotVersion == that.snapshotVersion &&
+                Objects.equals(streamId, that.streamId) &&
+                Objects.equals(state, that.state) &&
+                Objects.equals(loadDuration, that.loadDuration);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(streamId, state, version, snapshotVersion, loadDuration);
+    }
+
+    @Override
+    public String toString() {
+        return "AggregateState{" +
+                "streamId='" + streamId + '\'' +
+                ", state=" + state +
+                ", version=" + version +
+                ", snapshotVersion=" + snapshotVersion +
+                ", loadDuration=" + loadDuration +
+                '}';
+    }
+}
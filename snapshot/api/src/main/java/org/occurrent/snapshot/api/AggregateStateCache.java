@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.api;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
+import org.occurrent.eventstore.api.blocking.EventStore;
+import org.occurrent.eventstore.api.blocking.EventStream;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.eventstore.api.WriteCondition.streamVersionEq;
+
+/**
+ * An in-process cache of state that is derived from an event stream (typically an aggregate). The cache keeps the folded state and the version of
+ * the event stream for the most recently used event streams. When the state is loaded, only the events written after the cached version are read
+ * from the {@link EventStore} (the "tail") and applied to the cached state. For event streams that are only written by this application instance
+ * this means that loading the state is reduced to a single query that returns no events.
+ * <p>
+ * After a successful {@link #write(AggregateState, Stream)} the cached entry is updated with the new state. If the write fails with
+ * {@link WriteConditionNotFulfilledException} the entry is removed from the cache and the state will be read from the event store the next time
+ * it's loaded.
+ * </p>
+ * <p>
+ * Note that the cached state is shared between all threads that load the same event stream so the state must be immutable.
+ * </p>
+ * <p>
+ * Example:
+ * <pre>
+ * AggregateStateCache&lt;Game&gt; cache = new AggregateStateCache&lt;&gt;(eventStore, Game::new, Game::apply, AggregateStateCacheConfig.defaultConfig());
+ * cache.execute(gameId, game -&gt; game.guess(number));
+ * </pre>
+ * </p>
+ *
+ * @param <S> The type of the state
+ */
+public class AggregateStateCache<S> {
+    private final EventStore eventStore;
+    private final Supplier<S> initialState;
+    private final BiFunction<S, CloudEvent, S> evolve;
+    private final AggregateStateCacheConfig config;
+    private final Map<String, CachedState<S>> cache;
+
+    /**
+     * Create a new {@link AggregateStateCache}
+     *
+     * @param eventStore   The event store
+     * @param initialState The state before any events have been applied
+     * @param evolve       Applies a cloud event to the state and returns the new state
+     * @param config       The configuration of the cache
+     */
+    public AggregateStateCache(EventStore eventStore, Supplier<S> initialState, BiFunction<S, CloudEvent, S> evolve, AggregateStateCacheConfig config) {
+        requireNonNull(eventStore, EventStore.class.getSimpleName() + " cannot be null");
+        requireNonNull(initialState, "Initial state cannot be null");
+        requireNonNull(evolve, "Evolve function cannot be null");
+        requireNonNull(config, AggregateStateCacheConfig.class.getSimpleName() + " cannot be null");
+        this.eventStore = eventStore;
+        this.initialState = initialState;
+        this.evolve = evolve;
+        this.config = config;
+        this.cache = new LinkedHashMap<String, CachedState<S>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedState<S>> eldest) {
+                return size() > config.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Load the state from the cache and apply the events written after the cached version. If the event stream is not cached, or the cached entry
+     * has expired, all events in the event stream are read.
+     *
+     * @param streamId The id of the event stream
+     * @return The loaded {@link AggregateState}
+     */
+    public AggregateState<S> load(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        long startTime = System.nanoTime();
+
+        CachedState<S> cached = get(streamId);
+        long cachedVersion = cached == null ? 0 : cached.version;
+        EventStream<CloudEvent> eventStream = eventStore.readFromVersion(streamId, cachedVersion);
+        if (eventStream.version() < cachedVersion) {
+            // The event stream has been deleted or rewritten since the state was cached so the cached state cannot be used
+            invalidate(streamId);
+            cached = null;
+            cachedVersion = 0;
+            eventStream = eventStore.readFromVersion(streamId, 0);
+        }
+
+        S state = applyEvents(cached == null ? initialState.get() : cached.state, eventStream.events());
+        put(streamId, state, eventStream.version());
+        return new AggregateState<>(streamId, state, eventStream.version(), 0, Duration.ofNanos(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Write new events to the event stream, provided that no other events have been written to the event stream since the {@code aggregateState}
+     * was loaded. The cached entry is updated with the new state if the write succeeds and removed if it fails with
+     * {@link WriteConditionNotFulfilledException}.
+     *
+     * @param aggregateState The state loaded by {@link #load(String)}
+     * @param newEvents      The events to write
+     * @return The state after the new events have been applied
+     */
+    public AggregateState<S> write(AggregateState<S> aggregateState, Stream<CloudEvent> newEvents) {
+        requireNonNull(aggregateState, AggregateState.class.getSimpleName() + " cannot be null");
+        requireNonNull(newEvents, "New events cannot be null");
+
+        List<CloudEvent> events = newEvents.collect(Collectors.toList());
+        try {
+            eventStore.write(aggregateState.streamId, streamVersionEq(aggregateState.version), events.stream());
+        } catch (WriteConditionNotFulfilledException e) {
+            invalidate(aggregateState.streamId);
+            throw e;
+        }
+
+        S newState = applyEvents(aggregateState.state, events.stream());
+        long newVersion = aggregateState.version + events.size();
+        put(aggregateState.streamId, newState, newVersion);
+        return new AggregateState<>(aggregateState.streamId, newState, newVersion, 0, aggregateState.loadDuration);
+    }
+
+    /**
+     * Load the state, invoke the {@code command} and write the events returned by the {@code command}.
+     *
+     * @param streamId The id of the event stream
+     * @param command  A function that takes the current state and returns the new events
+     * @return The state after the new events have been applied
+     */
+    public AggregateState<S> execute(String streamId, Function<S, Stream<CloudEvent>> command) {
+        requireNonNull(command, "Command cannot be null");
+        AggregateState<S> aggregateState = load(streamId);
+        return write(aggregateState, command.apply(aggregateState.state));
+    }
+
+    /**
+     * Remove the cached state of an event stream
+     *
+     * @param streamId The id of the event stream
+     */
+    public void invalidate(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        synchronized (cache) {
+            cache.remove(streamId);
+        }
+    }
+
+    /**
+     * Remove all entries from the cache
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return The number of event streams in the cache, including entries that have expired but not yet been removed.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private CachedState<S> get(String streamId) {
+        Instant now = config.clock.instant();
+        synchronized (cache) {
+            CachedState<S> cached = cache.get(streamId);
+            if (cached != null && !now.isBefore(cached.expiresAt)) {
+                cache.remove(streamId);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    private void put(String streamId, S state, long version) {
+        CachedState<S> newEntry = new CachedState<>(state, version, config.clock.instant().plus(config.timeToLive));
+        synchronized (cache) {
+            CachedState<S> existing = cache.get(streamId);
+            // Never replace an entry with state that is older than what's already cached (another thread may have loaded or written a later version)
+            if (existing == null || existing.version <= version) {
+                cache.put(streamId, newEntry);
+            }
+        }
+    }
+
+    private S applyEvents(S state, Stream<CloudEvent> events) {
+        S currentState = state;
+        for (CloudEvent event : (Iterable<CloudEvent>) events::iterator) {
+            currentState = evolve.apply(currentState, event);
+        }
+        return currentState;
+    }
+
+    private static class CachedState<S> {
+        private final S state;
+        private final long version;
+        private final Instant expiresAt;
+
+        private CachedState(S state, long version, Instant expiresAt) {
+            this.state = state;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.api;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Configuration for the {@link AggregateStateCache}
+ */
+public class AggregateStateCacheConfig {
+    private static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    public final int maximumSize;
+    public final Duration timeToLive;
+    public final Clock clock;
+
+    /**
+     * Create a new {@link AggregateStateCacheConfig}
+     *
+     * @param maximumSize The maximum number of event streams to keep in the cache. The least recently used entry is evicted when the cache is full.
+     * @param timeToLive  The time an entry is kept in the cache after it was last loaded or written.
+     * @param clock       The clock used to determine if an entry has expired
+     */
+    public AggregateStateCacheConfig(int maximumSize, Duration timeToLive, Clock clock) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be greater than zero");
+        }
+        requireNonNull(timeToLive, "Time to live cannot be null");
+        requireNonNull(clock, Clock.class.getSimpleName() + " cannot be null");
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+    }
+
+    /**
+     * @return A {@link AggregateStateCacheConfig} with default settings
+     */
+    public static AggregateStateCacheConfig defaultConfig() {
+        return new Builder().build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AggregateStateCacheConfig)) return false;
+        AggregateStateCacheConfig that = (AggregateStateCacheConfig) o;
+        return maximumSize == that.maximumSize &&
+                Objects.equals(timeToLive, that.timeToLive) &&
+                Objects.equals(clock, that.clock);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maximumSize, timeToLive, clock);
+    }
+
+    @Override
+    public String toString() {
+        return "AggregateStateCacheConfig{" +
+                "maximumSize=" + maximumSize +
+                ", timeToLive=" + timeToLive +
+                ", clock=" + clock +
+                '}';
+    }
+
+    public static final class Builder {
+        private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+        private Duration timeToLive = DEFAULT_TIME_TO_LIVE;
+        private Clock clock = Clock.systemUTC();
+
+        /**
+         * @param maximumSize The maximum number of event streams to keep in the cache (default is {@value #DEFAULT_MAXIMUM_SIZE}).
+         * @return A same {@code Builder instance}
+         */
+        public Builder maximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * @param timeToLive The time an entry is kept in the cache after it was last loaded or written (default is 10 minutes).
+         * @return A same {@code Builder instance}
+         */
+        public Builder timeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        /**
+         * @param clock The clock used to determine if an entry has expired (default is {@link Clock#systemUTC()}).
+         * @return A same {@code Builder instance}
+         */
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public AggregateStateCacheConfig build() {
+            return new AggregateStateCacheConfig(maximumSize, timeToLive, clock);
+        }
+    }
+}
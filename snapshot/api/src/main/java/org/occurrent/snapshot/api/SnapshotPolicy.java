@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.api;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decides when a new {@link Snapshot} should be taken by the {@link SnapshottingRepository}.
+ */
+@FunctionalInterface
+public interface SnapshotPolicy {
+
+    /**
+     * @param streamId        The id of the event stream
+     * @param snapshotVersion The version of the latest snapshot, or {@code 0} if no snapshot has been taken
+     * @param streamVersion   The current version of the event stream
+     * @param loadDuration    The time it took to load the state (read the latest snapshot and the events after the snapshot)
+     * @return {@code true} if a new snapshot should be taken at {@code streamVersion}, {@code false} otherwise.
+     */
+    boolean shouldTakeSnapshot(String streamId, long snapshotVersion, long streamVersion, Duration loadDuration);
+
+    /**
+     * @param numberOfEvents The number of events
+     * @return A {@link SnapshotPolicy} that takes a snapshot when at least {@code numberOfEvents} events have been written since the latest snapshot.
+     */
+    static SnapshotPolicy everyNEvents(int numberOfEvents) {
+        if (numberOfEvents < 1) {
+            throw new IllegalArgumentException("Number of events must be greater than zero");
+        }
+        return (streamId, snapshotVersion, streamVersion, loadDuration) -> streamVersion - snapshotVersion >= numberOfEvents;
+    }
+
+    /**
+     * @param duration The max load duration
+     * @return A {@link SnapshotPolicy} that takes a snapshot when loading the state took longer than the supplied {@code duration}.
+     */
+    static SnapshotPolicy whenLoadTakesLongerThan(Duration duration) {
+        requireNonNull(duration, "Duration cannot be null");
+        return (streamId, snapshotVersion, streamVersion, loadDuration) -> streamVersion > snapshotVersion && loadDuration.compareTo(duration) > 0;
+    }
+
+    /**
+     * @return A {@link SnapshotPolicy} that never takes any snapshots.
+     */
+    static SnapshotPolicy never() {
+        return (streamId, snapshotVersion, streamVersion, loadDuration) -> false;
+    }
+
+    /**
+     * @param other Another {@link SnapshotPolicy}
+     * @return A {@link SnapshotPolicy} that takes a snapshot if this policy <i>or</i> the {@code other} policy decides to take a snapshot.
+     */
+    default SnapshotPolicy or(SnapshotPolicy other) {
+        requireNonNull(other, SnapshotPolicy.class.getSimpleName() + " cannot be null");
+        return (streamId, snapshotVersion, streamVersion, loadDuration) -> shouldTakeSnapshot(streamId, snapshotVersion, streamVersion, loadDuration)
+                || other.shouldTakeSnapshot(streamId, snapshotVersion, streamVersion, loadDuration);
+    }
+}
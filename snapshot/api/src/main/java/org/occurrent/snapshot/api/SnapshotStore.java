@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.api;
+
+import java.util.Optional;
+
+/**
+ * Stores snapshots of the state derived from event streams. Only the latest snapshot of each event stream is kept.
+ */
+public interface SnapshotStore {
+
+    /**
+     * Read the latest snapshot of an event stream
+     *
+     * @param streamId The id of the event stream
+     * @return The latest {@link Snapshot} or an empty {@code Optional} if no snapshot has been taken for the event stream
+     */
+    Optional<Snapshot> read(String streamId);
+
+    /**
+     * Write a snapshot. If a snapshot with a higher version has already been written for the same event stream,
+     * the supplied snapshot is ignored.
+     *
+     * @param snapshot The snapshot to write
+     */
+    void write(Snapshot snapshot);
+
+    /**
+     * Delete the snapshot of an event stream, for example when the event stream is deleted.
+     *
+     * @param streamId The id of the event stream
+     */
+    void delete(String streamId);
+}
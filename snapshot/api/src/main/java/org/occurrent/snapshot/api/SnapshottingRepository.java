@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.api;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.eventstore.api.blocking.EventStore;
+import org.occurrent.eventstore.api.blocking.EventStream;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.eventstore.api.WriteCondition.streamVersionEq;
+
+/**
+ * Loads and stores state that is derived from an event stream (typically an aggregate) using snapshots. Instead of reading and applying all events
+ * in the event stream each time the state is loaded, the state is loaded from the latest {@link Snapshot} in the {@link SnapshotStore} and only the events
+ * written after the snapshot are read from the {@link EventStore}. New snapshots are taken after new events have been written, according to the configured
+ * {@link SnapshotPolicy}.
+ * <p>
+ * Example:
+ * <pre>
+ * SnapshottingRepository&lt;Game&gt; repository = new SnapshottingRepository&lt;&gt;(eventStore, snapshotStore, SnapshotPolicy.everyNEvents(100), serializer, Game::new, Game::apply);
+ * repository.execute(gameId, game -&gt; game.guess(number));
+ * </pre>
+ * </p>
+ *
+ * @param <S> The type of the state
+ */
+public class SnapshottingRepository<S> {
+    private final EventStore eventStore;
+    private final SnapshotStore snapshotStore;
+    private final SnapshotPolicy snapshotPolicy;
+    private final StateSerializer<S> stateSerializer;
+    private final Supplier<S> initialState;
+    private final BiFunction<S, CloudEvent, S> evolve;
+
+    /**
+     * Create a new {@link SnapshottingRepository}
+     *
+     * @param eventStore      The event store
+     * @param snapshotStore   The snapshot store
+     * @param snapshotPolicy  Decides when to take a new snapshot
+     * @param stateSerializer Serializes and deserializes the state stored in the snapshots
+     * @param initialState    The state before any events have been applied
+     * @param evolve          Applies a cloud event to the state and returns the new state
+     */
+    public SnapshottingRepository(EventStore eventStore, SnapshotStore snapshotStore, SnapshotPolicy snapshotPolicy, StateSerializer<S> stateSerializer,
+                                  Supplier<S> initialState, BiFunction<S, CloudEvent, S> evolve) {
+        requireNonNull(eventStore, EventStore.class.getSimpleName() + " cannot be null");
+        requireNonNull(snapshotStore, SnapshotStore.class.getSimpleName() + " cannot be null");
+        requireNonNull(snapshotPolicy, SnapshotPolicy.class.getSimpleName() + " cannot be null");
+        requireNonNull(stateSerializer, StateSerializer.class.getSimpleName() + " cannot be null");
+        requireNonNull(initialState, "Initial state cannot be null");
+        requireNonNull(evolve, "Evolve function cannot be null");
+        this.eventStore = eventStore;
+        this.snapshotStore = snapshotStore;
+        this.snapshotPolicy = snapshotPolicy;
+        this.stateSerializer = stateSerializer;
+        this.initialState = initialState;
+        this.evolve = evolve;
+    }
+
+    /**
+     * Load the state from the latest snapshot and the events written after the snapshot.
+     *
+     * @param streamId The id of the event stream
+     * @return The loaded {@link AggregateState}
+     */
+    public AggregateState<S> load(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        long startTime = System.nanoTime();
+
+        Optional<Snapshot> snapshot = snapshotStore.read(streamId);
+        long snapshotVersion = snapshot.map(s -> s.version).orElse(0L);
+        EventStream<CloudEvent> eventStream = readEventsAfter(streamId, snapshotVersion);
+        if (eventStream.version() < snapshotVersion) {
+            // The event stream has been deleted or rewritten since the snapshot was taken so the snapshot cannot be used
+            snapshot = Optional.empty();
+            snapshotVersion = 0;
+            eventStream = readEventsAfter(streamId, 0);
+        }
+
+        S state = snapshot.map(s -> stateSerializer.deserialize(s.state)).orElseGet(initialState);
+        state = applyEvents(state, eventStream.events());
+        return new AggregateState<>(streamId, state, eventStream.version(), snapshotVersion, Duration.ofNanos(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Write new events to the event stream, provided that no other events have been written to the event stream since the {@code aggregateState}
+     * was loaded. A new snapshot is taken if the {@link SnapshotPolicy} decides so.
+     *
+     * @param aggregateState The state loaded by {@link #load(String)}
+     * @param newEvents      The events to write
+     * @return The state after the new events have been applied
+     */
+    public AggregateState<S> write(AggregateState<S> aggregateState, Stream<CloudEvent> newEvents) {
+        requireNonNull(aggregateState, AggregateState.class.getSimpleName() + " cannot be null");
+        requireNonNull(newEvents, "New events cannot be null");
+
+        List<CloudEvent> events = newEvents.collect(Collectors.toList());
+        eventStore.write(aggregateState.streamId, streamVersionEq(aggregateState.version), events.stream());
+
+        S newState = applyEvents(aggregateState.state, events.stream());
+        long newVersion = aggregateState.version + events.size();
+        long snapshotVersion = aggregateState.snapshotVersion;
+        if (snapshotPolicy.shouldTakeSnapshot(aggregateState.streamId, snapshotVersion, newVersion, aggregateState.loadDuration)) {
+            snapshotStore.write(new Snapshot(aggregateState.streamId, newVersion, stateSerializer.serialize(newState)));
+            snapshotVersion = newVersion;
+        }
+        return new AggregateState<>(aggregateState.streamId, newState, newVersion, snapshotVersion, aggregateState.loadDuration);
+    }
+
+    /**
+     * Load the state, invoke the {@code command} and write the events returned by the {@code command}.
+     *
+     * @param streamId The id of the event stream
+     * @param command  A function that takes the current state and returns the new events
+     * @return The state after the new events have been applied
+     */
+    public AggregateState<S> execute(String streamId, Function<S, Stream<CloudEvent>> command) {
+        requireNonNull(command, "Command cannot be null");
+        AggregateState<S> aggregateState = load(streamId);
+        return write(aggregateState, command.apply(aggregateState.state));
+    }
+
+    private EventStream<CloudEvent> readEventsAfter(String streamId, long version) {
+        return eventStore.readFromVersion(streamId, version);
+    }
+
+    private S applyEvents(S state, Stream<CloudEvent> events) {
+        S currentState = state;
+        for (CloudEvent event : (Iterable<CloudEvent>) events::iterator) {
+            currentState = evolve.apply(currentState, event);
+        }
+        return currentState;
+    }
+}
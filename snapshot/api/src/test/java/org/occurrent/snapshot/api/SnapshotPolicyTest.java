@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotPolicyTest {
+
+    @Test
+    void every_n_events_takes_snapshot_when_at_least_n_events_have_been_written_since_latest_snapshot() {
+        SnapshotPolicy policy = SnapshotPolicy.everyNEvents(10);
+
+        assertThat(policy.shouldTakeSnapshot("id", 0, 9, Duration.ZERO)).isFalse();
+        assertThat(policy.shouldTakeSnapshot("id", 0, 10, Duration.ZERO)).isTrue();
+        assertThat(policy.shouldTakeSnapshot("id", 10, 19, Duration.ZERO)).isFalse();
+        assertThat(policy.shouldTakeSnapshot("id", 10, 21, Duration.ZERO)).isTrue();
+    }
+
+    @Test
+    void when_load_takes_longer_than_takes_snapshot_when_load_duration_exceeds_the_threshold() {
+        SnapshotPolicy policy = SnapshotPolicy.whenLoadTakesLongerThan(Duration.ofMillis(100));
+
+        assertThat(policy.shouldTakeSnapshot("id", 0, 5, Duration.ofMillis(100))).isFalse();
+        assertThat(policy.shouldTakeSnapshot("id", 0, 5, Duration.ofMillis(101))).isTrue();
+        assertThat(policy.shouldTakeSnapshot("id", 5, 5, Duration.ofMillis(101))).isFalse();
+    }
+
+    @Test
+    void or_takes_snapshot_when_any_policy_decides_to_take_a_snapshot() {
+        SnapshotPolicy policy = SnapshotPolicy.never().or(SnapshotPolicy.everyNEvents(2));
+
+        assertThat(policy.shouldTakeSnapshot("id", 0, 1, Duration.ZERO)).isFalse();
+        assertThat(policy.shouldTakeSnapshot("id", 0, 2, Duration.ZERO)).isTrue();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.inmemory;
+
+import org.occurrent.snapshot.api.Snapshot;
+import org.occurrent.snapshot.api.SnapshotStore;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link SnapshotStore} that stores snapshots in-memory. This is mainly useful for testing and/or demo purposes.
+ */
+public class InMemorySnapshotStore implements SnapshotStore {
+
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<Snapshot> read(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        return Optional.ofNullable(snapshots.get(streamId));
+    }
+
+    @Override
+    public void write(Snapshot snapshot) {
+        requireNonNull(snapshot, Snapshot.class.getSimpleName() + " cannot be null");
+        snapshots.merge(snapshot.streamId, snapshot, (existing, newSnapshot) -> newSnapshot.version > existing.version ? newSnapshot : existing);
+    }
+
+    @Override
+    public void delete(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        snapshots.remove(streamId);
+    }
+}
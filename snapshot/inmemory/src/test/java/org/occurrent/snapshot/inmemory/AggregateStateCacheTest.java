@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.inmemory;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.Test;
+import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
+import org.occurrent.eventstore.inmemory.InMemoryEventStore;
+import org.occurrent.snapshot.api.AggregateState;
+import org.occurrent.snapshot.api.AggregateStateCache;
+import org.occurrent.snapshot.api.AggregateStateCacheConfig;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class AggregateStateCacheTest {
+
+    private final InMemoryEventStore eventStore = new InMemoryEventStore();
+    private final AtomicInteger appliedEvents = new AtomicInteger();
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void loads_state_from_all_events_when_event_stream_is_not_cached() {
+        // Given
+        eventStore.write("stream", Stream.of(event("a"), event("b")));
+        AggregateStateCache<List<String>> cache = cache(new AggregateStateCacheConfig.Builder().clock(clock).build());
+
+        // When
+        AggregateState<List<String>> aggregateState = cache.load("stream");
+
+        // Then
+        assertThat(aggregateState.state).containsExactly("a", "b");
+        assertThat(aggregateState.version).isEqualTo(2);
+        assertThat(appliedEvents).hasValue(2);
+    }
+
+    @Test
+    void only_applies_events_written_after_the_cached_version() {
+        // Given
+        eventStore.write("stream", Stream.of(event("a"), event("b")));
+        AggregateStateCache<List<String>> cache = cache(new AggregateStateCacheConfig.Builder().clock(clock).build());
+        cache.load("stream");
+        eventStore.write("stream", Stream.of(event("c")));
+
+        // When
+        AggregateState<List<String>> aggregateState = cache.load("stream");
+
+        // Then
+        assertThat(aggregateState.state).containsExactly("a", "b", "c");
+        assertThat(aggregateState.version).isEqualTo(3);
+        assertThat(appliedEvents).hasValue(3);
+    }
+
+    @Test
+    void updates_cached_state_after_successful_write() {
+        // Given
+        AggregateStateCache<List<String>> cache = cache(new AggregateStateCacheConfig.Builder().clock(clock).build());
+        cache.execute("stream", state -> Stream.of(event("a"), event("b")));
+        appliedEvents.set(0);
+
+        // When
+        AggregateState<List<String>> aggregateState = cache.load("stream");
+
+        // Then
+        assertThat(aggregateState.state).containsExactly("a", "b");
+        assertThat(aggregateState.version).isEqualTo(2);
+        assertThat(appliedEvents).hasValue(0);
+    }
+
+    @Test
+    void removes_cached_state_when_write_condition_is_not_fulfilled() {
+        // Given
+        eventStore.write("stream", Stream.of(event("a")));
+        AggregateStateCache<List<String>> cache = cache(new AggregateStateCacheConfig.Builder().clock(clock).build());
+        AggregateState<List<String>> aggregateState = cache.load("stream");
+        eventStore.write("stream", Stream.of(event("b")));
+
+        // When
+        Throwable throwable = catchThrowable(() -> cache.write(aggregateState, Stream.of(event("c"))));
+
+        // Then
+        assertThat(throwable).isInstanceOf(WriteConditionNotFulfilledException.class);
+        assertThat(cache.size()).isZero();
+        assertThat(cache.load("stream").state).containsExactly("a", "b");
+    }
+
+    @Test
+    void reads_all_events_when_cached_entry_has_expired() {
+        // Given
+        eventStore.write("stream", Stream.of(event("a"), event("b")));
+        AggregateStateCache<List<String>> cache = cache(new AggregateStateCacheConfig.Builder().clock(clock).timeToLive(Duration.ofMinutes(1)).build());
+        cache.load("stream");
+        clock.advance(Duration.ofMinutes(2));
+        appliedEvents.set(0);
+
+        // When
+        AggregateState<List<String>> aggregateState = cache.load("stream");
+
+        // Then
+        assertThat(aggregateState.state).containsExactly("a", "b");
+        assertThat(appliedEvents).hasValue(2);
+    }
+
+    @Test
+    void evicts_least_recently_used_event_stream_when_maximum_size_is_exceeded() {
+        // Given
+        eventStore.write("stream1", Stream.of(event("a")));
+        eventStore.write("stream2", Stream.of(event("b")));
+        eventStore.write("stream3", Stream.of(event("c")));
+        AggregateStateCache<List<String>> cache = cache(new AggregateStateCacheConfig.Builder().clock(clock).maximumSize(2).build());
+        cache.load("stream1");
+        cache.load("stream2");
+        cache.load("stream1");
+
+        // When
+        cache.load("stream3");
+        appliedEvents.set(0);
+        cache.load("stream1");
+        cache.load("stream2");
+
+        // Then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(appliedEvents).describedAs("only stream2 should be read from the beginning").hasValue(1);
+    }
+
+    @Test
+    void reads_all_events_when_event_stream_has_been_deleted_since_the_state_was_cached() {
+        // Given
+        eventStore.write("stream", Stream.of(event("a"), event("b")));
+        AggregateStateCache<List<String>> cache = cache(new AggregateStateCacheConfig.Builder().clock(clock).build());
+        cache.load("stream");
+        eventStore.deleteEventStream("stream");
+        eventStore.write("stream", Stream.of(event("c")));
+
+        // When
+        AggregateState<List<String>> aggregateState = cache.load("stream");
+
+        // Then
+        assertThat(aggregateState.state).containsExactly("c");
+        assertThat(aggregateState.version).isEqualTo(1);
+    }
+
+    private AggregateStateCache<List<String>> cache(AggregateStateCacheConfig config) {
+        return new AggregateStateCache<>(eventStore, ArrayList::new, (state, event) -> {
+            appliedEvents.incrementAndGet();
+            return Stream.concat(state.stream(), Stream.of(new String(event.getData(), UTF_8))).collect(Collectors.toList());
+        }, config);
+    }
+
+    private static CloudEvent event(String data) {
+        return CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("urn:test"))
+                .withType("Test")
+                .withData(data.getBytes(UTF_8))
+                .build();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant = Instant.now();
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
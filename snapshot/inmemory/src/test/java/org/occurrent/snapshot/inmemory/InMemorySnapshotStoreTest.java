@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.inmemory;
+
+import org.junit.jupiter.api.Test;
+import org.occurrent.snapshot.api.Snapshot;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemorySnapshotStoreTest {
+
+    private final InMemorySnapshotStore snapshotStore = new InMemorySnapshotStore();
+
+    @Test
+    void read_returns_empty_when_no_snapshot_has_been_written() {
+        assertThat(snapshotStore.read("stream")).isEmpty();
+    }
+
+    @Test
+    void read_returns_the_snapshot_with_the_highest_version() {
+        // Given
+        Snapshot snapshot1 = new Snapshot("stream", 2, "state2".getBytes(UTF_8));
+        Snapshot snapshot2 = new Snapshot("stream", 5, "state5".getBytes(UTF_8));
+
+        // When
+        snapshotStore.write(snapshot2);
+        snapshotStore.write(snapshot1);
+
+        // Then
+        assertThat(snapshotStore.read("stream")).hasValue(snapshot2);
+    }
+
+    @Test
+    void delete_removes_the_snapshot() {
+        // Given
+        snapshotStore.write(new Snapshot("stream", 2, "state".getBytes(UTF_8)));
+
+        // When
+        snapshotStore.delete("stream");
+
+        // Then
+        assertThat(snapshotStore.read("stream")).isEmpty();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.inmemory;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.Test;
+import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
+import org.occurrent.eventstore.inmemory.InMemoryEventStore;
+import org.occurrent.snapshot.api.AggregateState;
+import org.occurrent.snapshot.api.Snapshot;
+import org.occurrent.snapshot.api.SnapshotPolicy;
+import org.occurrent.snapshot.api.SnapshottingRepository;
+import org.occurrent.snapshot.api.StateSerializer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class SnapshottingRepositoryTest {
+
+    private final InMemoryEventStore eventStore = new InMemoryEventStore();
+    private final InMemorySnapshotStore snapshotStore = new InMemorySnapshotStore();
+
+    @Test
+    void loads_state_from_all_events_when_there_is_no_snapshot() {
+        // Given
+        eventStore.write("stream", Stream.of(event("a"), event("b")));
+        SnapshottingRepository<List<String>> repository = repository(SnapshotPolicy.never());
+
+        // When
+        AggregateState<List<String>> aggregateState = repository.load("stream");
+
+        // Then
+        assertThat(aggregateState.state).containsExactly("a", "b");
+        assertThat(aggregateState.version).isEqualTo(2);
+        assertThat(aggregateState.snapshotVersion).isZero();
+    }
+
+    @Test
+    void takes_snapshot_according_to_snapshot_policy_when_writing_events() {
+        // Given
+        SnapshottingRepository<List<String>> repository = repository(SnapshotPolicy.everyNEvents(3));
+
+        // When
+        repository.execute("stream", state -> Stream.of(event("a"), event("b")));
+        repository.execute("stream", state -> Stream.of(event("c")));
+        repository.execute("stream", state -> Stream.of(event("d")));
+
+        // Then
+        assertThat(snapshotStore.read("stream")).hasValue(new Snapshot("stream", 3, "a,b,c".getBytes(UTF_8)));
+    }
+
+    @Test
+    void loads_state_from_latest_snapshot_and_the_events_written_after_the_snapshot() {
+        // Given
+        eventStore.write("stream", Stream.of(event("a"), event("b"), event("c")));
+        snapshotStore.write(new Snapshot("stream", 2, "x,y".getBytes(UTF_8)));
+        SnapshottingRepository<List<String>> repository = repository(SnapshotPolicy.never());
+
+        // When
+        AggregateState<List<String>> aggregateState = repository.load("stream");
+
+        // Then
+        assertThat(aggregateState.state).containsExactly("x", "y", "c");
+        assertThat(aggregateState.version).isEqualTo(3);
+        assertThat(aggregateState.snapshotVersion).isEqualTo(2);
+    }
+
+    @Test
+    void ignores_snapshot_with_a_version_greater_than_the_stream_version() {
+        // Given
+        eventStore.write("stream", Stream.of(event("a")));
+        snapshotStore.write(new Snapshot("stream", 2, "x,y".getBytes(UTF_8)));
+        SnapshottingRepository<List<String>> repository = repository(SnapshotPolicy.never());
+
+        // When
+        AggregateState<List<String>> aggregateState = repository.load("stream");
+
+        // Then
+        assertThat(aggregateState.state).containsExactly("a");
+        assertThat(aggregateState.snapshotVersion).isZero();
+    }
+
+    @Test
+    void write_fails_when_events_have_been_written_since_the_state_was_loaded() {
+        // Given
+        eventStore.write("stream", Stream.of(event("a")));
+        SnapshottingRepository<List<String>> repository = repository(SnapshotPolicy.everyNEvents(1));
+        AggregateState<List<String>> aggregateState = repository.load("stream");
+        eventStore.write("stream", Stream.of(event("b")));
+
+        // When
+        Throwable throwable = catchThrowable(() -> repository.write(aggregateState, Stream.of(event("c"))));
+
+        // Then
+        assertThat(throwable).isInstanceOf(WriteConditionNotFulfilledException.class);
+        assertThat(snapshotStore.read("stream")).isEmpty();
+    }
+
+    private SnapshottingRepository<List<String>> repository(SnapshotPolicy snapshotPolicy) {
+        StateSerializer<List<String>> serializer = new StateSerializer<List<String>>() {
+            @Override
+            public byte[] serialize(List<String> state) {
+                return String.join(",", state).getBytes(UTF_8);
+            }
+
+            @Override
+            public List<String> deserialize(byte[] bytes) {
+                return new ArrayList<>(Arrays.asList(new String(bytes, UTF_8).split(",")));
+            }
+        };
+        return new SnapshottingRepository<>(eventStore, snapshotStore, snapshotPolicy, serializer, ArrayList::new,
+                (state, event) -> Stream.concat(state.stream(), Stream.of(new String(event.getData(), UTF_8))).collect(Collectors.toList()));
+    }
+
+    private static CloudEvent event(String data) {
+        return CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("urn:test"))
+                .withType("Test")
+                .withData(data.getBytes(UTF_8))
+                .build();
+    }
+}
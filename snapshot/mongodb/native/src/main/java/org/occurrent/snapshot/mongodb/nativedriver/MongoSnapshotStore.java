@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.mongodb.nativedriver;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.occurrent.snapshot.api.Snapshot;
+import org.occurrent.snapshot.api.SnapshotStore;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.lt;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link SnapshotStore} that stores snapshots in MongoDB using the "native" synchronous java driver. Each event stream has (at most) one document
+ * in the snapshot collection, identified by the stream id, that contains the latest snapshot.
+ */
+public class MongoSnapshotStore implements SnapshotStore {
+    private static final String ID = "_id";
+    private static final String VERSION = "version";
+    private static final String STATE = "state";
+    private static final String TIMESTAMP = "timestamp";
+
+    private final MongoCollection<Document> snapshotCollection;
+
+    /**
+     * Create a new {@link MongoSnapshotStore}
+     *
+     * @param database               The database in which the snapshots are stored
+     * @param snapshotCollectionName The name of the collection in which the snapshots are stored
+     */
+    public MongoSnapshotStore(MongoDatabase database, String snapshotCollectionName) {
+        requireNonNull(database, MongoDatabase.class.getSimpleName() + " cannot be null");
+        requireNonNull(snapshotCollectionName, "Snapshot collection name cannot be null");
+        this.snapshotCollection = database.getCollection(snapshotCollectionName);
+    }
+
+    @Override
+    public Optional<Snapshot> read(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        return Optional.ofNullable(snapshotCollection.find(eq(ID, streamId)).first())
+                .map(document -> new Snapshot(streamId, document.getLong(VERSION), document.get(STATE, Binary.class).getData()));
+    }
+
+    @Override
+    public void write(Snapshot snapshot) {
+        requireNonNull(snapshot, Snapshot.class.getSimpleName() + " cannot be null");
+        Document document = new Document(ID, snapshot.streamId)
+                .append(VERSION, snapshot.version)
+                .append(STATE, new Binary(snapshot.state))
+                .append(TIMESTAMP, new Date());
+        try {
+            // Only replace the existing snapshot if it's older than the new snapshot
+            snapshotCollection.replaceOne(and(eq(ID, snapshot.streamId), lt(VERSION, snapshot.version)), document, new ReplaceOptions().upsert(true));
+        } catch (MongoWriteException e) {
+            // A duplicate key error means that there's already a snapshot with the same or a higher version, in which case the new snapshot is ignored
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void delete(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        snapshotCollection.deleteOne(eq(ID, streamId));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.snapshot.mongodb.nativedriver;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.occurrent.snapshot.api.Snapshot;
+import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Timeout(10)
+@Testcontainers
+class MongoSnapshotStoreTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer;
+
+    static {
+        mongoDBContainer = new MongoDBContainer("mongo:4.2.8");
+        List<String> ports = new ArrayList<>();
+        ports.add("27017:27017");
+        mongoDBContainer.setPortBindings(ports);
+    }
+
+    @RegisterExtension
+    FlushMongoDBExtension flushMongoDBExtension = new FlushMongoDBExtension(new ConnectionString(mongoDBContainer.getReplicaSetUrl()));
+
+    private MongoClient mongoClient;
+    private MongoSnapshotStore snapshotStore;
+
+    @BeforeEach
+    void create_mongo_snapshot_store() {
+        ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl());
+        mongoClient = MongoClients.create(connectionString);
+        snapshotStore = new MongoSnapshotStore(mongoClient.getDatabase(connectionString.getDatabase()), "snapshots");
+    }
+
+    @AfterEach
+    void mongo_client_is_closed_after_each_test() {
+        mongoClient.close();
+    }
+
+    @Test
+    void read_returns_empty_when_no_snapshot_has_been_written() {
+        assertThat(snapshotStore.read("stream")).isEmpty();
+    }
+
+    @Test
+    void read_returns_the_written_snapshot() {
+        // Given
+        Snapshot snapshot = new Snapshot("stream", 2, "state".getBytes(UTF_8));
+
+        // When
+        snapshotStore.write(snapshot);
+
+        // Then
+        assertThat(snapshotStore.read("stream")).hasValue(snapshot);
+    }
+
+    @Test
+    void write_ignores_snapshot_that_is_older_than_the_existing_snapshot() {
+        // Given
+        Snapshot snapshot1 = new Snapshot("stream", 2, "state2".getBytes(UTF_8));
+        Snapshot snapshot2 = new Snapshot("stream", 5, "state5".getBytes(UTF_8));
+
+        // When
+        snapshotStore.write(snapshot2);
+        snapshotStore.write(snapshot1);
+
+        // Then
+        assertThat(snapshotStore.read("stream")).hasValue(snapshot2);
+    }
+
+    @Test
+    void write_replaces_snapshot_that_is_older_than_the_new_snapshot() {
+        // Given
+        Snapshot snapshot1 = new Snapshot("stream", 2, "state2".getBytes(UTF_8));
+        Snapshot snapshot2 = new Snapshot("stream", 5, "state5".getBytes(UTF_8));
+
+        // When
+        snapshotStore.write(snapshot1);
+        snapshotStore.write(snapshot2);
+
+        // Then
+        assertThat(snapshotStore.read("stream")).hasValue(snapshot2);
+    }
+
+    @Test
+    void delete_removes_the_snapshot() {
+        // Given
+        snapshotStore.write(new Snapshot("stream", 2, "state".getBytes(UTF_8)));
+
+        // When
+        snapshotStore.delete("stream");
+
+        // Then
+        assertThat(snapshotStore.read("stream")).isEmpty();
+    }
+}
@@ -17,9 +17,12 @@
 package org.occurrent.subscription.api.blocking;
 
 import io.cloudevents.CloudEvent;
+import org.occurrent.subscription.BatchPolicy;
+import org.occurrent.subscription.BatchingConsumer;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionFilter;
 
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -92,6 +95,42 @@ public interface BlockingSubscription<T extends CloudEvent> {
         return subscribe(subscriptionId, null, StartAt.now(), action);
     }
 
+    /**
+     * Start listening to cloud events persisted to the event store and receive them in batches, as specified by the {@link BatchPolicy}.
+     * This is useful for e.g. projections that can write a batch of events using a single bulk write. A batch is only delivered to the {@code action}
+     * once, the subscription position of the last event in a batch should be regarded as the position of the batch.
+     * <p>
+     * The default implementation groups the events delivered by {@link #subscribe(String, SubscriptionFilter, Supplier, Consumer)} into batches,
+     * and batches that don't fill up within {@link BatchPolicy#maxWait} are delivered by a background thread of the subscription. This thread is only
+     * kept alive while a batch is waiting to be delivered. Implementations that can read batches natively, or that can stop the thread when the subscription
+     * is cancelled, are encouraged to override this method.
+     * </p>
+     *
+     * @param subscriptionId  The id of the subscription, must be unique!
+     * @param filter          The filter used to limit which events that are of interest from the EventStore.
+     * @param startAtSupplier A supplier that returns the start position to start the subscription from.
+     * @param batchPolicy     Specifies the max size of a batch and how long to wait for a batch to fill up.
+     * @param action          This action will be invoked for each batch of cloud events that are stored in the EventStore.
+     */
+    default Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, BatchPolicy batchPolicy, Consumer<List<T>> action) {
+        return subscribe(subscriptionId, filter, startAtSupplier, new BatchingConsumer<>("occurrent-" + subscriptionId + "-batch", batchPolicy, action));
+    }
+
+    /**
+     * Start listening to cloud events persisted to the event store using the supplied start position and <code>filter</code> and receive them in batches,
+     * as specified by the {@link BatchPolicy}.
+     *
+     * @param subscriptionId The id of the subscription, must be unique!
+     * @param filter         The filter to use to limit which events that are of interest from the EventStore.
+     * @param startAt        The position to start the subscription from
+     * @param batchPolicy    Specifies the max size of a batch and how long to wait for a batch to fill up.
+     * @param action         This action will be invoked for each batch of cloud events that are stored in the EventStore.
+     * @see #subscribeBatch(String, SubscriptionFilter, Supplier, BatchPolicy, Consumer)
+     */
+    default Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchPolicy batchPolicy, Consumer<List<T>> action) {
+        return subscribeBatch(subscriptionId, filter, () -> startAt, batchPolicy, action);
+    }
+
     /**
      * Cancel the subscription
      */
@@ -19,6 +19,9 @@ package org.occurrent.subscription.api.blocking;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionPosition;
 
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * A {@code ReactorSubscriptionPositionStorage} provides means to read and write the subscription position to storage.
@@ -53,6 +56,17 @@ public interface BlockingSubscriptionPositionStorage {
      */
     SubscriptionPosition save(String subscriptionId, SubscriptionPosition subscriptionPosition);
 
+    /**
+     * Save the subscription positions of several subscriptions. Implementations are encouraged to write all positions in a single round-trip
+     * to the storage, by default each position is saved using {@link #save(String, SubscriptionPosition)}.
+     *
+     * @param subscriptionPositions The subscription positions to save, keyed by subscription id.
+     */
+    default void saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+        requireNonNull(subscriptionPositions, "Subscription positions cannot be null");
+        subscriptionPositions.forEach(this::save);
+    }
+
 
     /**
      * Delete the {@link SubscriptionPosition} for the supplied {@code subscriptionId}.
@@ -17,11 +17,14 @@
 package org.occurrent.subscription.api.reactor;
 
 import io.cloudevents.CloudEvent;
+import org.occurrent.subscription.BatchPolicy;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionFilter;
 import org.occurrent.subscription.SubscriptionPosition;
 import reactor.core.publisher.Flux;
 
+import java.util.List;
+
 /**
  * Common interface for reactor (reactive) subscriptions. The purpose of a subscription is to read events from an event store
  * and react to these events. Typically a subscription will forward the event to another piece of infrastructure such as
@@ -69,4 +72,15 @@ public interface ReactorSubscription<T extends CloudEvent> {
     default Flux<T> subscribe() {
         return subscribe(null, StartAt.now());
     }
-}
\ No newline at end of file
+
+    /**
+     * Stream batches of events from the event store as they arrive, as specified by the {@link BatchPolicy}. A batch is emitted as soon as it
+     * contains {@link BatchPolicy#maxSize} events or when {@link BatchPolicy#maxWait} has passed since the batch was started. The subscription
+     * position of the last event in a batch should be regarded as the position of the batch.
+     *
+     * @return A {@link Flux} with batches of cloud events which also includes the {@link SubscriptionPosition} that can be used to resume the stream from the current position.
+     */
+    default Flux<List<T>> subscribeBatch(SubscriptionFilter filter, StartAt startAt, BatchPolicy batchPolicy) {
+        return subscribe(filter, startAt).bufferTimeout(batchPolicy.maxSize, batchPolicy.maxWait);
+    }
+}
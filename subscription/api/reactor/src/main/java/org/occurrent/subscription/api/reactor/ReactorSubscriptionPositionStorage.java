@@ -18,8 +18,12 @@ package org.occurrent.subscription.api.reactor;
 
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionPosition;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * A {@code ReactorSubscriptionPositionStorage} provides means to read and write the subscription position to storage.
@@ -51,6 +55,20 @@ public interface ReactorSubscriptionPositionStorage {
      */
     Mono<SubscriptionPosition> save(String subscriptionId, SubscriptionPosition subscriptionPosition);
 
+    /**
+     * Save the subscription positions of several subscriptions. Implementations are encouraged to write all positions in a single round-trip
+     * to the storage, by default each position is saved using {@link #save(String, SubscriptionPosition)}.
+     *
+     * @param subscriptionPositions The subscription positions to save, keyed by subscription id.
+     * @return A Mono that completes when all positions have been saved
+     */
+    default Mono<Void> saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+        requireNonNull(subscriptionPositions, "Subscription positions cannot be null");
+        return Flux.fromIterable(subscriptionPositions.entrySet())
+                .concatMap(entry -> save(entry.getKey(), entry.getValue()))
+                .then();
+    }
+
 
     /**
      * Delete the {@link SubscriptionPosition} for the supplied {@code subscriptionId}.
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Specifies how events are grouped into batches when subscribing to batches of events. A batch is delivered as soon as it contains
+ * {@link #maxSize} events or when {@link #maxWait} has passed since the first event in the batch was received, whichever comes first.
+ * <p>
+ * Example:
+ * <pre>
+ * BatchPolicy.maxSize(100).maxWait(Duration.ofMillis(200));
+ * </pre>
+ */
+public class BatchPolicy {
+    private static final Duration DEFAULT_MAX_WAIT = Duration.ofMillis(500);
+
+    /**
+     * The maximum number of events in a batch.
+     */
+    public final int maxSize;
+    /**
+     * The maximum time to wait for a batch to fill up before it's delivered.
+     */
+    public final Duration maxWait;
+
+    private BatchPolicy(int maxSize, Duration maxWait) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be greater than zero");
+        }
+        requireNonNull(maxWait, "Max wait cannot be null");
+        if (maxWait.isZero() || maxWait.isNegative()) {
+            throw new IllegalArgumentException("Max wait must be positive");
+        }
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @param maxSize The maximum number of events in a batch.
+     * @return A new {@link BatchPolicy} that waits at most 500 milliseconds for a batch to fill up.
+     */
+    public static BatchPolicy maxSize(int maxSize) {
+        return new BatchPolicy(maxSize, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * @param maxWait The maximum time to wait for a batch to fill up before it's delivered.
+     * @return A new {@link BatchPolicy}
+     */
+    public BatchPolicy maxWait(Duration maxWait) {
+        return new BatchPolicy(maxSize, maxWait);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BatchPolicy)) return false;
+        BatchPolicy that = (BatchPolicy) o;
+        return maxSize == that.maxSize &&
+                Objects.equals(maxWait, that.maxWait);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxSize, maxWait);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchPolicy{" +
+                "maxSize=" + maxSize +
+                ", maxWait=" + maxWait +
+                '}';
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription;
+
+import org.occurrent.threads.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link Consumer} that groups the elements it receives into batches according to a {@link BatchPolicy} and delivers the batches to another consumer.
+ * This is used by the default implementation of {@code BlockingSubscription#subscribeBatch}, and by other subscriptions that receive one event at a time
+ * to support batch delivery.
+ * <p>
+ * A batch is delivered by the thread that adds the element that fills it up. If this delivery fails, the exception is propagated and the element
+ * is removed from the batch so that it can be retried by the subscription. Batches that don't fill up within {@link BatchPolicy#maxWait} are delivered
+ * by a background thread, if such a delivery fails it's retried after another {@code maxWait}.
+ * </p>
+ * <p>
+ * Each consumer has its own background thread, created by {@link VirtualThreads}, so that a slow batch of one subscription doesn't delay the batches of
+ * other subscriptions. The thread is only kept alive while a batch is waiting to be delivered, and it's stopped by {@link #close()}, which should be called
+ * when the subscription is cancelled or shutdown.
+ * </p>
+ */
+public class BatchingConsumer<T> implements Consumer<T>, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(BatchingConsumer.class);
+
+    private final BatchPolicy batchPolicy;
+    private final Consumer<List<T>> action;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<T> batch = new ArrayList<>();
+    private ScheduledFuture<?> scheduledDelivery;
+
+    public BatchingConsumer(String name, BatchPolicy batchPolicy, Consumer<List<T>> action) {
+        requireNonNull(name, "Name cannot be null");
+        requireNonNull(batchPolicy, BatchPolicy.class.getSimpleName() + " cannot be null");
+        requireNonNull(action, "Action cannot be null");
+        this.batchPolicy = batchPolicy;
+        this.action = action;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, VirtualThreads.threadFactory(name));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.scheduler.setKeepAliveTime(Math.max(batchPolicy.maxWait.toMillis(), 1), TimeUnit.MILLISECONDS);
+        this.scheduler.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void accept(T element) {
+        lock.lock();
+        try {
+            batch.add(element);
+            if (batch.size() >= batchPolicy.maxSize) {
+                try {
+                    deliver();
+                } catch (RuntimeException e) {
+                    batch.remove(batch.size() - 1);
+                    throw e;
+                }
+            } else if (scheduledDelivery == null) {
+                scheduleDelivery();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void deliverAfterMaxWait() {
+        lock.lock();
+        try {
+            scheduledDelivery = null;
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                deliver();
+            } catch (Exception e) {
+                log.error("Caught {} with message \"{}\" when delivering batch of {} element(s), will retry in {}.", e.getClass().getName(), e.getMessage(), batch.size(), batchPolicy.maxWait, e);
+                scheduleDelivery();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void deliver() {
+        action.accept(Collections.unmodifiableList(batch));
+        batch = new ArrayList<>();
+        if (scheduledDelivery != null) {
+            scheduledDelivery.cancel(false);
+            scheduledDelivery = null;
+        }
+    }
+
+    private void scheduleDelivery() {
+        if (!scheduler.isShutdown()) {
+            scheduledDelivery = scheduler.schedule(this::deliverAfterMaxWait, batchPolicy.maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the background thread. A batch that has not yet been delivered is discarded.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            scheduler.shutdownNow();
+            scheduledDelivery = null;
+            batch = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription;
+
+/**
+ * Handles cloud events that a subscription failed to process even after retrying (so called "poison" events). The subscription continues
+ * with the next event after the dead-letter handler has been invoked, which means that a single bad event doesn't stall the entire subscription.
+ * Typically the dead-letter handler stores the event somewhere so that it can be inspected and possibly replayed later.
+ * <p>
+ * If the dead-letter handler itself throws an exception, the subscription is stopped.
+ * </p>
+ */
+@FunctionalInterface
+public interface DeadLetterHandler {
+
+    /**
+     * @param subscriptionId The id of the subscription that failed to process the cloud event
+     * @param cloudEvent     The cloud event that couldn't be processed
+     * @param cause          The exception thrown by the action on the last attempt
+     */
+    void handle(String subscriptionId, CloudEventWithSubscriptionPosition cloudEvent, Throwable cause);
+}
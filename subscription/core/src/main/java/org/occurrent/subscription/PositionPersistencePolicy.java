@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Specifies how often a subscription that automatically persists its {@link SubscriptionPosition} should write the position to storage.
+ * Persisting the position after every event doubles the number of writes for each subscriber, a policy allows trading this off against the number
+ * of events that are redelivered (at-least-once) after a restart. The position is persisted as soon as <i>any</i> of the thresholds in the policy
+ * is reached. The latest processed position is always persisted when a subscription is paused, cancelled or shutdown.
+ * <p>
+ * Examples:
+ * <pre>
+ * PositionPersistencePolicy.everyNumberOfEvents(100).orEvery(Duration.ofSeconds(2));
+ * PositionPersistencePolicy.every(Duration.ofMillis(500)).orOnIdle(Duration.ofMillis(100));
+ * </pre>
+ */
+public class PositionPersistencePolicy {
+    private static final int DISABLED = Integer.MAX_VALUE;
+
+    /**
+     * The number of processed events after which the position is persisted, {@link Integer#MAX_VALUE} if disabled.
+     */
+    public final int numberOfEvents;
+    /**
+     * The maximum time between two persisted positions (when there are unpersisted events), {@code null} if disabled.
+     */
+    public final Duration maxTimeBetweenPersistence;
+    /**
+     * Persist the position when no events have been processed for this duration, {@code null} if disabled.
+     */
+    public final Duration idleTimeout;
+
+    private PositionPersistencePolicy(int numberOfEvents, Duration maxTimeBetweenPersistence, Duration idleTimeout) {
+        if (numberOfEvents < 1) {
+            throw new IllegalArgumentException("Number of events must be greater than zero");
+        }
+        requirePositive(maxTimeBetweenPersistence, "Max time between persistence");
+        requirePositive(idleTimeout, "Idle timeout");
+        if (numberOfEvents == DISABLED && maxTimeBetweenPersistence == null && idleTimeout == null) {
+            throw new IllegalArgumentException(PositionPersistencePolicy.class.getSimpleName() + " must define at least one threshold");
+        }
+        this.numberOfEvents = numberOfEvents;
+        this.maxTimeBetweenPersistence = maxTimeBetweenPersistence;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * @return A policy that persists the position after every event (default).
+     */
+    public static PositionPersistencePolicy everyEvent() {
+        return everyNumberOfEvents(1);
+    }
+
+    /**
+     * @param numberOfEvents Persist the position after this many events have been processed since the position was last persisted.
+     * @return A new {@link PositionPersistencePolicy}
+     */
+    public static PositionPersistencePolicy everyNumberOfEvents(int numberOfEvents) {
+        return new PositionPersistencePolicy(numberOfEvents, null, null);
+    }
+
+    /**
+     * @param maxTimeBetweenPersistence Persist the position (if there are unpersisted events) when this much time has passed since the position was last persisted.
+     * @return A new {@link PositionPersistencePolicy}
+     */
+    public static PositionPersistencePolicy every(Duration maxTimeBetweenPersistence) {
+        requireNonNull(maxTimeBetweenPersistence, "Max time between persistence cannot be null");
+        return new PositionPersistencePolicy(DISABLED, maxTimeBetweenPersistence, null);
+    }
+
+    /**
+     * @param idleTimeout Persist the position when no events have been processed for this duration.
+     * @return A new {@link PositionPersistencePolicy}
+     */
+    public static PositionPersistencePolicy onIdle(Duration idleTimeout) {
+        requireNonNull(idleTimeout, "Idle timeout cannot be null");
+        return new PositionPersistencePolicy(DISABLED, null, idleTimeout);
+    }
+
+    /**
+     * @param numberOfEvents Also persist the position after this many events have been processed since the position was last persisted.
+     * @return A new {@link PositionPersistencePolicy}
+     */
+    public PositionPersistencePolicy orEveryNumberOfEvents(int numberOfEvents) {
+        return new PositionPersistencePolicy(numberOfEvents, maxTimeBetweenPersistence, idleTimeout);
+    }
+
+    /**
+     * @param maxTimeBetweenPersistence Also persist the position when this much time has passed since the position was last persisted.
+     * @return A new {@link PositionPersistencePolicy}
+     */
+    public PositionPersistencePolicy orEvery(Duration maxTimeBetweenPersistence) {
+        requireNonNull(maxTimeBetweenPersistence, "Max time between persistence cannot be null");
+        return new PositionPersistencePolicy(numberOfEvents, maxTimeBetweenPersistence, idleTimeout);
+    }
+
+    /**
+     * @param idleTimeout Also persist the position when no events have been processed for this duration.
+     * @return A new {@link PositionPersistencePolicy}
+     */
+    public PositionPersistencePolicy orOnIdle(Duration idleTimeout) {
+        requireNonNull(idleTimeout, "Idle timeout cannot be null");
+        return new PositionPersistencePolicy(numberOfEvents, maxTimeBetweenPersistence, idleTimeout);
+    }
+
+    /**
+     * @return {@code true} if the policy has time based thresholds, which requires the subscription to check the policy periodically, {@code false} otherwise.
+     */
+    public boolean isTimeBased() {
+        return maxTimeBetweenPersistence != null || idleTimeout != null;
+    }
+
+    private static void requirePositive(Duration duration, String name) {
+        if (duration != null && (duration.isZero() || duration.isNegative())) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PositionPersistencePolicy)) return false;
+        PositionPersistencePolicy that = (PositionPersistencePolicy) o;
+        return numberOfEvents == that.numberOfEvents &&
+                Objects.equals(maxTimeBetweenPersistence, that.maxTimeBetweenPersistence) &&
+                Objects.equals(idleTimeout, that.idleTimeout);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(numberOfEvents, maxTimeBetweenPersistence, idleTimeout);
+    }
+
+    @Override
+    public String toString() {
+        return "PositionPersistencePolicy{" +
+                "numberOfEvents=" + numberOfEvents +
+                ", maxTimeBetweenPersistence=" + maxTimeBetweenPersistence +
+                ", idleTimeout=" + idleTimeout +
+                '}';
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Retry strategy to use if the action throws an exception.
+ * <p>
+ * By default an action is retried until it succeeds. Use {@link #maxAttempts(int)} to limit the number of attempts and {@link #deadLetter(DeadLetterHandler)}
+ * to hand over events that couldn't be processed to a {@link DeadLetterHandler} so that the subscription can continue with the next event. For example:
+ * <pre>
+ * RetryStrategy.backoff(Duration.ofMillis(100), Duration.ofSeconds(5), 2, 0.2).maxAttempts(10).deadLetter(deadLetterHandler);
+ * </pre>
+ */
+public abstract class RetryStrategy {
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+
+    /**
+     * The maximum number of times the action is invoked for an event (including the first attempt).
+     */
+    public final int maxAttempts;
+    /**
+     * The {@link DeadLetterHandler} that is invoked when {@link #maxAttempts} has been reached, or <code>null</code> if the subscription should be stopped.
+     */
+    public final DeadLetterHandler deadLetterHandler;
+
+    protected RetryStrategy(int maxAttempts, DeadLetterHandler deadLetterHandler) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be greater than zero");
+        }
+        this.maxAttempts = maxAttempts;
+        this.deadLetterHandler = deadLetterHandler;
+    }
+
+    /**
+     * @return Don't retry and re-throw an exception thrown when action is invoked.
+     */
+    public static RetryStrategy none() {
+        return new None(null);
+    }
+
+    /**
+     * @return Retry after a fixed number of millis if an action throws an exception.
+     */
+    public static RetryStrategy fixed(long millis) {
+        return new Fixed(millis, UNLIMITED, null);
+    }
+
+    /**
+     * @return Retry after a fixed duration if an action throws an exception.
+     */
+    public static RetryStrategy fixed(Duration duration) {
+        Objects.requireNonNull(duration, "Duration cannot be null");
+        return new Fixed(duration.toMillis(), UNLIMITED, null);
+    }
+
+    /**
+     * @return Retry after with exponential backoff if an action throws an exception.
+     */
+    public static RetryStrategy backoff(Duration initial, Duration max, double multiplier) {
+        return backoff(initial, max, multiplier, 0);
+    }
+
+    /**
+     * Retry with exponential backoff where each delay is randomly adjusted by up to {@code jitter} (a fraction between 0 and 1) of its value.
+     * Jitter prevents many subscriptions that fail at the same time (for example because a downstream system is unavailable) from retrying in lockstep.
+     *
+     * @return Retry after with exponential backoff and jitter if an action throws an exception.
+     */
+    public static RetryStrategy backoff(Duration initial, Duration max, double multiplier, double jitter) {
+        return new Backoff(initial, max, multiplier, jitter, UNLIMITED, null);
+    }
+
+    /**
+     * @param maxAttempts The maximum number of times the action is invoked for an event (including the first attempt) before the event is handed
+     *                    over to the {@link #deadLetter(DeadLetterHandler) dead-letter handler}, or the subscription is stopped if no dead-letter handler is defined.
+     * @return A new {@link RetryStrategy}
+     */
+    public RetryStrategy maxAttempts(int maxAttempts) {
+        return copy(maxAttempts, deadLetterHandler);
+    }
+
+    /**
+     * @param deadLetterHandler The {@link DeadLetterHandler} to invoke for events that couldn't be processed within {@link #maxAttempts(int) max attempts}.
+     * @return A new {@link RetryStrategy}
+     */
+    public RetryStrategy deadLetter(DeadLetterHandler deadLetterHandler) {
+        Objects.requireNonNull(deadLetterHandler, DeadLetterHandler.class.getSimpleName() + " cannot be null");
+        return copy(maxAttempts, deadLetterHandler);
+    }
+
+    protected abstract RetryStrategy copy(int maxAttempts, DeadLetterHandler deadLetterHandler);
+
+    /**
+     * @return A new iterator of the delays, in milliseconds, between the attempts for an event or <code>null</code> if the action should not be retried.
+     */
+    public abstract Iterator<Long> delays();
+
+    final static class None extends RetryStrategy {
+        private None(DeadLetterHandler deadLetterHandler) {
+            super(1, deadLetterHandler);
+        }
+
+        @Override
+        protected RetryStrategy copy(int maxAttempts, DeadLetterHandler deadLetterHandler) {
+            return new None(deadLetterHandler);
+        }
+
+        @Override
+        public Iterator<Long> delays() {
+            return null;
+        }
+    }
+
+    final static class Fixed extends RetryStrategy {
+        public final long millis;
+
+        private Fixed(long millis, int maxAttempts, DeadLetterHandler deadLetterHandler) {
+            super(maxAttempts, deadLetterHandler);
+            if (millis <= 0) {
+                throw new IllegalArgumentException("Millis cannot be less than zero");
+            }
+            this.millis = millis;
+        }
+
+        @Override
+        protected RetryStrategy copy(int maxAttempts, DeadLetterHandler deadLetterHandler) {
+            return new Fixed(millis, maxAttempts, deadLetterHandler);
+        }
+
+        @Override
+        public Iterator<Long> delays() {
+            return Stream.iterate(millis, __ -> millis).iterator();
+        }
+    }
+
+    final static class Backoff extends RetryStrategy {
+        public final Duration initial;
+        public final Duration max;
+        public final double multiplier;
+        public final double jitter;
+
+        private Backoff(Duration initial, Duration max, double multiplier, double jitter, int maxAttempts, DeadLetterHandler deadLetterHandler) {
+            super(maxAttempts, deadLetterHandler);
+            Objects.requireNonNull(initial, "Initial duration cannot be null");
+            Objects.requireNonNull(max, "Max duration cannot be null");
+            if (multiplier <= 0) {
+                throw new IllegalArgumentException("multiplier cannot be less than zero");
+            }
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1");
+            }
+            this.initial = initial;
+            this.max = max;
+            this.multiplier = multiplier;
+            this.jitter = jitter;
+        }
+
+        @Override
+        protected RetryStrategy copy(int maxAttempts, DeadLetterHandler deadLetterHandler) {
+            return new Backoff(initial, max, multiplier, jitter, maxAttempts, deadLetterHandler);
+        }
+
+        @Override
+        public Iterator<Long> delays() {
+            long initialMillis = initial.toMillis();
+            long maxMillis = max.toMillis();
+            return Stream.iterate(initialMillis, current -> Math.min(maxMillis, Math.round(current * multiplier)))
+                    .map(this::applyJitter)
+                    .iterator();
+        }
+
+        private long applyJitter(long millis) {
+            if (jitter == 0) {
+                return millis;
+            }
+            double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+            return Math.max(0, Math.round(millis * factor));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.internal;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Calculates the delay until the next poll of a polling subscription. The delay adapts to the load: the next poll is made immediately when a
+ * full batch was fetched (since there are probably more events waiting), after the minimum interval when some events were fetched, and the
+ * interval is doubled (up to the maximum interval) for each poll that returns no events at all.
+ * <p>
+ * This class is not thread-safe, each subscription should use its own instance.
+ * </p>
+ */
+public class AdaptivePollInterval {
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private long currentIntervalMillis;
+
+    /**
+     * @param minInterval The interval to use when there are events to process
+     * @param maxInterval The maximum interval to use when the subscription is idle
+     */
+    public AdaptivePollInterval(Duration minInterval, Duration maxInterval) {
+        requireNonNull(minInterval, "Min interval cannot be null");
+        requireNonNull(maxInterval, "Max interval cannot be null");
+        if (minInterval.isNegative()) {
+            throw new IllegalArgumentException("Min interval cannot be negative");
+        }
+        if (maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException("Max interval cannot be less than min interval");
+        }
+        this.minIntervalMillis = minInterval.toMillis();
+        this.maxIntervalMillis = maxInterval.toMillis();
+        this.currentIntervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * @param numberOfFetchedElements The number of elements returned by the last poll
+     * @param batchSize               The maximum number of elements that the last poll could return
+     * @return The number of milliseconds to wait before the next poll
+     */
+    public long next(int numberOfFetchedElements, int batchSize) {
+        final long delayMillis;
+        if (numberOfFetchedElements >= batchSize) {
+            currentIntervalMillis = minIntervalMillis;
+            delayMillis = 0;
+        } else if (numberOfFetchedElements > 0) {
+            currentIntervalMillis = minIntervalMillis;
+            delayMillis = minIntervalMillis;
+        } else {
+            delayMillis = currentIntervalMillis;
+            currentIntervalMillis = Math.min(maxIntervalMillis, Math.max(1, currentIntervalMillis * 2));
+        }
+        return delayMillis;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.internal;
+
+import org.occurrent.subscription.PositionPersistencePolicy;
+import org.occurrent.subscription.SubscriptionPosition;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps track of the latest processed, but not yet persisted, {@link SubscriptionPosition} of a subscription and decides when it should be persisted
+ * according to a {@link PositionPersistencePolicy}. The position is handed out by {@link #positionToPersist()} and is only considered persisted once
+ * {@link #persisted(SubscriptionPosition)} has been called, so a failed write is retried the next time the policy is checked.
+ * <p>
+ * Events that a subscription reads but doesn't process, for example events that belong to a partition owned by another node, can be recorded as
+ * {@link #skipped(SubscriptionPosition) skipped}. Their position is persisted together with the next processed event, or when a time threshold of the policy is
+ * reached, but skipped events only count towards the number of events in the policy once every {@value #SKIPPED_EVENTS_PER_COUNTED_EVENT} events. This
+ * avoids a write for each skipped event while making sure that the persisted position doesn't fall arbitrarily far behind.
+ * </p>
+ * <p>
+ * Instances are thread-safe. Callers that need to make sure that positions are written in order should hold the {@link #writeLock()} while
+ * writing the position.
+ * </p>
+ */
+public class PositionPersistenceTracker {
+    private static final Duration MIN_CHECK_INTERVAL = Duration.ofMillis(10);
+    static final int SKIPPED_EVENTS_PER_COUNTED_EVENT = 1000;
+
+    private final PositionPersistencePolicy policy;
+    private final Clock clock;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private SubscriptionPosition unpersistedPosition;
+    private int numberOfUnpersistedEvents;
+    private int numberOfUnpersistedSkippedEvents;
+    private Instant lastPersisted;
+    private Instant lastProcessed;
+
+    public PositionPersistenceTracker(PositionPersistencePolicy policy, Clock clock) {
+        requireNonNull(policy, PositionPersistencePolicy.class.getSimpleName() + " cannot be null");
+        requireNonNull(clock, Clock.class.getSimpleName() + " cannot be null");
+        this.policy = policy;
+        this.clock = clock;
+        this.lastPersisted = clock.instant();
+        this.lastProcessed = lastPersisted;
+    }
+
+    /**
+     * Record that the event with the supplied position has been processed successfully.
+     *
+     * @param subscriptionPosition The position of the processed event
+     */
+    public synchronized void processed(SubscriptionPosition subscriptionPosition) {
+        requireNonNull(subscriptionPosition, SubscriptionPosition.class.getSimpleName() + " cannot be null");
+        unpersistedPosition = subscriptionPosition;
+        numberOfUnpersistedEvents++;
+        lastProcessed = clock.instant();
+    }
+
+    /**
+     * Record that the event with the supplied position was read but not processed by the subscription.
+     *
+     * @param subscriptionPosition The position of the skipped event
+     */
+    public synchronized void skipped(SubscriptionPosition subscriptionPosition) {
+        requireNonNull(subscriptionPosition, SubscriptionPosition.class.getSimpleName() + " cannot be null");
+        unpersistedPosition = subscriptionPosition;
+        if (++numberOfUnpersistedSkippedEvents == SKIPPED_EVENTS_PER_COUNTED_EVENT) {
+            numberOfUnpersistedSkippedEvents = 0;
+            numberOfUnpersistedEvents++;
+        }
+        lastProcessed = clock.instant();
+    }
+
+    /**
+     * @return The position that should be persisted according to the policy, or {@code null} if the position shouldn't be persisted yet.
+     */
+    public synchronized SubscriptionPosition positionToPersist() {
+        if (unpersistedPosition == null) {
+            return null;
+        } else if (numberOfUnpersistedEvents >= policy.numberOfEvents) {
+            return unpersistedPosition;
+        }
+
+        Instant now = clock.instant();
+        boolean maxTimeBetweenPersistenceExceeded = policy.maxTimeBetweenPersistence != null && !now.isBefore(lastPersisted.plus(policy.maxTimeBetweenPersistence));
+        boolean idle = policy.idleTimeout != null && !now.isBefore(lastProcessed.plus(policy.idleTimeout));
+        return maxTimeBetweenPersistenceExceeded || idle ? unpersistedPosition : null;
+    }
+
+    /**
+     * @return The latest processed position that has not been persisted, regardless of the policy, or {@code null} if there's no such position.
+     */
+    public synchronized SubscriptionPosition unpersistedPosition() {
+        return unpersistedPosition;
+    }
+
+    /**
+     * Record that the supplied position has been written to storage.
+     *
+     * @param subscriptionPosition The position that was persisted
+     */
+    public synchronized void persisted(SubscriptionPosition subscriptionPosition) {
+        if (subscriptionPosition == unpersistedPosition) {
+            unpersistedPosition = null;
+            numberOfUnpersistedEvents = 0;
+            numberOfUnpersistedSkippedEvents = 0;
+        }
+        lastPersisted = clock.instant();
+    }
+
+    /**
+     * @return The lock to hold while writing a position returned by this tracker to storage.
+     */
+    public ReentrantLock writeLock() {
+        return writeLock;
+    }
+
+    /**
+     * @param policy The policy
+     * @return How often a subscription should check a time based policy.
+     */
+    public static Duration checkInterval(PositionPersistencePolicy policy) {
+        Duration shortest = null;
+        for (Duration duration : new Duration[]{policy.maxTimeBetweenPersistence, policy.idleTimeout}) {
+            if (duration != null && (shortest == null || duration.compareTo(shortest) < 0)) {
+                shortest = duration;
+            }
+        }
+        if (shortest == null) {
+            throw new IllegalArgumentException(policy + " is not time based");
+        }
+        Duration interval = shortest.dividedBy(2);
+        return interval.compareTo(MIN_CHECK_INTERVAL) < 0 ? MIN_CHECK_INTERVAL : interval;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.internal;
+
+import org.occurrent.threads.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link Consumer} that puts the elements it receives in a bounded buffer from which they are consumed, in order, by a dedicated thread.
+ * This allows the thread that produces the elements (e.g. the thread reading a change stream) to continue while the elements are processed.
+ * The producing thread is blocked when the buffer is full.
+ * <p>
+ * If the action throws an exception, the consumer thread is stopped and the exception is rethrown to the producing thread the next time it
+ * calls {@link #accept(Object)}. Elements remaining in the buffer are discarded.
+ * </p>
+ */
+public class PrefetchingConsumer<T> implements Consumer<T>, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(PrefetchingConsumer.class);
+
+    private final BlockingQueue<T> buffer;
+    private final Consumer<T> action;
+    private final Thread consumer;
+    private volatile RuntimeException failure;
+    private volatile boolean closed;
+
+    public PrefetchingConsumer(String name, int bufferSize, Consumer<T> action) {
+        requireNonNull(name, "Name cannot be null");
+        requireNonNull(action, "Action cannot be null");
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be greater than zero");
+        }
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.action = action;
+        this.consumer = VirtualThreads.newThread(name, this::consume);
+        this.consumer.start();
+    }
+
+    @Override
+    public void accept(T element) {
+        rethrowFailure();
+        try {
+            buffer.put(element);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for space in the prefetch buffer", e);
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * Stop the consumer thread and discard the elements that have not yet been consumed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        consumer.interrupt();
+        buffer.clear();
+    }
+
+    private void consume() {
+        try {
+            while (!closed) {
+                T element = buffer.take();
+                action.accept(element);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Caught {} with message \"{}\" when consuming prefetched element, stopping.", e.getClass().getName(), e.getMessage(), e);
+            failure = e;
+            // Unblock the producing thread if it's waiting for space in the buffer
+            buffer.clear();
+        }
+    }
+
+    private void rethrowFailure() {
+        RuntimeException failure = this.failure;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
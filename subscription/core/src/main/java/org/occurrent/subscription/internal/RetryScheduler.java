@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.internal;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Schedules tasks to be re-executed by an {@link Executor} after a delay. The delay is awaited by a single scheduler thread so that
+ * the threads of the executor are not blocked while waiting to retry (as they would be if the task called {@link Thread#sleep(long)}).
+ */
+public class RetryScheduler {
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param name The name of the scheduler thread
+     */
+    public RetryScheduler(String name) {
+        requireNonNull(name, "Name cannot be null");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Execute the {@code task} using the {@code executor} after {@code delayMillis} milliseconds. Tasks scheduled after {@link #shutdown()}
+     * are never executed.
+     *
+     * @return <code>true</code> if the task was scheduled, <code>false</code> if the scheduler has been shutdown.
+     */
+    public boolean schedule(Executor executor, Runnable task, long delayMillis) {
+        requireNonNull(executor, Executor.class.getSimpleName() + " cannot be null");
+        requireNonNull(task, "Task cannot be null");
+        try {
+            scheduler.schedule(() -> executor.execute(task), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Cancel all scheduled tasks
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
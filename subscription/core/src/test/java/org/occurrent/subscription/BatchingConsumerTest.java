@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class BatchingConsumerTest {
+
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    void batch_is_delivered_when_max_size_is_reached() {
+        // Given
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<>("test", BatchPolicy.maxSize(2).maxWait(Duration.ofHours(1)), batches::add);
+
+        // When
+        consumer.accept(1);
+        consumer.accept(2);
+        consumer.accept(3);
+
+        // Then
+        assertThat(batches).containsExactly(asList(1, 2));
+    }
+
+    @Test
+    void batch_is_delivered_when_max_wait_has_passed() throws InterruptedException {
+        // Given
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<>("test", BatchPolicy.maxSize(10).maxWait(Duration.ofMillis(20)), batches::add);
+
+        // When
+        consumer.accept(1);
+
+        // Then
+        awaitBatches();
+        assertThat(batches).containsExactly(singletonList(1));
+    }
+
+    @Test
+    void element_that_fails_to_be_delivered_is_removed_from_the_batch_so_that_it_can_be_retried() {
+        // Given
+        AtomicBoolean fail = new AtomicBoolean(true);
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<>("test", BatchPolicy.maxSize(2).maxWait(Duration.ofHours(1)), batch -> {
+            if (fail.getAndSet(false)) {
+                throw new IllegalStateException("expected");
+            }
+            batches.add(new ArrayList<>(batch));
+        });
+        consumer.accept(1);
+
+        // When
+        Throwable throwable = catchThrowable(() -> consumer.accept(2));
+        consumer.accept(2);
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalStateException.class);
+        assertThat(batches).containsExactly(asList(1, 2));
+    }
+
+    @Test
+    void batch_that_fails_to_be_delivered_after_max_wait_is_retried() throws InterruptedException {
+        // Given
+        AtomicBoolean fail = new AtomicBoolean(true);
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<>("test", BatchPolicy.maxSize(10).maxWait(Duration.ofMillis(20)), batch -> {
+            if (fail.getAndSet(false)) {
+                throw new IllegalStateException("expected");
+            }
+            batches.add(new ArrayList<>(batch));
+        });
+
+        // When
+        consumer.accept(1);
+
+        // Then
+        awaitBatches();
+        assertThat(batches).containsExactly(singletonList(1));
+    }
+
+    @Test
+    void batch_of_one_consumer_is_delivered_while_the_batch_of_another_consumer_is_being_delivered() throws InterruptedException {
+        // Given
+        CountDownLatch blocked = new CountDownLatch(1);
+        BatchingConsumer<Integer> slowConsumer = new BatchingConsumer<>("slow", BatchPolicy.maxSize(10).maxWait(Duration.ofMillis(20)), batch -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<>("test", BatchPolicy.maxSize(10).maxWait(Duration.ofMillis(20)), batches::add);
+
+        // When
+        slowConsumer.accept(1);
+        Thread.sleep(50);
+        consumer.accept(2);
+
+        // Then
+        awaitBatches();
+        blocked.countDown();
+        slowConsumer.close();
+        assertThat(batches).containsExactly(singletonList(2));
+    }
+
+    @Test
+    void batch_is_not_delivered_after_consumer_is_closed() throws InterruptedException {
+        // Given
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<>("test", BatchPolicy.maxSize(10).maxWait(Duration.ofMillis(20)), batches::add);
+        consumer.accept(1);
+
+        // When
+        consumer.close();
+
+        // Then
+        Thread.sleep(100);
+        assertThat(batches).isEmpty();
+    }
+
+    private void awaitBatches() throws InterruptedException {
+        for (int i = 0; i < 200 && batches.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+    }
+}
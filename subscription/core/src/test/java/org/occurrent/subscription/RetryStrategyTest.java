@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class RetryStrategyTest {
+
+    @Test
+    void backoff_without_jitter_doubles_the_delay_until_max_is_reached() {
+        // Given
+        RetryStrategy retryStrategy = RetryStrategy.backoff(Duration.ofMillis(100), Duration.ofMillis(500), 2);
+
+        // When
+        List<Long> delays = take(retryStrategy.delays(), 5);
+
+        // Then
+        assertThat(delays).containsExactly(100L, 200L, 400L, 500L, 500L);
+    }
+
+    @Test
+    void backoff_with_jitter_adjusts_each_delay_by_at_most_the_jitter_fraction() {
+        // Given
+        RetryStrategy retryStrategy = RetryStrategy.backoff(Duration.ofMillis(1000), Duration.ofMillis(1000), 2, 0.2);
+
+        // When
+        List<Long> delays = take(retryStrategy.delays(), 100);
+
+        // Then
+        assertThat(delays).allSatisfy(delay -> assertThat(delay).isBetween(800L, 1200L));
+        assertThat(delays.stream().distinct().count()).isGreaterThan(1);
+    }
+
+    @Test
+    void max_attempts_and_dead_letter_handler_are_retained_by_the_strategy() {
+        // Given
+        DeadLetterHandler deadLetterHandler = (subscriptionId, cloudEvent, cause) -> {
+        };
+
+        // When
+        RetryStrategy retryStrategy = RetryStrategy.fixed(100).maxAttempts(3).deadLetter(deadLetterHandler);
+
+        // Then
+        assertThat(retryStrategy).isInstanceOf(RetryStrategy.Fixed.class);
+        assertThat(((RetryStrategy.Fixed) retryStrategy).millis).isEqualTo(100);
+        assertThat(retryStrategy.maxAttempts).isEqualTo(3);
+        assertThat(retryStrategy.deadLetterHandler).isSameAs(deadLetterHandler);
+    }
+
+    @Test
+    void none_is_only_attempted_once() {
+        // When
+        RetryStrategy retryStrategy = RetryStrategy.none().maxAttempts(5);
+
+        // Then
+        assertThat(retryStrategy.maxAttempts).isEqualTo(1);
+        assertThat(retryStrategy.delays()).isNull();
+    }
+
+    @Test
+    void max_attempts_must_be_greater_than_zero() {
+        // When
+        Throwable throwable = catchThrowable(() -> RetryStrategy.fixed(100).maxAttempts(0));
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("Max attempts must be greater than zero");
+    }
+
+    private static List<Long> take(Iterator<Long> delays, int count) {
+        return IntStream.range(0, count).mapToObj(__ -> delays.next()).collect(Collectors.toList());
+    }
+}
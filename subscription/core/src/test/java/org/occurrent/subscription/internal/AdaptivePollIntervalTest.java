@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptivePollIntervalTest {
+
+    private final AdaptivePollInterval pollInterval = new AdaptivePollInterval(Duration.ofMillis(10), Duration.ofMillis(100));
+
+    @Test
+    void polls_immediately_when_a_full_batch_was_fetched() {
+        // When
+        long delay = pollInterval.next(50, 50);
+
+        // Then
+        assertThat(delay).isZero();
+    }
+
+    @Test
+    void interval_is_doubled_up_to_max_interval_while_no_elements_are_fetched() {
+        // When
+        long delay1 = pollInterval.next(0, 50);
+        long delay2 = pollInterval.next(0, 50);
+        long delay3 = pollInterval.next(0, 50);
+        long delay4 = pollInterval.next(0, 50);
+        long delay5 = pollInterval.next(0, 50);
+        long delay6 = pollInterval.next(0, 50);
+
+        // Then
+        assertThat(new long[]{delay1, delay2, delay3, delay4, delay5, delay6}).containsExactly(10, 20, 40, 80, 100, 100);
+    }
+
+    @Test
+    void interval_is_reset_to_min_interval_when_elements_are_fetched() {
+        // Given
+        pollInterval.next(0, 50);
+        pollInterval.next(0, 50);
+        pollInterval.next(0, 50);
+
+        // When
+        long delay1 = pollInterval.next(1, 50);
+        long delay2 = pollInterval.next(0, 50);
+
+        // Then
+        assertThat(delay1).isEqualTo(10);
+        assertThat(delay2).isEqualTo(10);
+    }
+
+    @Test
+    void max_interval_cannot_be_less_than_min_interval() {
+        assertThatThrownBy(() -> new AdaptivePollInterval(Duration.ofSeconds(2), Duration.ofSeconds(1)))
+                .isExactlyInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max interval cannot be less than min interval");
+    }
+}
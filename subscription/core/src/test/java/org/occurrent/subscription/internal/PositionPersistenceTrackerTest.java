@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.occurrent.subscription.PositionPersistencePolicy;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionPosition;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class PositionPersistenceTrackerTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    @Nested
+    @DisplayName("number of events")
+    class NumberOfEvents {
+
+        @Test
+        void every_event_policy_persists_the_position_of_each_event() {
+            // Given
+            PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.everyEvent(), clock);
+
+            // When
+            tracker.processed(position("1"));
+
+            // Then
+            assertThat(tracker.positionToPersist()).isEqualTo(position("1"));
+        }
+
+        @Test
+        void position_is_persisted_when_the_number_of_unpersisted_events_is_reached() {
+            // Given
+            PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.everyNumberOfEvents(3), clock);
+
+            // When
+            tracker.processed(position("1"));
+            tracker.processed(position("2"));
+            SubscriptionPosition afterTwoEvents = tracker.positionToPersist();
+            tracker.processed(position("3"));
+            SubscriptionPosition afterThreeEvents = tracker.positionToPersist();
+
+            // Then
+            assertThat(afterTwoEvents).isNull();
+            assertThat(afterThreeEvents).isEqualTo(position("3"));
+        }
+
+        @Test
+        void counter_is_reset_once_the_position_is_persisted() {
+            // Given
+            PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.everyNumberOfEvents(2), clock);
+            tracker.processed(position("1"));
+            tracker.processed(position("2"));
+
+            // When
+            tracker.persisted(tracker.positionToPersist());
+            tracker.processed(position("3"));
+
+            // Then
+            assertThat(tracker.positionToPersist()).isNull();
+            assertThat(tracker.unpersistedPosition()).isEqualTo(position("3"));
+        }
+
+        @Test
+        void skipped_events_only_count_towards_the_number_of_events_once_every_thousand_events() {
+            // Given
+            PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.everyEvent(), clock);
+
+            // When
+            for (int i = 1; i < PositionPersistenceTracker.SKIPPED_EVENTS_PER_COUNTED_EVENT; i++) {
+                tracker.skipped(position(String.valueOf(i)));
+            }
+            SubscriptionPosition beforeThreshold = tracker.positionToPersist();
+            tracker.skipped(position("last"));
+            SubscriptionPosition atThreshold = tracker.positionToPersist();
+
+            // Then
+            assertThat(beforeThreshold).isNull();
+            assertThat(atThreshold).isEqualTo(position("last"));
+        }
+
+        @Test
+        void position_of_skipped_events_is_persisted_with_the_next_processed_event() {
+            // Given
+            PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.everyEvent(), clock);
+            tracker.skipped(position("1"));
+            SubscriptionPosition afterSkippedEvent = tracker.positionToPersist();
+
+            // When
+            tracker.processed(position("2"));
+
+            // Then
+            assertThat(afterSkippedEvent).isNull();
+            assertThat(tracker.unpersistedPosition()).isEqualTo(position("2"));
+            assertThat(tracker.positionToPersist()).isEqualTo(position("2"));
+        }
+    }
+
+    @Nested
+    @DisplayName("time")
+    class Time {
+
+        @Test
+        void position_is_persisted_when_max_time_between_persistence_is_exceeded() {
+            // Given
+            PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.every(Duration.ofSeconds(1)), clock);
+            tracker.processed(position("1"));
+
+            // When
+            SubscriptionPosition beforeMaxTime = tracker.positionToPersist();
+            clock.advance(Duration.ofSeconds(1));
+            SubscriptionPosition afterMaxTime = tracker.positionToPersist();
+
+            // Then
+            assertThat(beforeMaxTime).isNull();
+            assertThat(afterMaxTime).isEqualTo(position("1"));
+        }
+
+        @Test
+        void position_is_persisted_when_no_events_have_been_processed_for_the_idle_timeout() {
+            // Given
+            PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.onIdle(Duration.ofMillis(100)), clock);
+
+            // When
+            tracker.processed(position("1"));
+            clock.advance(Duration.ofMillis(90));
+            tracker.processed(position("2"));
+            clock.advance(Duration.ofMillis(90));
+            SubscriptionPosition whileActive = tracker.positionToPersist();
+            clock.advance(Duration.ofMillis(10));
+            SubscriptionPosition whenIdle = tracker.positionToPersist();
+
+            // Then
+            assertThat(whileActive).isNull();
+            assertThat(whenIdle).isEqualTo(position("2"));
+        }
+
+        @Test
+        void position_of_skipped_events_is_persisted_when_max_time_between_persistence_is_exceeded() {
+            // Given
+            PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.everyEvent().orEvery(Duration.ofSeconds(1)), clock);
+            tracker.skipped(position("1"));
+
+            // When
+            SubscriptionPosition beforeMaxTime = tracker.positionToPersist();
+            clock.advance(Duration.ofSeconds(1));
+            SubscriptionPosition afterMaxTime = tracker.positionToPersist();
+
+            // Then
+            assertThat(beforeMaxTime).isNull();
+            assertThat(afterMaxTime).isEqualTo(position("1"));
+        }
+
+        @Test
+        void nothing_is_persisted_when_there_are_no_unpersisted_events() {
+            // Given
+            PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.every(Duration.ofSeconds(1)).orOnIdle(Duration.ofMillis(10)), clock);
+
+            // When
+            clock.advance(Duration.ofSeconds(2));
+
+            // Then
+            assertThat(tracker.positionToPersist()).isNull();
+        }
+
+        @Test
+        void check_interval_is_half_of_the_shortest_duration() {
+            PositionPersistencePolicy policy = PositionPersistencePolicy.every(Duration.ofSeconds(2)).orOnIdle(Duration.ofMillis(500));
+
+            assertThat(PositionPersistenceTracker.checkInterval(policy)).isEqualTo(Duration.ofMillis(250));
+        }
+    }
+
+    @Test
+    void position_is_not_regarded_as_persisted_when_a_newer_position_has_been_processed() {
+        // Given
+        PositionPersistenceTracker tracker = new PositionPersistenceTracker(PositionPersistencePolicy.everyEvent(), clock);
+        tracker.processed(position("1"));
+        SubscriptionPosition positionToPersist = tracker.positionToPersist();
+        tracker.processed(position("2"));
+
+        // When
+        tracker.persisted(positionToPersist);
+
+        // Then
+        assertThat(tracker.unpersistedPosition()).isEqualTo(position("2"));
+    }
+
+    @Test
+    void number_of_events_must_be_greater_than_zero() {
+        Throwable throwable = catchThrowable(() -> PositionPersistencePolicy.everyNumberOfEvents(0));
+
+        assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static SubscriptionPosition position(String value) {
+        return new StringBasedSubscriptionPosition(value);
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant = Instant.now();
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@Timeout(10)
+class PrefetchingConsumerTest {
+
+    @Test
+    void elements_are_consumed_in_order_by_another_thread() throws InterruptedException {
+        // Given
+        List<String> consumedBy = new CopyOnWriteArrayList<>();
+        List<Integer> consumed = new CopyOnWriteArrayList<>();
+        CountDownLatch allConsumed = new CountDownLatch(100);
+        try (PrefetchingConsumer<Integer> consumer = new PrefetchingConsumer<>("prefetch", 10, element -> {
+            consumedBy.add(Thread.currentThread().getName());
+            consumed.add(element);
+            allConsumed.countDown();
+        })) {
+            // When
+            for (int i = 0; i < 100; i++) {
+                consumer.accept(i);
+            }
+
+            // Then
+            assertThat(allConsumed.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+        for (int i = 0; i < 100; i++) {
+            assertThat(consumed.get(i)).isEqualTo(i);
+        }
+        assertThat(consumedBy).containsOnly("prefetch");
+    }
+
+    @Test
+    void producer_is_not_blocked_while_the_buffer_has_space() throws InterruptedException {
+        // Given
+        CountDownLatch mayConsume = new CountDownLatch(1);
+        try (PrefetchingConsumer<Integer> consumer = new PrefetchingConsumer<>("prefetch", 3, element -> awaitUninterruptibly(mayConsume))) {
+            // When
+            // One element is taken by the consumer thread and three are buffered
+            for (int i = 0; i < 4; i++) {
+                consumer.accept(i);
+            }
+
+            // Then
+            mayConsume.countDown();
+        }
+    }
+
+    @Test
+    void exception_thrown_by_action_is_rethrown_to_the_producer() throws InterruptedException {
+        // Given
+        CountDownLatch failed = new CountDownLatch(1);
+        IllegalStateException exception = new IllegalStateException("expected");
+        try (PrefetchingConsumer<Integer> consumer = new PrefetchingConsumer<>("prefetch", 1, element -> {
+            failed.countDown();
+            throw exception;
+        })) {
+            // The failure may already be rethrown when the first element is accepted if the consumer thread fails before the producer returns
+            Throwable throwable = catchThrowable(() -> consumer.accept(1));
+            assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // When
+            for (int i = 0; i < 100 && throwable == null; i++) {
+                throwable = catchThrowable(() -> consumer.accept(2));
+            }
+
+            // Then
+            assertThat(throwable).isSameAs(exception);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Timeout(10)
+class RetrySchedulerTest {
+
+    private final RetryScheduler retryScheduler = new RetryScheduler("retry");
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "worker"));
+
+    @AfterEach
+    void shutdown() {
+        retryScheduler.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void task_is_executed_by_the_executor_after_the_delay() throws InterruptedException {
+        // Given
+        AtomicReference<String> executedBy = new AtomicReference<>();
+        CountDownLatch executed = new CountDownLatch(1);
+        long scheduledAt = System.nanoTime();
+
+        // When
+        boolean scheduled = retryScheduler.schedule(executor, () -> {
+            executedBy.set(Thread.currentThread().getName());
+            executed.countDown();
+        }, 100);
+
+        // Then
+        assertThat(scheduled).isTrue();
+        assertThat(executed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledAt)).isGreaterThanOrEqualTo(100);
+        assertThat(executedBy).hasValue("worker");
+    }
+
+    @Test
+    void executor_is_not_blocked_while_waiting_for_the_delay() throws InterruptedException {
+        // Given
+        CountDownLatch otherTaskExecuted = new CountDownLatch(1);
+        retryScheduler.schedule(executor, () -> {
+        }, 10_000);
+
+        // When
+        executor.execute(otherTaskExecuted::countDown);
+
+        // Then
+        assertThat(otherTaskExecuted.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void tasks_are_not_scheduled_after_shutdown() {
+        // Given
+        retryScheduler.shutdown();
+
+        // When
+        boolean scheduled = retryScheduler.schedule(executor, () -> {
+        }, 0);
+
+        // Then
+        assertThat(scheduled).isFalse();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configures how the MongoDB change stream of a subscription is read. By default the settings of the MongoDB driver are used and events are read
+ * and processed by the same thread, and the full cloud events are read.
+ * <p>
+ * Example:
+ * <pre>
+ * ChangeStreamConfig.defaults().batchSize(500).maxAwaitTime(Duration.ofMillis(200)).prefetch(1000).projection(CloudEventProjection.attributesOnly());
+ * </pre>
+ */
+public class ChangeStreamConfig {
+    /**
+     * The number of documents to return per batch from the change stream cursor, or {@code null} to use the default of the MongoDB driver.
+     */
+    public final Integer batchSize;
+    /**
+     * The maximum time the server waits for new documents before returning an empty batch, or {@code null} to use the default of the MongoDB driver.
+     */
+    public final Duration maxAwaitTime;
+    /**
+     * The maximum number of deserialized events that are buffered between the thread that reads the change stream and the thread that invokes the
+     * action. Zero (the default) means that the action is invoked by the thread that reads the change stream.
+     */
+    public final int prefetch;
+    /**
+     * The parts of the cloud events that are read from the change stream, the full cloud events are read by default.
+     */
+    public final CloudEventProjection projection;
+
+    private ChangeStreamConfig(Integer batchSize, Duration maxAwaitTime, int prefetch, CloudEventProjection projection) {
+        if (batchSize != null && batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+        if (maxAwaitTime != null && (maxAwaitTime.isZero() || maxAwaitTime.isNegative())) {
+            throw new IllegalArgumentException("Max await time must be positive");
+        }
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("Prefetch cannot be negative");
+        }
+        this.batchSize = batchSize;
+        this.maxAwaitTime = maxAwaitTime;
+        this.prefetch = prefetch;
+        this.projection = Objects.requireNonNull(projection, CloudEventProjection.class.getSimpleName() + " cannot be null");
+    }
+
+    /**
+     * @return A {@link ChangeStreamConfig} that uses the defaults of the MongoDB driver and doesn't prefetch any events or project the cloud events.
+     */
+    public static ChangeStreamConfig defaults() {
+        return new ChangeStreamConfig(null, null, 0, CloudEventProjection.full());
+    }
+
+    /**
+     * @param batchSize The number of documents to return per batch from the change stream cursor
+     * @return A new {@link ChangeStreamConfig}
+     */
+    public ChangeStreamConfig batchSize(int batchSize) {
+        return new ChangeStreamConfig(batchSize, maxAwaitTime, prefetch, projection);
+    }
+
+    /**
+     * @param maxAwaitTime The maximum time the server waits for new documents before returning an empty batch
+     * @return A new {@link ChangeStreamConfig}
+     */
+    public ChangeStreamConfig maxAwaitTime(Duration maxAwaitTime) {
+        Objects.requireNonNull(maxAwaitTime, "Max await time cannot be null");
+        return new ChangeStreamConfig(batchSize, maxAwaitTime, prefetch, projection);
+    }
+
+    /**
+     * Read and deserialize events in a separate thread so that reading from the database overlaps with the processing of the events.
+     *
+     * @param prefetch The maximum number of events that are buffered before the thread that reads the change stream is blocked.
+     * @return A new {@link ChangeStreamConfig}
+     */
+    public ChangeStreamConfig prefetch(int prefetch) {
+        return new ChangeStreamConfig(batchSize, maxAwaitTime, prefetch, projection);
+    }
+
+    /**
+     * Only read parts of the cloud events from the change stream, for example to avoid transferring large payloads to subscribers that don't need them.
+     * The projection is applied by the database after the subscription filter, so the filter may still refer to the data that is left out.
+     *
+     * @param projection The parts of the cloud events to read
+     * @return A new {@link ChangeStreamConfig}
+     */
+    public ChangeStreamConfig projection(CloudEventProjection projection) {
+        return new ChangeStreamConfig(batchSize, maxAwaitTime, prefetch, projection);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChangeStreamConfig)) return false;
+        ChangeStreamConfig that = (ChangeStreamConfig) o;
+        return prefetch == that.prefetch &&
+                Objects.equals(batchSize, that.batchSize) &&
+                Objects.equals(maxAwaitTime, that.maxAwaitTime) &&
+                Objects.equals(projection, that.projection);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(batchSize, maxAwaitTime, prefetch, projection);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeStreamConfig{" +
+                "batchSize=" + batchSize +
+                ", maxAwaitTime=" + maxAwaitTime +
+                ", prefetch=" + prefetch +
+                ", projection=" + projection +
+                '}';
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Specifies which parts of the cloud events that a subscription should receive. By default, the full cloud event is received.
+ * Subscribers that don't need the data of the cloud events (or only need a small part of it) can use a projection to reduce the
+ * number of bytes that are read from the database for each event. The projection is applied by the database, and the subscriber
+ * receives partial cloud events, i.e. cloud events without data or with data that contains only the specified paths.
+ * <p>
+ * Examples:
+ * <pre>
+ * CloudEventProjection.attributesOnly();
+ * CloudEventProjection.attributesAndData("name", "address.city");
+ * </pre>
+ */
+public class CloudEventProjection {
+    private static final CloudEventProjection FULL = new CloudEventProjection(true, Collections.emptyList());
+    private static final CloudEventProjection ATTRIBUTES_ONLY = new CloudEventProjection(false, Collections.emptyList());
+
+    /**
+     * {@code true} if the cloud events should include their data, {@code false} if the data should be excluded (or reduced to {@link #dataPaths}).
+     */
+    public final boolean includeData;
+    /**
+     * The paths (relative to the data of the cloud event) that should be included in the data, empty if no data (or all data) should be included.
+     */
+    public final List<String> dataPaths;
+
+    private CloudEventProjection(boolean includeData, List<String> dataPaths) {
+        this.includeData = includeData;
+        this.dataPaths = dataPaths;
+    }
+
+    /**
+     * @return A {@link CloudEventProjection} that includes the full cloud event
+     */
+    public static CloudEventProjection full() {
+        return FULL;
+    }
+
+    /**
+     * @return A {@link CloudEventProjection} that includes all attributes and extensions of the cloud event, but not its data.
+     */
+    public static CloudEventProjection attributesOnly() {
+        return ATTRIBUTES_ONLY;
+    }
+
+    /**
+     * Include all attributes and extensions of the cloud event, and the specified paths of the data. The paths are relative to the data, for example
+     * {@code "address.city"} includes the "city" field of the "address" object in the data. Note that this only applies to cloud events whose data is
+     * a JSON object, the data of other cloud events is excluded.
+     *
+     * @param dataPath            A path in the data to include
+     * @param additionalDataPaths Additional paths in the data to include
+     * @return A new {@link CloudEventProjection}
+     */
+    public static CloudEventProjection attributesAndData(String dataPath, String... additionalDataPaths) {
+        List<String> dataPaths = new ArrayList<>(1 + (additionalDataPaths == null ? 0 : additionalDataPaths.length));
+        dataPaths.add(dataPath);
+        if (additionalDataPaths != null) {
+            Collections.addAll(dataPaths, additionalDataPaths);
+        }
+        dataPaths.forEach(CloudEventProjection::validateDataPath);
+        return new CloudEventProjection(false, Collections.unmodifiableList(dataPaths));
+    }
+
+    /**
+     * @return {@code true} if this projection includes the full cloud event
+     */
+    public boolean isFull() {
+        return includeData;
+    }
+
+    private static void validateDataPath(String dataPath) {
+        requireNonNull(dataPath, "Data path cannot be null");
+        if (dataPath.trim().isEmpty() || dataPath.startsWith("$") || dataPath.startsWith(".") || dataPath.endsWith(".") || dataPath.contains("..")) {
+            throw new IllegalArgumentException("Invalid data path: \"" + dataPath + "\"");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CloudEventProjection)) return false;
+        CloudEventProjection that = (CloudEventProjection) o;
+        return includeData == that.includeData &&
+                Objects.equals(dataPaths, that.dataPaths);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(includeData, dataPaths);
+    }
+
+    @Override
+    public String toString() {
+        return "CloudEventProjection{" +
+                "includeData=" + includeData +
+                ", dataPaths=" + dataPaths +
+                '}';
+    }
+}
@@ -27,6 +27,10 @@ import static com.mongodb.client.model.Aggregates.match;
 /**
  * Add filters when subscribing to a MongoDB subscription if you're only interested in specify changes.
  * These filters will be applied at the database level so they're efficient.
+ * <p>
+ * Prefer using an {@link org.occurrent.subscription.OccurrentSubscriptionFilter} when possible, it's translated into the same kind of
+ * aggregation stage and also supports filtering on fields in the data of the cloud event using {@link org.occurrent.filter.Filter#data(String, org.occurrent.condition.Condition)}.
+ * </p>
  */
 public class MongoDBFilterSpecification implements SubscriptionFilter {
 
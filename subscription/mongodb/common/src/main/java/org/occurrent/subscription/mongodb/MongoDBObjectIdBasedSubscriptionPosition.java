@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.occurrent.subscription.SubscriptionPosition;
+
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link SubscriptionPosition} implementation for MongoDB that provides the {@code _id} ({@link ObjectId}) of the last event document that
+ * was read by a polling subscription.
+ */
+public class MongoDBObjectIdBasedSubscriptionPosition implements SubscriptionPosition {
+    public final ObjectId objectId;
+
+    public MongoDBObjectIdBasedSubscriptionPosition(ObjectId objectId) {
+        requireNonNull(objectId, ObjectId.class.getSimpleName() + " cannot be null");
+        this.objectId = objectId;
+    }
+
+    public ObjectId getObjectId() {
+        return objectId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MongoDBObjectIdBasedSubscriptionPosition)) return false;
+        MongoDBObjectIdBasedSubscriptionPosition that = (MongoDBObjectIdBasedSubscriptionPosition) o;
+        return Objects.equals(objectId, that.objectId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(objectId);
+    }
+
+    @Override
+    public String toString() {
+        return "MongoDBObjectIdBasedSubscriptionPosition{" +
+                "objectId=" + objectId +
+                '}';
+    }
+
+    @Override
+    public String asString() {
+        return new Document("objectId", objectId).toJson();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Configures how a polling subscription reads the event collection. The poll interval adapts to the load, the subscription polls again
+ * immediately when a full batch was read, after {@link #minPollInterval} when some events were read, and the interval is doubled for each
+ * empty poll until {@link #maxPollInterval} is reached.
+ * <p>
+ * Example:
+ * <pre>
+ * PollingConfig.defaults().batchSize(500).pollInterval(Duration.ofMillis(10), Duration.ofSeconds(5)).visibilityDelay(Duration.ofSeconds(1));
+ * </pre>
+ */
+public class PollingConfig {
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final Duration DEFAULT_MIN_POLL_INTERVAL = Duration.ofMillis(5);
+    private static final Duration DEFAULT_MAX_POLL_INTERVAL = Duration.ofSeconds(2);
+    private static final Duration DEFAULT_VISIBILITY_DELAY = Duration.ofSeconds(1);
+
+    /**
+     * The maximum number of events that are read by each poll
+     */
+    public final int batchSize;
+    /**
+     * The poll interval to use when there are events to read
+     */
+    public final Duration minPollInterval;
+    /**
+     * The maximum poll interval to use when the subscription is idle
+     */
+    public final Duration maxPollInterval;
+    /**
+     * Events whose {@code _id} was generated less than the visibility delay ago are not read until a later poll. The {@code _id} is generated
+     * by the client before the event is written, so an event with a lower {@code _id} may become visible after an event with a higher {@code _id}.
+     * This happens when there are several concurrent writers, and when an event is written in a transaction that commits after a later
+     * transaction. The subscription would miss such an event since it has already read past its {@code _id}.
+     * <p>
+     * The visibility delay must be longer than the clock skew between the writers plus the time between generating the {@code _id} and committing
+     * the write (i.e. the longest transaction) to prevent this. The trade-off is latency, an event is delivered at the earliest after the visibility
+     * delay (rounded up to whole seconds since the time in an {@code _id} has a precision of seconds). Defaults to one second. Set it to
+     * {@link Duration#ZERO} to get the lowest latency, which is only safe when there's a single writer that doesn't write events concurrently.
+     * </p>
+     */
+    public final Duration visibilityDelay;
+
+    private PollingConfig(int batchSize, Duration minPollInterval, Duration maxPollInterval, Duration visibilityDelay) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+        if (minPollInterval.isNegative()) {
+            throw new IllegalArgumentException("Min poll interval cannot be negative");
+        }
+        if (maxPollInterval.compareTo(minPollInterval) < 0) {
+            throw new IllegalArgumentException("Max poll interval cannot be less than min poll interval");
+        }
+        if (visibilityDelay.isNegative()) {
+            throw new IllegalArgumentException("Visibility delay cannot be negative");
+        }
+        this.batchSize = batchSize;
+        this.minPollInterval = minPollInterval;
+        this.maxPollInterval = maxPollInterval;
+        this.visibilityDelay = visibilityDelay;
+    }
+
+    /**
+     * @return A {@link PollingConfig} that reads 100 events per poll, polls every 5 milliseconds under load and every 2 seconds when idle, and has a visibility delay of 1 second.
+     */
+    public static PollingConfig defaults() {
+        return new PollingConfig(DEFAULT_BATCH_SIZE, DEFAULT_MIN_POLL_INTERVAL, DEFAULT_MAX_POLL_INTERVAL, DEFAULT_VISIBILITY_DELAY);
+    }
+
+    /**
+     * @param batchSize The maximum number of events that are read by each poll
+     * @return A new {@link PollingConfig}
+     */
+    public PollingConfig batchSize(int batchSize) {
+        return new PollingConfig(batchSize, minPollInterval, maxPollInterval, visibilityDelay);
+    }
+
+    /**
+     * @param minPollInterval The poll interval to use when there are events to read
+     * @param maxPollInterval The maximum poll interval to use when the subscription is idle
+     * @return A new {@link PollingConfig}
+     */
+    public PollingConfig pollInterval(Duration minPollInterval, Duration maxPollInterval) {
+        requireNonNull(minPollInterval, "Min poll interval cannot be null");
+        requireNonNull(maxPollInterval, "Max poll interval cannot be null");
+        return new PollingConfig(batchSize, minPollInterval, maxPollInterval, visibilityDelay);
+    }
+
+    /**
+     * @param visibilityDelay Don't read events whose {@code _id} was generated less than {@code visibilityDelay} ago, see {@link #visibilityDelay}.
+     * @return A new {@link PollingConfig}
+     */
+    public PollingConfig visibilityDelay(Duration visibilityDelay) {
+        requireNonNull(visibilityDelay, "Visibility delay cannot be null");
+        return new PollingConfig(batchSize, minPollInterval, maxPollInterval, visibilityDelay);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PollingConfig)) return false;
+        PollingConfig that = (PollingConfig) o;
+        return batchSize == that.batchSize &&
+                Objects.equals(minPollInterval, that.minPollInterval) &&
+                Objects.equals(maxPollInterval, that.maxPollInterval) &&
+                Objects.equals(visibilityDelay, that.visibilityDelay);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(batchSize, minPollInterval, maxPollInterval, visibilityDelay);
+    }
+
+    @Override
+    public String toString() {
+        return "PollingConfig{" +
+                "batchSize=" + batchSize +
+                ", minPollInterval=" + minPollInterval +
+                ", maxPollInterval=" + maxPollInterval +
+                ", visibilityDelay=" + visibilityDelay +
+                '}';
+    }
+}
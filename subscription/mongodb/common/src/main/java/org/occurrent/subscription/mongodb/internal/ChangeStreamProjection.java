@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb.internal;
+
+import org.bson.Document;
+import org.occurrent.subscription.mongodb.CloudEventProjection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.subscription.mongodb.MongoDBFilterSpecification.FULL_DOCUMENT;
+
+/**
+ * Converts a {@link CloudEventProjection} into change stream aggregation stages that are applied to the "fullDocument" of the change stream documents.
+ * The resume token ({@code _id}) and the cloud event attributes and extensions are never removed, so that the result can be deserialized by
+ * {@link MongoDBCloudEventsToJsonDeserializer}.
+ */
+public class ChangeStreamProjection {
+    private static final String DATA = FULL_DOCUMENT + ".data";
+    private static final String DATA_BASE64 = FULL_DOCUMENT + ".data_base64";
+
+    /**
+     * @return The aggregation stages to append to the change stream pipeline, empty if the projection includes the full cloud event.
+     */
+    public static List<Document> createPipelineStages(CloudEventProjection projection) {
+        requireNonNull(projection, CloudEventProjection.class.getSimpleName() + " cannot be null");
+        if (projection.isFull()) {
+            return Collections.emptyList();
+        } else if (projection.dataPaths.isEmpty()) {
+            return Collections.singletonList(new Document("$project", new Document(DATA, 0).append(DATA_BASE64, 0)));
+        }
+
+        // Replace the data with an object that only contains the specified paths. Data that is not a JSON object (such as binary data) is removed.
+        Document dataWithSpecifiedPaths = new Document();
+        projection.dataPaths.forEach(dataPath -> addPath(dataWithSpecifiedPaths, dataPath));
+        Document isObject = new Document("$eq", Arrays.asList(new Document("$type", "$" + DATA), "object"));
+        Document projectData = new Document("$addFields", new Document(DATA, new Document("$cond", Arrays.asList(isObject, dataWithSpecifiedPaths, "$$REMOVE"))));
+        Document removeBinaryData = new Document("$project", new Document(DATA_BASE64, 0));
+        List<Document> stages = new ArrayList<>(2);
+        stages.add(projectData);
+        stages.add(removeBinaryData);
+        return stages;
+    }
+
+    // Field names cannot contain "." in an expression object, so "address.city" is added as {"address": {"city": "$fullDocument.data.address.city"}}
+    private static void addPath(Document dataWithSpecifiedPaths, String dataPath) {
+        String[] fieldNames = dataPath.split("\\.");
+        Document document = dataWithSpecifiedPaths;
+        for (int i = 0; i < fieldNames.length - 1; i++) {
+            Object existing = document.get(fieldNames[i]);
+            if (existing instanceof String) {
+                // A parent path is already included
+                return;
+            } else if (existing == null) {
+                Document child = new Document();
+                document.put(fieldNames[i], child);
+                document = child;
+            } else {
+                document = (Document) existing;
+            }
+        }
+        // The full path replaces any child paths that have been added previously
+        document.put(fieldNames[fieldNames.length - 1], "$" + DATA + "." + dataPath);
+    }
+}
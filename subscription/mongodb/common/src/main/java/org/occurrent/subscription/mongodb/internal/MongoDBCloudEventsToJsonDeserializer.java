@@ -28,6 +28,10 @@ import java.util.Optional;
 
 import static com.mongodb.client.model.changestream.OperationType.INSERT;
 
+/**
+ * Deserializes the cloud events of change stream documents. If the change stream has a {@link org.occurrent.subscription.mongodb.CloudEventProjection}
+ * (see {@link ChangeStreamProjection}), partial cloud events are produced, i.e. cloud events without data or with only parts of the data.
+ */
 public class MongoDBCloudEventsToJsonDeserializer {
 
     public static final String ID = "_id";
@@ -56,6 +56,18 @@ public class MongoDBCommons {
         return new Document(data);
     }
 
+    public static Document generateSubscriptionPositionDocument(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        final Document document;
+        if (subscriptionPosition instanceof MongoDBResumeTokenBasedSubscriptionPosition) {
+            document = generateResumeTokenStreamPositionDocument(subscriptionId, ((MongoDBResumeTokenBasedSubscriptionPosition) subscriptionPosition).resumeToken);
+        } else if (subscriptionPosition instanceof MongoDBOperationTimeBasedSubscriptionPosition) {
+            document = generateOperationTimeStreamPositionDocument(subscriptionId, ((MongoDBOperationTimeBasedSubscriptionPosition) subscriptionPosition).operationTime);
+        } else {
+            document = generateGenericStreamPositionDocument(subscriptionId, subscriptionPosition.asString());
+        }
+        return document;
+    }
+
     public static BsonTimestamp getServerOperationTime(Document hostInfoDocument) {
         return (BsonTimestamp) hostInfoDocument.get(OPERATION_TIME);
     }
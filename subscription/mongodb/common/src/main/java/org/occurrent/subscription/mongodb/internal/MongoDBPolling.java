@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb.internal;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.format.EventFormat;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDBDocumentMapper;
+import org.occurrent.filter.Filter;
+import org.occurrent.mongodb.spring.filterbsonfilterconversion.internal.FilterToBsonFilterConverter;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.mongodb.MongoDBFilterSpecification;
+import org.occurrent.subscription.mongodb.MongoDBObjectIdBasedSubscriptionPosition;
+import org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition;
+import org.occurrent.subscription.mongodb.MongoDBResumeTokenBasedSubscriptionPosition;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Sorts.ascending;
+import static com.mongodb.client.model.Sorts.descending;
+import static org.occurrent.subscription.mongodb.internal.MongoDBCommons.OPERATION_TIME;
+import static org.occurrent.subscription.mongodb.internal.MongoDBCommons.RESUME_TOKEN;
+
+/**
+ * Common functionality for subscriptions that poll the event collection instead of using change streams. The event collection is tailed
+ * by {@code _id}, which is an {@link ObjectId} generated when the event is written and thus increases with the time the event was written.
+ * Each poll is an indexed range query on {@code _id} that starts after the {@code _id} of the last event that was read.
+ */
+public class MongoDBPolling {
+    public static final String ID = "_id";
+    static final String OBJECT_ID = "objectId";
+    private static final ObjectId BEGINNING = new ObjectId("000000000000000000000000");
+    // The largest counter and random value of an ObjectId, used to create the largest ObjectId that can be generated during a given second
+    private static final String LAST_ID_OF_SECOND_SUFFIX = "ffffffffffffffff";
+
+    /**
+     * Sort events in the order they should be read
+     */
+    public static final Bson SORT_BY_ID_ASCENDING = ascending(ID);
+    /**
+     * Sort events in reverse order, used to find the latest event
+     */
+    public static final Bson SORT_BY_ID_DESCENDING = descending(ID);
+
+    /**
+     * Convert the subscription filter into a query filter that is applied to the documents of the event collection.
+     *
+     * @return The filter or {@code null} if {@code filter} is {@code null}.
+     * @throws IllegalArgumentException If the filter is a {@link MongoDBFilterSpecification}, since it consists of aggregation stages for change stream documents.
+     */
+    public static Bson createFilter(TimeRepresentation timeRepresentation, SubscriptionFilter filter) {
+        final Bson bson;
+        if (filter == null) {
+            bson = null;
+        } else if (filter instanceof OccurrentSubscriptionFilter) {
+            Filter occurrentFilter = ((OccurrentSubscriptionFilter) filter).filter;
+            bson = FilterToBsonFilterConverter.convertFilterToBsonFilter(timeRepresentation, occurrentFilter);
+        } else if (filter instanceof MongoDBFilterSpecification) {
+            throw new IllegalArgumentException(MongoDBFilterSpecification.class.getSimpleName() + " is not supported by polling subscriptions since it applies to change stream documents, use an " + OccurrentSubscriptionFilter.class.getSimpleName() + " instead.");
+        } else {
+            throw new IllegalArgumentException("Invalid " + SubscriptionFilter.class.getSimpleName());
+        }
+        return bson;
+    }
+
+    /**
+     * Create the query that finds the events after {@code after} that match the {@code filter}.
+     *
+     * @param filter          The filter returned by {@link #createFilter(TimeRepresentation, SubscriptionFilter)}
+     * @param after           Find events whose {@code _id} is greater than this id
+     * @param visibilityDelay Don't find events whose {@code _id} was generated less than {@code visibilityDelay} ago
+     * @return The query
+     */
+    public static Bson createQuery(Bson filter, ObjectId after, Duration visibilityDelay) {
+        Bson query = gt(ID, after);
+        if (!visibilityDelay.isZero()) {
+            query = and(query, lte(ID, lastIdOfSecond(Instant.now().minus(visibilityDelay).getEpochSecond())));
+        }
+        return filter == null ? query : and(query, filter);
+    }
+
+    /**
+     * Resolve the {@code _id} after which a subscription that starts at the given position should start reading events.
+     *
+     * @param position The subscription position
+     * @return The {@code _id} after which events should be read
+     * @throws IllegalArgumentException If the position is a resume token, which can't be translated to an {@code _id}.
+     */
+    public static ObjectId startAfter(SubscriptionPosition position) {
+        final ObjectId startAfter;
+        if (position instanceof MongoDBObjectIdBasedSubscriptionPosition) {
+            startAfter = ((MongoDBObjectIdBasedSubscriptionPosition) position).objectId;
+        } else if (position instanceof MongoDBOperationTimeBasedSubscriptionPosition) {
+            startAfter = lastIdBefore(((MongoDBOperationTimeBasedSubscriptionPosition) position).operationTime);
+        } else if (position instanceof MongoDBResumeTokenBasedSubscriptionPosition) {
+            throw resumeTokenNotSupported(position);
+        } else {
+            String positionString = position.asString();
+            if (positionString.contains(OBJECT_ID)) {
+                startAfter = Document.parse(positionString).getObjectId(OBJECT_ID);
+            } else if (positionString.contains(OPERATION_TIME)) {
+                startAfter = lastIdBefore(Document.parse(positionString).get(OPERATION_TIME, BsonTimestamp.class));
+            } else if (positionString.contains(RESUME_TOKEN)) {
+                throw resumeTokenNotSupported(position);
+            } else {
+                throw new IllegalArgumentException("Doesn't recognize subscription position " + position + " as a valid MongoDB subscription position");
+            }
+        }
+        return startAfter;
+    }
+
+    /**
+     * @return {@code id} or an id that is less than all generated ids if {@code id} is {@code null}
+     */
+    public static ObjectId idOrBeginning(ObjectId id) {
+        return id == null ? BEGINNING : id;
+    }
+
+    /**
+     * Convert an event document read from the event collection into a {@link CloudEventWithSubscriptionPosition}.
+     */
+    public static CloudEventWithSubscriptionPosition toCloudEventWithSubscriptionPosition(EventFormat eventFormat, TimeRepresentation timeRepresentation, Document document) {
+        // Get the id before converting the document since it's removed from the document by the mapper
+        ObjectId id = document.getObjectId(ID);
+        CloudEvent cloudEvent = OccurrentCloudEventMongoDBDocumentMapper.convertToCloudEvent(eventFormat, timeRepresentation, document);
+        return new CloudEventWithSubscriptionPosition(cloudEvent, new MongoDBObjectIdBasedSubscriptionPosition(id));
+    }
+
+    // The operation time has a precision of seconds so start from the last id of the previous second to not miss any events
+    private static ObjectId lastIdBefore(BsonTimestamp operationTime) {
+        return lastIdOfSecond(Integer.toUnsignedLong(operationTime.getTime()) - 1);
+    }
+
+    private static ObjectId lastIdOfSecond(long epochSecond) {
+        return new ObjectId(String.format("%08x", epochSecond) + LAST_ID_OF_SECOND_SUFFIX);
+    }
+
+    private static IllegalArgumentException resumeTokenNotSupported(SubscriptionPosition position) {
+        return new IllegalArgumentException("Subscription position " + position + " is a change stream resume token, which is not supported by polling subscriptions");
+    }
+}
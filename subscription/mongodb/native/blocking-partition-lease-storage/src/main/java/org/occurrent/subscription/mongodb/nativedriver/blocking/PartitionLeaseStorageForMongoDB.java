@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb.nativedriver.blocking;
+
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.Document;
+import org.occurrent.subscription.util.blocking.sharded.PartitionLeaseStorage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A native sync Java MongoDB implementation of {@link PartitionLeaseStorage} that stores partition leases and node heartbeats in a MongoDB collection.
+ * A lease is acquired by an upsert that only matches if the lease is owned by the node or has expired, if the lease is owned by another node the upsert
+ * fails with a duplicate key error. The expiry times are based on the clock of the nodes so the clocks must be reasonably in sync (compared to the lease duration).
+ */
+public class PartitionLeaseStorageForMongoDB implements PartitionLeaseStorage {
+    private static final String ID = "_id";
+    private static final String SUBSCRIPTION_ID = "subscriptionId";
+    private static final String PARTITION = "partition";
+    private static final String NODE_ID = "nodeId";
+    private static final String OWNER = "owner";
+    private static final String EXPIRES_AT = "expiresAt";
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+
+    private final MongoCollection<Document> leaseCollection;
+    private final Clock clock;
+
+    /**
+     * Create a {@code PartitionLeaseStorage} that uses the Native sync Java MongoDB driver to store partition leases in MongoDB.
+     *
+     * @param database            The MongoDB database to use
+     * @param leaseCollectionName The name of the collection into which partition leases and node heartbeats will be stored
+     */
+    public PartitionLeaseStorageForMongoDB(MongoDatabase database, String leaseCollectionName) {
+        this(requireNonNull(database, "Database cannot be null").getCollection(requireNonNull(leaseCollectionName, "Lease collection name cannot be null")));
+    }
+
+    /**
+     * Create a {@code PartitionLeaseStorage} that uses the Native sync Java MongoDB driver to store partition leases in MongoDB.
+     *
+     * @param leaseCollection The collection into which partition leases and node heartbeats will be stored
+     */
+    public PartitionLeaseStorageForMongoDB(MongoCollection<Document> leaseCollection) {
+        this(leaseCollection, Clock.systemUTC());
+    }
+
+    PartitionLeaseStorageForMongoDB(MongoCollection<Document> leaseCollection, Clock clock) {
+        requireNonNull(leaseCollection, "Lease collection cannot be null");
+        requireNonNull(clock, Clock.class.getSimpleName() + " cannot be null");
+        this.leaseCollection = leaseCollection;
+        this.clock = clock;
+    }
+
+    @Override
+    public void heartbeat(String subscriptionId, String nodeId, Duration timeToLive) {
+        leaseCollection.updateOne(eq(ID, nodeDocumentId(subscriptionId, nodeId)),
+                combine(set(SUBSCRIPTION_ID, subscriptionId), set(NODE_ID, nodeId), set(EXPIRES_AT, expiresAt(timeToLive))),
+                new UpdateOptions().upsert(true));
+    }
+
+    @Override
+    public int numberOfLiveNodes(String subscriptionId) {
+        return (int) leaseCollection.countDocuments(and(eq(SUBSCRIPTION_ID, subscriptionId), exists(NODE_ID), gt(EXPIRES_AT, now())));
+    }
+
+    @Override
+    public boolean acquireOrRenew(String subscriptionId, int partition, String nodeId, Duration leaseDuration) {
+        try {
+            leaseCollection.updateOne(and(eq(ID, leaseDocumentId(subscriptionId, partition)), or(eq(OWNER, nodeId), lte(EXPIRES_AT, now()))),
+                    combine(set(SUBSCRIPTION_ID, subscriptionId), set(PARTITION, partition), set(OWNER, nodeId), set(EXPIRES_AT, expiresAt(leaseDuration))),
+                    new UpdateOptions().upsert(true));
+            return true;
+        } catch (MongoWriteException e) {
+            if (e.getError().getCode() == DUPLICATE_KEY_ERROR_CODE) {
+                // The lease exists and is owned by another node
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void release(String subscriptionId, int partition, String nodeId) {
+        leaseCollection.deleteOne(and(eq(ID, leaseDocumentId(subscriptionId, partition)), eq(OWNER, nodeId)));
+    }
+
+    @Override
+    public void removeNode(String subscriptionId, String nodeId) {
+        leaseCollection.deleteOne(eq(ID, nodeDocumentId(subscriptionId, nodeId)));
+    }
+
+    private Date now() {
+        return Date.from(clock.instant());
+    }
+
+    private Date expiresAt(Duration duration) {
+        return Date.from(clock.instant().plus(duration));
+    }
+
+    private static String leaseDocumentId(String subscriptionId, int partition) {
+        return subscriptionId + ":partition:" + partition;
+    }
+
+    private static String nodeDocumentId(String subscriptionId, String nodeId) {
+        return subscriptionId + ":node:" + nodeId;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb.nativedriver.blocking;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+class PartitionLeaseStorageForMongoDBTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.2.8");
+
+    @RegisterExtension
+    FlushMongoDBExtension flushMongoDBExtension = new FlushMongoDBExtension(new ConnectionString(mongoDBContainer.getReplicaSetUrl()));
+
+    private MongoClient mongoClient;
+    private MutableClock clock;
+    private PartitionLeaseStorageForMongoDB leaseStorage;
+
+    @BeforeEach
+    void create_lease_storage() {
+        ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl());
+        mongoClient = MongoClients.create(connectionString);
+        clock = new MutableClock(Instant.now());
+        leaseStorage = new PartitionLeaseStorageForMongoDB(mongoClient.getDatabase(connectionString.getDatabase()).getCollection("leases"), clock);
+    }
+
+    @AfterEach
+    void close_mongo_client() {
+        mongoClient.close();
+    }
+
+    @Test
+    void lease_owned_by_another_node_cannot_be_acquired_until_it_has_expired() {
+        // Given
+        leaseStorage.acquireOrRenew("subscription", 0, "node1", Duration.ofSeconds(10));
+
+        // When
+        boolean acquiredBeforeExpiry = leaseStorage.acquireOrRenew("subscription", 0, "node2", Duration.ofSeconds(10));
+        clock.advance(Duration.ofSeconds(11));
+        boolean acquiredAfterExpiry = leaseStorage.acquireOrRenew("subscription", 0, "node2", Duration.ofSeconds(10));
+
+        // Then
+        assertThat(acquiredBeforeExpiry).isFalse();
+        assertThat(acquiredAfterExpiry).isTrue();
+    }
+
+    @Test
+    void lease_can_be_renewed_by_its_owner_and_acquired_by_another_node_when_released() {
+        // Given
+        leaseStorage.acquireOrRenew("subscription", 0, "node1", Duration.ofSeconds(10));
+
+        // When
+        boolean renewed = leaseStorage.acquireOrRenew("subscription", 0, "node1", Duration.ofSeconds(10));
+        leaseStorage.release("subscription", 0, "node1");
+        boolean acquiredByOtherNode = leaseStorage.acquireOrRenew("subscription", 0, "node2", Duration.ofSeconds(10));
+
+        // Then
+        assertThat(renewed).isTrue();
+        assertThat(acquiredByOtherNode).isTrue();
+    }
+
+    @Test
+    void only_nodes_with_unexpired_heartbeats_are_live() {
+        // Given
+        leaseStorage.heartbeat("subscription", "node1", Duration.ofSeconds(5));
+        leaseStorage.heartbeat("subscription", "node2", Duration.ofSeconds(15));
+        leaseStorage.heartbeat("subscription", "node3", Duration.ofSeconds(15));
+        leaseStorage.heartbeat("other", "node1", Duration.ofSeconds(15));
+
+        // When
+        clock.advance(Duration.ofSeconds(10));
+        leaseStorage.removeNode("subscription", "node3");
+
+        // Then
+        assertThat(leaseStorage.numberOfLiveNodes("subscription")).isEqualTo(1);
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
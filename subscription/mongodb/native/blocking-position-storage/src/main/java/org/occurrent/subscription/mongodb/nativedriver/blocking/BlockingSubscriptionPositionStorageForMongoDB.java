@@ -18,14 +18,16 @@ package org.occurrent.subscription.mongodb.nativedriver.blocking;
 
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
-import org.bson.BsonTimestamp;
-import org.bson.BsonValue;
 import org.bson.Document;
 import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
-import org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition;
-import org.occurrent.subscription.mongodb.MongoDBResumeTokenBasedSubscriptionPosition;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static com.mongodb.client.model.Filters.eq;
 import static java.util.Objects.requireNonNull;
@@ -71,29 +73,28 @@ public class BlockingSubscriptionPositionStorageForMongoDB implements BlockingSu
 
     @Override
     public SubscriptionPosition save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
-        if (subscriptionPosition instanceof MongoDBResumeTokenBasedSubscriptionPosition) {
-            persistResumeTokenStreamPosition(subscriptionId, ((MongoDBResumeTokenBasedSubscriptionPosition) subscriptionPosition).resumeToken);
-        } else if (subscriptionPosition instanceof MongoDBOperationTimeBasedSubscriptionPosition) {
-            persistOperationTimeStreamPosition(subscriptionId, ((MongoDBOperationTimeBasedSubscriptionPosition) subscriptionPosition).operationTime);
-        } else {
-            String subscriptionPositionString = subscriptionPosition.asString();
-            Document document = generateGenericStreamPositionDocument(subscriptionId, subscriptionPositionString);
-            persistDocumentStreamPosition(subscriptionId, document);
-        }
+        persistDocumentStreamPosition(subscriptionId, generateSubscriptionPositionDocument(subscriptionId, subscriptionPosition));
         return subscriptionPosition;
     }
 
+    /**
+     * Save all subscription positions using a single unordered bulk write.
+     */
     @Override
-    public void delete(String subscriptionId) {
-        subscriptionPositionCollection.deleteOne(eq(ID, subscriptionId));
-    }
-
-    private void persistResumeTokenStreamPosition(String subscriptionId, BsonValue resumeToken) {
-        persistDocumentStreamPosition(subscriptionId, generateResumeTokenStreamPositionDocument(subscriptionId, resumeToken));
+    public void saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+        requireNonNull(subscriptionPositions, "Subscription positions cannot be null");
+        if (subscriptionPositions.isEmpty()) {
+            return;
+        }
+        List<ReplaceOneModel<Document>> replacements = subscriptionPositions.entrySet().stream()
+                .map(entry -> new ReplaceOneModel<>(eq(ID, entry.getKey()), generateSubscriptionPositionDocument(entry.getKey(), entry.getValue()), new ReplaceOptions().upsert(true)))
+                .collect(Collectors.toList());
+        subscriptionPositionCollection.bulkWrite(replacements, new BulkWriteOptions().ordered(false));
     }
 
-    private void persistOperationTimeStreamPosition(String subscriptionId, BsonTimestamp operationTime) {
-        persistDocumentStreamPosition(subscriptionId, generateOperationTimeStreamPositionDocument(subscriptionId, operationTime));
+    @Override
+    public void delete(String subscriptionId) {
+        subscriptionPositionCollection.deleteOne(eq(ID, subscriptionId));
     }
 
     private void persistDocumentStreamPosition(String subscriptionId, Document document) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb.nativedriver.blocking;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.BsonTimestamp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
+import org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition;
+import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+public class BlockingSubscriptionPositionStorageForMongoDBTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.2.8");
+    private static final String TIMESTAMP_TOKEN_COLLECTION = "subscriptions";
+
+    @RegisterExtension
+    FlushMongoDBExtension flushMongoDBExtension = new FlushMongoDBExtension(new ConnectionString(mongoDBContainer.getReplicaSetUrl()));
+
+    private MongoClient mongoClient;
+    private BlockingSubscriptionPositionStorage storage;
+
+    @BeforeEach
+    void create_storage() {
+        ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl() + ".events");
+        mongoClient = MongoClients.create(connectionString);
+        storage = new BlockingSubscriptionPositionStorageForMongoDB(mongoClient.getDatabase(connectionString.getDatabase()), TIMESTAMP_TOKEN_COLLECTION);
+    }
+
+    @AfterEach
+    void shutdown() {
+        mongoClient.close();
+    }
+
+    @Test
+    void save_all_inserts_new_and_replaces_existing_subscription_positions() {
+        // Given
+        storage.save("a", new StringBasedSubscriptionPosition("old"));
+        Map<String, SubscriptionPosition> positions = new HashMap<>();
+        positions.put("a", new MongoDBOperationTimeBasedSubscriptionPosition(new BsonTimestamp(1600000000, 2)));
+        positions.put("b", new StringBasedSubscriptionPosition("position-b"));
+
+        // When
+        storage.saveAll(positions);
+
+        // Then
+        assertThat(storage.read("a")).isEqualTo(new MongoDBOperationTimeBasedSubscriptionPosition(new BsonTimestamp(1600000000, 2)));
+        assertThat(storage.read("b")).isEqualTo(new StringBasedSubscriptionPosition("position-b"));
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb.nativedriver.blocking;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.BatchPolicy;
+import org.occurrent.subscription.BatchingConsumer;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.RetryStrategy;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.StartAt.StartAtSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
+import org.occurrent.subscription.api.blocking.Subscription;
+import org.occurrent.subscription.internal.AdaptivePollInterval;
+import org.occurrent.subscription.internal.RetryScheduler;
+import org.occurrent.subscription.mongodb.MongoDBObjectIdBasedSubscriptionPosition;
+import org.occurrent.subscription.mongodb.PollingConfig;
+import org.occurrent.subscription.mongodb.internal.MongoDBPolling;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A subscription that uses the "native" MongoDB Java driver (sync) to poll the event collection for new events. Use this subscription when
+ * the MongoDB deployment doesn't support change streams (for example a standalone MongoDB server without a replica set).
+ * <p>
+ * The event collection is tailed by {@code _id} using indexed range queries, and the events are read in batches of {@link PollingConfig#batchSize}.
+ * The poll interval adapts to the load, see {@link PollingConfig}. A subscription doesn't occupy a thread of the {@code subscriptionExecutor}
+ * between polls, the next poll is scheduled by a {@link RetryScheduler}. Events are delivered after {@link PollingConfig#visibilityDelay},
+ * which must be longer than the longest write (transaction) to the event store so that no events are missed.
+ * </p>
+ * <p>
+ * This Subscription doesn't maintain the subscription position, you need to store it in order to continue the stream
+ * from where it's left off on application restart/crash etc. The positions are {@link MongoDBObjectIdBasedSubscriptionPosition}'s,
+ * and a subscription can also be started from a {@link org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition}.
+ * Change stream resume tokens are not supported.
+ * </p>
+ */
+public class BlockingPollingSubscriptionForMongoDB implements PositionAwareBlockingSubscription {
+    private static final Logger log = LoggerFactory.getLogger(BlockingPollingSubscriptionForMongoDB.class);
+
+    private final MongoCollection<Document> eventCollection;
+    private final ConcurrentMap<String, PollingSubscription> subscriptions;
+    private final ConcurrentMap<String, BatchingConsumer<CloudEventWithSubscriptionPosition>> batchingActions;
+    private final EventFormat cloudEventSerializer;
+    private final TimeRepresentation timeRepresentation;
+    private final Executor subscriptionExecutor;
+    private final RetryStrategy retryStrategy;
+    private final PollingConfig pollingConfig;
+    private final RetryScheduler pollScheduler;
+
+    private volatile boolean shuttingDown = false;
+
+    /**
+     * Create a polling subscription using the native MongoDB sync driver.
+     *
+     * @param database             The MongoDB database to use
+     * @param eventCollectionName  The name of the collection that contains the events
+     * @param timeRepresentation   How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param subscriptionExecutor The executor that performs the polls and invokes the actions.
+     * @param retryStrategy        Configure how retries should be handled
+     * @param pollingConfig        Configure how the event collection is polled
+     */
+    public BlockingPollingSubscriptionForMongoDB(MongoDatabase database, String eventCollectionName, TimeRepresentation timeRepresentation,
+                                                 Executor subscriptionExecutor, RetryStrategy retryStrategy, PollingConfig pollingConfig) {
+        this(requireNonNull(database, MongoDatabase.class.getSimpleName() + " cannot be null").getCollection(requireNonNull(eventCollectionName, "Event collection cannot be null")),
+                timeRepresentation, subscriptionExecutor, retryStrategy, pollingConfig);
+    }
+
+    /**
+     * Create a polling subscription using the native MongoDB sync driver.
+     *
+     * @param eventCollection      The collection that contains the events
+     * @param timeRepresentation   How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param subscriptionExecutor The executor that performs the polls and invokes the actions.
+     * @param retryStrategy        Configure how retries should be handled
+     * @param pollingConfig        Configure how the event collection is polled
+     */
+    public BlockingPollingSubscriptionForMongoDB(MongoCollection<Document> eventCollection, TimeRepresentation timeRepresentation,
+                                                 Executor subscriptionExecutor, RetryStrategy retryStrategy, PollingConfig pollingConfig) {
+        requireNonNull(eventCollection, "Event collection cannot be null");
+        requireNonNull(timeRepresentation, "Time representation cannot be null");
+        requireNonNull(subscriptionExecutor, "Subscription executor cannot be null");
+        requireNonNull(retryStrategy, "RetryStrategy cannot be null");
+        requireNonNull(pollingConfig, PollingConfig.class.getSimpleName() + " cannot be null");
+        this.eventCollection = eventCollection;
+        this.timeRepresentation = timeRepresentation;
+        this.subscriptionExecutor = subscriptionExecutor;
+        this.retryStrategy = retryStrategy;
+        this.pollingConfig = pollingConfig;
+        this.subscriptions = new ConcurrentHashMap<>();
+        this.batchingActions = new ConcurrentHashMap<>();
+        this.cloudEventSerializer = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+        this.pollScheduler = new RetryScheduler("occurrent-" + BlockingPollingSubscriptionForMongoDB.class.getSimpleName() + "-poll");
+    }
+
+    @Override
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEventWithSubscriptionPosition> action) {
+        requireNonNull(subscriptionId, "subscriptionId cannot be null");
+        requireNonNull(startAtSupplier, "Start at cannot be null");
+        requireNonNull(action, "Action cannot be null");
+
+        PollingSubscription pollingSubscription = new PollingSubscription(subscriptionId, MongoDBPolling.createFilter(timeRepresentation, filter), startAtSupplier, action);
+        if (subscriptions.putIfAbsent(subscriptionId, pollingSubscription) != null) {
+            throw new IllegalArgumentException("Subscription " + subscriptionId + " is already defined.");
+        }
+        subscriptionExecutor.execute(pollingSubscription);
+        return new NativeMongoDBSubscription(subscriptionId, pollingSubscription.startedLatch);
+    }
+
+    /**
+     * Start listening to cloud events persisted to the event store and receive them in batches. The batches that don't fill up within
+     * {@link BatchPolicy#maxWait} are delivered by a background thread that is stopped when the subscription is cancelled or shutdown.
+     */
+    @Override
+    public Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, BatchPolicy batchPolicy,
+                                       Consumer<List<CloudEventWithSubscriptionPosition>> action) {
+        requireNonNull(subscriptionId, "subscriptionId cannot be null");
+        BatchingConsumer<CloudEventWithSubscriptionPosition> batchingAction = new BatchingConsumer<>("occurrent-" + subscriptionId + "-batch", batchPolicy, action);
+        try {
+            Subscription subscription = subscribe(subscriptionId, filter, startAtSupplier, batchingAction);
+            batchingActions.put(subscriptionId, batchingAction);
+            return subscription;
+        } catch (RuntimeException e) {
+            batchingAction.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void cancelSubscription(String subscriptionId) {
+        subscriptions.remove(subscriptionId);
+        closeBatchingAction(batchingActions.remove(subscriptionId));
+    }
+
+    public void shutdown() {
+        shuttingDown = true;
+        pollScheduler.shutdown();
+        subscriptions.clear();
+        batchingActions.values().forEach(BlockingPollingSubscriptionForMongoDB::closeBatchingAction);
+        batchingActions.clear();
+    }
+
+    private static void closeBatchingAction(BatchingConsumer<CloudEventWithSubscriptionPosition> batchingAction) {
+        if (batchingAction != null) {
+            batchingAction.close();
+        }
+    }
+
+    /**
+     * @return The position of the latest event in the event collection
+     */
+    @Override
+    public SubscriptionPosition globalSubscriptionPosition() {
+        return new MongoDBObjectIdBasedSubscriptionPosition(MongoDBPolling.idOrBeginning(latestIdOrNull()));
+    }
+
+    private ObjectId latestIdOrNull() {
+        Document latest = eventCollection.find().projection(new Document(MongoDBPolling.ID, 1)).sort(MongoDBPolling.SORT_BY_ID_DESCENDING).limit(1).first();
+        return latest == null ? null : latest.getObjectId(MongoDBPolling.ID);
+    }
+
+    /**
+     * Polls the event collection for a subscription. Each poll is a separate task that schedules the next poll when it's done.
+     * <p>
+     * When the action fails, the position is not advanced and the failed event is read again by the next poll, which is scheduled when
+     * the retry delay has passed. When {@link RetryStrategy#maxAttempts} is reached, the event is handed over to the {@link RetryStrategy#deadLetterHandler}
+     * and the subscription continues with the next event (or it's stopped if there's no dead-letter handler).
+     * </p>
+     */
+    private class PollingSubscription implements Runnable {
+        private final String subscriptionId;
+        private final Bson filter;
+        private final Supplier<StartAt> startAtSupplier;
+        private final Consumer<CloudEventWithSubscriptionPosition> action;
+        private final CountDownLatch startedLatch = new CountDownLatch(1);
+        private final AdaptivePollInterval pollInterval = new AdaptivePollInterval(pollingConfig.minPollInterval, pollingConfig.maxPollInterval);
+        private final Iterator<Long> restartDelays = retryStrategy.delays();
+
+        // Polls are executed one at a time, but not necessarily by the same thread
+        private volatile ObjectId position;
+        private volatile ObjectId failedAt;
+        private volatile int attempts;
+        private volatile Iterator<Long> delays;
+
+        private PollingSubscription(String subscriptionId, Bson filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEventWithSubscriptionPosition> action) {
+            this.subscriptionId = subscriptionId;
+            this.filter = filter;
+            this.startAtSupplier = startAtSupplier;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            if (isCancelled()) {
+                return;
+            }
+
+            final long nextPollInMillis;
+            try {
+                if (position == null) {
+                    StartAt startAt = startAtSupplier.get();
+                    position = startAt.isNow() ? MongoDBPolling.idOrBeginning(latestIdOrNull()) : MongoDBPolling.startAfter(((StartAtSubscriptionPosition) startAt).subscriptionPosition);
+                    startedLatch.countDown();
+                }
+                nextPollInMillis = poll();
+            } catch (StopSubscriptionException e) {
+                subscriptions.remove(subscriptionId, this);
+                throw (RuntimeException) e.getCause();
+            } catch (RuntimeException e) {
+                if (shuttingDown || restartDelays == null) {
+                    subscriptions.remove(subscriptionId, this);
+                    throw e;
+                }
+                long restartInMillis = restartDelays.next();
+                log.error("Caught {} with message \"{}\", will poll subscription {} again in {} milliseconds.", e.getClass().getName(), e.getMessage(), subscriptionId, restartInMillis, e);
+                pollIn(restartInMillis);
+                return;
+            }
+            pollIn(nextPollInMillis);
+        }
+
+        /**
+         * @return The number of milliseconds until the next poll
+         */
+        private long poll() {
+            Bson query = MongoDBPolling.createQuery(filter, position, pollingConfig.visibilityDelay);
+            List<Document> documents = eventCollection.find(query).sort(MongoDBPolling.SORT_BY_ID_ASCENDING).limit(pollingConfig.batchSize).into(new ArrayList<>(pollingConfig.batchSize));
+            for (Document document : documents) {
+                if (isCancelled()) {
+                    return 0;
+                }
+                CloudEventWithSubscriptionPosition cloudEvent = MongoDBPolling.toCloudEventWithSubscriptionPosition(cloudEventSerializer, timeRepresentation, document);
+                Long retryInMillis = invoke(cloudEvent);
+                if (retryInMillis != null) {
+                    return retryInMillis;
+                }
+                position = ((MongoDBObjectIdBasedSubscriptionPosition) cloudEvent.getStreamPosition()).objectId;
+            }
+            return pollInterval.next(documents.size(), pollingConfig.batchSize);
+        }
+
+        /**
+         * @return The number of milliseconds until the event should be retried, or {@code null} if the subscription should continue with the next event.
+         */
+        private Long invoke(CloudEventWithSubscriptionPosition cloudEvent) {
+            ObjectId id = ((MongoDBObjectIdBasedSubscriptionPosition) cloudEvent.getStreamPosition()).objectId;
+            try {
+                action.accept(cloudEvent);
+            } catch (RuntimeException e) {
+                int attempt = id.equals(failedAt) ? attempts + 1 : 1;
+                if (attempt == 1) {
+                    failedAt = id;
+                    delays = retryStrategy.delays();
+                }
+                attempts = attempt;
+                if (delays != null && attempt < retryStrategy.maxAttempts) {
+                    long retryInMillis = delays.next();
+                    log.error("Caught {} with message \"{}\", will retry in {} milliseconds.", e.getClass().getName(), e.getMessage(), retryInMillis, e);
+                    return retryInMillis;
+                } else if (retryStrategy.deadLetterHandler == null) {
+                    log.error("Caught {} with message \"{}\" after {} attempt(s), stopping subscription {}.", e.getClass().getName(), e.getMessage(), attempt, subscriptionId, e);
+                    throw new StopSubscriptionException(e);
+                }
+
+                log.error("Caught {} with message \"{}\" after {} attempt(s), handing over the event to the dead-letter handler.", e.getClass().getName(), e.getMessage(), attempt, e);
+                try {
+                    retryStrategy.deadLetterHandler.handle(subscriptionId, cloudEvent, e);
+                } catch (RuntimeException deadLetterException) {
+                    log.error("Dead-letter handler failed, stopping subscription {}.", subscriptionId, deadLetterException);
+                    throw new StopSubscriptionException(deadLetterException);
+                }
+            }
+            failedAt = null;
+            attempts = 0;
+            delays = null;
+            return null;
+        }
+
+        private boolean isCancelled() {
+            return subscriptions.get(subscriptionId) != this;
+        }
+
+        private void pollIn(long millis) {
+            if (isCancelled()) {
+                return;
+            }
+            if (!pollScheduler.schedule(subscriptionExecutor, this, millis)) {
+                log.debug("Subscription {} was not polled again since the subscription has been shutdown.", subscriptionId);
+            }
+        }
+    }
+
+    // Thrown to stop a subscription when an event couldn't be processed within the max number of attempts
+    private static class StopSubscriptionException extends RuntimeException {
+        private StopSubscriptionException(RuntimeException cause) {
+            super(cause);
+        }
+    }
+}
@@ -33,28 +33,43 @@ import org.bson.conversions.Bson;
 import org.occurrent.filter.Filter;
 import org.occurrent.mongodb.spring.filterbsonfilterconversion.internal.FilterToBsonFilterConverter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
-import org.occurrent.subscription.*;
+import org.occurrent.subscription.BatchPolicy;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.RetryStrategy;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
 import org.occurrent.subscription.api.blocking.Subscription;
+import org.occurrent.subscription.internal.PrefetchingConsumer;
+import org.occurrent.subscription.internal.RetryScheduler;
+import org.occurrent.subscription.mongodb.ChangeStreamConfig;
 import org.occurrent.subscription.mongodb.MongoDBFilterSpecification;
 import org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition;
 import org.occurrent.subscription.mongodb.MongoDBResumeTokenBasedSubscriptionPosition;
+import org.occurrent.subscription.mongodb.internal.ChangeStreamProjection;
 import org.occurrent.subscription.mongodb.internal.DocumentAdapter;
 import org.occurrent.subscription.mongodb.internal.MongoDBCloudEventsToJsonDeserializer;
 import org.occurrent.subscription.mongodb.internal.MongoDBCommons;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -66,6 +81,10 @@ import static java.util.Objects.requireNonNull;
  * This Subscription doesn't maintain the subscription position, you need to store itin order to continue the stream
  * from where it's left off on application restart/crash etc. You can do this yourself or use a
  * <a href="https://occurrent.org/documentation#blocking-subscription-position-storage">subscription position storage implementation</a>.
+ * <p>
+ * Each subscription occupies a thread of the {@code subscriptionExecutor} while it's running. Use {@link org.occurrent.threads.VirtualThreads#newVirtualThreadPerTaskExecutor(String)}
+ * to run the subscriptions on virtual threads when running on Java 21 or later.
+ * </p>
  */
 public class BlockingSubscriptionForMongoDB implements PositionAwareBlockingSubscription {
     private static final Logger log = LoggerFactory.getLogger(BlockingSubscriptionForMongoDB.class);
@@ -76,7 +95,10 @@ public class BlockingSubscriptionForMongoDB implements PositionAwareBlockingSubs
     private final TimeRepresentation timeRepresentation;
     private final Executor cloudEventDispatcher;
     private final RetryStrategy retryStrategy;
+    private final ChangeStreamConfig changeStreamConfig;
     private final MongoDatabase database;
+    private final RetryScheduler retryScheduler;
+    private final ReentrantLock shutdownLock = new ReentrantLock();
 
     private volatile boolean shuttingDown = false;
 
@@ -91,7 +113,22 @@ public class BlockingSubscriptionForMongoDB implements PositionAwareBlockingSubs
      */
     public BlockingSubscriptionForMongoDB(MongoDatabase database, String eventCollectionName, TimeRepresentation timeRepresentation,
                                           Executor subscriptionExecutor, RetryStrategy retryStrategy) {
-        this(database, database.getCollection(requireNonNull(eventCollectionName, "Event collection cannot be null")), timeRepresentation, subscriptionExecutor, retryStrategy);
+        this(database, eventCollectionName, timeRepresentation, subscriptionExecutor, retryStrategy, ChangeStreamConfig.defaults());
+    }
+
+    /**
+     * Create a subscription using the native MongoDB sync driver.
+     *
+     * @param database             The MongoDB database to use
+     * @param eventCollectionName  The name of the collection that contains the events
+     * @param timeRepresentation   How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param subscriptionExecutor The executor that will be used for the subscription. Typically a dedicated thread will be required per subscription.
+     * @param retryStrategy        Configure how retries should be handled
+     * @param changeStreamConfig   Configure how the change stream is read, e.g. the batch size and whether events should be prefetched
+     */
+    public BlockingSubscriptionForMongoDB(MongoDatabase database, String eventCollectionName, TimeRepresentation timeRepresentation,
+                                          Executor subscriptionExecutor, RetryStrategy retryStrategy, ChangeStreamConfig changeStreamConfig) {
+        this(database, database.getCollection(requireNonNull(eventCollectionName, "Event collection cannot be null")), timeRepresentation, subscriptionExecutor, retryStrategy, changeStreamConfig);
     }
 
     /**
@@ -105,51 +142,123 @@ public class BlockingSubscriptionForMongoDB implements PositionAwareBlockingSubs
      */
     public BlockingSubscriptionForMongoDB(MongoDatabase database, MongoCollection<Document> eventCollection, TimeRepresentation timeRepresentation,
                                           Executor subscriptionExecutor, RetryStrategy retryStrategy) {
+        this(database, eventCollection, timeRepresentation, subscriptionExecutor, retryStrategy, ChangeStreamConfig.defaults());
+    }
+
+    /**
+     * Create a subscription using the native MongoDB sync driver.
+     *
+     * @param database             The MongoDB database to use
+     * @param eventCollection      The collection that contains the events
+     * @param timeRepresentation   How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param subscriptionExecutor The executor that will be used for the subscription. Typically a dedicated thread will be required per subscription.
+     * @param retryStrategy        Configure how retries should be handled
+     * @param changeStreamConfig   Configure how the change stream is read, e.g. the batch size and whether events should be prefetched
+     */
+    public BlockingSubscriptionForMongoDB(MongoDatabase database, MongoCollection<Document> eventCollection, TimeRepresentation timeRepresentation,
+                                          Executor subscriptionExecutor, RetryStrategy retryStrategy, ChangeStreamConfig changeStreamConfig) {
         requireNonNull(database, MongoDatabase.class.getSimpleName() + " cannot be null");
         requireNonNull(eventCollection, "Event collection cannot be null");
         requireNonNull(timeRepresentation, "Time representation cannot be null");
         requireNonNull(subscriptionExecutor, "CloudEventDispatcher cannot  be null");
         requireNonNull(retryStrategy, "RetryStrategy cannot be null");
+        requireNonNull(changeStreamConfig, ChangeStreamConfig.class.getSimpleName() + " cannot be null");
         this.database = database;
+        this.changeStreamConfig = changeStreamConfig;
         this.retryStrategy = retryStrategy;
         this.cloudEventDispatcher = subscriptionExecutor;
         this.timeRepresentation = timeRepresentation;
         this.eventCollection = eventCollection;
         this.subscriptions = new ConcurrentHashMap<>();
         this.cloudEventSerializer = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+        this.retryScheduler = new RetryScheduler("occurrent-" + BlockingSubscriptionForMongoDB.class.getSimpleName() + "-retry");
     }
 
     @Override
     public Subscription subscribe(String subscriptionId, SubscriptionFilter
             filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEventWithSubscriptionPosition> action) {
-        requireNonNull(subscriptionId, "subscriptionId cannot be null");
         requireNonNull(action, "Action cannot be null");
-        requireNonNull(startAtSupplier, "Start at cannot be null");
+        return subscribe(subscriptionId, filter, startAtSupplier, UnaryOperator.identity(), (cursor, changeStreamSubscription) -> {
+            Consumer<CloudEventWithSubscriptionPosition> actionWithRetry = cloudEvent -> changeStreamSubscription.invoke(cloudEvent, action, Collections.singletonList(cloudEvent));
+            if (changeStreamConfig.prefetch == 0) {
+                cursor.forEachRemaining(changeStreamDocument -> deserializeToCloudEventWithSubscriptionPosition(changeStreamDocument).ifPresent(actionWithRetry));
+            } else {
+                // The action is invoked by a separate thread so that the next events can be read and deserialized in the meantime
+                try (PrefetchingConsumer<CloudEventWithSubscriptionPosition> prefetchingAction = new PrefetchingConsumer<>("occurrent-" + subscriptionId + "-prefetch", changeStreamConfig.prefetch, actionWithRetry)) {
+                    cursor.forEachRemaining(changeStreamDocument -> deserializeToCloudEventWithSubscriptionPosition(changeStreamDocument).ifPresent(prefetchingAction));
+                }
+            }
+        });
+    }
 
-        List<Bson> pipeline = createPipeline(timeRepresentation, filter);
-        CountDownLatch subscriptionStartedLatch = new CountDownLatch(1);
+    /**
+     * Start listening to cloud events persisted to the event store and receive them in batches. The batches are read directly from the
+     * change stream cursor (the max await time of the cursor is set to {@link BatchPolicy#maxWait}) so no additional threads are required.
+     * The retry strategy is applied to the entire batch, and if a dead-letter handler is configured it's invoked for each event in a batch
+     * that couldn't be processed.
+     */
+    @Override
+    public Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, BatchPolicy batchPolicy,
+                                       Consumer<List<CloudEventWithSubscriptionPosition>> action) {
+        requireNonNull(batchPolicy, BatchPolicy.class.getSimpleName() + " cannot be null");
+        requireNonNull(action, "Action cannot be null");
+        return subscribe(subscriptionId, filter, startAtSupplier,
+                changeStreamDocuments -> changeStreamDocuments.batchSize(batchPolicy.maxSize).maxAwaitTime(batchPolicy.maxWait.toMillis(), TimeUnit.MILLISECONDS),
+                (cursor, changeStreamSubscription) -> {
+                    List<CloudEventWithSubscriptionPosition> batch = new ArrayList<>(batchPolicy.maxSize);
+                    long maxWaitNanos = batchPolicy.maxWait.toNanos();
+                    long batchStartedAt = 0;
+                    // The loop is terminated by an exception when the cursor is closed
+                    while (true) {
+                        ChangeStreamDocument<Document> changeStreamDocument = cursor.tryNext();
+                        if (changeStreamDocument != null) {
+                            Optional<CloudEventWithSubscriptionPosition> cloudEvent = deserializeToCloudEventWithSubscriptionPosition(changeStreamDocument);
+                            if (cloudEvent.isPresent()) {
+                                if (batch.isEmpty()) {
+                                    batchStartedAt = System.nanoTime();
+                                }
+                                batch.add(cloudEvent.get());
+                            }
+                        }
 
-        Runnable runnable = () -> {
-            ChangeStreamIterable<Document> changeStreamDocuments = eventCollection.watch(pipeline, Document.class);
-            ChangeStreamIterable<Document> changeStreamDocumentsAtPosition = MongoDBCommons.applyStartPosition(changeStreamDocuments, ChangeStreamIterable::startAfter, ChangeStreamIterable::startAtOperationTime, startAtSupplier.get());
-            MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStreamDocumentsAtPosition.cursor();
+                        // A null change stream document means that no events were received within max await time
+                        boolean deliverBatch = batch.size() >= batchPolicy.maxSize || changeStreamDocument == null || System.nanoTime() - batchStartedAt >= maxWaitNanos;
+                        if (!batch.isEmpty() && deliverBatch) {
+                            List<CloudEventWithSubscriptionPosition> cloudEvents = Collections.unmodifiableList(new ArrayList<>(batch));
+                            changeStreamSubscription.invoke(cloudEvents, action, cloudEvents);
+                            batch.clear();
+                        }
+                    }
+                });
+    }
 
-            subscriptions.put(subscriptionId, cursor);
+    private Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier,
+                                   UnaryOperator<ChangeStreamIterable<Document>> configureChangeStream,
+                                   BiConsumer<MongoChangeStreamCursor<ChangeStreamDocument<Document>>, ChangeStreamSubscription> consumeCursor) {
+        requireNonNull(subscriptionId, "subscriptionId cannot be null");
+        requireNonNull(startAtSupplier, "Start at cannot be null");
 
-            subscriptionStartedLatch.countDown();
-            try {
-                cursor.forEachRemaining(changeStreamDocument -> MongoDBCloudEventsToJsonDeserializer.deserializeToCloudEvent(cloudEventSerializer, changeStreamDocument, timeRepresentation)
-                        .map(cloudEvent -> new CloudEventWithSubscriptionPosition(cloudEvent, new MongoDBResumeTokenBasedSubscriptionPosition(changeStreamDocument.getResumeToken())))
-                        .ifPresent(retry(action, __ -> true, convertToDelayStream(retryStrategy))));
-            } catch (MongoException e) {
-                log.debug("Caught {} (code={}, message={}), this might happen when cursor is shutdown.", e.getClass().getName(), e.getCode(), e.getMessage(), e);
-            } catch (IllegalStateException e) {
-                log.debug("Caught {} (message={}), this might happen when cursor is shutdown.", e.getClass().getName(), e.getMessage(), e);
-            }
-        };
+        // The projection is applied after the filter so that the filter can refer to parts of the cloud event that are not projected
+        List<Bson> pipeline = new ArrayList<>(createPipeline(timeRepresentation, filter));
+        pipeline.addAll(ChangeStreamProjection.createPipelineStages(changeStreamConfig.projection));
+        ChangeStreamSubscription changeStreamSubscription = new ChangeStreamSubscription(subscriptionId, pipeline, startAtSupplier, configureChangeStream, consumeCursor);
+        cloudEventDispatcher.execute(changeStreamSubscription);
+        return new NativeMongoDBSubscription(subscriptionId, changeStreamSubscription.startedLatch);
+    }
+
+    private ChangeStreamIterable<Document> applyChangeStreamConfig(ChangeStreamIterable<Document> changeStreamDocuments) {
+        if (changeStreamConfig.batchSize != null) {
+            changeStreamDocuments = changeStreamDocuments.batchSize(changeStreamConfig.batchSize);
+        }
+        if (changeStreamConfig.maxAwaitTime != null) {
+            changeStreamDocuments = changeStreamDocuments.maxAwaitTime(changeStreamConfig.maxAwaitTime.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return changeStreamDocuments;
+    }
 
-        cloudEventDispatcher.execute(retry(runnable, __ -> !shuttingDown, convertToDelayStream(retryStrategy)));
-        return new NativeMongoDBSubscription(subscriptionId, subscriptionStartedLatch);
+    private Optional<CloudEventWithSubscriptionPosition> deserializeToCloudEventWithSubscriptionPosition(ChangeStreamDocument<Document> changeStreamDocument) {
+        return MongoDBCloudEventsToJsonDeserializer.deserializeToCloudEvent(cloudEventSerializer, changeStreamDocument, timeRepresentation)
+                .map(cloudEvent -> new CloudEventWithSubscriptionPosition(cloudEvent, new MongoDBResumeTokenBasedSubscriptionPosition(changeStreamDocument.getResumeToken())));
     }
 
     private static List<Bson> createPipeline(TimeRepresentation timeRepresentation, SubscriptionFilter filter) {
@@ -196,9 +305,13 @@ public class BlockingSubscriptionForMongoDB implements PositionAwareBlockingSubs
     }
 
     public void shutdown() {
-        synchronized (subscriptions) {
+        shutdownLock.lock();
+        try {
             shuttingDown = true;
+            retryScheduler.shutdown();
             subscriptions.keySet().forEach(this::cancelSubscription);
+        } finally {
+            shutdownLock.unlock();
         }
     }
 
@@ -208,48 +321,176 @@ public class BlockingSubscriptionForMongoDB implements PositionAwareBlockingSubs
         return new MongoDBOperationTimeBasedSubscriptionPosition(currentOperationTime);
     }
 
-    private static Runnable retry(Runnable runnable, Predicate<Exception> retryPredicate, Iterator<Long> delay) {
-        Consumer<Void> runnableConsumer = __ -> runnable.run();
-        return () -> retry(runnableConsumer, retryPredicate, delay).accept(null);
-    }
+    /**
+     * Reads the change stream of a subscription and keeps track of the position of the last processed event.
+     * <p>
+     * When the action fails, the cursor is closed and the subscription is restarted from the position of the last processed event once the
+     * retry delay has passed. The delay is awaited by the {@link RetryScheduler} so that no thread of the {@code subscriptionExecutor} is blocked in the meantime.
+     * When {@link RetryStrategy#maxAttempts} is reached, the events are handed over to the {@link RetryStrategy#deadLetterHandler} and
+     * the subscription continues with the next event (or it's stopped if there's no dead-letter handler).
+     * </p>
+     */
+    private class ChangeStreamSubscription implements Runnable {
+        private final String subscriptionId;
+        private final List<Bson> pipeline;
+        private final Supplier<StartAt> startAtSupplier;
+        private final UnaryOperator<ChangeStreamIterable<Document>> configureChangeStream;
+        private final BiConsumer<MongoChangeStreamCursor<ChangeStreamDocument<Document>>, ChangeStreamSubscription> consumeCursor;
+        private final CountDownLatch startedLatch = new CountDownLatch(1);
+        private final Iterator<Long> restartDelays = retryStrategy.delays();
+
+        // The position to resume from when the subscription is restarted, null until a position is known
+        private volatile StartAt resumeAt;
+        private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+        // The position of the first event that the action has failed to process and the number of attempts that have been made
+        private volatile String failedAt;
+        private volatile int attempts;
+        private volatile Iterator<Long> delays;
+        private volatile Long retryInMillis;
+        private volatile boolean stopped;
 
-    private static <T1> Consumer<T1> retry(Consumer<T1> fn, Predicate<Exception> retryPredicate, Iterator<Long> delay) {
-        return t1 -> {
+        private ChangeStreamSubscription(String subscriptionId, List<Bson> pipeline, Supplier<StartAt> startAtSupplier, UnaryOperator<ChangeStreamIterable<Document>> configureChangeStream,
+                                         BiConsumer<MongoChangeStreamCursor<ChangeStreamDocument<Document>>, ChangeStreamSubscription> consumeCursor) {
+            this.subscriptionId = subscriptionId;
+            this.pipeline = pipeline;
+            this.startAtSupplier = startAtSupplier;
+            this.configureChangeStream = configureChangeStream;
+            this.consumeCursor = consumeCursor;
+        }
+
+        @Override
+        public void run() {
+            retryInMillis = null;
             try {
-                fn.accept(t1);
-            } catch (Exception e) {
-                if (retryPredicate.test(e) && delay != null) {
-                    Long retryAfterMillis = delay.next();
-                    log.error("Caught {} with message \"{}\", will retry in {} milliseconds.", e.getClass().getName(), e.getMessage(), retryAfterMillis, e);
-                    try {
-                        Thread.sleep(retryAfterMillis);
-                    } catch (InterruptedException interruptedException) {
-                        throw new RuntimeException(e);
-                    }
-                    retry(fn, retryPredicate, delay).accept(t1);
+                if (isCancelled()) {
+                    return;
+                }
+                ChangeStreamIterable<Document> changeStreamDocuments = configureChangeStream.apply(applyChangeStreamConfig(eventCollection.watch(pipeline, Document.class)));
+                ChangeStreamIterable<Document> changeStreamDocumentsAtPosition = MongoDBCommons.applyStartPosition(changeStreamDocuments, ChangeStreamIterable::startAfter, ChangeStreamIterable::startAtOperationTime, startAt());
+                MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStreamDocumentsAtPosition.cursor();
+                if (!register(cursor)) {
+                    cursor.close();
+                    return;
+                }
+                startedLatch.countDown();
+                consumeCursor.accept(cursor, this);
+            } catch (RuntimeException e) {
+                Long retryInMillis = this.retryInMillis;
+                if (retryInMillis != null) {
+                    restartIn(retryInMillis);
+                } else if (stopped) {
+                    throw e;
+                } else if (e instanceof MongoException) {
+                    log.debug("Caught {} (code={}, message={}), this might happen when cursor is shutdown.", e.getClass().getName(), ((MongoException) e).getCode(), e.getMessage(), e);
+                } else if (e instanceof IllegalStateException) {
+                    log.debug("Caught {} (message={}), this might happen when cursor is shutdown.", e.getClass().getName(), e.getMessage(), e);
+                } else if (shuttingDown || restartDelays == null) {
+                    throw e;
                 } else {
+                    long restartInMillis = restartDelays.next();
+                    log.error("Caught {} with message \"{}\", will restart subscription {} in {} milliseconds.", e.getClass().getName(), e.getMessage(), subscriptionId, restartInMillis, e);
+                    restartIn(restartInMillis);
+                }
+            }
+        }
+
+        /**
+         * Invoke the action and record the position of the last of the {@code cloudEvents} if successful.
+         */
+        <T> void invoke(T element, Consumer<T> action, List<CloudEventWithSubscriptionPosition> cloudEvents) {
+            String position = cloudEvents.get(0).getStreamPosition().asString();
+            try {
+                action.accept(element);
+            } catch (RuntimeException e) {
+                int attempt = position.equals(failedAt) ? attempts + 1 : 1;
+                if (attempt == 1) {
+                    failedAt = position;
+                    delays = retryStrategy.delays();
+                }
+                attempts = attempt;
+                if (delays != null && attempt < retryStrategy.maxAttempts) {
+                    long retryInMillis = delays.next();
+                    log.error("Caught {} with message \"{}\", will retry in {} milliseconds.", e.getClass().getName(), e.getMessage(), retryInMillis, e);
+                    this.retryInMillis = retryInMillis;
+                    closeCursor();
+                    throw e;
+                } else if (retryStrategy.deadLetterHandler == null) {
+                    log.error("Caught {} with message \"{}\" after {} attempt(s), stopping subscription {}.", e.getClass().getName(), e.getMessage(), attempt, subscriptionId, e);
+                    stop();
                     throw e;
                 }
+
+                log.error("Caught {} with message \"{}\" after {} attempt(s), handing over {} event(s) to the dead-letter handler.", e.getClass().getName(), e.getMessage(), attempt, cloudEvents.size(), e);
+                try {
+                    cloudEvents.forEach(cloudEvent -> retryStrategy.deadLetterHandler.handle(subscriptionId, cloudEvent, e));
+                } catch (RuntimeException deadLetterException) {
+                    log.error("Dead-letter handler failed, stopping subscription {}.", subscriptionId, deadLetterException);
+                    stop();
+                    throw deadLetterException;
+                }
             }
-        };
-    }
+            failedAt = null;
+            attempts = 0;
+            delays = null;
+            resumeAt = StartAt.subscriptionPosition(cloudEvents.get(cloudEvents.size() - 1).getStreamPosition());
+        }
 
-    private static Iterator<Long> convertToDelayStream(RetryStrategy retryStrategy) {
-        final Stream<Long> delay;
-        if (retryStrategy instanceof RetryStrategy.None) {
-            delay = null;
-        } else if (retryStrategy instanceof RetryStrategy.Fixed) {
-            long millis = ((RetryStrategy.Fixed) retryStrategy).millis;
-            delay = Stream.iterate(millis, __ -> millis);
-        } else if (retryStrategy instanceof RetryStrategy.Backoff) {
-            RetryStrategy.Backoff strategy = (RetryStrategy.Backoff) retryStrategy;
-            long initialMillis = strategy.initial.toMillis();
-            long maxMillis = strategy.max.toMillis();
-            double multiplier = strategy.multiplier;
-            delay = Stream.iterate(initialMillis, current -> Math.min(maxMillis, Math.round(current * multiplier)));
-        } else {
-            throw new IllegalStateException("Invalid retry strategy: " + retryStrategy.getClass().getName());
+        private StartAt startAt() {
+            StartAt startAt = resumeAt;
+            if (startAt == null) {
+                startAt = startAtSupplier.get();
+                if (startAt.isNow() && retryStrategy.maxAttempts > 1) {
+                    // Resolve "now" to a position so that an event that fails before any other event has been processed is not skipped when the subscription is restarted
+                    startAt = StartAt.subscriptionPosition(globalSubscriptionPosition());
+                }
+                if (!startAt.isNow()) {
+                    resumeAt = startAt;
+                }
+            }
+            return startAt;
+        }
+
+        private boolean register(MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor) {
+            MongoChangeStreamCursor<ChangeStreamDocument<Document>> previousCursor = this.cursor;
+            final boolean registered;
+            if (previousCursor == null) {
+                subscriptions.put(subscriptionId, cursor);
+                registered = true;
+            } else {
+                // The subscription may have been cancelled while waiting to be restarted
+                registered = subscriptions.replace(subscriptionId, previousCursor, cursor);
+            }
+            if (registered) {
+                this.cursor = cursor;
+            }
+            return registered;
+        }
+
+        private boolean isCancelled() {
+            return cursor != null && !subscriptions.containsKey(subscriptionId);
+        }
+
+        private void restartIn(long millis) {
+            if (!retryScheduler.schedule(cloudEventDispatcher, this, millis)) {
+                log.debug("Subscription {} was not restarted since the subscription has been shutdown.", subscriptionId);
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            closeCursor();
+        }
+
+        // Closing the cursor makes the thread reading the change stream stop if the action is invoked by another thread (when events are prefetched)
+        private void closeCursor() {
+            MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = this.cursor;
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (Exception e) {
+                    log.debug("Failed to close cursor of subscription {}", subscriptionId, e);
+                }
+            }
         }
-        return delay == null ? null : delay.iterator();
     }
-}
\ No newline at end of file
+}
@@ -16,77 +16,78 @@
 
 package org.occurrent.subscription.mongodb.nativedriver.blocking;
 
+import org.occurrent.subscription.DeadLetterHandler;
+
 import java.time.Duration;
-import java.util.Objects;
+import java.util.Iterator;
 
 /**
  * Retry strategy to use if the action throws an exception.
+ *
+ * @deprecated The retry strategy is used by other subscriptions as well, use {@link org.occurrent.subscription.RetryStrategy} instead.
  */
-public abstract class RetryStrategy {
+@Deprecated
+public final class RetryStrategy extends org.occurrent.subscription.RetryStrategy {
+    private final org.occurrent.subscription.RetryStrategy delegate;
 
-    private RetryStrategy() {
+    private RetryStrategy(org.occurrent.subscription.RetryStrategy delegate) {
+        super(delegate.maxAttempts, delegate.deadLetterHandler);
+        this.delegate = delegate;
     }
 
     /**
-     * @return Don't retry and re-throw an exception thrown when action is invoked.
+     * @see org.occurrent.subscription.RetryStrategy#none()
      */
     public static RetryStrategy none() {
-        return new None();
+        return new RetryStrategy(org.occurrent.subscription.RetryStrategy.none());
     }
 
     /**
-     * @return Retry after a fixed number of millis if an action throws an exception.
+     * @see org.occurrent.subscription.RetryStrategy#fixed(long)
      */
     public static RetryStrategy fixed(long millis) {
-        return new Fixed(millis);
+        return new RetryStrategy(org.occurrent.subscription.RetryStrategy.fixed(millis));
     }
 
     /**
-     * @return Retry after a fixed duration if an action throws an exception.
+     * @see org.occurrent.subscription.RetryStrategy#fixed(Duration)
      */
     public static RetryStrategy fixed(Duration duration) {
-        Objects.requireNonNull(duration, "Duration cannot be null");
-        return new Fixed(duration.toMillis());
+        return new RetryStrategy(org.occurrent.subscription.RetryStrategy.fixed(duration));
     }
 
     /**
-     * @return Retry after with exponential backoff if an action throws an exception.
+     * @see org.occurrent.subscription.RetryStrategy#backoff(Duration, Duration, double)
      */
     public static RetryStrategy backoff(Duration initial, Duration max, double multiplier) {
-        return new Backoff(initial, max, multiplier);
+        return new RetryStrategy(org.occurrent.subscription.RetryStrategy.backoff(initial, max, multiplier));
     }
 
-
-    final static class None extends RetryStrategy {
-        private None() {
-        }
+    /**
+     * @see org.occurrent.subscription.RetryStrategy#backoff(Duration, Duration, double, double)
+     */
+    public static RetryStrategy backoff(Duration initial, Duration max, double multiplier, double jitter) {
+        return new RetryStrategy(org.occurrent.subscription.RetryStrategy.backoff(initial, max, multiplier, jitter));
     }
 
-    final static class Fixed extends RetryStrategy {
-        public final long millis;
+    @Override
+    public RetryStrategy maxAttempts(int maxAttempts) {
+        return new RetryStrategy(delegate.maxAttempts(maxAttempts));
+    }
 
-        private Fixed(long millis) {
-            if (millis <= 0) {
-                throw new IllegalArgumentException("Millis cannot be less than zero");
-            }
-            this.millis = millis;
-        }
+    @Override
+    public RetryStrategy deadLetter(DeadLetterHandler deadLetterHandler) {
+        return new RetryStrategy(delegate.deadLetter(deadLetterHandler));
     }
 
-    final static class Backoff extends RetryStrategy {
-        public final Duration initial;
-        public final Duration max;
-        public final double multiplier;
+    @Override
+    protected RetryStrategy copy(int maxAttempts, DeadLetterHandler deadLetterHandler) {
+        org.occurrent.subscription.RetryStrategy copy = delegate.maxAttempts(maxAttempts);
+        return new RetryStrategy(deadLetterHandler == null ? copy : copy.deadLetter(deadLetterHandler));
+    }
 
-        private Backoff(Duration initial, Duration max, double multiplier) {
-            Objects.requireNonNull(initial, "Initial duration cannot be null");
-            Objects.requireNonNull(max, "Max duration cannot be null");
-            if (multiplier <= 0) {
-                throw new IllegalArgumentException("multiplier cannot be less than zero");
-            }
-            this.initial = initial;
-            this.max = max;
-            this.multiplier = multiplier;
-        }
+    @Override
+    public Iterator<Long> delays() {
+        return delegate.delays();
     }
-}
\ No newline at end of file
+}
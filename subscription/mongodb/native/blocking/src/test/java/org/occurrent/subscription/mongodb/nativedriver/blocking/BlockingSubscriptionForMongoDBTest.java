@@ -35,16 +35,23 @@ import org.occurrent.eventstore.mongodb.nativedriver.EventStoreConfig;
 import org.occurrent.eventstore.mongodb.nativedriver.MongoEventStore;
 import org.occurrent.filter.Filter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.BatchPolicy;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
 import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.mongodb.ChangeStreamConfig;
+import org.occurrent.subscription.mongodb.CloudEventProjection;
 import org.occurrent.subscription.mongodb.MongoDBFilterSpecification.JsonMongoDBFilterSpecification;
 import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
 import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.io.IOException;
 import java.net.URI;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
@@ -85,6 +92,8 @@ public class BlockingSubscriptionForMongoDBTest {
     private ObjectMapper objectMapper;
     private MongoClient mongoClient;
     private ExecutorService subscriptionExecutor;
+    private MongoDatabase database;
+    private MongoCollection<Document> eventCollection;
 
     @BeforeEach
     void create_mongo_event_store() {
@@ -92,8 +101,8 @@ public class BlockingSubscriptionForMongoDBTest {
         this.mongoClient = MongoClients.create(connectionString);
         TimeRepresentation timeRepresentation = TimeRepresentation.RFC_3339_STRING;
         EventStoreConfig config = new EventStoreConfig(timeRepresentation);
-        MongoDatabase database = mongoClient.getDatabase(requireNonNull(connectionString.getDatabase()));
-        MongoCollection<Document> eventCollection = database.getCollection(requireNonNull(connectionString.getCollection()));
+        database = mongoClient.getDatabase(requireNonNull(connectionString.getDatabase()));
+        eventCollection = database.getCollection(requireNonNull(connectionString.getCollection()));
         mongoEventStore = new MongoEventStore(mongoClient, connectionString.getDatabase(), connectionString.getCollection(), config);
         subscriptionExecutor = Executors.newFixedThreadPool(1);
         subscription = new BlockingSubscriptionForMongoDB(database, eventCollection, timeRepresentation, subscriptionExecutor, RetryStrategy.backoff(Duration.of(100, MILLIS), Duration.of(500, MILLIS), 2));
@@ -153,6 +162,130 @@ public class BlockingSubscriptionForMongoDBTest {
         await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(3));
     }
 
+    @Test
+    void events_that_cannot_be_processed_within_max_attempts_are_handed_over_to_the_dead_letter_handler() {
+        // Given
+        subscription.shutdown();
+        CopyOnWriteArrayList<String> deadLetters = new CopyOnWriteArrayList<>();
+        subscription = new BlockingSubscriptionForMongoDB(database, eventCollection, TimeRepresentation.RFC_3339_STRING, subscriptionExecutor,
+                RetryStrategy.backoff(Duration.of(50, MILLIS), Duration.of(200, MILLIS), 2, 0.5).maxAttempts(3).deadLetter((subscriptionId, cloudEvent, cause) -> deadLetters.add(cloudEvent.getId())));
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+        AtomicInteger attempts = new AtomicInteger();
+        CopyOnWriteArrayList<String> processed = new CopyOnWriteArrayList<>();
+        subscription.subscribe(UUID.randomUUID().toString(), cloudEvent -> {
+            if (cloudEvent.getId().equals(nameDefined2.getEventId())) {
+                attempts.incrementAndGet();
+                throw new IllegalArgumentException("expected");
+            }
+            processed.add(cloudEvent.getId());
+        }).waitUntilStarted();
+
+        // When
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> {
+            assertThat(processed).containsExactly(nameDefined1.getEventId(), nameWasChanged1.getEventId());
+            assertThat(deadLetters).containsExactly(nameDefined2.getEventId());
+        });
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void blocking_native_mongodb_subscription_delivers_events_in_batches() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<List<CloudEventWithSubscriptionPosition>> batches = new CopyOnWriteArrayList<>();
+        subscription.subscribeBatch(UUID.randomUUID().toString(), null, StartAt.now(), BatchPolicy.maxSize(2).maxWait(Duration.ofMillis(200)), batches::add).waitUntilStarted();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+
+        // When
+        mongoEventStore.write("1", 0, Stream.concat(serialize(nameDefined1), serialize(nameWasChanged1)));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(batches.stream().flatMap(List::stream).map(CloudEvent::getId)).containsExactly(nameDefined1.getEventId(), nameWasChanged1.getEventId(), nameDefined2.getEventId()));
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(2));
+    }
+
+    @Test
+    void blocking_native_mongodb_subscription_with_prefetch_calls_listener_for_each_new_event_in_order() {
+        // Given
+        subscription.shutdown();
+        subscription = new BlockingSubscriptionForMongoDB(database, eventCollection, TimeRepresentation.RFC_3339_STRING, subscriptionExecutor, RetryStrategy.fixed(100),
+                ChangeStreamConfig.defaults().batchSize(2).maxAwaitTime(Duration.ofMillis(100)).prefetch(1));
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        subscription.subscribe(UUID.randomUUID().toString(), state::add).waitUntilStarted();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+
+        // When
+        mongoEventStore.write("1", 0, Stream.concat(serialize(nameDefined1), serialize(nameWasChanged1)));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameWasChanged1.getEventId(), nameDefined2.getEventId()));
+    }
+
+    @Test
+    void blocking_native_mongodb_subscription_with_attributes_only_projection_calls_listener_with_cloud_events_without_data() {
+        // Given
+        subscription.shutdown();
+        subscription = new BlockingSubscriptionForMongoDB(database, eventCollection, TimeRepresentation.RFC_3339_STRING, subscriptionExecutor, RetryStrategy.fixed(100),
+                ChangeStreamConfig.defaults().projection(CloudEventProjection.attributesOnly()));
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        subscription.subscribe(UUID.randomUUID().toString(), state::add).waitUntilStarted();
+        NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameWasChanged nameWasChanged = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name2");
+
+        // When
+        mongoEventStore.write("1", 0, Stream.concat(serialize(nameDefined), serialize(nameWasChanged)));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> {
+            assertThat(state).extracting(CloudEvent::getId, CloudEvent::getType, CloudEvent::getData).containsExactly(
+                    tuple(nameDefined.getEventId(), NameDefined.class.getName(), null),
+                    tuple(nameWasChanged.getEventId(), NameWasChanged.class.getName(), null));
+            assertThat(state).allSatisfy(cloudEvent -> assertThat(cloudEvent.getExtension("streamId")).isEqualTo("1"));
+        });
+    }
+
+    @Test
+    void blocking_native_mongodb_subscription_with_data_path_projection_calls_listener_with_cloud_events_with_partial_data() throws IOException {
+        // Given
+        subscription.shutdown();
+        subscription = new BlockingSubscriptionForMongoDB(database, eventCollection, TimeRepresentation.RFC_3339_STRING, subscriptionExecutor, RetryStrategy.fixed(100),
+                ChangeStreamConfig.defaults().projection(CloudEventProjection.attributesAndData("name")));
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        // The filter refers to data that is not included in the projection
+        subscription.subscribe(UUID.randomUUID().toString(), filter().data(Filters::eq, "eventId", nameDefined1.getEventId()), StartAt.now(), state::add).waitUntilStarted();
+
+        // When
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(1));
+        CloudEvent cloudEvent = state.get(0);
+        assertThat(cloudEvent.getId()).isEqualTo(nameDefined1.getEventId());
+        assertThat(objectMapper.readTree(cloudEvent.getData())).isEqualTo(objectMapper.createObjectNode().put("name", "name1"));
+    }
+
     @Test
     void blocking_native_mongodb_subscription_allows_cancelling_subscription() throws InterruptedException {
         // Given
@@ -16,18 +16,19 @@
 
 package org.occurrent.subscription.mongodb.spring.blocking;
 
-import org.bson.BsonTimestamp;
-import org.bson.BsonValue;
 import org.bson.Document;
 import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
-import org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition;
-import org.occurrent.subscription.mongodb.MongoDBResumeTokenBasedSubscriptionPosition;
 import org.occurrent.subscription.mongodb.internal.MongoDBCloudEventsToJsonDeserializer;
 import org.occurrent.subscription.mongodb.internal.MongoDBCommons;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.query.Update;
 
+import java.util.Map;
+
 import static java.util.Objects.requireNonNull;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
@@ -65,29 +66,29 @@ public class SpringBlockingSubscriptionPositionStorageForMongoDB implements Bloc
 
     @Override
     public SubscriptionPosition save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
-        if (subscriptionPosition instanceof MongoDBResumeTokenBasedSubscriptionPosition) {
-            persistResumeTokenStreamPosition(subscriptionId, ((MongoDBResumeTokenBasedSubscriptionPosition) subscriptionPosition).resumeToken);
-        } else if (subscriptionPosition instanceof MongoDBOperationTimeBasedSubscriptionPosition) {
-            persistOperationTimeStreamPosition(subscriptionId, ((MongoDBOperationTimeBasedSubscriptionPosition) subscriptionPosition).operationTime);
-        } else {
-            String subscriptionPositionString = subscriptionPosition.asString();
-            Document document = MongoDBCommons.generateGenericStreamPositionDocument(subscriptionId, subscriptionPositionString);
-            persistDocumentStreamPosition(subscriptionId, document);
-        }
+        persistDocumentStreamPosition(subscriptionId, MongoDBCommons.generateSubscriptionPositionDocument(subscriptionId, subscriptionPosition));
         return subscriptionPosition;
     }
 
+    /**
+     * Save all subscription positions using a single unordered bulk operation.
+     */
     @Override
-    public void delete(String subscriptionId) {
-        mongoOperations.remove(query(where(MongoDBCloudEventsToJsonDeserializer.ID).is(subscriptionId)), subscriptionPositionCollection);
-    }
-
-    private void persistResumeTokenStreamPosition(String subscriptionId, BsonValue resumeToken) {
-        persistDocumentStreamPosition(subscriptionId, MongoDBCommons.generateResumeTokenStreamPositionDocument(subscriptionId, resumeToken));
+    public void saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+        requireNonNull(subscriptionPositions, "Subscription positions cannot be null");
+        if (subscriptionPositions.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoOperations.bulkOps(BulkMode.UNORDERED, subscriptionPositionCollection);
+        subscriptionPositions.forEach((subscriptionId, subscriptionPosition) ->
+                bulkOperations.replaceOne(query(where(MongoDBCloudEventsToJsonDeserializer.ID).is(subscriptionId)),
+                        MongoDBCommons.generateSubscriptionPositionDocument(subscriptionId, subscriptionPosition), FindAndReplaceOptions.options().upsert()));
+        bulkOperations.execute();
     }
 
-    private void persistOperationTimeStreamPosition(String subscriptionId, BsonTimestamp operationTime) {
-        persistDocumentStreamPosition(subscriptionId, MongoDBCommons.generateOperationTimeStreamPositionDocument(subscriptionId, operationTime));
+    @Override
+    public void delete(String subscriptionId) {
+        mongoOperations.remove(query(where(MongoDBCloudEventsToJsonDeserializer.ID).is(subscriptionId)), subscriptionPositionCollection);
     }
 
     private void persistDocumentStreamPosition(String subscriptionId, Document document) {
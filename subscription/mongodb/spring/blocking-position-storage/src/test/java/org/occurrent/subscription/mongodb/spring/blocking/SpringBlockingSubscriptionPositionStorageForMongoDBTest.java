@@ -24,6 +24,7 @@ import com.mongodb.client.model.Filters;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.builder.CloudEventBuilder;
 import io.github.artsok.RepeatedIfExceptionsTest;
+import org.bson.BsonTimestamp;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -35,9 +36,13 @@ import org.occurrent.eventstore.api.blocking.EventStore;
 import org.occurrent.eventstore.mongodb.spring.blocking.EventStoreConfig;
 import org.occurrent.eventstore.mongodb.spring.blocking.SpringBlockingMongoEventStore;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.PositionPersistencePolicy;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
 import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
 import org.occurrent.subscription.mongodb.MongoDBFilterSpecification.JsonMongoDBFilterSpecification;
+import org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition;
 import org.occurrent.subscription.util.blocking.BlockingSubscriptionWithAutomaticPositionPersistence;
 import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
 import org.springframework.data.mongodb.MongoTransactionManager;
@@ -51,6 +56,8 @@ import java.net.URI;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -91,6 +98,8 @@ public class SpringBlockingSubscriptionPositionStorageForMongoDBTest {
     private ObjectMapper objectMapper;
     private MongoTemplate mongoTemplate;
     private MongoClient mongoClient;
+    private PositionAwareBlockingSubscription positionAwareBlockingSubscription;
+    private BlockingSubscriptionPositionStorage storage;
 
     @BeforeEach
     void create_mongo_event_store() {
@@ -101,8 +110,8 @@ public class SpringBlockingSubscriptionPositionStorageForMongoDBTest {
         TimeRepresentation timeRepresentation = RFC_3339_STRING;
         EventStoreConfig eventStoreConfig = new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(mongoTransactionManager).timeRepresentation(timeRepresentation).build();
         mongoEventStore = new SpringBlockingMongoEventStore(mongoTemplate, eventStoreConfig);
-        PositionAwareBlockingSubscription positionAwareBlockingSubscription = new SpringBlockingSubscriptionForMongoDB(mongoTemplate, connectionString.getCollection(), timeRepresentation);
-        BlockingSubscriptionPositionStorage storage = new SpringBlockingSubscriptionPositionStorageForMongoDB(mongoTemplate, RESUME_TOKEN_COLLECTION);
+        positionAwareBlockingSubscription = new SpringBlockingSubscriptionForMongoDB(mongoTemplate, connectionString.getCollection(), timeRepresentation);
+        storage = new SpringBlockingSubscriptionPositionStorageForMongoDB(mongoTemplate, RESUME_TOKEN_COLLECTION);
         this.subscription = new BlockingSubscriptionWithAutomaticPositionPersistence(positionAwareBlockingSubscription, storage);
         objectMapper = new ObjectMapper();
     }
@@ -156,6 +165,33 @@ public class SpringBlockingSubscriptionPositionStorageForMongoDBTest {
         await().atMost(2, SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(3));
     }
 
+    @Test
+    void blocking_spring_subscription_with_position_persistence_policy_persists_the_latest_position_when_subscription_is_paused() {
+        // Given
+        subscription = new BlockingSubscriptionWithAutomaticPositionPersistence(positionAwareBlockingSubscription, storage, PositionPersistencePolicy.everyNumberOfEvents(100));
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        String subscriberId = UUID.randomUUID().toString();
+        subscription.subscribe(subscriberId, state::add).waitUntilStarted(Duration.of(10, ChronoUnit.SECONDS));
+        SubscriptionPosition initialPosition = storage.read(subscriberId);
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+
+        // When
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+        await().atMost(2, SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(2));
+        SubscriptionPosition positionBeforePause = storage.read(subscriberId);
+        subscription.pauseSubscription(subscriberId);
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1));
+        subscription.subscribe(subscriberId, state::add);
+
+        // Then
+        assertThat(positionBeforePause).isEqualTo(initialPosition);
+        await().atMost(2, SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(3));
+    }
+
     @Test
     void blocking_spring_subscription_allows_resuming_events_from_where_it_left_when_first_event_for_subscription_fails_the_first_time() {
         // Given
@@ -309,6 +345,22 @@ public class SpringBlockingSubscriptionPositionStorageForMongoDBTest {
         assertThat(state).extracting(CloudEvent::getType).containsOnly(NameDefined.class.getName());
     }
 
+    @Test
+    void save_all_inserts_new_and_replaces_existing_subscription_positions() {
+        // Given
+        storage.save("a", new StringBasedSubscriptionPosition("old"));
+        Map<String, SubscriptionPosition> positions = new HashMap<>();
+        positions.put("a", new MongoDBOperationTimeBasedSubscriptionPosition(new BsonTimestamp(1600000000, 2)));
+        positions.put("b", new StringBasedSubscriptionPosition("position-b"));
+
+        // When
+        storage.saveAll(positions);
+
+        // Then
+        assertThat(storage.read("a")).isEqualTo(new MongoDBOperationTimeBasedSubscriptionPosition(new BsonTimestamp(1600000000, 2)));
+        assertThat(storage.read("b")).isEqualTo(new StringBasedSubscriptionPosition("position-b"));
+    }
+
     private Stream<CloudEvent> serialize(DomainEvent e) {
         return Stream.of(CloudEventBuilder.v1()
                 .withId(e.getEventId())
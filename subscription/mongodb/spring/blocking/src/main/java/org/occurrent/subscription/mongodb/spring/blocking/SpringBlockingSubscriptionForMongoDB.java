@@ -24,17 +24,24 @@ import org.bson.BsonDocument;
 import org.bson.BsonTimestamp;
 import org.bson.Document;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.BatchPolicy;
+import org.occurrent.subscription.BatchingConsumer;
 import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionFilter;
 import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
 import org.occurrent.subscription.api.blocking.Subscription;
+import org.occurrent.subscription.internal.PrefetchingConsumer;
+import org.occurrent.subscription.mongodb.ChangeStreamConfig;
 import org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition;
 import org.occurrent.subscription.mongodb.MongoDBResumeTokenBasedSubscriptionPosition;
 import org.occurrent.subscription.mongodb.internal.MongoDBCloudEventsToJsonDeserializer;
 import org.occurrent.subscription.mongodb.internal.MongoDBCommons;
 import org.occurrent.subscription.mongodb.spring.internal.ApplyFilterToChangeStreamOptionsBuilder;
+import org.occurrent.threads.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.mongodb.core.ChangeStreamOptions;
 import org.springframework.data.mongodb.core.ChangeStreamOptions.ChangeStreamOptionsBuilder;
 import org.springframework.data.mongodb.core.MongoOperations;
@@ -46,6 +53,7 @@ import org.springframework.data.mongodb.core.messaging.MessageListener;
 import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
 
 import javax.annotation.PreDestroy;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
@@ -60,8 +68,11 @@ import static java.util.Objects.requireNonNull;
  * <p>
  * Note that this subscription doesn't provide retries if an exception is thrown when handling a {@link io.cloudevents.CloudEvent} (<code>action</code>).
  * This reason for this is that Spring provides retry capabilities (such as spring-retry) that you can easily hook into your <code>action</code>.
+ * An exception thrown by the <code>action</code> is logged and the subscription continues with the next event, also when events are prefetched
+ * (see {@link ChangeStreamConfig#prefetch(int)}).
  */
 public class SpringBlockingSubscriptionForMongoDB implements PositionAwareBlockingSubscription {
+    private static final Logger log = LoggerFactory.getLogger(SpringBlockingSubscriptionForMongoDB.class);
 
     private final String eventCollection;
     private final MessageListenerContainer messageListenerContainer;
@@ -69,6 +80,9 @@ public class SpringBlockingSubscriptionForMongoDB implements PositionAwareBlocki
     private final EventFormat cloudEventSerializer;
     private final TimeRepresentation timeRepresentation;
     private final MongoOperations mongoOperations;
+    private final ChangeStreamConfig changeStreamConfig;
+    private final ConcurrentMap<String, PrefetchingConsumer<CloudEventWithSubscriptionPosition>> prefetchingActions;
+    private final ConcurrentMap<String, BatchingConsumer<CloudEventWithSubscriptionPosition>> batchingActions;
 
     /**
      * Create a blocking subscription using Spring
@@ -78,16 +92,38 @@ public class SpringBlockingSubscriptionForMongoDB implements PositionAwareBlocki
      * @param timeRepresentation How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
      */
     public SpringBlockingSubscriptionForMongoDB(MongoTemplate mongoTemplate, String eventCollection, TimeRepresentation timeRepresentation) {
+        this(mongoTemplate, eventCollection, timeRepresentation, ChangeStreamConfig.defaults());
+    }
+
+    /**
+     * Create a blocking subscription using Spring
+     *
+     * @param mongoTemplate      The mongo template to use
+     * @param eventCollection    The collection that contains the events
+     * @param timeRepresentation How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param changeStreamConfig Configure how the change stream is read. Note that {@link ChangeStreamConfig#batchSize} is not supported by Spring's {@link MessageListenerContainer}.
+     */
+    public SpringBlockingSubscriptionForMongoDB(MongoTemplate mongoTemplate, String eventCollection, TimeRepresentation timeRepresentation, ChangeStreamConfig changeStreamConfig) {
         requireNonNull(mongoTemplate, MongoOperations.class.getSimpleName() + " cannot be null");
         requireNonNull(eventCollection, "eventCollection cannot be null");
         requireNonNull(timeRepresentation, TimeRepresentation.class.getSimpleName() + " cannot be null");
+        requireNonNull(changeStreamConfig, ChangeStreamConfig.class.getSimpleName() + " cannot be null");
+        if (changeStreamConfig.batchSize != null) {
+            throw new IllegalArgumentException("Batch size is not supported by " + SpringBlockingSubscriptionForMongoDB.class.getSimpleName());
+        }
 
         this.mongoOperations = mongoTemplate;
+        this.changeStreamConfig = changeStreamConfig;
+        this.prefetchingActions = new ConcurrentHashMap<>();
+        this.batchingActions = new ConcurrentHashMap<>();
         this.timeRepresentation = timeRepresentation;
         this.eventCollection = eventCollection;
         this.subscriptions = new ConcurrentHashMap<>();
         this.cloudEventSerializer = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
-        this.messageListenerContainer = new DefaultMessageListenerContainer(mongoTemplate);
+        // Read the change streams on virtual threads instead of the platform threads created by Spring's default executor, if enabled
+        this.messageListenerContainer = VirtualThreads.isEnabled() ?
+                new DefaultMessageListenerContainer(mongoTemplate, VirtualThreads.newVirtualThreadPerTaskExecutor("occurrent-spring-subscription")) :
+                new DefaultMessageListenerContainer(mongoTemplate);
         this.messageListenerContainer.start();
     }
 
@@ -101,25 +137,53 @@ public class SpringBlockingSubscriptionForMongoDB implements PositionAwareBlocki
         ChangeStreamOptionsBuilder builder = MongoDBCommons.applyStartPosition(ChangeStreamOptions.builder(), ChangeStreamOptionsBuilder::startAfter, ChangeStreamOptionsBuilder::resumeAt, startAtSupplier.get());
         final ChangeStreamOptions changeStreamOptions = ApplyFilterToChangeStreamOptionsBuilder.applyFilter(timeRepresentation, filter, builder);
 
+        final Consumer<CloudEventWithSubscriptionPosition> listenerAction;
+        if (changeStreamConfig.prefetch == 0) {
+            listenerAction = action;
+        } else {
+            // The action is invoked by a separate thread so that the next events can be read and deserialized in the meantime. Exceptions are logged
+            // by the action itself, just like Spring's MessageListenerContainer does when there's no prefetching, since a failing action would otherwise
+            // stop the prefetching thread and all subsequent events would be dropped by the MessageListenerContainer.
+            PrefetchingConsumer<CloudEventWithSubscriptionPosition> prefetchingAction = new PrefetchingConsumer<>("occurrent-" + subscriptionId + "-prefetch", changeStreamConfig.prefetch,
+                    logExceptions(subscriptionId, action));
+            closePrefetchingAction(prefetchingActions.put(subscriptionId, prefetchingAction));
+            listenerAction = prefetchingAction;
+        }
+
         MessageListener<ChangeStreamDocument<Document>, Document> listener = change -> {
             ChangeStreamDocument<Document> raw = change.getRaw();
             BsonDocument resumeToken = requireNonNull(raw).getResumeToken();
             MongoDBCloudEventsToJsonDeserializer.deserializeToCloudEvent(requireNonNull(cloudEventSerializer), raw, timeRepresentation)
                     .map(cloudEvent -> new CloudEventWithSubscriptionPosition(cloudEvent, new MongoDBResumeTokenBasedSubscriptionPosition(resumeToken)))
-                    .ifPresent(action);
+                    .ifPresent(listenerAction);
         };
 
-        ChangeStreamRequestOptions options = new ChangeStreamRequestOptions(null, eventCollection, changeStreamOptions);
+        ChangeStreamRequestOptions options = new ChangeStreamRequestOptions(null, eventCollection, changeStreamConfig.maxAwaitTime, changeStreamOptions);
         final org.springframework.data.mongodb.core.messaging.Subscription subscription = messageListenerContainer.register(new ChangeStreamRequest<>(listener, options), Document.class);
         subscriptions.put(subscriptionId, subscription);
         return new MongoDBSpringSubscription(subscriptionId, subscription);
     }
 
+    /**
+     * Start listening to cloud events persisted to the event store and receive them in batches. The batches that don't fill up within
+     * {@link BatchPolicy#maxWait} are delivered by a background thread that is stopped when the subscription is cancelled or shutdown.
+     */
+    @Override
+    public Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, BatchPolicy batchPolicy,
+                                       Consumer<List<CloudEventWithSubscriptionPosition>> action) {
+        requireNonNull(subscriptionId, "subscriptionId cannot be null");
+        BatchingConsumer<CloudEventWithSubscriptionPosition> batchingAction = new BatchingConsumer<>("occurrent-" + subscriptionId + "-batch", batchPolicy, action);
+        closeBatchingAction(batchingActions.put(subscriptionId, batchingAction));
+        return subscribe(subscriptionId, filter, startAtSupplier, batchingAction);
+    }
+
     public void cancelSubscription(String subscriptionId) {
         org.springframework.data.mongodb.core.messaging.Subscription subscription = subscriptions.remove(subscriptionId);
         if (subscription != null) {
             messageListenerContainer.remove(subscription);
         }
+        closePrefetchingAction(prefetchingActions.remove(subscriptionId));
+        closeBatchingAction(batchingActions.remove(subscriptionId));
     }
 
     @PreDestroy
@@ -127,6 +191,33 @@ public class SpringBlockingSubscriptionForMongoDB implements PositionAwareBlocki
     public void shutdown() {
         subscriptions.clear();
         messageListenerContainer.stop();
+        prefetchingActions.values().forEach(SpringBlockingSubscriptionForMongoDB::closePrefetchingAction);
+        prefetchingActions.clear();
+        batchingActions.values().forEach(SpringBlockingSubscriptionForMongoDB::closeBatchingAction);
+        batchingActions.clear();
+    }
+
+    private static Consumer<CloudEventWithSubscriptionPosition> logExceptions(String subscriptionId, Consumer<CloudEventWithSubscriptionPosition> action) {
+        return cloudEventWithSubscriptionPosition -> {
+            try {
+                action.accept(cloudEventWithSubscriptionPosition);
+            } catch (RuntimeException e) {
+                log.error("Caught {} with message \"{}\" when subscription {} processed cloud event with id {}, continuing with the next event.", e.getClass().getName(),
+                        e.getMessage(), subscriptionId, cloudEventWithSubscriptionPosition.getId(), e);
+            }
+        };
+    }
+
+    private static void closePrefetchingAction(PrefetchingConsumer<CloudEventWithSubscriptionPosition> prefetchingAction) {
+        if (prefetchingAction != null) {
+            prefetchingAction.close();
+        }
+    }
+
+    private static void closeBatchingAction(BatchingConsumer<CloudEventWithSubscriptionPosition> batchingAction) {
+        if (batchingAction != null) {
+            batchingAction.close();
+        }
     }
 
     @Override
@@ -36,6 +36,7 @@ import org.occurrent.functional.CheckedFunction;
 import org.occurrent.functional.Not;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.mongodb.ChangeStreamConfig;
 import org.occurrent.subscription.mongodb.MongoDBFilterSpecification;
 import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
 import org.occurrent.time.TimeConversion;
@@ -52,6 +53,7 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 import static com.mongodb.client.model.Aggregates.match;
@@ -140,6 +142,33 @@ public class SpringBlockingSubscriptionForMongoDBTest {
         assertThat(mongoTemplate.getCollection(RESUME_TOKEN_COLLECTION).countDocuments()).isZero();
     }
 
+    @Test
+    void blocking_spring_subscription_with_prefetch_continues_processing_events_after_the_action_has_thrown_an_exception() {
+        // Given
+        subscription.shutdown();
+        subscription = new SpringBlockingSubscriptionForMongoDB(mongoTemplate, "events", TimeRepresentation.RFC_3339_STRING, ChangeStreamConfig.defaults().prefetch(10));
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        subscription.subscribe(UUID.randomUUID().toString(), cloudEvent -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Expected");
+            }
+            state.add(cloudEvent);
+        }).waitUntilStarted(Duration.of(10, ChronoUnit.SECONDS));
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+
+        // When
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1));
+
+        // Then
+        await().atMost(2, SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined2.getEventId(), nameWasChanged1.getEventId()));
+    }
+
     @Nested
     @DisplayName("SubscriptionFilter for BsonMongoDBFilterSpecification")
     class BsonMongoDBFilterSpecificationTest {
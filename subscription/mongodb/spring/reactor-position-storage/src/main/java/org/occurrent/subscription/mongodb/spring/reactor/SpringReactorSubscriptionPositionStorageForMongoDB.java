@@ -16,23 +16,26 @@
 
 package org.occurrent.subscription.mongodb.spring.reactor;
 
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.result.UpdateResult;
-import org.bson.BsonDocument;
-import org.bson.BsonTimestamp;
 import org.bson.Document;
 import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.reactor.ReactorSubscriptionPositionStorage;
-import org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition;
-import org.occurrent.subscription.mongodb.MongoDBResumeTokenBasedSubscriptionPosition;
 import org.occurrent.subscription.mongodb.internal.MongoDBCommons;
 import org.springframework.data.mongodb.core.ReactiveMongoOperations;
 import org.springframework.data.mongodb.core.query.Update;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.eq;
 import static java.util.Objects.requireNonNull;
 import static org.occurrent.subscription.mongodb.internal.MongoDBCloudEventsToJsonDeserializer.ID;
-import static org.occurrent.subscription.mongodb.internal.MongoDBCommons.generateOperationTimeStreamPositionDocument;
-import static org.occurrent.subscription.mongodb.internal.MongoDBCommons.generateResumeTokenStreamPositionDocument;
+import static org.occurrent.subscription.mongodb.internal.MongoDBCommons.generateSubscriptionPositionDocument;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
@@ -59,17 +62,25 @@ public class SpringReactorSubscriptionPositionStorageForMongoDB implements React
 
     @Override
     public Mono<SubscriptionPosition> save(String subscriptionId, SubscriptionPosition changeStreamPosition) {
-        Mono<?> result;
-        if (changeStreamPosition instanceof MongoDBResumeTokenBasedSubscriptionPosition) {
-            result = persistResumeTokenStreamPosition(subscriptionId, ((MongoDBResumeTokenBasedSubscriptionPosition) changeStreamPosition).resumeToken);
-        } else if (changeStreamPosition instanceof MongoDBOperationTimeBasedSubscriptionPosition) {
-            result = persistOperationTimeStreamPosition(subscriptionId, ((MongoDBOperationTimeBasedSubscriptionPosition) changeStreamPosition).operationTime);
-        } else {
-            String subscriptionPositionString = changeStreamPosition.asString();
-            Document document = MongoDBCommons.generateGenericStreamPositionDocument(subscriptionId, subscriptionPositionString);
-            result = persistDocumentStreamPosition(subscriptionId, document);
+        Document document = generateSubscriptionPositionDocument(subscriptionId, changeStreamPosition);
+        return persistDocumentStreamPosition(subscriptionId, document).thenReturn(changeStreamPosition);
+    }
+
+    /**
+     * Save all subscription positions using a single unordered bulk write.
+     */
+    @Override
+    public Mono<Void> saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+        requireNonNull(subscriptionPositions, "Subscription positions cannot be null");
+        if (subscriptionPositions.isEmpty()) {
+            return Mono.empty();
         }
-        return result.thenReturn(changeStreamPosition);
+        List<ReplaceOneModel<Document>> replacements = subscriptionPositions.entrySet().stream()
+                .map(entry -> new ReplaceOneModel<>(eq(ID, entry.getKey()), generateSubscriptionPositionDocument(entry.getKey(), entry.getValue()), new ReplaceOptions().upsert(true)))
+                .collect(Collectors.toList());
+        return mongo.getCollection(subscriptionPositionCollection)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(replacements, new BulkWriteOptions().ordered(false))))
+                .then();
     }
 
     @Override
@@ -77,16 +88,6 @@ public class SpringReactorSubscriptionPositionStorageForMongoDB implements React
         return mongo.remove(query(where(ID).is(subscriptionId)), subscriptionPositionCollection).then();
     }
 
-    private Mono<Document> persistResumeTokenStreamPosition(String subscriptionId, BsonDocument resumeToken) {
-        Document document = generateResumeTokenStreamPositionDocument(subscriptionId, resumeToken);
-        return persistDocumentStreamPosition(subscriptionId, document).thenReturn(document);
-    }
-
-    private Mono<Document> persistOperationTimeStreamPosition(String subscriptionId, BsonTimestamp timestamp) {
-        Document document = generateOperationTimeStreamPositionDocument(subscriptionId, timestamp);
-        return persistDocumentStreamPosition(subscriptionId, document).thenReturn(document);
-    }
-
     private Mono<UpdateResult> persistDocumentStreamPosition(String subscriptionId, Document document) {
         return mongo.upsert(query(where(ID).is(subscriptionId)),
                 Update.fromDocument(document),
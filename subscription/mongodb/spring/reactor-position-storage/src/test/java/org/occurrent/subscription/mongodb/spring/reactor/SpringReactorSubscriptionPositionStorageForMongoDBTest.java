@@ -23,8 +23,10 @@ import com.mongodb.reactivestreams.client.MongoClients;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.builder.CloudEventBuilder;
 import io.github.artsok.RepeatedIfExceptionsTest;
+import org.bson.BsonTimestamp;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.occurrent.domain.DomainEvent;
 import org.occurrent.domain.NameDefined;
@@ -32,7 +34,10 @@ import org.occurrent.eventstore.api.reactor.EventStore;
 import org.occurrent.eventstore.mongodb.spring.reactor.EventStoreConfig;
 import org.occurrent.eventstore.mongodb.spring.reactor.SpringReactorMongoEventStore;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.reactor.PositionAwareReactorSubscription;
+import org.occurrent.subscription.mongodb.MongoDBOperationTimeBasedSubscriptionPosition;
 import org.occurrent.subscription.util.reactor.ReactorSubscriptionWithAutomaticPositionPersistence;
 import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
 import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
@@ -49,6 +54,8 @@ import reactor.core.publisher.Mono;
 
 import java.net.URI;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -123,6 +130,22 @@ public class SpringReactorSubscriptionPositionStorageForMongoDBTest {
         assertThat(reactiveMongoTemplate.count(new Query(), RESUME_TOKEN_COLLECTION).block()).isZero();
     }
 
+    @Test
+    void save_all_inserts_new_and_replaces_existing_subscription_positions() {
+        // Given
+        storage.save("a", new StringBasedSubscriptionPosition("old")).block();
+        Map<String, SubscriptionPosition> positions = new HashMap<>();
+        positions.put("a", new MongoDBOperationTimeBasedSubscriptionPosition(new BsonTimestamp(1600000000, 2)));
+        positions.put("b", new StringBasedSubscriptionPosition("position-b"));
+
+        // When
+        storage.saveAll(positions).block();
+
+        // Then
+        assertThat(storage.read("a").block()).isEqualTo(new MongoDBOperationTimeBasedSubscriptionPosition(new BsonTimestamp(1600000000, 2)));
+        assertThat(storage.read("b").block()).isEqualTo(new StringBasedSubscriptionPosition("position-b"));
+    }
+
     private Flux<CloudEvent> serialize(DomainEvent e) {
         return Flux.just(CloudEventBuilder.v1()
                 .withId(UUID.randomUUID().toString())
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb.spring.reactor;
+
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.StartAt.StartAtSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.reactor.PositionAwareReactorSubscription;
+import org.occurrent.subscription.internal.AdaptivePollInterval;
+import org.occurrent.subscription.mongodb.MongoDBObjectIdBasedSubscriptionPosition;
+import org.occurrent.subscription.mongodb.PollingConfig;
+import org.occurrent.subscription.mongodb.internal.MongoDBPolling;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A subscription that uses project reactor and Spring to poll the event collection for new events. Use this subscription when
+ * the MongoDB deployment doesn't support change streams (for example a standalone MongoDB server without a replica set).
+ * <p>
+ * The event collection is tailed by {@code _id} using indexed range queries, and the events are read in batches of {@link PollingConfig#batchSize}.
+ * The poll interval adapts to the load, see {@link PollingConfig}. Events are delivered after {@link PollingConfig#visibilityDelay},
+ * which must be longer than the longest write (transaction) to the event store so that no events are missed.
+ * </p>
+ * <p>
+ * This Subscription doesn't maintain the subscription position, you need to store it yourself
+ * (or use another pre-existing component in conjunction with this one) in order to continue the stream from where
+ * it's left off on application restart/crash etc. Change stream resume tokens are not supported as start positions.
+ * </p>
+ */
+public class SpringReactorPollingSubscriptionForMongoDB implements PositionAwareReactorSubscription {
+
+    private final ReactiveMongoOperations mongo;
+    private final String eventCollection;
+    private final TimeRepresentation timeRepresentation;
+    private final PollingConfig pollingConfig;
+    private final EventFormat cloudEventSerializer;
+
+    /**
+     * Create a polling subscription using Spring
+     *
+     * @param mongo              The {@link ReactiveMongoOperations} instance to use when reading events from the event store
+     * @param eventCollection    The collection that contains the events
+     * @param timeRepresentation How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param pollingConfig      Configure how the event collection is polled
+     */
+    public SpringReactorPollingSubscriptionForMongoDB(ReactiveMongoOperations mongo, String eventCollection, TimeRepresentation timeRepresentation, PollingConfig pollingConfig) {
+        requireNonNull(mongo, ReactiveMongoOperations.class.getSimpleName() + " cannot be null");
+        requireNonNull(eventCollection, "Event collection cannot be null");
+        requireNonNull(timeRepresentation, "Time representation cannot be null");
+        requireNonNull(pollingConfig, PollingConfig.class.getSimpleName() + " cannot be null");
+        this.mongo = mongo;
+        this.eventCollection = eventCollection;
+        this.timeRepresentation = timeRepresentation;
+        this.pollingConfig = pollingConfig;
+        this.cloudEventSerializer = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+    }
+
+    @Override
+    public Flux<CloudEventWithSubscriptionPosition> subscribe(SubscriptionFilter filter, StartAt startAt) {
+        requireNonNull(startAt, "Start at cannot be null");
+        Bson bsonFilter = MongoDBPolling.createFilter(timeRepresentation, filter);
+        // The state is created per subscriber so that the returned flux can be subscribed to several times
+        return Flux.defer(() -> startAfter(startAt).flatMapMany(startAfter -> {
+            AtomicReference<ObjectId> position = new AtomicReference<>(startAfter);
+            AtomicLong nextPollInMillis = new AtomicLong(0);
+            AdaptivePollInterval pollInterval = new AdaptivePollInterval(pollingConfig.minPollInterval, pollingConfig.maxPollInterval);
+            return Mono.defer(() -> {
+                Mono<List<CloudEventWithSubscriptionPosition>> poll = poll(bsonFilter, position.get()).collectList();
+                long delayMillis = nextPollInMillis.get();
+                return delayMillis == 0 ? poll : Mono.delay(Duration.ofMillis(delayMillis)).then(poll);
+            })
+                    .doOnNext(cloudEvents -> {
+                        nextPollInMillis.set(pollInterval.next(cloudEvents.size(), pollingConfig.batchSize));
+                        if (!cloudEvents.isEmpty()) {
+                            position.set(((MongoDBObjectIdBasedSubscriptionPosition) cloudEvents.get(cloudEvents.size() - 1).getStreamPosition()).objectId);
+                        }
+                    })
+                    .repeat()
+                    // Don't poll for the next batch until the current batch has been consumed
+                    .concatMapIterable(Function.identity(), 1);
+        }));
+    }
+
+    /**
+     * @return The position of the latest event in the event collection
+     */
+    @Override
+    public Mono<SubscriptionPosition> globalSubscriptionPosition() {
+        return latestId()
+                .defaultIfEmpty(MongoDBPolling.idOrBeginning(null))
+                .map(MongoDBObjectIdBasedSubscriptionPosition::new);
+    }
+
+    private Flux<CloudEventWithSubscriptionPosition> poll(Bson filter, ObjectId after) {
+        Bson query = MongoDBPolling.createQuery(filter, after, pollingConfig.visibilityDelay);
+        return mongo.execute(eventCollection, collection -> collection.find(query).sort(MongoDBPolling.SORT_BY_ID_ASCENDING).limit(pollingConfig.batchSize))
+                .map(document -> MongoDBPolling.toCloudEventWithSubscriptionPosition(cloudEventSerializer, timeRepresentation, document));
+    }
+
+    private Mono<ObjectId> startAfter(StartAt startAt) {
+        if (startAt.isNow()) {
+            return latestId().defaultIfEmpty(MongoDBPolling.idOrBeginning(null));
+        }
+        return Mono.fromCallable(() -> MongoDBPolling.startAfter(((StartAtSubscriptionPosition) startAt).subscriptionPosition));
+    }
+
+    private Mono<ObjectId> latestId() {
+        return mongo.execute(eventCollection, collection -> collection.find().projection(new Document(MongoDBPolling.ID, 1)).sort(MongoDBPolling.SORT_BY_ID_DESCENDING).limit(1))
+                .next()
+                .map(document -> document.getObjectId(MongoDBPolling.ID));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb.spring.reactor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ConnectionString;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.occurrent.domain.DomainEvent;
+import org.occurrent.domain.NameDefined;
+import org.occurrent.domain.NameWasChanged;
+import org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDBDocumentMapper;
+import org.occurrent.eventstore.mongodb.spring.reactor.EventStoreConfig;
+import org.occurrent.eventstore.mongodb.spring.reactor.SpringReactorMongoEventStore;
+import org.occurrent.filter.Filter;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.mongodb.PollingConfig;
+import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.time.ZoneOffset.UTC;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.awaitility.Durations.FIVE_SECONDS;
+import static org.occurrent.functional.CheckedFunction.unchecked;
+import static org.occurrent.time.TimeConversion.toLocalDateTime;
+
+@Testcontainers
+public class SpringReactorPollingSubscriptionForMongoDBTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.2.8");
+
+    @RegisterExtension
+    FlushMongoDBExtension flushMongoDBExtension = new FlushMongoDBExtension(new ConnectionString(mongoDBContainer.getReplicaSetUrl()));
+
+    private SpringReactorMongoEventStore mongoEventStore;
+    private SpringReactorPollingSubscriptionForMongoDB subscription;
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    private ObjectMapper objectMapper;
+    private CopyOnWriteArrayList<Disposable> disposables;
+    private MongoClient mongoClient;
+
+    @BeforeEach
+    void create_mongo_event_store() {
+        ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl() + ".events");
+        mongoClient = MongoClients.create(connectionString);
+        reactiveMongoTemplate = new ReactiveMongoTemplate(mongoClient, requireNonNull(connectionString.getDatabase()));
+        // Uses the default visibility delay
+        subscription = new SpringReactorPollingSubscriptionForMongoDB(reactiveMongoTemplate, "events", TimeRepresentation.RFC_3339_STRING,
+                PollingConfig.defaults().batchSize(2).pollInterval(Duration.ofMillis(5), Duration.ofMillis(100)));
+        ReactiveTransactionManager reactiveMongoTransactionManager = new ReactiveMongoTransactionManager(new SimpleReactiveMongoDatabaseFactory(mongoClient, requireNonNull(connectionString.getDatabase())));
+        EventStoreConfig eventStoreConfig = new EventStoreConfig.Builder().eventStoreCollectionName("events").transactionConfig(reactiveMongoTransactionManager).timeRepresentation(TimeRepresentation.RFC_3339_STRING).build();
+        mongoEventStore = new SpringReactorMongoEventStore(reactiveMongoTemplate, eventStoreConfig);
+        objectMapper = new ObjectMapper();
+        disposables = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    void dispose() {
+        disposables.forEach(Disposable::dispose);
+        mongoClient.close();
+    }
+
+    @Test
+    void reactive_polling_subscription_calls_listener_for_each_new_event_in_order() throws InterruptedException {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        disposeAfterTest(subscription.subscribe().flatMap(cloudEvent -> Mono.fromRunnable(() -> state.add(cloudEvent))).subscribe());
+        Thread.sleep(200);
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+
+        // When
+        mongoEventStore.write("1", 0, serialize(nameDefined1)).block();
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1)).block();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId(), nameWasChanged1.getEventId()));
+    }
+
+    @Test
+    void reactive_polling_subscription_continues_from_subscription_position() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+        SubscriptionPosition positionBeforeFirstEvent = requireNonNull(subscription.globalSubscriptionPosition().block());
+        mongoEventStore.write("1", 0, serialize(nameDefined1)).block();
+        CloudEventWithSubscriptionPosition first = subscription.subscribe(null, StartAt.subscriptionPosition(positionBeforeFirstEvent)).blockFirst(Duration.ofSeconds(5));
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1)).block();
+
+        // When
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        disposeAfterTest(subscription.subscribe(null, StartAt.subscriptionPosition(requireNonNull(first).getStreamPosition())).doOnNext(state::add).subscribe());
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined2.getEventId(), nameWasChanged1.getEventId()));
+    }
+
+    @Test
+    void reactive_polling_subscription_applies_occurrent_subscription_filter() throws InterruptedException {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        disposeAfterTest(subscription.subscribe(OccurrentSubscriptionFilter.filter(Filter.type(NameDefined.class.getSimpleName()))).doOnNext(state::add).subscribe());
+        Thread.sleep(200);
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(3), "name3");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+
+        // When
+        mongoEventStore.write("1", 0, serialize(nameDefined1)).block();
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1)).block();
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId()));
+    }
+
+    @Test
+    void reactive_polling_subscription_does_not_miss_an_event_that_becomes_visible_after_an_event_with_a_higher_id_when_using_default_visibility_delay() throws InterruptedException {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        disposeAfterTest(subscription.subscribe().doOnNext(state::add).subscribe());
+        Thread.sleep(200);
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        // Simulates a concurrent writer (or transaction) that generates the _id before nameDefined2 is written, but commits after it
+        ObjectId idGeneratedBeforeNameDefined2 = new ObjectId();
+
+        // When
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+        Thread.sleep(100);
+        Document lateDocument = OccurrentCloudEventMongoDBDocumentMapper.convertToDocument(EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE),
+                TimeRepresentation.RFC_3339_STRING, "1", 0, requireNonNull(serialize(nameDefined1).blockFirst()));
+        lateDocument.put("_id", idGeneratedBeforeNameDefined2);
+        reactiveMongoTemplate.getCollection("events").flatMap(collection -> Mono.from(collection.insertOne(lateDocument))).block();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId()));
+    }
+
+    private Flux<CloudEvent> serialize(DomainEvent e) {
+        return Flux.just(CloudEventBuilder.v1()
+                .withId(e.getEventId())
+                .withSource(URI.create("http://name"))
+                .withType(e.getClass().getSimpleName())
+                .withTime(toLocalDateTime(e.getTimestamp()).atOffset(UTC))
+                .withSubject(e.getName())
+                .withDataContentType("application/json")
+                .withData(unchecked(objectMapper::writeValueAsBytes).apply(e))
+                .build());
+    }
+
+    private void disposeAfterTest(Disposable disposable) {
+        disposables.add(disposable);
+    }
+}
@@ -21,6 +21,9 @@ import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
 import org.springframework.data.redis.core.RedisOperations;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -57,6 +60,23 @@ public class SpringBlockingSubscriptionPositionStorageForRedis implements Blocki
         return subscriptionPosition;
     }
 
+    /**
+     * Save all subscription positions using a single {@code MSET} command.
+     */
+    @Override
+    public void saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+        requireNonNull(subscriptionPositions, "Subscription positions cannot be null");
+        if (subscriptionPositions.isEmpty()) {
+            return;
+        }
+        Map<String, String> subscriptionPositionsAsStrings = new HashMap<>(subscriptionPositions.size());
+        subscriptionPositions.forEach((subscriptionId, subscriptionPosition) -> {
+            requireNonNull(subscriptionPosition, SubscriptionPosition.class.getSimpleName() + " cannot be null");
+            subscriptionPositionsAsStrings.put(subscriptionId, subscriptionPosition.asString());
+        });
+        redis.opsForValue().multiSet(subscriptionPositionsAsStrings);
+    }
+
     @Override
     public void delete(String subscriptionId) {
         redis.delete(subscriptionId);
@@ -35,6 +35,8 @@ import org.occurrent.eventstore.mongodb.spring.blocking.SpringBlockingMongoEvent
 import org.occurrent.functional.CheckedFunction;
 import org.occurrent.functional.Not;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
 import org.occurrent.subscription.mongodb.spring.blocking.SpringBlockingSubscriptionForMongoDB;
 import org.occurrent.subscription.util.blocking.BlockingSubscriptionWithAutomaticPositionPersistence;
@@ -55,6 +57,8 @@ import java.net.URI;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -90,6 +94,7 @@ class SpringBlockingSubscriptionPositionStorageForRedisTest {
     private LettuceConnectionFactory lettuceConnectionFactory;
     private BlockingSubscriptionWithAutomaticPositionPersistence redisSubscription;
     private RedisOperations<String, String> redisTemplate;
+    private BlockingSubscriptionPositionStorage storage;
 
     @BeforeEach
     void initialize() {
@@ -102,7 +107,7 @@ class SpringBlockingSubscriptionPositionStorageForRedisTest {
         springBlockingSubscriptionForMongoDB = new SpringBlockingSubscriptionForMongoDB(mongoTemplate, connectionString.getCollection(), TimeRepresentation.RFC_3339_STRING);
         lettuceConnectionFactory = new LettuceConnectionFactory(redisContainer.getHost(), redisContainer.getFirstMappedPort());
         redisTemplate = createRedisTemplate(lettuceConnectionFactory);
-        BlockingSubscriptionPositionStorage storage = new SpringBlockingSubscriptionPositionStorageForRedis(redisTemplate);
+        storage = new SpringBlockingSubscriptionPositionStorageForRedis(redisTemplate);
         redisSubscription = new BlockingSubscriptionWithAutomaticPositionPersistence(springBlockingSubscriptionForMongoDB, storage);
         objectMapper = new ObjectMapper();
     }
@@ -210,6 +215,22 @@ class SpringBlockingSubscriptionPositionStorageForRedisTest {
         assertThat(requireNonNull(redisTemplate.keys("*")).size()).isZero();
     }
 
+    @Test
+    void save_all_inserts_new_and_replaces_existing_subscription_positions() {
+        // Given
+        storage.save("a", new StringBasedSubscriptionPosition("old"));
+        Map<String, SubscriptionPosition> positions = new HashMap<>();
+        positions.put("a", new StringBasedSubscriptionPosition("position-a"));
+        positions.put("b", new StringBasedSubscriptionPosition("position-b"));
+
+        // When
+        storage.saveAll(positions);
+
+        // Then
+        assertThat(storage.read("a")).isEqualTo(new StringBasedSubscriptionPosition("position-a"));
+        assertThat(storage.read("b")).isEqualTo(new StringBasedSubscriptionPosition("position-b"));
+    }
+
     private Stream<CloudEvent> serialize(DomainEvent e) {
         return Stream.of(CloudEventBuilder.v1()
                 .withId(e.getEventId())
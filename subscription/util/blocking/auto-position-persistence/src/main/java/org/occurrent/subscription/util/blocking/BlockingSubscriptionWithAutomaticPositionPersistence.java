@@ -17,6 +17,8 @@
 package org.occurrent.subscription.util.blocking;
 
 import io.cloudevents.CloudEvent;
+import org.occurrent.subscription.BatchPolicy;
+import org.occurrent.subscription.PositionPersistencePolicy;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionFilter;
 import org.occurrent.subscription.SubscriptionPosition;
@@ -24,26 +26,43 @@ import org.occurrent.subscription.api.blocking.BlockingSubscription;
 import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
 import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
 import org.occurrent.subscription.api.blocking.Subscription;
+import org.occurrent.subscription.internal.PositionPersistenceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Combines  a {@link BlockingSubscription} and with a {@link BlockingSubscriptionPositionStorage} to automatically persist
- * the subscription position after each successful call to the "action" method
+ * the subscription position after successful calls to the "action" method
  * (i.e. when the consumer in this method {@link BlockingSubscriptionWithAutomaticPositionPersistence#subscribe(String, Consumer)} has completed successfully).
  *
  * <p>
- * Note that this implementation stores the subscription position after _every_ action. If you have a lot of events and duplication is not
- * that much of a deal consider cloning/extending this class and add your own customizations.
+ * By default the subscription position is stored after _every_ action. If you have a lot of events and duplication is not
+ * that much of a deal, supply a {@link PositionPersistencePolicy} that persists the position less frequently. The latest processed
+ * position is always persisted when a subscription is paused or cancelled and when the subscriptions are shutdown.
  */
 public class BlockingSubscriptionWithAutomaticPositionPersistence implements BlockingSubscription<CloudEvent> {
+    private static final Logger log = LoggerFactory.getLogger(BlockingSubscriptionWithAutomaticPositionPersistence.class);
 
     private final PositionAwareBlockingSubscription subscription;
     private final BlockingSubscriptionPositionStorage storage;
+    private final PositionPersistencePolicy positionPersistencePolicy;
+    private final Map<String, PositionPersistenceTracker> trackers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
 
     /**
      * Create a subscription that uses the Native sync Java MongoDB driver to persists the subscription position in MongoDB.
@@ -52,23 +71,110 @@ public class BlockingSubscriptionWithAutomaticPositionPersistence implements Blo
      * @param storage      The {@link BlockingSubscriptionPositionStorage} that'll be used to persist the stream position
      */
     public BlockingSubscriptionWithAutomaticPositionPersistence(PositionAwareBlockingSubscription subscription, BlockingSubscriptionPositionStorage storage) {
+        this(subscription, storage, PositionPersistencePolicy.everyEvent());
+    }
+
+    /**
+     * Create a subscription that persists the subscription position according to the supplied {@link PositionPersistencePolicy}.
+     *
+     * @param subscription              The subscription that will read events from the event store
+     * @param storage                   The {@link BlockingSubscriptionPositionStorage} that'll be used to persist the stream position
+     * @param positionPersistencePolicy The {@link PositionPersistencePolicy} that decides when the position is persisted
+     */
+    public BlockingSubscriptionWithAutomaticPositionPersistence(PositionAwareBlockingSubscription subscription, BlockingSubscriptionPositionStorage storage,
+                                                                PositionPersistencePolicy positionPersistencePolicy) {
         requireNonNull(subscription, "subscription cannot be null");
         requireNonNull(storage, BlockingSubscriptionPositionStorage.class.getSimpleName() + " cannot be null");
+        requireNonNull(positionPersistencePolicy, PositionPersistencePolicy.class.getSimpleName() + " cannot be null");
 
         this.storage = storage;
         this.subscription = subscription;
+        this.positionPersistencePolicy = positionPersistencePolicy;
+        if (positionPersistencePolicy.isTimeBased()) {
+            // Time based thresholds must be checked even when no events are received
+            scheduler = Executors.newSingleThreadScheduledExecutor(BlockingSubscriptionWithAutomaticPositionPersistence::newThread);
+            long checkIntervalMillis = PositionPersistenceTracker.checkInterval(positionPersistencePolicy).toMillis();
+            scheduler.scheduleWithFixedDelay(this::persistDuePositions, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
     }
 
     @Override
     public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEvent> action) {
+        return subscribe(subscriptionId, filter, startAtSupplier, __ -> true, action);
+    }
+
+    /**
+     * Start listening to cloud events but only invoke the {@code action} for the events that matches the {@code predicate}. This is useful when the subscription
+     * reads events that are handled elsewhere, such as events that belong to a partition owned by another node. The events that don't match the predicate are
+     * regarded as skipped and not processed, their subscription position is persisted together with the next processed event or when a time threshold of the
+     * {@link PositionPersistencePolicy} is reached, but only one out of a thousand skipped events count towards the number of events of the policy.
+     *
+     * @param subscriptionId  The id of the subscription, must be unique!
+     * @param filter          The filter used to limit which events that are of interest from the EventStore.
+     * @param startAtSupplier A supplier that returns the start position to start the subscription from.
+     * @param predicate       The events to invoke the {@code action} for
+     * @param action          This action will be invoked for each cloud event that is stored in the EventStore and matches the {@code predicate}.
+     */
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Predicate<CloudEvent> predicate, Consumer<CloudEvent> action) {
+        requireNonNull(predicate, "Predicate cannot be null");
+        requireNonNull(action, "Action cannot be null");
+        PositionPersistenceTracker tracker = newTracker(subscriptionId);
         return subscription.subscribe(subscriptionId,
                 filter, startAtSupplier, cloudEventWithStreamPosition -> {
-                    action.accept(cloudEventWithStreamPosition);
-                    storage.save(subscriptionId, cloudEventWithStreamPosition.getStreamPosition());
+                    if (predicate.test(cloudEventWithStreamPosition)) {
+                        action.accept(cloudEventWithStreamPosition);
+                        processed(subscriptionId, tracker, cloudEventWithStreamPosition.getStreamPosition());
+                    } else {
+                        skipped(subscriptionId, tracker, cloudEventWithStreamPosition.getStreamPosition());
+                    }
+                }
+        );
+    }
+
+    /**
+     * Start listening to cloud events, starting from the subscription position persisted in the {@link BlockingSubscriptionPositionStorage}, but only invoke
+     * the {@code action} for the events that matches the {@code predicate}.
+     *
+     * @param subscriptionId The id of the subscription, must be unique!
+     * @param filter         The filter to apply for this subscription. Only events matching the filter will cause the <code>action</code> to be called.
+     * @param predicate      The events to invoke the {@code action} for
+     * @param action         This action will be invoked for each cloud event that is stored in the EventStore and matches the supplied <code>filter</code> and {@code predicate}.
+     * @see #subscribe(String, SubscriptionFilter, Supplier, Predicate, Consumer)
+     */
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Predicate<CloudEvent> predicate, Consumer<CloudEvent> action) {
+        return subscribe(subscriptionId, filter, startAtFromStorage(subscriptionId), predicate, action);
+    }
+
+    /**
+     * Start listening to cloud events in batches. The subscription position of the last event in a batch is regarded as processed, according to the
+     * {@link PositionPersistencePolicy}, once the {@code action} has completed successfully for the batch. Note that a {@link PositionPersistencePolicy}
+     * based on the number of events counts batches and not the individual events.
+     */
+    @Override
+    public Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, BatchPolicy batchPolicy, Consumer<List<CloudEvent>> action) {
+        PositionPersistenceTracker tracker = newTracker(subscriptionId);
+        return subscription.subscribeBatch(subscriptionId,
+                filter, startAtSupplier, batchPolicy, cloudEventsWithStreamPosition -> {
+                    action.accept(Collections.unmodifiableList(cloudEventsWithStreamPosition));
+                    processed(subscriptionId, tracker, cloudEventsWithStreamPosition.get(cloudEventsWithStreamPosition.size() - 1).getStreamPosition());
                 }
         );
     }
 
+    /**
+     * Start listening to cloud events in batches, starting from the subscription position persisted in the {@link BlockingSubscriptionPositionStorage}.
+     *
+     * @param subscriptionId The id of the subscription, must be unique!
+     * @param filter         The filter to apply for this subscription. Only events matching the filter will cause the <code>action</code> to be called.
+     * @param batchPolicy    Specifies the max size of a batch and how long to wait for a batch to fill up.
+     * @param action         This action will be invoked for each batch of cloud events that are stored in the EventStore that matches the supplied <code>filter</code>.
+     */
+    public Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, BatchPolicy batchPolicy, Consumer<List<CloudEvent>> action) {
+        return subscribeBatch(subscriptionId, filter, startAtFromStorage(subscriptionId), batchPolicy, action);
+    }
+
     @Override
     public Subscription subscribe(String subscriptionId, Consumer<CloudEvent> action) {
         return subscribe(subscriptionId, (SubscriptionFilter) null, action);
@@ -83,15 +189,7 @@ public class BlockingSubscriptionWithAutomaticPositionPersistence implements Blo
      */
     @Override
     public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Consumer<CloudEvent> action) {
-        Supplier<StartAt> startAtSupplier = () -> {
-            // It's important that we find the document inside the supplier so that we lookup the latest resume token on retry
-            SubscriptionPosition subscriptionPosition = storage.read(subscriptionId);
-            if (subscriptionPosition == null) {
-                subscriptionPosition = storage.save(subscriptionId, subscription.globalSubscriptionPosition());
-            }
-            return StartAt.subscriptionPosition(subscriptionPosition);
-        };
-        return subscribe(subscriptionId, filter, startAtSupplier, action);
+        return subscribe(subscriptionId, filter, startAtFromStorage(subscriptionId), action);
     }
 
     /**
@@ -101,6 +199,10 @@ public class BlockingSubscriptionWithAutomaticPositionPersistence implements Blo
      */
     public void pauseSubscription(String subscriptionId) {
         subscription.cancelSubscription(subscriptionId);
+        PositionPersistenceTracker tracker = trackers.remove(subscriptionId);
+        if (tracker != null) {
+            persistUnpersistedPosition(subscriptionId, tracker);
+        }
     }
 
     /**
@@ -110,12 +212,102 @@ public class BlockingSubscriptionWithAutomaticPositionPersistence implements Blo
      * @param subscriptionId The subscription id to cancel
      */
     public void cancelSubscription(String subscriptionId) {
-        pauseSubscription(subscriptionId);
+        subscription.cancelSubscription(subscriptionId);
+        // The latest processed position is not persisted since the position is deleted anyway
+        trackers.remove(subscriptionId);
         storage.delete(subscriptionId);
     }
 
     @PreDestroy
     public void shutdownSubscribers() {
         subscription.shutdown();
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        trackers.forEach(this::persistUnpersistedPosition);
+        trackers.clear();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdownSubscribers();
+    }
+
+    private Supplier<StartAt> startAtFromStorage(String subscriptionId) {
+        return () -> {
+            // It's important that we find the document inside the supplier so that we lookup the latest resume token on retry
+            SubscriptionPosition subscriptionPosition = storage.read(subscriptionId);
+            if (subscriptionPosition == null) {
+                subscriptionPosition = storage.save(subscriptionId, subscription.globalSubscriptionPosition());
+            }
+            return StartAt.subscriptionPosition(subscriptionPosition);
+        };
+    }
+
+    private PositionPersistenceTracker newTracker(String subscriptionId) {
+        PositionPersistenceTracker tracker = new PositionPersistenceTracker(positionPersistencePolicy, Clock.systemUTC());
+        trackers.put(subscriptionId, tracker);
+        return tracker;
+    }
+
+    private void processed(String subscriptionId, PositionPersistenceTracker tracker, SubscriptionPosition subscriptionPosition) {
+        tracker.writeLock().lock();
+        try {
+            tracker.processed(subscriptionPosition);
+            persist(subscriptionId, tracker, tracker.positionToPersist());
+        } finally {
+            tracker.writeLock().unlock();
+        }
+    }
+
+    private void skipped(String subscriptionId, PositionPersistenceTracker tracker, SubscriptionPosition subscriptionPosition) {
+        tracker.writeLock().lock();
+        try {
+            tracker.skipped(subscriptionPosition);
+            persist(subscriptionId, tracker, tracker.positionToPersist());
+        } finally {
+            tracker.writeLock().unlock();
+        }
+    }
+
+    private void persistDuePositions() {
+        trackers.forEach((subscriptionId, tracker) -> {
+            try {
+                tracker.writeLock().lock();
+                try {
+                    persist(subscriptionId, tracker, tracker.positionToPersist());
+                } finally {
+                    tracker.writeLock().unlock();
+                }
+            } catch (Exception e) {
+                // The position is still unpersisted so it'll be retried the next time the policy is checked
+                log.warn("Failed to persist subscription position for subscription {}", subscriptionId, e);
+            }
+        });
+    }
+
+    private void persistUnpersistedPosition(String subscriptionId, PositionPersistenceTracker tracker) {
+        tracker.writeLock().lock();
+        try {
+            persist(subscriptionId, tracker, tracker.unpersistedPosition());
+        } catch (Exception e) {
+            // The subscription is stopped so there's no one to propagate the failure to, and the positions of the other subscriptions should still be persisted
+            log.error("Failed to persist subscription position {} of subscription {} after the subscription was stopped", tracker.unpersistedPosition(), subscriptionId, e);
+        } finally {
+            tracker.writeLock().unlock();
+        }
+    }
+
+    private void persist(String subscriptionId, PositionPersistenceTracker tracker, SubscriptionPosition subscriptionPosition) {
+        if (subscriptionPosition != null) {
+            storage.save(subscriptionId, subscriptionPosition);
+            tracker.persisted(subscriptionPosition);
+        }
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "occurrent-position-persistence");
+        thread.setDaemon(true);
+        return thread;
     }
 }
\ No newline at end of file
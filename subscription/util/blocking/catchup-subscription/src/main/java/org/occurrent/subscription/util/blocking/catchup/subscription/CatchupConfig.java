@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.catchup.subscription;
+
+import org.occurrent.subscription.PositionPersistencePolicy;
+
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Configures how the historic events are replayed by a {@link CatchupSupportingBlockingSubscription}.
+ * <p>
+ * Example:
+ * <pre>
+ * CatchupConfig.defaults().batchSize(500).persistPositionWhen(PositionPersistencePolicy.everyNumberOfEvents(10_000).orEvery(Duration.ofSeconds(10)));
+ * </pre>
+ */
+public class CatchupConfig {
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The maximum number of historic events that are read by each query to the event store
+     */
+    public final int batchSize;
+    /**
+     * Decides how often the position is persisted during the catch-up phase. The position is always persisted when the catch-up phase completes.
+     */
+    public final PositionPersistencePolicy positionPersistencePolicy;
+
+    private CatchupConfig(int batchSize, PositionPersistencePolicy positionPersistencePolicy) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+        requireNonNull(positionPersistencePolicy, PositionPersistencePolicy.class.getSimpleName() + " cannot be null");
+        this.batchSize = batchSize;
+        this.positionPersistencePolicy = positionPersistencePolicy;
+    }
+
+    /**
+     * @return A {@link CatchupConfig} that reads 1000 events per query and persists the position once per 1000 events.
+     */
+    public static CatchupConfig defaults() {
+        return new CatchupConfig(DEFAULT_BATCH_SIZE, PositionPersistencePolicy.everyNumberOfEvents(DEFAULT_BATCH_SIZE));
+    }
+
+    /**
+     * @param batchSize The maximum number of historic events that are read by each query to the event store
+     * @return A new {@link CatchupConfig}
+     */
+    public CatchupConfig batchSize(int batchSize) {
+        return new CatchupConfig(batchSize, positionPersistencePolicy);
+    }
+
+    /**
+     * @param positionPersistencePolicy Decides how often the position is persisted during the catch-up phase
+     * @return A new {@link CatchupConfig}
+     */
+    public CatchupConfig persistPositionWhen(PositionPersistencePolicy positionPersistencePolicy) {
+        return new CatchupConfig(batchSize, positionPersistencePolicy);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CatchupConfig)) return false;
+        CatchupConfig that = (CatchupConfig) o;
+        return batchSize == that.batchSize &&
+                Objects.equals(positionPersistencePolicy, that.positionPersistencePolicy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(batchSize, positionPersistencePolicy);
+    }
+
+    @Override
+    public String toString() {
+        return "CatchupConfig{" +
+                "batchSize=" + batchSize +
+                ", positionPersistencePolicy=" + positionPersistencePolicy +
+                '}';
+    }
+}
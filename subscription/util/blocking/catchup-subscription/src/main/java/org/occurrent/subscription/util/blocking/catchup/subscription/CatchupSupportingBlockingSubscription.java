@@ -18,8 +18,10 @@ package org.occurrent.subscription.util.blocking.catchup.subscription;
 
 import io.cloudevents.CloudEvent;
 import org.occurrent.eventstore.api.blocking.EventStoreQueries;
+import org.occurrent.eventstore.api.blocking.EventStoreQueries.SortBy;
 import org.occurrent.filter.Filter;
 import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.PositionPersistencePolicy;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.StartAt.StartAtSubscriptionPosition;
 import org.occurrent.subscription.SubscriptionFilter;
@@ -28,31 +30,87 @@ import org.occurrent.subscription.api.blocking.BlockingSubscription;
 import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
 import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
 import org.occurrent.subscription.api.blocking.Subscription;
-
-import java.time.OffsetDateTime;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import org.occurrent.subscription.internal.PositionPersistenceTracker;
+import org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition;
+import org.occurrent.subscription.util.catchup.internal.CatchupHandOver;
+import org.occurrent.subscription.util.catchup.internal.CatchupPosition;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static org.occurrent.condition.Condition.gte;
-import static org.occurrent.filter.Filter.time;
-import static org.occurrent.time.internal.RFC3339.RFC_3339_DATE_TIME_FORMATTER;
-
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A subscription that replays historic events from the event store (the "catch-up" phase) before it continues with the wrapped subscription
+ * when it's started at a {@link TimeBasedSubscriptionPosition}. Other start positions are delegated directly to the wrapped subscription.
+ * <p>
+ * Historic events are read in batches of {@link CatchupConfig#batchSize} using keyset pagination on the "time", "streamId" and "streamVersion"
+ * fields (each query starts where the previous one ended), so it's recommended to create a compound index on these fields in the event store.
+ * The position is persisted according to {@link CatchupConfig#positionPersistencePolicy}, and a catch-up phase that is interrupted is resumed from the last persisted position
+ * (events after that position may be delivered again).
+ * </p>
+ * <p>
+ * Before the catch-up phase starts, the global position of the wrapped subscription is recorded. Once the catch-up phase has completed, the wrapped
+ * subscription is started at this position, so every event written after the catch-up phase started is delivered, regardless of its time.
+ * Events written during the catch-up phase are received by a temporary wrapped subscription that is also started at the recorded position,
+ * and the catch-up phase skips these events (see {@link CatchupHandOver}). An event that the catch-up phase reads before the temporary subscription
+ * has received it is delivered twice. Historic events without time are replayed first, and only when starting from
+ * {@link TimeBasedSubscriptionPosition#beginningOfTime()}, since they can't be ordered by time.
+ * </p>
+ */
 // Not that we don't implement PositionAwareBlockingSubscription since we don't have a "globalSubscruptionPosition"
 public class CatchupSupportingBlockingSubscription implements BlockingSubscription<CloudEvent> {
 
     private final PositionAwareBlockingSubscription subscription;
     private final EventStoreQueries eventStoreQueries;
     private final BlockingSubscriptionPositionStorage storage;
+    private final CatchupConfig catchupConfig;
+    private final Clock clock;
 
-
-    // TODO Strategy catch-up peristence strategy (hur många events innan vi ska spara position)
     public CatchupSupportingBlockingSubscription(PositionAwareBlockingSubscription subscription, EventStoreQueries eventStoreQueries, BlockingSubscriptionPositionStorage storage) {
+        this(subscription, eventStoreQueries, storage, CatchupConfig.defaults());
+    }
+
+    /**
+     * @param subscription                     The subscription to use once the catch-up phase has completed
+     * @param eventStoreQueries                The {@link EventStoreQueries} used to read historic events
+     * @param storage                          The {@link BlockingSubscriptionPositionStorage} used to store the position during catch-up
+     * @param catchupPositionPersistencePolicy Decides how often the position is persisted during the catch-up phase. The position is always
+     *                                         persisted when the catch-up phase completes.
+     */
+    public CatchupSupportingBlockingSubscription(PositionAwareBlockingSubscription subscription, EventStoreQueries eventStoreQueries, BlockingSubscriptionPositionStorage storage,
+                                                 PositionPersistencePolicy catchupPositionPersistencePolicy) {
+        this(subscription, eventStoreQueries, storage, CatchupConfig.defaults().persistPositionWhen(catchupPositionPersistencePolicy));
+    }
+
+    /**
+     * @param subscription      The subscription to use once the catch-up phase has completed
+     * @param eventStoreQueries The {@link EventStoreQueries} used to read historic events
+     * @param storage           The {@link BlockingSubscriptionPositionStorage} used to store the position during catch-up
+     * @param catchupConfig     Configures how historic events are read and how often the position is persisted during the catch-up phase
+     */
+    public CatchupSupportingBlockingSubscription(PositionAwareBlockingSubscription subscription, EventStoreQueries eventStoreQueries, BlockingSubscriptionPositionStorage storage,
+                                                 CatchupConfig catchupConfig) {
+        this(subscription, eventStoreQueries, storage, catchupConfig, Clock.systemUTC());
+    }
+
+    CatchupSupportingBlockingSubscription(PositionAwareBlockingSubscription subscription, EventStoreQueries eventStoreQueries, BlockingSubscriptionPositionStorage storage,
+                                          CatchupConfig catchupConfig, Clock clock) {
+        requireNonNull(subscription, PositionAwareBlockingSubscription.class.getSimpleName() + " cannot be null");
+        requireNonNull(eventStoreQueries, EventStoreQueries.class.getSimpleName() + " cannot be null");
+        requireNonNull(storage, BlockingSubscriptionPositionStorage.class.getSimpleName() + " cannot be null");
+        requireNonNull(catchupConfig, CatchupConfig.class.getSimpleName() + " cannot be null");
+        requireNonNull(clock, Clock.class.getSimpleName() + " cannot be null");
         this.subscription = subscription;
         this.eventStoreQueries = eventStoreQueries;
         this.storage = storage;
+        this.catchupConfig = catchupConfig;
+        this.clock = clock;
     }
 
     @Override
@@ -68,42 +126,67 @@ public class CatchupSupportingBlockingSubscription implements BlockingSubscripti
             startAt = startAtSupplier.get();
         }
 
-        if (!isTimeBasedSubscriptionPosition(startAt)) {
+        TimeBasedSubscriptionPosition subscriptionPosition = timeBasedSubscriptionPositionOrNull(startAt);
+        if (subscriptionPosition == null) {
             return subscription.subscribe(subscriptionId, filter, startAtSupplier, action::accept);
         }
 
-        TimeBasedSubscriptionPosition subscriptionPosition = (TimeBasedSubscriptionPosition) ((StartAtSubscriptionPosition) startAt).subscriptionPosition;
-
-
-        final Filter timeFilter;
-        if (subscriptionPosition.isBeginningOfTime()) {
-            timeFilter = Filter.all();
-        } else {
-            OffsetDateTime offsetDateTime = (OffsetDateTime) RFC_3339_DATE_TIME_FORMATTER.parse(subscriptionPosition.asString());
-            timeFilter = time(gte(offsetDateTime));
-        }
-
         // Here's the reason why we're forcing the wrapping subscription to be a PositionAwareBlockingSubscription.
         // This is in order to be 100% safe since we need to take events that are published meanwhile the EventStoreQuery
         // is executed. Thus we need the global position of the stream at the time of starting the query.
-        final StartAt wrappingSubscriptionStartPosition = StartAt.subscriptionPosition(subscription.globalSubscriptionPosition());
+        final SubscriptionPosition globalSubscriptionPosition = subscription.globalSubscriptionPosition();
+        final StartAt wrappingSubscriptionStartPosition = StartAt.subscriptionPosition(globalSubscriptionPosition);
+
+        Filter userSuppliedFilter = filter == null ? null : ((OccurrentSubscriptionFilter) filter).filter;
+        CatchupHandOver handOver = new CatchupHandOver();
+        String handOverSubscriptionId = subscriptionId + "-catchup-hand-over";
+        subscription.subscribe(handOverSubscriptionId, filter, wrappingSubscriptionStartPosition, handOver::receivedByWrappedSubscription);
+        try {
+            replayHistoricEvents(subscriptionId, new CatchupPosition(userSuppliedFilter, subscriptionPosition), handOver, action);
+        } finally {
+            subscription.cancelSubscription(handOverSubscriptionId);
+        }
+        // Persist the global position so that the catch-up phase isn't started again if the application is restarted before the
+        // wrapped subscription has persisted a position of its own
+        storage.save(subscriptionId, globalSubscriptionPosition);
 
-        // TODO Make configurable
-        FixedSizeCache cache = new FixedSizeCache(100);
-        final Stream<CloudEvent> stream;
-        if (filter == null) {
-            stream = eventStoreQueries.query(timeFilter);
-        } else {
-            Filter userSuppliedFilter = ((OccurrentSubscriptionFilter) filter).filter;
-            stream = eventStoreQueries.query(timeFilter.and(userSuppliedFilter));
+        return subscription.subscribe(subscriptionId, filter, wrappingSubscriptionStartPosition, action::accept);
+    }
+
+    /**
+     * Replay the historic events without time, and then the historic events with time in batches sorted by time (see {@link CatchupPosition}).
+     * Events that are delivered by the wrapped subscription once the catch-up phase has completed are skipped.
+     */
+    private void replayHistoricEvents(String subscriptionId, CatchupPosition catchupPosition, CatchupHandOver handOver, Consumer<CloudEvent> action) {
+        // Time based thresholds are checked as events are read, the catch-up phase is never idle
+        PositionPersistenceTracker tracker = new PositionPersistenceTracker(catchupConfig.positionPersistencePolicy, clock);
+        Filter eventsWithoutTimeFilter = catchupPosition.eventsWithoutTimeFilter();
+        if (eventsWithoutTimeFilter != null) {
+            try (Stream<CloudEvent> eventsWithoutTime = eventStoreQueries.query(eventsWithoutTimeFilter, SortBy.NATURAL_ASC)) {
+                eventsWithoutTime.forEach(cloudEvent -> replay(subscriptionId, catchupPosition, handOver, tracker, cloudEvent, action));
+            }
         }
 
-        stream.peek(e -> cache.put(e.getId())).peek(action).forEach(e -> storage.save(subscriptionId, TimeBasedSubscriptionPosition.from(e.getTime())));
-        return subscription.subscribe(subscriptionId, filter, wrappingSubscriptionStartPosition, cloudEvent -> {
-            if (!cache.isCached(cloudEvent.getId())) {
-                action.accept(cloudEvent);
+        int batchSize = catchupConfig.batchSize;
+        List<CloudEvent> batch;
+        do {
+            batch = eventStoreQueries.query(catchupPosition.nextBatchFilter(), 0, batchSize, SortBy.TIME_ASC).collect(Collectors.toCollection(() -> new ArrayList<>(batchSize)));
+            for (CloudEvent cloudEvent : batch) {
+                replay(subscriptionId, catchupPosition, handOver, tracker, cloudEvent, action);
             }
-        });
+        } while (batch.size() == batchSize);
+    }
+
+    private void replay(String subscriptionId, CatchupPosition catchupPosition, CatchupHandOver handOver, PositionPersistenceTracker tracker,
+                        CloudEvent cloudEvent, Consumer<CloudEvent> action) {
+        if (handOver.isDeliveredByWrappedSubscription(cloudEvent)) {
+            catchupPosition.handedOver(cloudEvent);
+        } else {
+            action.accept(cloudEvent);
+            catchupPosition.replayed(cloudEvent);
+        }
+        tracker.processed(catchupPosition.resumePosition());
+        persist(subscriptionId, tracker, tracker.positionToPersist());
     }
 
     @Override
@@ -127,29 +210,18 @@ public class CatchupSupportingBlockingSubscription implements BlockingSubscripti
         subscription.shutdown();
     }
 
-    public static boolean isTimeBasedSubscriptionPosition(StartAt startAt) {
-        return (startAt instanceof StartAtSubscriptionPosition) && ((StartAtSubscriptionPosition) startAt).subscriptionPosition instanceof TimeBasedSubscriptionPosition;
-    }
-
-    private static class FixedSizeCache {
-        private final LinkedHashMap<String, String> cacheContent;
-
-        FixedSizeCache(int size) {
-            cacheContent = new LinkedHashMap<String, String>() {
-                @Override
-                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
-                    return this.size() > size;
-                }
-            };
-        }
-
-        private String put(String value) {
-            return cacheContent.put(value, null);
+    private void persist(String subscriptionId, PositionPersistenceTracker tracker, SubscriptionPosition subscriptionPosition) {
+        if (subscriptionPosition != null) {
+            storage.save(subscriptionId, subscriptionPosition);
+            tracker.persisted(subscriptionPosition);
         }
+    }
 
-        public boolean isCached(String key) {
-            return cacheContent.containsKey(key);
-        }
+    public static boolean isTimeBasedSubscriptionPosition(StartAt startAt) {
+        return timeBasedSubscriptionPositionOrNull(startAt) != null;
     }
 
-}
\ No newline at end of file
+    private static TimeBasedSubscriptionPosition timeBasedSubscriptionPositionOrNull(StartAt startAt) {
+        return startAt instanceof StartAtSubscriptionPosition ? TimeBasedSubscriptionPosition.parseOrNull(((StartAtSubscriptionPosition) startAt).subscriptionPosition) : null;
+    }
+}
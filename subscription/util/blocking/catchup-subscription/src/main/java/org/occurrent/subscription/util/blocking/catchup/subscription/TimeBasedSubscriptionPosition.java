@@ -18,38 +18,36 @@ package org.occurrent.subscription.util.blocking.catchup.subscription;
 
 import org.occurrent.subscription.SubscriptionPosition;
 
-import java.time.Instant;
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 
-import static java.util.Objects.requireNonNull;
-import static org.occurrent.time.internal.RFC3339.RFC_3339_DATE_TIME_FORMATTER;
-
-public class TimeBasedSubscriptionPosition implements SubscriptionPosition {
-
-    private static final OffsetDateTime BEGINNING_OF_TIME = Instant.EPOCH.atOffset(ZoneOffset.UTC);
-
-    private final OffsetDateTime time;
+/**
+ * A {@link SubscriptionPosition} that is used by the {@link CatchupSupportingBlockingSubscription} to replay historic events starting at a given time.
+ *
+ * @deprecated Use {@link org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition} instead, it's shared by the blocking and reactive catch-up subscriptions.
+ */
+@Deprecated
+public class TimeBasedSubscriptionPosition extends org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition {
 
     public TimeBasedSubscriptionPosition(OffsetDateTime time) {
-        requireNonNull(time, OffsetDateTime.class.getSimpleName() + " cannot be null");
-        this.time = time;
+        super(time);
     }
 
     public static TimeBasedSubscriptionPosition beginningOfTime() {
-        return new TimeBasedSubscriptionPosition(BEGINNING_OF_TIME);
+        return new TimeBasedSubscriptionPosition(org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition.beginningOfTime().getTime());
     }
 
     public static TimeBasedSubscriptionPosition from(OffsetDateTime time) {
         return new TimeBasedSubscriptionPosition(time);
     }
 
-    public boolean isBeginningOfTime() {
-        return BEGINNING_OF_TIME.equals(time);
-    }
-
-    @Override
-    public String asString() {
-        return RFC_3339_DATE_TIME_FORMATTER.format(time);
+    /**
+     * @see org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition#parseOrNull(SubscriptionPosition)
+     */
+    public static TimeBasedSubscriptionPosition parseOrNull(SubscriptionPosition subscriptionPosition) {
+        org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition position = org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition.parseOrNull(subscriptionPosition);
+        if (position == null || position instanceof TimeBasedSubscriptionPosition) {
+            return (TimeBasedSubscriptionPosition) position;
+        }
+        return new TimeBasedSubscriptionPosition(position.getTime());
     }
-}
\ No newline at end of file
+}
@@ -53,6 +53,7 @@ import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 import static java.time.ZoneOffset.UTC;
@@ -80,6 +81,7 @@ public class CatchupSupportingBlockingSubscriptionTest {
     private ObjectMapper objectMapper;
     private MongoClient mongoClient;
     private ExecutorService subscriptionExecutor;
+    private BlockingSubscriptionPositionStorage storage;
 
     @BeforeEach
     void create_mongo_event_store() {
@@ -92,8 +94,8 @@ public class CatchupSupportingBlockingSubscriptionTest {
         mongoEventStore = new MongoEventStore(mongoClient, connectionString.getDatabase(), connectionString.getCollection(), config);
         subscriptionExecutor = Executors.newFixedThreadPool(1);
         BlockingSubscriptionForMongoDB blockingSubscriptionForMongoDB = new BlockingSubscriptionForMongoDB(database, eventCollection, timeRepresentation, subscriptionExecutor, RetryStrategy.none());
-        BlockingSubscriptionPositionStorage storage = new BlockingSubscriptionPositionStorageForMongoDB(database, "storage");
-        subscription = new CatchupSupportingBlockingSubscription(blockingSubscriptionForMongoDB, mongoEventStore, storage);
+        storage = new BlockingSubscriptionPositionStorageForMongoDB(database, "storage");
+        subscription = new CatchupSupportingBlockingSubscription(blockingSubscriptionForMongoDB, mongoEventStore, storage, CatchupConfig.defaults().batchSize(2));
         objectMapper = new ObjectMapper();
     }
 
@@ -126,6 +128,184 @@ public class CatchupSupportingBlockingSubscriptionTest {
         await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(3));
     }
 
+    @Test
+    void catchup_replays_historic_events_in_batches_in_time_order_when_several_events_have_the_same_time() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now, "name2");
+        NameDefined nameDefined3 = new NameDefined(UUID.randomUUID().toString(), now, "name3");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(1), "name4");
+        NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(2), "name5");
+
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+        mongoEventStore.write("3", 0, serialize(nameDefined3));
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1));
+        mongoEventStore.write("2", 1, serialize(nameWasChanged2));
+
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+
+        // When
+        subscription.subscribe(UUID.randomUUID().toString(), StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime()), state::add).waitUntilStarted();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(5));
+        assertThat(state).extracting(CloudEvent::getId).doesNotHaveDuplicates();
+        assertThat(state.subList(3, 5)).extracting(CloudEvent::getId).containsExactly(nameWasChanged1.getEventId(), nameWasChanged2.getEventId());
+    }
+
+    @Test
+    void catchup_is_resumed_from_the_persisted_time_based_subscription_position() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1));
+
+        String subscriptionId = UUID.randomUUID().toString();
+        storage.save(subscriptionId, TimeBasedSubscriptionPosition.from(toLocalDateTime(nameDefined2.getTimestamp()).atOffset(UTC)));
+
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+
+        // When
+        subscription.subscribe(subscriptionId, state::add).waitUntilStarted();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined2.getEventId(), nameWasChanged1.getEventId()));
+    }
+
+    @Test
+    void events_written_after_the_catchup_phase_are_delivered_once_by_the_wrapped_subscription() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(5), "name2");
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        subscription.subscribe(UUID.randomUUID().toString(), StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime()), state::add).waitUntilStarted();
+
+        // When
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), LocalDateTime.now().plusSeconds(1), "name3");
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId(), nameWasChanged1.getEventId()));
+    }
+
+    @Test
+    void event_written_after_the_catchup_phase_with_a_time_before_the_catchup_phase_started_is_delivered_by_the_wrapped_subscription() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        subscription.subscribe(UUID.randomUUID().toString(), StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime()), state::add).waitUntilStarted();
+
+        // When
+        // The clock of the writer is one minute behind
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), LocalDateTime.now().minusMinutes(1), "name2");
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameWasChanged1.getEventId()));
+    }
+
+    @Test
+    void backdated_event_written_during_the_catchup_phase_is_delivered_once() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(5), "name2");
+        NameDefined nameDefined3 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(4), "name3");
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+        mongoEventStore.write("3", 0, serialize(nameDefined3));
+        // Written when the catch-up phase has passed its time
+        NameWasChanged backdated = new NameWasChanged(UUID.randomUUID().toString(), now.minusDays(1), "name4");
+
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        AtomicBoolean written = new AtomicBoolean();
+
+        // When
+        subscription.subscribe(UUID.randomUUID().toString(), StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime()), cloudEvent -> {
+            state.add(cloudEvent);
+            if (written.compareAndSet(false, true)) {
+                mongoEventStore.write("1", 1, serialize(backdated));
+            }
+        }).waitUntilStarted();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId(), nameDefined3.getEventId(), backdated.getEventId()));
+    }
+
+    @Test
+    void event_written_during_the_catchup_phase_with_a_time_ahead_of_the_catchup_phase_is_delivered_once() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(5), "name2");
+        NameDefined nameDefined3 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(4), "name3");
+        mongoEventStore.write("1", 0, serialize(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+        mongoEventStore.write("3", 0, serialize(nameDefined3));
+        // The clock of the writer is one hour ahead, so the event is read by the catch-up phase as well
+        NameWasChanged skewed = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name4");
+
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        AtomicBoolean written = new AtomicBoolean();
+
+        // When
+        subscription.subscribe(UUID.randomUUID().toString(), StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime()), cloudEvent -> {
+            state.add(cloudEvent);
+            if (written.compareAndSet(false, true)) {
+                mongoEventStore.write("1", 1, serialize(skewed));
+                // Give the wrapped subscription time to receive the event before the catch-up phase reads it
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }).waitUntilStarted();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId(), nameDefined3.getEventId(), skewed.getEventId()));
+    }
+
+    @Test
+    void events_without_time_are_delivered_by_the_catchup_phase_and_the_wrapped_subscription() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(5), "name2");
+        mongoEventStore.write("1", 0, serializeWithoutTime(nameDefined1));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        subscription.subscribe(UUID.randomUUID().toString(), StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime()), state::add).waitUntilStarted();
+
+        // When
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now, "name3");
+        mongoEventStore.write("1", 1, serializeWithoutTime(nameWasChanged1));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId(), nameWasChanged1.getEventId()));
+    }
+
     private Stream<CloudEvent> serialize(DomainEvent e) {
         return Stream.of(CloudEventBuilder.v1()
                 .withId(e.getEventId())
@@ -137,4 +317,15 @@ public class CatchupSupportingBlockingSubscriptionTest {
                 .withData(unchecked(objectMapper::writeValueAsBytes).apply(e))
                 .build());
     }
-}
\ No newline at end of file
+
+    private Stream<CloudEvent> serializeWithoutTime(DomainEvent e) {
+        return Stream.of(CloudEventBuilder.v1()
+                .withId(e.getEventId())
+                .withSource(URI.create("http://name"))
+                .withType(e.getClass().getName())
+                .withSubject(e.getName())
+                .withDataContentType("application/json")
+                .withData(unchecked(objectMapper::writeValueAsBytes).apply(e))
+                .build());
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.multiplexing;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.filter.FilterPredicateCompiler;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
+import org.occurrent.subscription.api.blocking.Subscription;
+import org.occurrent.threads.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Wraps a {@link PositionAwareBlockingSubscription} and multiplexes all subscriptions onto a single underlying subscription, e.g. a single MongoDB change stream,
+ * instead of opening one per subscription. Each event is thus read and deserialized once, and then dispatched to each subscription whose filter matches the event.
+ * The filters are evaluated in the JVM (see {@link FilterPredicateCompiler}) which means that only {@link OccurrentSubscriptionFilter}'s can be multiplexed,
+ * subscriptions with a database specific filter are delegated to the underlying subscription as is.
+ * <p>
+ * Each subscription has its own bounded queue and thread, so a slow subscription doesn't affect the others. If the queue of a subscription is full, the
+ * subscription falls back to a dedicated underlying subscription that starts from the position of the last event in the queue. The same thing happens if the
+ * subscription is started from a specific {@link SubscriptionPosition}. Once the dedicated subscription has caught up, i.e. it receives an event
+ * that has been recently received by the shared subscription, the subscription switches back to the shared subscription and the dedicated subscription is cancelled.
+ * The dedicated subscription reads all events, and applies the filter in the JVM, so that it can detect that it has caught up even if the filter matches none of the
+ * recent events. The shared subscription is started by the first subscription and cancelled when the last subscription is cancelled.
+ * </p>
+ * <p>
+ * If the action throws an exception, it's retried (with exponential backoff) until it succeeds or the subscription is cancelled.
+ * </p>
+ */
+public class MultiplexingBlockingSubscription implements PositionAwareBlockingSubscription {
+    private static final Logger log = LoggerFactory.getLogger(MultiplexingBlockingSubscription.class);
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 100;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+
+    private final PositionAwareBlockingSubscription subscription;
+    private final int queueCapacity;
+    private final Object lock = new Object();
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final Set<String> delegatedSubscriptionIds = ConcurrentHashMap.newKeySet();
+
+    // The most recent events received by the shared subscription, used to detect when a dedicated subscription has caught up. Guarded by "lock".
+    private final ArrayDeque<CloudEventWithSubscriptionPosition> recentEvents = new ArrayDeque<>();
+    // Guarded by "lock"
+    private Subscription sharedSubscription;
+    // Guarded by "lock"
+    private String sharedSubscriptionId;
+    private volatile SubscriptionPosition sharedSubscriptionPosition;
+
+    /**
+     * Create a {@link MultiplexingBlockingSubscription} that queues at most 1000 events per subscription.
+     *
+     * @param subscription The subscription that will read events from the event store
+     */
+    public MultiplexingBlockingSubscription(PositionAwareBlockingSubscription subscription) {
+        this(subscription, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Create a {@link MultiplexingBlockingSubscription}.
+     *
+     * @param subscription  The subscription that will read events from the event store
+     * @param queueCapacity The maximum number of events that are queued for a subscription before it falls back to a dedicated subscription.
+     *                      This is also the number of recent events that are kept in order to detect when a dedicated subscription has caught up.
+     */
+    public MultiplexingBlockingSubscription(PositionAwareBlockingSubscription subscription, int queueCapacity) {
+        requireNonNull(subscription, "subscription cannot be null");
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be greater than zero");
+        }
+        this.subscription = subscription;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEventWithSubscriptionPosition> action) {
+        requireNonNull(subscriptionId, "subscriptionId cannot be null");
+        requireNonNull(startAtSupplier, "Start at cannot be null");
+        requireNonNull(action, "Action cannot be null");
+
+        if (filter != null && !(filter instanceof OccurrentSubscriptionFilter)) {
+            // Database specific filters cannot be evaluated in the JVM
+            delegatedSubscriptionIds.add(subscriptionId);
+            return subscription.subscribe(subscriptionId, filter, startAtSupplier, action);
+        }
+
+        Predicate<CloudEvent> predicate = filter == null ? __ -> true : FilterPredicateCompiler.compile(((OccurrentSubscriptionFilter) filter).filter);
+        StartAt startAt = startAtSupplier.get();
+        Subscriber subscriber = new Subscriber(subscriptionId, predicate, action, startAt);
+        final Subscription sharedSubscription;
+        final int generation;
+        synchronized (lock) {
+            if (subscribers.putIfAbsent(subscriptionId, subscriber) != null) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is already defined.");
+            }
+            sharedSubscription = startSharedSubscriptionIfNeeded();
+            generation = startAt.isNow() ? -1 : subscriber.startCatchingUp();
+        }
+        subscriber.startWorker();
+        return new MultiplexedSubscription(subscriptionId, startAt.isNow() ? sharedSubscription : startDedicatedSubscription(subscriber, generation));
+    }
+
+    @Override
+    public void cancelSubscription(String subscriptionId) {
+        if (delegatedSubscriptionIds.remove(subscriptionId)) {
+            subscription.cancelSubscription(subscriptionId);
+            return;
+        }
+
+        final Subscriber subscriber;
+        final String dedicatedSubscriptionId;
+        final String sharedSubscriptionIdToCancel;
+        synchronized (lock) {
+            subscriber = subscribers.remove(subscriptionId);
+            if (subscriber == null) {
+                return;
+            }
+            dedicatedSubscriptionId = subscriber.mode == Mode.CATCHING_UP ? dedicatedSubscriptionId(subscriptionId, subscriber.generation) : null;
+            subscriber.mode = Mode.CANCELLED;
+            sharedSubscriptionIdToCancel = subscribers.isEmpty() ? stopSharedSubscription() : null;
+        }
+        if (dedicatedSubscriptionId != null) {
+            subscription.cancelSubscription(dedicatedSubscriptionId);
+        }
+        if (sharedSubscriptionIdToCancel != null) {
+            log.info("Last multiplexed subscription was cancelled, cancelling the shared subscription.");
+            subscription.cancelSubscription(sharedSubscriptionIdToCancel);
+        }
+        subscriber.stopWorker();
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (lock) {
+            subscribers.values().forEach(subscriber -> subscriber.mode = Mode.CANCELLED);
+            stopSharedSubscription();
+        }
+        subscribers.values().forEach(Subscriber::stopWorker);
+        subscribers.clear();
+        delegatedSubscriptionIds.clear();
+        subscription.shutdown();
+    }
+
+    @Override
+    public SubscriptionPosition globalSubscriptionPosition() {
+        return subscription.globalSubscriptionPosition();
+    }
+
+    // Must be called while holding "lock"
+    private Subscription startSharedSubscriptionIfNeeded() {
+        if (sharedSubscription == null) {
+            // A new id is used each time so that events still being dispatched by a cancelled shared subscription are ignored
+            String subscriptionId = "occurrent-multiplexing-" + UUID.randomUUID();
+            // Continue from the last received event if the underlying subscription is restarted
+            Supplier<StartAt> startAtSupplier = () -> {
+                SubscriptionPosition position = sharedSubscriptionPosition;
+                return position == null ? StartAt.now() : StartAt.subscriptionPosition(position);
+            };
+            sharedSubscriptionId = subscriptionId;
+            sharedSubscription = subscription.subscribe(subscriptionId, null, startAtSupplier, cloudEvent -> dispatch(subscriptionId, cloudEvent));
+        }
+        return sharedSubscription;
+    }
+
+    // Returns the id of the shared subscription that should be cancelled (once "lock" is released), or null if there's none. Must be called while holding "lock".
+    private String stopSharedSubscription() {
+        String subscriptionId = sharedSubscriptionId;
+        sharedSubscription = null;
+        sharedSubscriptionId = null;
+        sharedSubscriptionPosition = null;
+        recentEvents.clear();
+        return subscriptionId;
+    }
+
+    private void dispatch(String subscriptionId, CloudEventWithSubscriptionPosition cloudEvent) {
+        List<Subscriber> laggingSubscribers = new ArrayList<>();
+        List<Integer> generations = new ArrayList<>();
+        synchronized (lock) {
+            if (!subscriptionId.equals(sharedSubscriptionId)) {
+                return;
+            }
+            sharedSubscriptionPosition = cloudEvent.getStreamPosition();
+            recentEvents.addLast(cloudEvent);
+            if (recentEvents.size() > queueCapacity) {
+                recentEvents.removeFirst();
+            }
+
+            for (Subscriber subscriber : subscribers.values()) {
+                if (subscriber.mode == Mode.LIVE && subscriber.predicate.test(cloudEvent) && !subscriber.offer(cloudEvent)) {
+                    log.info("Subscription {} is lagging behind, falling back to a dedicated subscription.", subscriber.subscriptionId);
+                    generations.add(subscriber.startCatchingUp());
+                    laggingSubscribers.add(subscriber);
+                }
+            }
+        }
+
+        for (int i = 0; i < laggingSubscribers.size(); i++) {
+            startDedicatedSubscription(laggingSubscribers.get(i), generations.get(i));
+        }
+    }
+
+    private Subscription startDedicatedSubscription(Subscriber subscriber, int generation) {
+        Supplier<StartAt> startAtSupplier = () -> {
+            synchronized (lock) {
+                return subscriber.lastQueuedPosition == null ? subscriber.startAt : StartAt.subscriptionPosition(subscriber.lastQueuedPosition);
+            }
+        };
+        return subscription.subscribe(dedicatedSubscriptionId(subscriber.subscriptionId, generation), null, startAtSupplier,
+                cloudEvent -> catchUp(subscriber, generation, cloudEvent));
+    }
+
+    private void catchUp(Subscriber subscriber, int generation, CloudEventWithSubscriptionPosition cloudEvent) {
+        if (!subscriber.isCatchingUp(generation) || (subscriber.predicate.test(cloudEvent) && !subscriber.put(cloudEvent))) {
+            return;
+        }
+
+        final boolean caughtUp;
+        synchronized (lock) {
+            if (!subscriber.isCatchingUp(generation)) {
+                return;
+            }
+            subscriber.lastQueuedPosition = cloudEvent.getStreamPosition();
+            List<CloudEventWithSubscriptionPosition> newerEvents = recentEventsReceivedAfter(cloudEvent);
+            caughtUp = newerEvents != null && subscriber.offerAll(newerEvents.stream().filter(subscriber.predicate).collect(Collectors.toList()));
+            if (caughtUp) {
+                subscriber.mode = Mode.LIVE;
+            }
+        }
+
+        if (caughtUp) {
+            log.info("Subscription {} has caught up, switching to the shared subscription.", subscriber.subscriptionId);
+            subscription.cancelSubscription(dedicatedSubscriptionId(subscriber.subscriptionId, generation));
+        }
+    }
+
+    // Returns null if the event is not one of the recent events. Must be called while holding "lock".
+    private List<CloudEventWithSubscriptionPosition> recentEventsReceivedAfter(CloudEvent cloudEvent) {
+        LinkedList<CloudEventWithSubscriptionPosition> newerEvents = new LinkedList<>();
+        Iterator<CloudEventWithSubscriptionPosition> iterator = recentEvents.descendingIterator();
+        while (iterator.hasNext()) {
+            CloudEventWithSubscriptionPosition recentEvent = iterator.next();
+            if (Objects.equals(recentEvent.getId(), cloudEvent.getId()) && Objects.equals(recentEvent.getSource(), cloudEvent.getSource())) {
+                return newerEvents;
+            }
+            newerEvents.addFirst(recentEvent);
+        }
+        return null;
+    }
+
+    private static String dedicatedSubscriptionId(String subscriptionId, int generation) {
+        return subscriptionId + "-dedicated-" + generation;
+    }
+
+    private enum Mode {
+        LIVE, CATCHING_UP, CANCELLED
+    }
+
+    private class Subscriber {
+        private final String subscriptionId;
+        private final Predicate<CloudEvent> predicate;
+        private final Consumer<CloudEventWithSubscriptionPosition> action;
+        private final StartAt startAt;
+        private final BlockingQueue<CloudEventWithSubscriptionPosition> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final Thread worker;
+
+        // Guarded by "lock"
+        private volatile Mode mode = Mode.LIVE;
+        private int generation;
+        // The position to continue from if the subscriber falls back to a dedicated subscription
+        private SubscriptionPosition lastQueuedPosition;
+
+        private Subscriber(String subscriptionId, Predicate<CloudEvent> predicate, Consumer<CloudEventWithSubscriptionPosition> action, StartAt startAt) {
+            this.subscriptionId = subscriptionId;
+            this.predicate = predicate;
+            this.action = action;
+            this.startAt = startAt;
+            this.worker = VirtualThreads.newThread("occurrent-multiplexing-" + subscriptionId, this::process);
+        }
+
+        // Must be called while holding "lock"
+        private int startCatchingUp() {
+            mode = Mode.CATCHING_UP;
+            return ++generation;
+        }
+
+        private boolean isCatchingUp(int generation) {
+            synchronized (lock) {
+                return mode == Mode.CATCHING_UP && this.generation == generation;
+            }
+        }
+
+        // Must be called while holding "lock"
+        private boolean offer(CloudEventWithSubscriptionPosition cloudEvent) {
+            boolean queued = queue.offer(cloudEvent);
+            if (queued) {
+                lastQueuedPosition = cloudEvent.getStreamPosition();
+            }
+            return queued;
+        }
+
+        // Must be called while holding "lock"
+        private boolean offerAll(List<CloudEventWithSubscriptionPosition> cloudEvents) {
+            if (queue.remainingCapacity() < cloudEvents.size()) {
+                return false;
+            }
+            cloudEvents.forEach(this::offer);
+            return true;
+        }
+
+        // Blocks until the event has been queued, returns false if the subscriber was cancelled in the meantime
+        private boolean put(CloudEventWithSubscriptionPosition cloudEvent) {
+            try {
+                while (!queue.offer(cloudEvent, 100, TimeUnit.MILLISECONDS)) {
+                    if (mode == Mode.CANCELLED) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void startWorker() {
+            worker.start();
+        }
+
+        private void stopWorker() {
+            worker.interrupt();
+            queue.clear();
+        }
+
+        private void process() {
+            try {
+                while (mode != Mode.CANCELLED) {
+                    processWithRetry(queue.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void processWithRetry(CloudEventWithSubscriptionPosition cloudEvent) throws InterruptedException {
+            long retryDelayMillis = INITIAL_RETRY_DELAY_MILLIS;
+            while (mode != Mode.CANCELLED) {
+                try {
+                    action.accept(cloudEvent);
+                    return;
+                } catch (Exception e) {
+                    log.error("Caught {} with message \"{}\" when processing event {} in subscription {}, will retry in {} milliseconds.",
+                            e.getClass().getName(), e.getMessage(), cloudEvent.getId(), subscriptionId, retryDelayMillis, e);
+                    Thread.sleep(retryDelayMillis);
+                    retryDelayMillis = Math.min(MAX_RETRY_DELAY_MILLIS, retryDelayMillis * 2);
+                }
+            }
+        }
+    }
+
+    private static class MultiplexedSubscription implements Subscription {
+        private final String subscriptionId;
+        private final Subscription underlyingSubscription;
+
+        private MultiplexedSubscription(String subscriptionId, Subscription underlyingSubscription) {
+            this.subscriptionId = subscriptionId;
+            this.underlyingSubscription = underlyingSubscription;
+        }
+
+        @Override
+        public String id() {
+            return subscriptionId;
+        }
+
+        @Override
+        public void waitUntilStarted() {
+            underlyingSubscription.waitUntilStarted();
+        }
+
+        @Override
+        public boolean waitUntilStarted(Duration timeout) {
+            return underlyingSubscription.waitUntilStarted(timeout);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.multiplexing;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.occurrent.filter.Filter;
+import org.occurrent.filter.FilterPredicateCompiler;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.StartAt.StartAtSubscriptionPosition;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
+import org.occurrent.subscription.api.blocking.Subscription;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.occurrent.subscription.OccurrentSubscriptionFilter.filter;
+
+@Timeout(10)
+class MultiplexingBlockingSubscriptionTest {
+
+    private final EventLogSubscription eventLog = new EventLogSubscription();
+
+    @AfterEach
+    void shutdown() {
+        eventLog.shutdown();
+    }
+
+    @Test
+    void events_are_dispatched_to_all_matching_subscriptions_from_a_single_underlying_subscription() {
+        // Given
+        MultiplexingBlockingSubscription subscription = new MultiplexingBlockingSubscription(eventLog);
+        List<String> typeA = new CopyOnWriteArrayList<>();
+        List<String> typeB = new CopyOnWriteArrayList<>();
+        subscription.subscribe("a", filter(Filter.type("A")), StartAt.now(), cloudEvent -> typeA.add(cloudEvent.getId())).waitUntilStarted();
+        subscription.subscribe("b", filter(Filter.type("B")), StartAt.now(), cloudEvent -> typeB.add(cloudEvent.getId())).waitUntilStarted();
+
+        // When
+        eventLog.publish("1", "A");
+        eventLog.publish("2", "B");
+        eventLog.publish("3", "A");
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            assertThat(typeA).containsExactly("1", "3");
+            assertThat(typeB).containsExactly("2");
+        });
+        assertThat(eventLog.numberOfStartedSubscriptions).hasValue(1);
+    }
+
+    @Test
+    void subscription_that_starts_at_a_position_catches_up_using_a_dedicated_subscription_and_then_switches_to_the_shared_subscription() {
+        // Given
+        MultiplexingBlockingSubscription subscription = new MultiplexingBlockingSubscription(eventLog);
+        subscription.subscribe("live", StartAt.now(), cloudEvent -> {
+        }).waitUntilStarted();
+        IntStream.range(0, 5).forEach(i -> eventLog.publish(String.valueOf(i), "A"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> eventLog.sharedSubscriptionHasReceived(5));
+
+        // When
+        List<String> processed = new CopyOnWriteArrayList<>();
+        subscription.subscribe("late", StartAt.subscriptionPosition(new StringBasedSubscriptionPosition("1")), cloudEvent -> processed.add(cloudEvent.getId())).waitUntilStarted();
+        await().atMost(Duration.ofSeconds(5)).until(() -> eventLog.numberOfRunningSubscriptions() == 1);
+        eventLog.publish("5", "A");
+        eventLog.publish("6", "A");
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(processed).containsExactly("2", "3", "4", "5", "6"));
+    }
+
+    @Test
+    void lagging_subscription_falls_back_to_a_dedicated_subscription_without_losing_events() {
+        // Given
+        MultiplexingBlockingSubscription subscription = new MultiplexingBlockingSubscription(eventLog, 2);
+        CountDownLatch mayProcess = new CountDownLatch(1);
+        List<String> processed = new CopyOnWriteArrayList<>();
+        subscription.subscribe("slow", StartAt.now(), cloudEvent -> {
+            awaitUninterruptibly(mayProcess);
+            processed.add(cloudEvent.getId());
+        }).waitUntilStarted();
+
+        // When
+        IntStream.range(0, 10).forEach(i -> eventLog.publish(String.valueOf(i), "A"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> eventLog.numberOfStartedSubscriptions.get() > 1);
+        mayProcess.countDown();
+
+        // Then
+        List<String> expected = IntStream.range(0, 10).mapToObj(String::valueOf).collect(Collectors.toList());
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(processed).containsExactlyElementsOf(expected));
+        await().atMost(Duration.ofSeconds(5)).until(() -> eventLog.numberOfRunningSubscriptions() == 1);
+    }
+
+    @Test
+    void dedicated_subscription_switches_to_the_shared_subscription_even_if_its_filter_matches_none_of_the_recent_events() {
+        // Given
+        MultiplexingBlockingSubscription subscription = new MultiplexingBlockingSubscription(eventLog);
+        subscription.subscribe("live", StartAt.now(), cloudEvent -> {
+        }).waitUntilStarted();
+        IntStream.range(0, 5).forEach(i -> eventLog.publish(String.valueOf(i), "A"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> eventLog.sharedSubscriptionHasReceived(5));
+
+        // When
+        List<String> processed = new CopyOnWriteArrayList<>();
+        subscription.subscribe("late", filter(Filter.type("B")), StartAt.subscriptionPosition(new StringBasedSubscriptionPosition("1")), cloudEvent -> processed.add(cloudEvent.getId())).waitUntilStarted();
+        await().atMost(Duration.ofSeconds(5)).until(() -> eventLog.numberOfRunningSubscriptions() == 1);
+        eventLog.publish("5", "B");
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(processed).containsExactly("5"));
+    }
+
+    @Test
+    void shared_subscription_is_cancelled_when_the_last_subscription_is_cancelled_and_restarted_by_the_next_subscription() {
+        // Given
+        MultiplexingBlockingSubscription subscription = new MultiplexingBlockingSubscription(eventLog);
+        subscription.subscribe("a", StartAt.now(), cloudEvent -> {
+        }).waitUntilStarted();
+        subscription.subscribe("b", StartAt.now(), cloudEvent -> {
+        }).waitUntilStarted();
+
+        // When
+        subscription.cancelSubscription("a");
+        int runningAfterFirstCancel = eventLog.numberOfRunningSubscriptions();
+        subscription.cancelSubscription("b");
+        int runningAfterLastCancel = eventLog.numberOfRunningSubscriptions();
+        List<String> processed = new CopyOnWriteArrayList<>();
+        subscription.subscribe("c", StartAt.now(), cloudEvent -> processed.add(cloudEvent.getId())).waitUntilStarted();
+        eventLog.publish("1", "A");
+
+        // Then
+        assertThat(runningAfterFirstCancel).isEqualTo(1);
+        assertThat(runningAfterLastCancel).isZero();
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(processed).containsExactly("1"));
+        assertThat(eventLog.numberOfRunningSubscriptions()).isEqualTo(1);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // An in-memory event log where the subscription position is the index of the event in the log
+    private static class EventLogSubscription implements PositionAwareBlockingSubscription {
+        private final List<CloudEventWithSubscriptionPosition> events = new CopyOnWriteArrayList<>();
+        private final Map<String, AtomicBoolean> runningSubscriptions = new ConcurrentHashMap<>();
+        private final AtomicInteger numberOfStartedSubscriptions = new AtomicInteger();
+        private final AtomicInteger receivedBySharedSubscription = new AtomicInteger();
+
+        @Override
+        public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEventWithSubscriptionPosition> action) {
+            AtomicBoolean running = new AtomicBoolean(true);
+            runningSubscriptions.put(subscriptionId, running);
+            numberOfStartedSubscriptions.incrementAndGet();
+            boolean shared = subscriptionId.startsWith("occurrent-multiplexing-");
+            Predicate<CloudEvent> predicate = filter == null ? __ -> true : FilterPredicateCompiler.compile(((OccurrentSubscriptionFilter) filter).filter);
+            CountDownLatch started = new CountDownLatch(1);
+            Thread thread = new Thread(() -> {
+                StartAt startAt = startAtSupplier.get();
+                int index = startAt.isNow() ? events.size() : Integer.parseInt(((StartAtSubscriptionPosition) startAt).subscriptionPosition.asString()) + 1;
+                started.countDown();
+                while (running.get()) {
+                    if (index < events.size()) {
+                        CloudEventWithSubscriptionPosition cloudEvent = events.get(index++);
+                        if (predicate.test(cloudEvent)) {
+                            action.accept(cloudEvent);
+                        }
+                        if (shared) {
+                            receivedBySharedSubscription.incrementAndGet();
+                        }
+                    } else {
+                        sleep();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            return new Subscription() {
+                @Override
+                public String id() {
+                    return subscriptionId;
+                }
+
+                @Override
+                public void waitUntilStarted() {
+                    waitUntilStarted(Duration.ofSeconds(5));
+                }
+
+                @Override
+                public boolean waitUntilStarted(Duration timeout) {
+                    try {
+                        return started.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+        }
+
+        synchronized void publish(String id, String type) {
+            CloudEvent cloudEvent = CloudEventBuilder.v1().withId(id).withSource(URI.create("urn:test")).withType(type).build();
+            events.add(new CloudEventWithSubscriptionPosition(cloudEvent, new StringBasedSubscriptionPosition(String.valueOf(events.size()))));
+        }
+
+        boolean sharedSubscriptionHasReceived(int numberOfEvents) {
+            return receivedBySharedSubscription.get() >= numberOfEvents;
+        }
+
+        int numberOfRunningSubscriptions() {
+            return runningSubscriptions.size();
+        }
+
+        @Override
+        public void cancelSubscription(String subscriptionId) {
+            AtomicBoolean running = runningSubscriptions.remove(subscriptionId);
+            if (running != null) {
+                running.set(false);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            runningSubscriptions.values().forEach(running -> running.set(false));
+            runningSubscriptions.clear();
+        }
+
+        @Override
+        public SubscriptionPosition globalSubscriptionPosition() {
+            return new StringBasedSubscriptionPosition(String.valueOf(events.size() - 1));
+        }
+
+        private static void sleep() {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.partitioned;
+
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.RetryStrategy;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.StartAt.StartAtSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
+import org.occurrent.subscription.api.blocking.Subscription;
+import org.occurrent.threads.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+
+/**
+ * Wraps a {@link PositionAwareBlockingSubscription} and dispatches the events of each subscription to a number of partitions that are processed in parallel,
+ * each by its own thread. Events are assigned to a partition based on the hash of their stream id so events that belong to the same stream are
+ * processed in order, while events from different streams may be processed in parallel. This is useful if the "action" is slow, e.g. a projection
+ * that writes to a database, and events are spread over many streams.
+ * <p>
+ * Since events are processed out of order across partitions, the {@link SubscriptionPosition} of the {@link CloudEventWithSubscriptionPosition} delivered to the
+ * action is <i>not</i> the position of the event itself. It's a "low-watermark", i.e. the position of the latest event for which all previous events have been
+ * processed (assuming that the event being delivered is processed successfully). This means that it's safe to persist this position, e.g. by wrapping this
+ * subscription in a {@code BlockingSubscriptionWithAutomaticPositionPersistence}, since resuming the subscription from it will never skip an unprocessed event.
+ * Events that were processed after the low-watermark will be redelivered though.
+ * </p>
+ * <p>
+ * If the action throws an exception, it's retried according to the {@link RetryStrategy} (by default with exponential backoff until it succeeds) before
+ * the next event in the same partition is processed, so that events in the same partition are never processed out of order. If the event couldn't be processed
+ * within {@link RetryStrategy#maxAttempts}, it's handed over to the {@link RetryStrategy#deadLetterHandler}, or the subscription is cancelled if no
+ * dead-letter handler is defined.
+ * </p>
+ */
+public class PartitionedBlockingSubscription implements PositionAwareBlockingSubscription {
+    private static final Logger log = LoggerFactory.getLogger(PartitionedBlockingSubscription.class);
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final RetryStrategy DEFAULT_RETRY_STRATEGY = RetryStrategy.backoff(Duration.ofMillis(100), Duration.ofSeconds(5), 2);
+
+    private final PositionAwareBlockingSubscription subscription;
+    private final int numberOfPartitions;
+    private final int queueCapacity;
+    private final RetryStrategy retryStrategy;
+    private final ConcurrentMap<String, Partitions> partitionsBySubscriptionId = new ConcurrentHashMap<>();
+
+    /**
+     * Create a {@link PartitionedBlockingSubscription} that queues at most 1000 events per partition.
+     *
+     * @param subscription       The subscription that will read events from the event store
+     * @param numberOfPartitions The number of partitions (threads) that will process events in parallel for each subscription
+     */
+    public PartitionedBlockingSubscription(PositionAwareBlockingSubscription subscription, int numberOfPartitions) {
+        this(subscription, numberOfPartitions, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Create a {@link PartitionedBlockingSubscription} that retries failed events with exponential backoff until they succeed.
+     *
+     * @param subscription       The subscription that will read events from the event store
+     * @param numberOfPartitions The number of partitions (threads) that will process events in parallel for each subscription
+     * @param queueCapacity      The maximum number of events that are queued for a partition before the subscription is blocked
+     */
+    public PartitionedBlockingSubscription(PositionAwareBlockingSubscription subscription, int numberOfPartitions, int queueCapacity) {
+        this(subscription, numberOfPartitions, queueCapacity, DEFAULT_RETRY_STRATEGY);
+    }
+
+    /**
+     * Create a {@link PartitionedBlockingSubscription}.
+     *
+     * @param subscription       The subscription that will read events from the event store
+     * @param numberOfPartitions The number of partitions (threads) that will process events in parallel for each subscription
+     * @param queueCapacity      The maximum number of events that are queued for a partition before the subscription is blocked
+     * @param retryStrategy      Configure how events that the action fails to process are retried
+     */
+    public PartitionedBlockingSubscription(PositionAwareBlockingSubscription subscription, int numberOfPartitions, int queueCapacity, RetryStrategy retryStrategy) {
+        requireNonNull(subscription, "subscription cannot be null");
+        requireNonNull(retryStrategy, RetryStrategy.class.getSimpleName() + " cannot be null");
+        if (numberOfPartitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be greater than zero");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be greater than zero");
+        }
+        this.subscription = subscription;
+        this.numberOfPartitions = numberOfPartitions;
+        this.queueCapacity = queueCapacity;
+        this.retryStrategy = retryStrategy;
+    }
+
+    @Override
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEventWithSubscriptionPosition> action) {
+        requireNonNull(subscriptionId, "subscriptionId cannot be null");
+        requireNonNull(startAtSupplier, "Start at cannot be null");
+        requireNonNull(action, "Action cannot be null");
+
+        Partitions partitions = new Partitions(subscriptionId, action);
+        Partitions existingPartitions = partitionsBySubscriptionId.put(subscriptionId, partitions);
+        if (existingPartitions != null) {
+            existingPartitions.stop();
+        }
+
+        Supplier<StartAt> startAtSupplierThatRecordsStartPosition = () -> {
+            StartAt startAt = startAtSupplier.get();
+            // The start position is the low-watermark until the first event has been processed
+            partitions.started(startAt instanceof StartAtSubscriptionPosition ? ((StartAtSubscriptionPosition) startAt).subscriptionPosition : subscription.globalSubscriptionPosition());
+            return startAt;
+        };
+        return subscription.subscribe(subscriptionId, filter, startAtSupplierThatRecordsStartPosition, partitions::dispatch);
+    }
+
+    @Override
+    public void cancelSubscription(String subscriptionId) {
+        subscription.cancelSubscription(subscriptionId);
+        Partitions partitions = partitionsBySubscriptionId.remove(subscriptionId);
+        if (partitions != null) {
+            partitions.stop();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        subscription.shutdown();
+        partitionsBySubscriptionId.values().forEach(Partitions::stop);
+        partitionsBySubscriptionId.clear();
+    }
+
+    @Override
+    public SubscriptionPosition globalSubscriptionPosition() {
+        return subscription.globalSubscriptionPosition();
+    }
+
+    private class Partitions {
+        private final String subscriptionId;
+        private final Consumer<CloudEventWithSubscriptionPosition> action;
+        private final List<BlockingQueue<InFlightEvent>> queues = new ArrayList<>();
+        private final List<Thread> workers = new ArrayList<>();
+        // Events that have been dispatched but are not yet below the low-watermark, ordered by sequence number. Guarded by "this".
+        private final TreeMap<Long, InFlightEvent> inFlightEvents = new TreeMap<>();
+        private SubscriptionPosition lowWatermark;
+        private long nextSequenceNumber;
+        private volatile boolean stopped;
+
+        private Partitions(String subscriptionId, Consumer<CloudEventWithSubscriptionPosition> action) {
+            this.subscriptionId = subscriptionId;
+            this.action = action;
+            for (int i = 0; i < numberOfPartitions; i++) {
+                BlockingQueue<InFlightEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+                Thread worker = VirtualThreads.newThread("occurrent-" + subscriptionId + "-partition-" + (i + 1), () -> process(queue));
+                queues.add(queue);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+
+        private synchronized void started(SubscriptionPosition startPosition) {
+            if (lowWatermark == null) {
+                lowWatermark = startPosition;
+            }
+        }
+
+        private void dispatch(CloudEventWithSubscriptionPosition cloudEvent) {
+            InFlightEvent inFlightEvent;
+            synchronized (this) {
+                inFlightEvent = new InFlightEvent(nextSequenceNumber++, cloudEvent);
+                inFlightEvents.put(inFlightEvent.sequenceNumber, inFlightEvent);
+            }
+            try {
+                queues.get(partitionOf(cloudEvent)).put(inFlightEvent);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while dispatching event to partition for subscription " + subscriptionId, e);
+            }
+        }
+
+        private int partitionOf(CloudEventWithSubscriptionPosition cloudEvent) {
+            Object streamId = cloudEvent.getExtension(STREAM_ID);
+            return streamId == null ? 0 : Math.floorMod(streamId.hashCode(), numberOfPartitions);
+        }
+
+        private void process(BlockingQueue<InFlightEvent> queue) {
+            try {
+                while (!stopped) {
+                    InFlightEvent inFlightEvent = queue.take();
+                    processWithRetry(inFlightEvent);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void processWithRetry(InFlightEvent inFlightEvent) throws InterruptedException {
+            Iterator<Long> delays = null;
+            for (int attempt = 1; !stopped; attempt++) {
+                try {
+                    action.accept(new CloudEventWithSubscriptionPosition(inFlightEvent.cloudEvent, lowWatermarkAssumingProcessed(inFlightEvent)));
+                    processed(inFlightEvent);
+                    return;
+                } catch (Exception e) {
+                    if (attempt == 1) {
+                        delays = retryStrategy.delays();
+                    }
+                    if (delays != null && attempt < retryStrategy.maxAttempts) {
+                        long retryInMillis = delays.next();
+                        log.error("Caught {} with message \"{}\" when processing event {} in subscription {}, will retry in {} milliseconds.",
+                                e.getClass().getName(), e.getMessage(), inFlightEvent.cloudEvent.getId(), subscriptionId, retryInMillis, e);
+                        Thread.sleep(retryInMillis);
+                    } else if (retryStrategy.deadLetterHandler == null) {
+                        log.error("Caught {} with message \"{}\" when processing event {} after {} attempt(s), stopping subscription {}.",
+                                e.getClass().getName(), e.getMessage(), inFlightEvent.cloudEvent.getId(), attempt, subscriptionId, e);
+                        cancel();
+                        return;
+                    } else {
+                        handOverToDeadLetterHandler(inFlightEvent, attempt, e);
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void handOverToDeadLetterHandler(InFlightEvent inFlightEvent, int attempts, Exception cause) {
+            log.error("Caught {} with message \"{}\" when processing event {} after {} attempt(s), handing over the event to the dead-letter handler.",
+                    cause.getClass().getName(), cause.getMessage(), inFlightEvent.cloudEvent.getId(), attempts, cause);
+            try {
+                retryStrategy.deadLetterHandler.handle(subscriptionId, inFlightEvent.cloudEvent, cause);
+            } catch (RuntimeException deadLetterException) {
+                log.error("Dead-letter handler failed, stopping subscription {}.", subscriptionId, deadLetterException);
+                cancel();
+                return;
+            }
+            processed(inFlightEvent);
+        }
+
+        private void cancel() {
+            if (partitionsBySubscriptionId.remove(subscriptionId, this)) {
+                subscription.cancelSubscription(subscriptionId);
+            }
+            stop();
+        }
+
+        private synchronized SubscriptionPosition lowWatermarkAssumingProcessed(InFlightEvent inFlightEventToProcess) {
+            // Processed events are removed from the head of the in-flight events, so the head is never processed and the
+            // low-watermark can only move past the event to process if it's the head.
+            if (inFlightEvents.firstKey() != inFlightEventToProcess.sequenceNumber) {
+                return lowWatermark == null ? inFlightEventToProcess.cloudEvent.getStreamPosition() : lowWatermark;
+            }
+            SubscriptionPosition position = inFlightEventToProcess.cloudEvent.getStreamPosition();
+            for (InFlightEvent inFlightEvent : inFlightEvents.tailMap(inFlightEventToProcess.sequenceNumber, false).values()) {
+                if (!inFlightEvent.processed) {
+                    break;
+                }
+                position = inFlightEvent.cloudEvent.getStreamPosition();
+            }
+            return position;
+        }
+
+        private synchronized void processed(InFlightEvent inFlightEvent) {
+            inFlightEvent.processed = true;
+            while (!inFlightEvents.isEmpty() && inFlightEvents.firstEntry().getValue().processed) {
+                lowWatermark = inFlightEvents.pollFirstEntry().getValue().cloudEvent.getStreamPosition();
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            workers.forEach(Thread::interrupt);
+            queues.forEach(BlockingQueue::clear);
+        }
+    }
+
+    private static class InFlightEvent {
+        private final long sequenceNumber;
+        private final CloudEventWithSubscriptionPosition cloudEvent;
+        // Guarded by the Partitions instance
+        private boolean processed;
+
+        private InFlightEvent(long sequenceNumber, CloudEventWithSubscriptionPosition cloudEvent) {
+            this.sequenceNumber = sequenceNumber;
+            this.cloudEvent = cloudEvent;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.partitioned;
+
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.RetryStrategy;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
+import org.occurrent.subscription.api.blocking.Subscription;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+
+@Timeout(10)
+class PartitionedBlockingSubscriptionTest {
+
+    private final ManualSubscription manualSubscription = new ManualSubscription();
+    private final PartitionedBlockingSubscription subscription = new PartitionedBlockingSubscription(manualSubscription, 2);
+
+    @AfterEach
+    void shutdown() {
+        subscription.shutdown();
+    }
+
+    @Test
+    void events_in_the_same_stream_are_processed_in_order() {
+        // Given
+        List<String> processed = new CopyOnWriteArrayList<>();
+        subscription.subscribe("subscription", null, StartAt.subscriptionPosition(position("0")), cloudEvent -> processed.add(cloudEvent.getId()));
+
+        // When
+        for (int i = 1; i <= 100; i++) {
+            manualSubscription.publish(event(String.valueOf(i), "stream"));
+        }
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(processed).hasSize(100));
+        for (int i = 1; i <= 100; i++) {
+            assertThat(processed.get(i - 1)).isEqualTo(String.valueOf(i));
+        }
+    }
+
+    @Test
+    void events_in_different_streams_are_processed_in_parallel() throws InterruptedException {
+        // Given
+        CountDownLatch otherStreamProcessed = new CountDownLatch(1);
+        subscription.subscribe("subscription", null, StartAt.subscriptionPosition(position("0")), cloudEvent -> {
+            if (cloudEvent.getId().equals("1")) {
+                awaitUninterruptibly(otherStreamProcessed);
+            } else {
+                otherStreamProcessed.countDown();
+            }
+        });
+
+        // When
+        // "a" and "b" have different hash codes modulo 2 and thus end up in different partitions
+        manualSubscription.publish(event("1", "a"));
+        manualSubscription.publish(event("2", "b"));
+
+        // Then
+        assertThat(otherStreamProcessed.await(5, SECONDS)).isTrue();
+    }
+
+    @Test
+    void subscription_position_is_the_low_watermark_across_partitions() {
+        // Given
+        CountDownLatch firstEventMayComplete = new CountDownLatch(1);
+        Map<String, SubscriptionPosition> positions = new ConcurrentHashMap<>();
+        subscription.subscribe("subscription", null, StartAt.subscriptionPosition(position("0")), cloudEvent -> {
+            if (cloudEvent.getId().equals("1")) {
+                awaitUninterruptibly(firstEventMayComplete);
+            }
+            positions.put(cloudEvent.getId(), cloudEvent.getStreamPosition());
+        });
+
+        // When
+        manualSubscription.publish(event("1", "a"));
+        manualSubscription.publish(event("2", "b"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> positions.containsKey("2"));
+        firstEventMayComplete.countDown();
+        await().atMost(Duration.ofSeconds(5)).until(() -> positions.containsKey("1"));
+        manualSubscription.publish(event("3", "b"));
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).until(() -> positions.containsKey("3"));
+        assertThat(positions.get("2")).isEqualTo(position("0"));
+        // Event 2 may or may not have been processed when the action for event 1 was invoked
+        assertThat(positions.get("1")).isIn(position("1"), position("2"));
+        assertThat(positions.get("3")).isEqualTo(position("3"));
+    }
+
+    @Test
+    void failed_events_are_retried_without_processing_later_events_in_the_same_stream() {
+        // Given
+        AtomicInteger attempts = new AtomicInteger();
+        List<String> processed = new CopyOnWriteArrayList<>();
+        subscription.subscribe("subscription", null, StartAt.subscriptionPosition(position("0")), cloudEvent -> {
+            if (cloudEvent.getId().equals("1") && attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("expected");
+            }
+            processed.add(cloudEvent.getId());
+        });
+
+        // When
+        manualSubscription.publish(event("1", "stream"));
+        manualSubscription.publish(event("2", "stream"));
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(processed).containsExactly("1", "2"));
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void event_that_fails_max_attempts_is_handed_over_to_the_dead_letter_handler_and_later_events_in_the_same_stream_are_processed() {
+        // Given
+        List<String> deadLetters = new CopyOnWriteArrayList<>();
+        List<String> processed = new CopyOnWriteArrayList<>();
+        PartitionedBlockingSubscription subscription = new PartitionedBlockingSubscription(manualSubscription, 2, 10,
+                RetryStrategy.fixed(10).maxAttempts(2).deadLetter((subscriptionId, cloudEvent, cause) -> deadLetters.add(cloudEvent.getId())));
+        subscription.subscribe("subscription", null, StartAt.subscriptionPosition(position("0")), cloudEvent -> {
+            if (cloudEvent.getId().equals("1")) {
+                throw new IllegalStateException("expected");
+            }
+            processed.add(cloudEvent.getId());
+        });
+
+        // When
+        manualSubscription.publish(event("1", "stream"));
+        manualSubscription.publish(event("2", "stream"));
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(processed).containsExactly("2"));
+        assertThat(deadLetters).containsExactly("1");
+        subscription.shutdown();
+    }
+
+    @Test
+    void subscription_is_cancelled_when_event_fails_max_attempts_and_there_is_no_dead_letter_handler() {
+        // Given
+        AtomicInteger attempts = new AtomicInteger();
+        PartitionedBlockingSubscription subscription = new PartitionedBlockingSubscription(manualSubscription, 2, 10, RetryStrategy.fixed(10).maxAttempts(3));
+        subscription.subscribe("subscription", null, StartAt.subscriptionPosition(position("0")), cloudEvent -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("expected");
+        });
+
+        // When
+        manualSubscription.publish(event("1", "stream"));
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).until(() -> manualSubscription.action == null);
+        assertThat(attempts).hasValue(3);
+        subscription.shutdown();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static CloudEventWithSubscriptionPosition event(String id, String streamId) {
+        return new CloudEventWithSubscriptionPosition(CloudEventBuilder.v1()
+                .withId(id)
+                .withSource(URI.create("urn:test"))
+                .withType("type")
+                .withExtension(STREAM_ID, streamId)
+                .build(), position(id));
+    }
+
+    private static SubscriptionPosition position(String value) {
+        return new StringBasedSubscriptionPosition(value);
+    }
+
+    private static class ManualSubscription implements PositionAwareBlockingSubscription {
+        private volatile Consumer<CloudEventWithSubscriptionPosition> action;
+
+        @Override
+        public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEventWithSubscriptionPosition> action) {
+            startAtSupplier.get();
+            this.action = action;
+            return null;
+        }
+
+        void publish(CloudEventWithSubscriptionPosition cloudEvent) {
+            action.accept(cloudEvent);
+        }
+
+        @Override
+        public void cancelSubscription(String subscriptionId) {
+            action = null;
+        }
+
+        @Override
+        public SubscriptionPosition globalSubscriptionPosition() {
+            return position("global");
+        }
+    }
+}
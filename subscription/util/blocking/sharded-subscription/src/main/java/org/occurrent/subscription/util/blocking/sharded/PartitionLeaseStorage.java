@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.sharded;
+
+import java.time.Duration;
+
+/**
+ * Coordinates which node owns which partition of a {@link ShardedBlockingSubscription}. Ownership is represented by leases that must be
+ * renewed before they expire, if a node crashes its leases will expire and be claimed by other nodes. Nodes also announce that they're alive
+ * by sending heartbeats so that nodes that own more than their fair share of partitions can release them when new nodes join.
+ */
+public interface PartitionLeaseStorage {
+
+    /**
+     * Announce that a node is alive and participates in the supplied subscription.
+     *
+     * @param subscriptionId The id of the subscription
+     * @param nodeId         The id of the node
+     * @param timeToLive     The time after which the node is no longer regarded as alive unless a new heartbeat is sent
+     */
+    void heartbeat(String subscriptionId, String nodeId, Duration timeToLive);
+
+    /**
+     * @param subscriptionId The id of the subscription
+     * @return The number of nodes whose heartbeat has not yet expired for the supplied subscription.
+     */
+    int numberOfLiveNodes(String subscriptionId);
+
+    /**
+     * Acquire the lease for a partition if it's not owned by another node (or if the lease of the other node has expired),
+     * or renew it if it's already owned by the supplied node.
+     *
+     * @param subscriptionId The id of the subscription
+     * @param partition      The partition
+     * @param nodeId         The id of the node that wants to own the partition
+     * @param leaseDuration  The duration of the lease
+     * @return <code>true</code> if the node owns the partition after the call, <code>false</code> otherwise.
+     */
+    boolean acquireOrRenew(String subscriptionId, int partition, String nodeId, Duration leaseDuration);
+
+    /**
+     * Release the lease for a partition so that it can be acquired by another node. Does nothing if the partition is not owned by the supplied node.
+     *
+     * @param subscriptionId The id of the subscription
+     * @param partition      The partition
+     * @param nodeId         The id of the node that owns the partition
+     */
+    void release(String subscriptionId, int partition, String nodeId);
+
+    /**
+     * Remove a node, i.e. the node is no longer regarded as alive by other nodes.
+     *
+     * @param subscriptionId The id of the subscription
+     * @param nodeId         The id of the node
+     */
+    void removeNode(String subscriptionId, String nodeId);
+}
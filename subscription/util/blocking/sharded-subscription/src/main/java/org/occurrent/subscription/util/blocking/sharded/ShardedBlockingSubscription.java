@@ -0,0 +1,524 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.sharded;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.BlockingSubscription;
+import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
+import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
+import org.occurrent.subscription.api.blocking.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+
+/**
+ * A subscription that allows several nodes to share the work of a single logical subscription ("competing consumers"). The events are divided into a fixed
+ * number of partitions based on the hash of their stream id, and each node processes the events of the partitions that it has acquired a lease for in the
+ * {@link PartitionLeaseStorage}. Events that belong to the same stream are thus always processed by the same node, in order. Nodes periodically
+ * renew their leases and rebalance the partitions so that each node owns at most its fair share of them, partitions are handed over to other nodes when
+ * nodes join and claimed by the remaining nodes when a node leaves or crashes (and its leases expire).
+ * <p>
+ * Each node reads the events (matching the filter) once, using a single subscription of the supplied {@link PositionAwareBlockingSubscription}, and routes
+ * each event to the partition that it belongs to. The action is only invoked for the events of the partitions owned by the node. The subscription position
+ * is persisted per partition, with the id {@code <subscriptionId>-partition-<partition>}, so that a node that acquires a partition continues from where the
+ * previous owner left off. The position of a partition is persisted after each event of the partition has been processed. The position of the events that
+ * belong to other partitions is persisted when the partitions are rebalanced (three times per lease duration) and when a partition is released.
+ * </p>
+ * <p>
+ * Subscription positions can't be compared, so a partition that is acquired at another position than the one the node is currently reading from is read
+ * by a separate subscription until it has caught up. The subscriptions are merged once one of them receives an event that the other one has received recently,
+ * the partitions of the subscription that is ahead are then moved to the subscription that is behind (which means that they may receive some events again).
+ * </p>
+ * <p>
+ * Events are delivered at-least-once. If a node loses its lease, e.g. because of a long GC pause, the partition may be processed by two nodes
+ * for a short period of time.
+ * </p>
+ */
+public class ShardedBlockingSubscription implements BlockingSubscription<CloudEvent> {
+    private static final Logger log = LoggerFactory.getLogger(ShardedBlockingSubscription.class);
+    // The number of positions that are remembered per subscription in order to find out when a subscription has caught up with another
+    private static final int RECENT_POSITIONS = 1000;
+
+    private final PositionAwareBlockingSubscription subscription;
+    private final BlockingSubscriptionPositionStorage storage;
+    private final PartitionLeaseStorage leaseStorage;
+    private final String nodeId;
+    private final int numberOfPartitions;
+    private final Duration leaseDuration;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Shard> shards = new ConcurrentHashMap<>();
+
+    /**
+     * Create a {@link ShardedBlockingSubscription} that uses a random node id.
+     *
+     * @param subscription       The subscription that will read the events from the event store
+     * @param storage            The {@link BlockingSubscriptionPositionStorage} that'll be used to persist the subscription position of each partition
+     * @param leaseStorage       The {@link PartitionLeaseStorage} that coordinates which node owns which partition
+     * @param numberOfPartitions The number of partitions, must be the same for all nodes
+     * @param leaseDuration      The duration of a partition lease. Leases are renewed (and partitions rebalanced) three times per lease duration.
+     */
+    public ShardedBlockingSubscription(PositionAwareBlockingSubscription subscription, BlockingSubscriptionPositionStorage storage, PartitionLeaseStorage leaseStorage,
+                                       int numberOfPartitions, Duration leaseDuration) {
+        this(subscription, storage, leaseStorage, UUID.randomUUID().toString(), numberOfPartitions, leaseDuration);
+    }
+
+    /**
+     * Create a {@link ShardedBlockingSubscription}.
+     *
+     * @param subscription       The subscription that will read the events from the event store
+     * @param storage            The {@link BlockingSubscriptionPositionStorage} that'll be used to persist the subscription position of each partition
+     * @param leaseStorage       The {@link PartitionLeaseStorage} that coordinates which node owns which partition
+     * @param nodeId             The id of this node, must be unique among the nodes
+     * @param numberOfPartitions The number of partitions, must be the same for all nodes
+     * @param leaseDuration      The duration of a partition lease. Leases are renewed (and partitions rebalanced) three times per lease duration.
+     */
+    public ShardedBlockingSubscription(PositionAwareBlockingSubscription subscription, BlockingSubscriptionPositionStorage storage, PartitionLeaseStorage leaseStorage,
+                                       String nodeId, int numberOfPartitions, Duration leaseDuration) {
+        requireNonNull(subscription, "subscription cannot be null");
+        requireNonNull(storage, BlockingSubscriptionPositionStorage.class.getSimpleName() + " cannot be null");
+        requireNonNull(leaseStorage, PartitionLeaseStorage.class.getSimpleName() + " cannot be null");
+        requireNonNull(nodeId, "Node id cannot be null");
+        requireNonNull(leaseDuration, "Lease duration cannot be null");
+        if (numberOfPartitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be greater than zero");
+        }
+        if (leaseDuration.toMillis() < 3) {
+            throw new IllegalArgumentException("Lease duration must be at least 3 milliseconds");
+        }
+        this.subscription = subscription;
+        this.storage = storage;
+        this.leaseStorage = leaseStorage;
+        this.nodeId = nodeId;
+        this.numberOfPartitions = numberOfPartitions;
+        this.leaseDuration = leaseDuration;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occurrent-sharded-subscription-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start listening to cloud events. Note that the {@code startAtSupplier} is used each time this node acquires a partition, regardless of
+     * where the previous owner left off. Use {@link #subscribe(String, SubscriptionFilter, Consumer)} to continue from the persisted subscription position.
+     */
+    @Override
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEvent> action) {
+        requireNonNull(startAtSupplier, "Start at cannot be null");
+        return startShard(subscriptionId, filter, startAtSupplier, action);
+    }
+
+    /**
+     * Start listening to cloud events, each partition starts from the subscription position persisted for the partition.
+     *
+     * @param subscriptionId The id of the subscription, must be the same on all nodes.
+     * @param filter         The filter to apply for this subscription. Only events matching the filter will cause the <code>action</code> to be called.
+     * @param action         This action will be invoked for each cloud event, in a partition owned by this node, that matches the supplied <code>filter</code>.
+     */
+    @Override
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Consumer<CloudEvent> action) {
+        return startShard(subscriptionId, filter, null, action);
+    }
+
+    @Override
+    public Subscription subscribe(String subscriptionId, Consumer<CloudEvent> action) {
+        return subscribe(subscriptionId, (SubscriptionFilter) null, action);
+    }
+
+    private Subscription startShard(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEvent> action) {
+        requireNonNull(subscriptionId, "subscriptionId cannot be null");
+        requireNonNull(action, "Action cannot be null");
+        Shard shard = new Shard(subscriptionId, filter, startAtSupplier, action);
+        if (shards.putIfAbsent(subscriptionId, shard) != null) {
+            throw new IllegalArgumentException("Subscription " + subscriptionId + " is already defined.");
+        }
+        long rebalanceIntervalMillis = leaseDuration.toMillis() / 3;
+        shard.rebalancing = scheduler.scheduleWithFixedDelay(shard::rebalance, 0, rebalanceIntervalMillis, TimeUnit.MILLISECONDS);
+        return new ShardedSubscription(subscriptionId, shard.started);
+    }
+
+    /**
+     * @param subscriptionId The id of the subscription
+     * @return The partitions of the subscription that are currently owned by this node
+     */
+    public Set<Integer> ownedPartitions(String subscriptionId) {
+        Shard shard = shards.get(subscriptionId);
+        return shard == null ? Collections.emptySet() : shard.ownedPartitions();
+    }
+
+    /**
+     * Pause the subscription on this node. The partitions owned by this node are released (after their subscription positions have been persisted)
+     * and will be acquired by the other nodes.
+     *
+     * @param subscriptionId The id of the subscription to pause
+     */
+    public void pauseSubscription(String subscriptionId) {
+        Shard shard = shards.remove(subscriptionId);
+        if (shard != null) {
+            shard.stop(false);
+        }
+    }
+
+    /**
+     * Cancel the subscription on this node. The partitions owned by this node are released and their subscription positions are removed.
+     * Note that the subscription positions of partitions owned by other nodes are not removed, so the subscription should be cancelled on all nodes.
+     *
+     * @param subscriptionId The id of the subscription to cancel
+     */
+    @Override
+    public void cancelSubscription(String subscriptionId) {
+        Shard shard = shards.remove(subscriptionId);
+        if (shard != null) {
+            shard.stop(true);
+        }
+    }
+
+    /**
+     * Pause all subscriptions on this node, release their partitions and shutdown the underlying subscription.
+     */
+    @PreDestroy
+    @Override
+    public void shutdown() {
+        scheduler.shutdown();
+        new ArrayList<>(shards.keySet()).forEach(subscriptionId -> {
+            try {
+                pauseSubscription(subscriptionId);
+            } catch (Exception e) {
+                log.error("Failed to release partitions of subscription {} on shutdown.", subscriptionId, e);
+            }
+        });
+        subscription.shutdown();
+    }
+
+    private int partitionOf(CloudEvent cloudEvent) {
+        Object streamId = cloudEvent.getExtension(STREAM_ID);
+        return streamId == null ? 0 : Math.floorMod(streamId.hashCode(), numberOfPartitions);
+    }
+
+    private static String partitionSubscriptionId(String subscriptionId, int partition) {
+        return subscriptionId + "-partition-" + partition;
+    }
+
+    private class Shard {
+        private final String subscriptionId;
+        private final SubscriptionFilter filter;
+        private final Supplier<StartAt> startAtSupplier;
+        private final Consumer<CloudEvent> action;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeSet<Integer> ownedPartitions = new TreeSet<>();
+        private final List<Reader> readers = new ArrayList<>();
+        private final Map<Integer, Reader> readerOfPartition = new HashMap<>();
+        private final Map<Integer, SubscriptionPosition> persistedPositions = new HashMap<>();
+        private volatile ScheduledFuture<?> rebalancing;
+        private boolean stopped;
+        private int readerSequence;
+
+        /**
+         * @param startAtSupplier Where to start reading an acquired partition, or {@code null} if the persisted subscription position of the partition should be used
+         */
+        private Shard(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEvent> action) {
+            this.subscriptionId = subscriptionId;
+            this.filter = filter;
+            this.startAtSupplier = startAtSupplier;
+            this.action = action;
+        }
+
+        private void rebalance() {
+            lock.lock();
+            try {
+                if (stopped) {
+                    return;
+                }
+                leaseStorage.heartbeat(subscriptionId, nodeId, leaseDuration);
+                int numberOfNodes = Math.max(1, leaseStorage.numberOfLiveNodes(subscriptionId));
+                int fairShare = (numberOfPartitions + numberOfNodes - 1) / numberOfNodes;
+
+                for (Integer partition : new ArrayList<>(ownedPartitions)) {
+                    if (!leaseStorage.acquireOrRenew(subscriptionId, partition, nodeId, leaseDuration)) {
+                        log.warn("Node {} lost the lease for partition {} of subscription {}.", nodeId, partition, subscriptionId);
+                        stopPartition(partition, false);
+                    }
+                }
+
+                while (ownedPartitions.size() > fairShare) {
+                    int partition = ownedPartitions.last();
+                    stopPartition(partition, false);
+                    leaseStorage.release(subscriptionId, partition, nodeId);
+                }
+
+                List<Integer> acquiredPartitions = new ArrayList<>();
+                for (int partition = 0; partition < numberOfPartitions && ownedPartitions.size() + acquiredPartitions.size() < fairShare; partition++) {
+                    if (!ownedPartitions.contains(partition) && leaseStorage.acquireOrRenew(subscriptionId, partition, nodeId, leaseDuration)) {
+                        acquiredPartitions.add(partition);
+                    }
+                }
+                startPartitions(acquiredPartitions);
+                persistPositionsOfSkippedEvents();
+                started.countDown();
+            } catch (Exception e) {
+                log.error("Caught {} with message \"{}\" when rebalancing partitions of subscription {}, will retry.", e.getClass().getName(), e.getMessage(), subscriptionId, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void startPartitions(List<Integer> partitions) {
+            if (partitions.isEmpty()) {
+                return;
+            } else if (startAtSupplier != null) {
+                startReader(partitions, startAtSupplier);
+                return;
+            }
+
+            // Partitions that are at the same subscription position are read by the same reader
+            Map<String, List<Integer>> partitionsByPosition = new LinkedHashMap<>();
+            Map<String, SubscriptionPosition> positions = new HashMap<>();
+            SubscriptionPosition globalSubscriptionPosition = null;
+            for (Integer partition : partitions) {
+                String partitionSubscriptionId = partitionSubscriptionId(subscriptionId, partition);
+                SubscriptionPosition position = storage.read(partitionSubscriptionId);
+                if (position == null) {
+                    if (globalSubscriptionPosition == null) {
+                        globalSubscriptionPosition = subscription.globalSubscriptionPosition();
+                    }
+                    position = storage.save(partitionSubscriptionId, globalSubscriptionPosition);
+                }
+                persistedPositions.put(partition, position);
+                positions.putIfAbsent(position.asString(), position);
+                partitionsByPosition.computeIfAbsent(position.asString(), __ -> new ArrayList<>()).add(partition);
+            }
+            partitionsByPosition.forEach((position, partitionsAtPosition) -> {
+                StartAt startAt = StartAt.subscriptionPosition(positions.get(position));
+                startReader(partitionsAtPosition, () -> startAt);
+            });
+        }
+
+        private void startReader(List<Integer> partitions, Supplier<StartAt> startAt) {
+            Reader reader = new Reader(subscriptionId + "-" + nodeId + "-" + ++readerSequence, partitions);
+            subscription.subscribe(reader.id, filter, startAt, cloudEvent -> route(reader, cloudEvent));
+            readers.add(reader);
+            partitions.forEach(partition -> readerOfPartition.put(partition, reader));
+            ownedPartitions.addAll(partitions);
+            log.info("Node {} started processing partitions {} of subscription {}.", nodeId, partitions, subscriptionId);
+        }
+
+        private void route(Reader reader, CloudEventWithSubscriptionPosition cloudEvent) {
+            SubscriptionPosition position = cloudEvent.getStreamPosition();
+            int partition = partitionOf(cloudEvent);
+            lock.lock();
+            try {
+                if (!reader.active) {
+                    return;
+                }
+                mergeReadersThatAreAhead(reader, position);
+                reader.received(position);
+                if (!reader.partitions.contains(partition)) {
+                    reader.lastPosition = position;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            action.accept(cloudEvent);
+
+            lock.lock();
+            try {
+                // The position is not moved until the event has been processed, since it may be persisted for all partitions of the reader
+                if (reader.active) {
+                    reader.lastPosition = position;
+                    if (reader.partitions.contains(partition)) {
+                        persist(partition, position);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // A reader that receives an event that another reader has received recently is behind the other reader, the partitions of the other reader are
+        // moved to this reader so that the node reads the events only once. This means that these partitions may receive some events again.
+        private void mergeReadersThatAreAhead(Reader reader, SubscriptionPosition position) {
+            String positionAsString = position.asString();
+            for (Iterator<Reader> iterator = readers.iterator(); iterator.hasNext(); ) {
+                Reader other = iterator.next();
+                if (other != reader && other.recentPositions.contains(positionAsString)) {
+                    iterator.remove();
+                    other.active = false;
+                    subscription.cancelSubscription(other.id);
+                    reader.partitions.addAll(other.partitions);
+                    other.partitions.forEach(partition -> readerOfPartition.put(partition, reader));
+                    log.debug("Node {} merged the reader of partitions {} of subscription {} with the reader of partitions {}.", nodeId, other.partitions, subscriptionId, reader.partitions);
+                }
+            }
+        }
+
+        private void persistPositionsOfSkippedEvents() {
+            for (Reader reader : readers) {
+                for (Integer partition : reader.partitions) {
+                    persistLastPositionOfReader(partition, reader);
+                }
+            }
+        }
+
+        private void persistLastPositionOfReader(int partition, Reader reader) {
+            // Positions are compared by identity since the position of a processed event is persisted as is
+            if (reader.lastPosition != null && persistedPositions.get(partition) != reader.lastPosition) {
+                persist(partition, reader.lastPosition);
+            }
+        }
+
+        private void persist(int partition, SubscriptionPosition position) {
+            storage.save(partitionSubscriptionId(subscriptionId, partition), position);
+            persistedPositions.put(partition, position);
+        }
+
+        private void stopPartition(int partition, boolean cancel) {
+            Reader reader = readerOfPartition.remove(partition);
+            reader.partitions.remove(partition);
+            if (reader.partitions.isEmpty()) {
+                readers.remove(reader);
+                reader.active = false;
+                subscription.cancelSubscription(reader.id);
+            }
+
+            if (cancel) {
+                storage.delete(partitionSubscriptionId(subscriptionId, partition));
+            } else {
+                persistLastPositionOfReader(partition, reader);
+            }
+            persistedPositions.remove(partition);
+            ownedPartitions.remove(partition);
+            log.info("Node {} stopped processing partition {} of subscription {}.", nodeId, partition, subscriptionId);
+        }
+
+        private Set<Integer> ownedPartitions() {
+            lock.lock();
+            try {
+                return Collections.unmodifiableSet(new TreeSet<>(ownedPartitions));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void stop(boolean cancel) {
+            lock.lock();
+            try {
+                stopped = true;
+                if (rebalancing != null) {
+                    rebalancing.cancel(false);
+                }
+                for (Integer partition : new ArrayList<>(ownedPartitions)) {
+                    stopPartition(partition, cancel);
+                    leaseStorage.release(subscriptionId, partition, nodeId);
+                }
+                leaseStorage.removeNode(subscriptionId, nodeId);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A subscription, of the wrapped {@link PositionAwareBlockingSubscription}, that reads the events of some of the partitions owned by this node.
+     */
+    private static class Reader {
+        private final String id;
+        private final Set<Integer> partitions;
+        private final Set<String> recentPositions = new LinkedHashSet<>();
+        private SubscriptionPosition lastPosition;
+        private boolean active = true;
+
+        private Reader(String id, List<Integer> partitions) {
+            this.id = id;
+            this.partitions = new TreeSet<>(partitions);
+        }
+
+        private void received(SubscriptionPosition position) {
+            recentPositions.add(position.asString());
+            if (recentPositions.size() > RECENT_POSITIONS) {
+                Iterator<String> oldest = recentPositions.iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        }
+    }
+
+    private static class ShardedSubscription implements Subscription {
+        private final String subscriptionId;
+        private final CountDownLatch started;
+
+        private ShardedSubscription(String subscriptionId, CountDownLatch started) {
+            this.subscriptionId = subscriptionId;
+            this.started = started;
+        }
+
+        @Override
+        public String id() {
+            return subscriptionId;
+        }
+
+        @Override
+        public void waitUntilStarted() {
+            try {
+                started.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean waitUntilStarted(Duration timeout) {
+            try {
+                return started.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.sharded;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
+import org.occurrent.subscription.api.blocking.PositionAwareBlockingSubscription;
+import org.occurrent.subscription.api.blocking.Subscription;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+
+class ShardedBlockingSubscriptionTest {
+    private static final Duration LEASE_DURATION = Duration.ofMillis(300);
+
+    private final InMemoryPartitionLeaseStorage leaseStorage = new InMemoryPartitionLeaseStorage();
+    private final InMemorySubscriptionPositionStorage positionStorage = new InMemorySubscriptionPositionStorage();
+    private final ManualSubscription manualSubscription = new ManualSubscription();
+    private final ShardedBlockingSubscription node1 = newNode("node1");
+    private final ShardedBlockingSubscription node2 = newNode("node2");
+
+    @AfterEach
+    void shutdown() {
+        node1.shutdown();
+        node2.shutdown();
+    }
+
+    @Test
+    void single_node_owns_all_partitions_and_processes_each_event_once() {
+        // Given
+        List<String> processed = new CopyOnWriteArrayList<>();
+        node1.subscribe("subscription", cloudEvent -> processed.add(cloudEvent.getId())).waitUntilStarted();
+
+        // When
+        manualSubscription.publish(event("1", "a"));
+        manualSubscription.publish(event("2", "b"));
+        manualSubscription.publish(event("3", "c"));
+
+        // Then
+        assertThat(node1.ownedPartitions("subscription")).containsExactly(0, 1, 2, 3);
+        assertThat(processed).containsExactlyInAnyOrder("1", "2", "3");
+        assertThat(positionStorage.positions).containsKeys("subscription-partition-0", "subscription-partition-1", "subscription-partition-2", "subscription-partition-3");
+    }
+
+    @Test
+    void partitions_are_rebalanced_when_a_node_joins() {
+        // Given
+        node1.subscribe("subscription", cloudEvent -> {
+        }).waitUntilStarted();
+
+        // When
+        node2.subscribe("subscription", cloudEvent -> {
+        });
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            assertThat(node1.ownedPartitions("subscription")).hasSize(2);
+            assertThat(node2.ownedPartitions("subscription")).hasSize(2);
+        });
+        Set<Integer> allPartitions = new HashSet<>(node1.ownedPartitions("subscription"));
+        allPartitions.addAll(node2.ownedPartitions("subscription"));
+        assertThat(allPartitions).containsExactlyInAnyOrder(0, 1, 2, 3);
+    }
+
+    @Test
+    void partitions_are_claimed_by_remaining_nodes_when_a_node_leaves() {
+        // Given
+        node1.subscribe("subscription", cloudEvent -> {
+        }).waitUntilStarted();
+        node2.subscribe("subscription", cloudEvent -> {
+        });
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(node2.ownedPartitions("subscription")).hasSize(2));
+
+        // When
+        node1.pauseSubscription("subscription");
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(node2.ownedPartitions("subscription")).containsExactly(0, 1, 2, 3));
+    }
+
+    @Test
+    void position_of_events_that_belong_to_other_partitions_is_not_persisted_for_each_event() {
+        // Given
+        List<String> processed = new CopyOnWriteArrayList<>();
+        node1.subscribe("subscription", cloudEvent -> processed.add(cloudEvent.getId())).waitUntilStarted();
+        positionStorage.saves.clear();
+
+        // When
+        for (int i = 1; i <= 10; i++) {
+            manualSubscription.publish(event(String.valueOf(i), "a"));
+        }
+
+        // Then
+        assertThat(processed).hasSize(10);
+        // Only the partition that owns stream "a" persists a position for each event, the other partitions skip the events
+        String partitionOfStreamA = positionStorage.saves.get(0);
+        assertThat(positionStorage.saves).filteredOn(partitionOfStreamA::equals).hasSize(10);
+        assertThat(positionStorage.saves).filteredOn(subscriptionId -> !subscriptionId.equals(partitionOfStreamA)).hasSizeLessThan(10);
+    }
+
+    @Test
+    void each_node_reads_the_events_once_regardless_of_the_number_of_partitions_it_owns() {
+        // Given
+        List<String> processed = new CopyOnWriteArrayList<>();
+
+        // When
+        node1.subscribe("subscription", cloudEvent -> processed.add(cloudEvent.getId())).waitUntilStarted();
+        manualSubscription.publish(event("1", "a"));
+        manualSubscription.publish(event("2", "b"));
+
+        // Then
+        assertThat(node1.ownedPartitions("subscription")).hasSize(4);
+        assertThat(manualSubscription.actions).hasSize(1);
+        assertThat(processed).containsExactly("1", "2");
+    }
+
+    @Test
+    void partitions_that_are_acquired_at_different_times_are_read_by_a_single_subscription_once_it_has_caught_up() {
+        // Given
+        List<String> processed = new CopyOnWriteArrayList<>();
+        node1.subscribe("subscription", cloudEvent -> processed.add(cloudEvent.getId())).waitUntilStarted();
+        node2.subscribe("subscription", cloudEvent -> processed.add(cloudEvent.getId()));
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            assertThat(node1.ownedPartitions("subscription")).hasSize(2);
+            assertThat(node2.ownedPartitions("subscription")).hasSize(2);
+        });
+
+        // When
+        for (int i = 1; i <= 10; i++) {
+            manualSubscription.publish(event(String.valueOf(i), "stream" + i));
+        }
+
+        // Then
+        assertThat(manualSubscription.actions).hasSize(2);
+        assertThat(processed).containsAll(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9", "10"));
+    }
+
+    private ShardedBlockingSubscription newNode(String nodeId) {
+        return new ShardedBlockingSubscription(manualSubscription, positionStorage, leaseStorage, nodeId, 4, LEASE_DURATION);
+    }
+
+    private static CloudEventWithSubscriptionPosition event(String id, String streamId) {
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(id)
+                .withSource(URI.create("urn:test"))
+                .withType("type")
+                .withExtension(STREAM_ID, streamId)
+                .build();
+        return new CloudEventWithSubscriptionPosition(cloudEvent, new StringBasedSubscriptionPosition(id));
+    }
+
+    // Delivers published events to all subscriptions, like a change stream would
+    private static class ManualSubscription implements PositionAwareBlockingSubscription {
+        private final Map<String, Consumer<CloudEventWithSubscriptionPosition>> actions = new ConcurrentHashMap<>();
+
+        @Override
+        public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, Supplier<StartAt> startAtSupplier, Consumer<CloudEventWithSubscriptionPosition> action) {
+            startAtSupplier.get();
+            actions.put(subscriptionId, action);
+            return null;
+        }
+
+        void publish(CloudEventWithSubscriptionPosition cloudEvent) {
+            actions.values().forEach(action -> action.accept(cloudEvent));
+        }
+
+        @Override
+        public void cancelSubscription(String subscriptionId) {
+            actions.remove(subscriptionId);
+        }
+
+        @Override
+        public SubscriptionPosition globalSubscriptionPosition() {
+            return new StringBasedSubscriptionPosition("0");
+        }
+    }
+
+    private static class InMemorySubscriptionPositionStorage implements BlockingSubscriptionPositionStorage {
+        private final Map<String, SubscriptionPosition> positions = new ConcurrentHashMap<>();
+        private final List<String> saves = new CopyOnWriteArrayList<>();
+
+        @Override
+        public SubscriptionPosition read(String subscriptionId) {
+            return positions.get(subscriptionId);
+        }
+
+        @Override
+        public SubscriptionPosition save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+            positions.put(subscriptionId, subscriptionPosition);
+            saves.add(subscriptionId);
+            return subscriptionPosition;
+        }
+
+        @Override
+        public void delete(String subscriptionId) {
+            positions.remove(subscriptionId);
+        }
+    }
+
+    private static class InMemoryPartitionLeaseStorage implements PartitionLeaseStorage {
+        private final Map<String, Long> nodes = new ConcurrentHashMap<>();
+        private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+        @Override
+        public void heartbeat(String subscriptionId, String nodeId, Duration timeToLive) {
+            nodes.put(subscriptionId + ":" + nodeId, System.currentTimeMillis() + timeToLive.toMillis());
+        }
+
+        @Override
+        public int numberOfLiveNodes(String subscriptionId) {
+            long now = System.currentTimeMillis();
+            return (int) nodes.entrySet().stream().filter(node -> node.getKey().startsWith(subscriptionId + ":") && node.getValue() > now).count();
+        }
+
+        @Override
+        public synchronized boolean acquireOrRenew(String subscriptionId, int partition, String nodeId, Duration leaseDuration) {
+            long now = System.currentTimeMillis();
+            Lease lease = leases.get(subscriptionId + ":" + partition);
+            if (lease != null && !lease.owner.equals(nodeId) && lease.expiresAt > now) {
+                return false;
+            }
+            leases.put(subscriptionId + ":" + partition, new Lease(nodeId, now + leaseDuration.toMillis()));
+            return true;
+        }
+
+        @Override
+        public synchronized void release(String subscriptionId, int partition, String nodeId) {
+            leases.computeIfPresent(subscriptionId + ":" + partition, (__, lease) -> lease.owner.equals(nodeId) ? null : lease);
+        }
+
+        @Override
+        public void removeNode(String subscriptionId, String nodeId) {
+            nodes.remove(subscriptionId + ":" + nodeId);
+        }
+
+        private static class Lease {
+            private final String owner;
+            private final long expiresAt;
+
+            private Lease(String owner, long expiresAt) {
+                this.owner = owner;
+                this.expiresAt = expiresAt;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.writebehind;
+
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link BlockingSubscriptionPositionStorage} that decorates another {@link BlockingSubscriptionPositionStorage} and coalesces writes.
+ * Saved positions are kept in memory (the latest position for each subscription wins) and all positions that have changed since the last flush
+ * are written to the underlying storage using a single call to {@link BlockingSubscriptionPositionStorage#saveAll(Map)} every {@code flushInterval}.
+ * This reduces the number of writes to the underlying storage from one per event to one per flush interval, regardless of the number of subscriptions.
+ * <p>
+ * {@link #read(String)} returns positions that are not yet flushed so a subscription always reads its own writes. Note that positions that are not yet
+ * flushed are lost if the process crashes, which means that more events may be redelivered when the subscription is restarted. Call {@link #shutdown()}
+ * to flush all positions when the application is stopped.
+ * </p>
+ */
+public class WriteBehindBlockingSubscriptionPositionStorage implements BlockingSubscriptionPositionStorage {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBlockingSubscriptionPositionStorage.class);
+
+    private final BlockingSubscriptionPositionStorage storage;
+    private final Map<String, SubscriptionPosition> unflushedPositions = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Create a {@link WriteBehindBlockingSubscriptionPositionStorage} that writes positions to the supplied {@code storage} every {@code flushInterval}.
+     *
+     * @param storage       The {@link BlockingSubscriptionPositionStorage} that'll be used to persist the subscription positions
+     * @param flushInterval How often positions are written to the {@code storage}
+     */
+    public WriteBehindBlockingSubscriptionPositionStorage(BlockingSubscriptionPositionStorage storage, Duration flushInterval) {
+        requireNonNull(storage, BlockingSubscriptionPositionStorage.class.getSimpleName() + " cannot be null");
+        requireNonNull(flushInterval, "Flush interval cannot be null");
+        if (flushInterval.isZero() || flushInterval.isNegative()) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        this.storage = storage;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(WriteBehindBlockingSubscriptionPositionStorage::newThread);
+        long flushIntervalMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushAndLogFailure, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public SubscriptionPosition read(String subscriptionId) {
+        SubscriptionPosition unflushedPosition = unflushedPositions.get(subscriptionId);
+        return unflushedPosition == null ? storage.read(subscriptionId) : unflushedPosition;
+    }
+
+    @Override
+    public SubscriptionPosition save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        requireNonNull(subscriptionId, "Subscription id cannot be null");
+        requireNonNull(subscriptionPosition, SubscriptionPosition.class.getSimpleName() + " cannot be null");
+        unflushedPositions.put(subscriptionId, subscriptionPosition);
+        return subscriptionPosition;
+    }
+
+    @Override
+    public void saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+        requireNonNull(subscriptionPositions, "Subscription positions cannot be null");
+        subscriptionPositions.forEach(this::save);
+    }
+
+    @Override
+    public void delete(String subscriptionId) {
+        // Prevent an ongoing flush from writing the position again after it has been deleted
+        flushLock.lock();
+        try {
+            unflushedPositions.remove(subscriptionId);
+            storage.delete(subscriptionId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write all positions that have changed since the last flush to the underlying storage. Positions that fail to be written are retried on the next flush.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            if (unflushedPositions.isEmpty()) {
+                return;
+            }
+            Map<String, SubscriptionPosition> positionsToFlush = new HashMap<>(unflushedPositions);
+            storage.saveAll(positionsToFlush);
+            // Only remove positions that haven't been replaced by a newer position during the flush
+            positionsToFlush.forEach(unflushedPositions::remove);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the periodic flushing and write all positions that have not yet been flushed to the underlying storage.
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    private void flushAndLogFailure() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Failed to flush {} subscription position(s), will retry on next flush", unflushedPositions.size(), e);
+        }
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "occurrent-write-behind-position-storage");
+        thread.setDaemon(true);
+        return thread;
+    }
+}
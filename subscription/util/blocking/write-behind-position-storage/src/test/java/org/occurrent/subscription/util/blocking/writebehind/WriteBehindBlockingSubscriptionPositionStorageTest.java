@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.blocking.writebehind;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.BlockingSubscriptionPositionStorage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class WriteBehindBlockingSubscriptionPositionStorageTest {
+
+    private final RecordingStorage recordingStorage = new RecordingStorage();
+    private final WriteBehindBlockingSubscriptionPositionStorage storage = new WriteBehindBlockingSubscriptionPositionStorage(recordingStorage, Duration.ofHours(1));
+
+    @AfterEach
+    void shutdown() {
+        storage.shutdown();
+    }
+
+    @Test
+    void read_returns_position_that_is_not_yet_flushed() {
+        // Given
+        storage.save("subscription", position("1"));
+
+        // When
+        SubscriptionPosition subscriptionPosition = storage.read("subscription");
+
+        // Then
+        assertThat(subscriptionPosition).isEqualTo(position("1"));
+        assertThat(recordingStorage.positions).isEmpty();
+    }
+
+    @Test
+    void flush_writes_the_latest_position_of_each_subscription_in_a_single_batch() {
+        // Given
+        storage.save("subscription1", position("1"));
+        storage.save("subscription1", position("2"));
+        storage.save("subscription2", position("3"));
+
+        // When
+        storage.flush();
+
+        // Then
+        assertThat(recordingStorage.batches).containsExactly(2);
+        assertThat(recordingStorage.positions).containsOnly(entry("subscription1", position("2")), entry("subscription2", position("3")));
+        assertThat(storage.read("subscription1")).isEqualTo(position("2"));
+    }
+
+    @Test
+    void flush_does_nothing_when_no_positions_have_changed_since_last_flush() {
+        // Given
+        storage.save("subscription", position("1"));
+        storage.flush();
+
+        // When
+        storage.flush();
+
+        // Then
+        assertThat(recordingStorage.batches).containsExactly(1);
+    }
+
+    @Test
+    void delete_removes_position_that_is_not_yet_flushed() {
+        // Given
+        storage.save("subscription", position("1"));
+
+        // When
+        storage.delete("subscription");
+        storage.flush();
+
+        // Then
+        assertThat(storage.read("subscription")).isNull();
+        assertThat(recordingStorage.batches).isEmpty();
+    }
+
+    @Test
+    void positions_are_flushed_periodically() throws InterruptedException {
+        // Given
+        WriteBehindBlockingSubscriptionPositionStorage periodicallyFlushedStorage = new WriteBehindBlockingSubscriptionPositionStorage(recordingStorage, Duration.ofMillis(10));
+
+        // When
+        periodicallyFlushedStorage.save("subscription", position("1"));
+
+        // Then
+        for (int i = 0; i < 100 && recordingStorage.positions.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        periodicallyFlushedStorage.shutdown();
+        assertThat(recordingStorage.positions).containsOnly(entry("subscription", position("1")));
+    }
+
+    private static SubscriptionPosition position(String value) {
+        return new StringBasedSubscriptionPosition(value);
+    }
+
+    private static class RecordingStorage implements BlockingSubscriptionPositionStorage {
+        private final Map<String, SubscriptionPosition> positions = new ConcurrentHashMap<>();
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public SubscriptionPosition read(String subscriptionId) {
+            return positions.get(subscriptionId);
+        }
+
+        @Override
+        public SubscriptionPosition save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+            positions.put(subscriptionId, subscriptionPosition);
+            return subscriptionPosition;
+        }
+
+        @Override
+        public void saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+            batches.add(subscriptionPositions.size());
+            positions.putAll(subscriptionPositions);
+        }
+
+        @Override
+        public void delete(String subscriptionId) {
+            positions.remove(subscriptionId);
+        }
+    }
+}
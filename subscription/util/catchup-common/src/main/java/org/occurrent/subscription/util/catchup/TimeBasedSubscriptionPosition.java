@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.catchup;
+
+import org.occurrent.subscription.SubscriptionPosition;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.time.internal.RFC3339.RFC_3339_DATE_TIME_FORMATTER;
+
+/**
+ * A {@link SubscriptionPosition} that is used by the blocking and reactive catch-up subscriptions to replay historic events starting at a given time.
+ * The position is represented as an RFC 3339 timestamp.
+ */
+public class TimeBasedSubscriptionPosition implements SubscriptionPosition {
+
+    private static final OffsetDateTime BEGINNING_OF_TIME = Instant.EPOCH.atOffset(ZoneOffset.UTC);
+
+    private final OffsetDateTime time;
+
+    public TimeBasedSubscriptionPosition(OffsetDateTime time) {
+        requireNonNull(time, OffsetDateTime.class.getSimpleName() + " cannot be null");
+        this.time = time;
+    }
+
+    public static TimeBasedSubscriptionPosition beginningOfTime() {
+        return new TimeBasedSubscriptionPosition(BEGINNING_OF_TIME);
+    }
+
+    public static TimeBasedSubscriptionPosition from(OffsetDateTime time) {
+        return new TimeBasedSubscriptionPosition(time);
+    }
+
+    /**
+     * Parse a {@link SubscriptionPosition} that has been persisted by a subscription position storage
+     * (the storage may return the position as a generic string based subscription position).
+     *
+     * @return The {@link TimeBasedSubscriptionPosition} or {@code null} if {@code subscriptionPosition} is not a time based subscription position.
+     */
+    public static TimeBasedSubscriptionPosition parseOrNull(SubscriptionPosition subscriptionPosition) {
+        if (subscriptionPosition == null || subscriptionPosition instanceof TimeBasedSubscriptionPosition) {
+            return (TimeBasedSubscriptionPosition) subscriptionPosition;
+        }
+        String value = subscriptionPosition.asString();
+        // Positions of other subscriptions are typically JSON documents, avoid the exception when they're parsed
+        if (value == null || value.isEmpty() || !Character.isDigit(value.charAt(0))) {
+            return null;
+        }
+        try {
+            return new TimeBasedSubscriptionPosition(OffsetDateTime.from(RFC_3339_DATE_TIME_FORMATTER.parse(value)));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public boolean isBeginningOfTime() {
+        return BEGINNING_OF_TIME.equals(time);
+    }
+
+    public OffsetDateTime getTime() {
+        return time;
+    }
+
+    @Override
+    public String asString() {
+        return RFC_3339_DATE_TIME_FORMATTER.format(time);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TimeBasedSubscriptionPosition)) return false;
+        TimeBasedSubscriptionPosition that = (TimeBasedSubscriptionPosition) o;
+        return Objects.equals(time, that.time);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(time);
+    }
+
+    @Override
+    public String toString() {
+        return "TimeBasedSubscriptionPosition{" +
+                "time=" + time +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.catchup.internal;
+
+import io.cloudevents.CloudEvent;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands over events from the catch-up phase to the wrapped subscription. The global position of the wrapped subscription is recorded before the
+ * catch-up phase starts, and the wrapped subscription delivers all events written after this position once the catch-up phase has completed.
+ * While the catch-up phase is running, a wrapped subscription started at the recorded position reports the events it receives to this class.
+ * The catch-up phase skips these events since they are delivered by the wrapped subscription.
+ * <p>
+ * The hand-over depends only on the order in which the events were written, not on their time. An event that is read by the catch-up phase
+ * before it's received by the wrapped subscription is delivered by both.
+ * </p>
+ * <p>
+ * The events received by the wrapped subscription are forgotten once the catch-up phase has read them, and at most {@value #DEFAULT_MAX_NUMBER_OF_EVENTS}
+ * (by default) events that haven't been read yet are kept in memory. When the wrapped subscription is further ahead than that, the oldest events
+ * are evicted and are delivered by both the catch-up phase and the wrapped subscription (at-least-once delivery).
+ * </p>
+ */
+public class CatchupHandOver {
+    public static final int DEFAULT_MAX_NUMBER_OF_EVENTS = 10_000;
+
+    private final Map<List<String>, Boolean> receivedByWrappedSubscription;
+
+    public CatchupHandOver() {
+        this(DEFAULT_MAX_NUMBER_OF_EVENTS);
+    }
+
+    /**
+     * @param maxNumberOfEvents The maximum number of events received by the wrapped subscription, but not yet read by the catch-up phase, to keep in memory
+     */
+    public CatchupHandOver(int maxNumberOfEvents) {
+        if (maxNumberOfEvents < 1) {
+            throw new IllegalArgumentException("maxNumberOfEvents must be greater than 0");
+        }
+        this.receivedByWrappedSubscription = Collections.synchronizedMap(new LinkedHashMap<List<String>, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, Boolean> eldest) {
+                return size() > maxNumberOfEvents;
+            }
+        });
+    }
+
+    /**
+     * The wrapped subscription, started at the position recorded before the catch-up phase, received the event
+     */
+    public void receivedByWrappedSubscription(CloudEvent cloudEvent) {
+        receivedByWrappedSubscription.put(key(cloudEvent), Boolean.TRUE);
+    }
+
+    /**
+     * Called once for each event read by the catch-up phase, the event is forgotten afterwards.
+     *
+     * @return {@code true} if the event is delivered by the wrapped subscription once the catch-up phase has completed, {@code false} otherwise.
+     */
+    public boolean isDeliveredByWrappedSubscription(CloudEvent cloudEvent) {
+        return receivedByWrappedSubscription.remove(key(cloudEvent)) != null;
+    }
+
+    // A cloud event is uniquely identified by its id and source
+    private static List<String> key(CloudEvent cloudEvent) {
+        return Arrays.asList(cloudEvent.getId(), String.valueOf(cloudEvent.getSource()));
+    }
+}
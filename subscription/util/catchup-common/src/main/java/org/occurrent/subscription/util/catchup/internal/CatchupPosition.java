@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.catchup.internal;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.filter.Filter;
+import org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition;
+
+import java.time.OffsetDateTime;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.condition.Condition.exists;
+import static org.occurrent.condition.Condition.gt;
+import static org.occurrent.condition.Condition.gte;
+import static org.occurrent.filter.Filter.streamId;
+import static org.occurrent.filter.Filter.streamVersion;
+import static org.occurrent.filter.Filter.time;
+
+/**
+ * Keeps track of where the catch-up phase is when historic events are read in batches using keyset pagination on the unique key (time, streamId, streamVersion),
+ * which is the order of the {@code TIME_ASC} sort of the event store queries. The next batch starts at the events that are
+ * greater than the key of the last event, so several events with the same time are read once without keeping track of them.
+ * <p>
+ * Events without time can't be ordered by time, they are read in a separate query before the first batch when the catch-up phase starts from
+ * {@link TimeBasedSubscriptionPosition#beginningOfTime()}, and are not read otherwise.
+ * </p>
+ */
+public class CatchupPosition {
+    private final Filter filter;
+    private final TimeBasedSubscriptionPosition startPosition;
+    private OffsetDateTime lastTime;
+    private String lastStreamId;
+    private long lastStreamVersion;
+    private TimeBasedSubscriptionPosition resumePosition;
+    private boolean handedOver;
+
+    /**
+     * @param filter        The filter supplied by the user, or {@code null} if all events should be read
+     * @param startPosition The position to start the catch-up phase from
+     */
+    public CatchupPosition(Filter filter, TimeBasedSubscriptionPosition startPosition) {
+        requireNonNull(startPosition, TimeBasedSubscriptionPosition.class.getSimpleName() + " cannot be null");
+        this.filter = filter;
+        this.startPosition = startPosition;
+        this.resumePosition = startPosition;
+    }
+
+    /**
+     * @return The filter that finds the historic events without time, or {@code null} if they should not be read.
+     */
+    public Filter eventsWithoutTimeFilter() {
+        return startPosition.isBeginningOfTime() ? and(filter, time(exists(false))) : null;
+    }
+
+    /**
+     * @return The filter that finds the next batch of historic events (sorted by time, streamId and streamVersion)
+     */
+    public Filter nextBatchFilter() {
+        final Filter batchFilter;
+        if (lastTime != null) {
+            Filter afterLastEventInStream = streamId(lastStreamId).and(streamVersion(gt(lastStreamVersion)));
+            batchFilter = and(filter, time(gt(lastTime)).or(time(lastTime).and(streamId(gt(lastStreamId)).or(afterLastEventInStream))));
+        } else if (startPosition.isBeginningOfTime()) {
+            batchFilter = and(filter, time(exists(true)));
+        } else {
+            batchFilter = and(filter, time(gte(startPosition.getTime())));
+        }
+        return batchFilter;
+    }
+
+    /**
+     * The event was read and delivered by the catch-up phase
+     */
+    public void replayed(CloudEvent cloudEvent) {
+        read(cloudEvent);
+        if (!handedOver && lastTime != null) {
+            resumePosition = TimeBasedSubscriptionPosition.from(lastTime);
+        }
+    }
+
+    /**
+     * The event was read by the catch-up phase but is delivered by the wrapped subscription once the catch-up phase has completed
+     * (see {@link CatchupHandOver}).
+     */
+    public void handedOver(CloudEvent cloudEvent) {
+        read(cloudEvent);
+        // The catch-up phase must be resumed from before this event if it's interrupted, since the event hasn't been delivered yet
+        handedOver = true;
+    }
+
+    /**
+     * @return The position to resume the catch-up phase from if it's interrupted. Events after this position may be delivered again.
+     */
+    public TimeBasedSubscriptionPosition resumePosition() {
+        return resumePosition;
+    }
+
+    private void read(CloudEvent cloudEvent) {
+        OffsetDateTime time = cloudEvent.getTime();
+        if (time == null) {
+            return;
+        }
+        lastTime = time;
+        lastStreamId = requireNonNull((String) cloudEvent.getExtension(STREAM_ID), STREAM_ID + " cannot be null");
+        lastStreamVersion = ((Number) requireNonNull(cloudEvent.getExtension(STREAM_VERSION), STREAM_VERSION + " cannot be null")).longValue();
+    }
+
+    private static Filter and(Filter filter, Filter additionalFilter) {
+        return filter == null ? additionalFilter : filter.and(additionalFilter);
+    }
+}
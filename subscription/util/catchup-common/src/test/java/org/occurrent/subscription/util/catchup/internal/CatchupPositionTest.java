@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.catchup.internal;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.Test;
+import org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.condition.Condition.exists;
+import static org.occurrent.condition.Condition.gt;
+import static org.occurrent.condition.Condition.gte;
+import static org.occurrent.filter.Filter.streamId;
+import static org.occurrent.filter.Filter.streamVersion;
+import static org.occurrent.filter.Filter.time;
+import static org.occurrent.filter.Filter.type;
+
+class CatchupPositionTest {
+
+    private static final OffsetDateTime TIME = OffsetDateTime.of(2020, 8, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    void events_without_time_are_only_read_when_starting_from_the_beginning_of_time() {
+        // Given
+        CatchupPosition fromBeginningOfTime = new CatchupPosition(type("type"), TimeBasedSubscriptionPosition.beginningOfTime());
+        CatchupPosition fromTime = new CatchupPosition(type("type"), TimeBasedSubscriptionPosition.from(TIME));
+
+        // When
+        // Then
+        assertThat(fromBeginningOfTime.eventsWithoutTimeFilter()).isEqualTo(type("type").and(time(exists(false))));
+        assertThat(fromBeginningOfTime.nextBatchFilter()).isEqualTo(type("type").and(time(exists(true))));
+        assertThat(fromTime.eventsWithoutTimeFilter()).isNull();
+        assertThat(fromTime.nextBatchFilter()).isEqualTo(type("type").and(time(gte(TIME))));
+    }
+
+    @Test
+    void next_batch_starts_after_the_time_stream_id_and_stream_version_of_the_last_event() {
+        // Given
+        CatchupPosition catchupPosition = new CatchupPosition(null, TimeBasedSubscriptionPosition.beginningOfTime());
+
+        // When
+        catchupPosition.replayed(cloudEvent("1", TIME.minusSeconds(1)));
+        catchupPosition.replayed(cloudEvent("2", TIME));
+        catchupPosition.replayed(cloudEvent("3", null));
+
+        // Then
+        assertThat(catchupPosition.nextBatchFilter()).isEqualTo(time(gt(TIME)).or(time(TIME).and(streamId(gt("stream2")).or(streamId("stream2").and(streamVersion(gt(2L)))))));
+        assertThat(catchupPosition.resumePosition()).isEqualTo(TimeBasedSubscriptionPosition.from(TIME));
+    }
+
+    @Test
+    void resume_position_is_not_moved_past_an_event_that_is_handed_over_to_the_wrapped_subscription() {
+        // Given
+        CatchupPosition catchupPosition = new CatchupPosition(null, TimeBasedSubscriptionPosition.beginningOfTime());
+        catchupPosition.replayed(cloudEvent("1", TIME));
+
+        // When
+        catchupPosition.handedOver(cloudEvent("2", TIME.plusSeconds(1)));
+        catchupPosition.replayed(cloudEvent("3", TIME.plusSeconds(2)));
+
+        // Then
+        assertThat(catchupPosition.resumePosition()).isEqualTo(TimeBasedSubscriptionPosition.from(TIME));
+        assertThat(catchupPosition.nextBatchFilter()).isEqualTo(time(gt(TIME.plusSeconds(2))).or(time(TIME.plusSeconds(2)).and(streamId(gt("stream3")).or(streamId("stream3").and(streamVersion(gt(3L)))))));
+    }
+
+    @Test
+    void hand_over_identifies_events_by_id_and_source() {
+        // Given
+        CatchupHandOver handOver = new CatchupHandOver();
+
+        // When
+        handOver.receivedByWrappedSubscription(cloudEvent("1", TIME));
+
+        // Then
+        assertThat(handOver.isDeliveredByWrappedSubscription(cloudEvent("1", TIME))).isTrue();
+        assertThat(handOver.isDeliveredByWrappedSubscription(cloudEvent("2", TIME))).isFalse();
+        assertThat(handOver.isDeliveredByWrappedSubscription(CloudEventBuilder.v1().withId("1").withSource(URI.create("urn:other")).withType("type").build())).isFalse();
+    }
+
+    @Test
+    void hand_over_forgets_events_once_they_are_read_by_the_catchup_phase() {
+        // Given
+        CatchupHandOver handOver = new CatchupHandOver();
+        handOver.receivedByWrappedSubscription(cloudEvent("1", TIME));
+
+        // When
+        boolean deliveredByWrappedSubscription = handOver.isDeliveredByWrappedSubscription(cloudEvent("1", TIME));
+
+        // Then
+        assertThat(deliveredByWrappedSubscription).isTrue();
+        assertThat(handOver.isDeliveredByWrappedSubscription(cloudEvent("1", TIME))).isFalse();
+    }
+
+    @Test
+    void hand_over_evicts_the_oldest_events_when_the_max_number_of_events_is_exceeded() {
+        // Given
+        CatchupHandOver handOver = new CatchupHandOver(2);
+
+        // When
+        handOver.receivedByWrappedSubscription(cloudEvent("1", TIME));
+        handOver.receivedByWrappedSubscription(cloudEvent("2", TIME));
+        handOver.receivedByWrappedSubscription(cloudEvent("3", TIME));
+
+        // Then
+        assertThat(handOver.isDeliveredByWrappedSubscription(cloudEvent("1", TIME))).isFalse();
+        assertThat(handOver.isDeliveredByWrappedSubscription(cloudEvent("2", TIME))).isTrue();
+        assertThat(handOver.isDeliveredByWrappedSubscription(cloudEvent("3", TIME))).isTrue();
+    }
+
+    private static CloudEvent cloudEvent(String id, OffsetDateTime time) {
+        return CloudEventBuilder.v1().withId(id).withSource(URI.create("urn:test")).withType("type").withTime(time)
+                .withExtension(STREAM_ID, "stream" + id).withExtension(STREAM_VERSION, Long.parseLong(id)).build();
+    }
+}
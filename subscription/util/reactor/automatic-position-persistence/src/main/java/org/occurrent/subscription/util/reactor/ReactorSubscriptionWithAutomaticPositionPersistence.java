@@ -17,15 +17,26 @@
 package org.occurrent.subscription.util.reactor;
 
 import io.cloudevents.CloudEvent;
+import org.occurrent.subscription.BatchPolicy;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.PositionPersistencePolicy;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionFilter;
 import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.reactor.PositionAwareReactorSubscription;
 import org.occurrent.subscription.api.reactor.ReactorSubscriptionPositionStorage;
+import org.occurrent.subscription.internal.PositionPersistenceTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
@@ -35,25 +46,40 @@ import static java.util.Objects.requireNonNull;
  * after an "action" (the "function" in this method {@link ReactorSubscriptionWithAutomaticPositionPersistence#subscribe(String, Function)}) has completed successfully.
  * It stores the subscription position in a {@link ReactorSubscriptionPositionStorage} implementation.
  * <p>
- * Note that this implementation stores the subscription position after _every_ action. If you have a lot of events and duplication is not
- * that much of a deal consider cloning/extending this class and add your own customizations. Use the methods provided by a {@link ReactorSubscriptionPositionStorage}
- * implementation.
+ * By default the subscription position is stored after _every_ action. If you have a lot of events and duplication is not
+ * that much of a deal, supply a {@link PositionPersistencePolicy} that persists the position less frequently. The latest processed position
+ * is always persisted when the subscription completes or is cancelled.
  */
 public class ReactorSubscriptionWithAutomaticPositionPersistence {
     private static final Logger log = LoggerFactory.getLogger(ReactorSubscriptionWithAutomaticPositionPersistence.class);
     private final PositionAwareReactorSubscription subscription;
     private final ReactorSubscriptionPositionStorage storage;
+    private final PositionPersistencePolicy positionPersistencePolicy;
 
     public ReactorSubscriptionWithAutomaticPositionPersistence(PositionAwareReactorSubscription subscription, ReactorSubscriptionPositionStorage storage) {
-        this.subscription = subscription;
-        this.storage = storage;
+        this(subscription, storage, PositionPersistencePolicy.everyEvent());
+    }
+
+    /**
+     * Create a subscription that persists the subscription position according to the supplied {@link PositionPersistencePolicy}.
+     *
+     * @param subscription              The subscription that will read events from the event store
+     * @param storage                   The {@link ReactorSubscriptionPositionStorage} that'll be used to persist the stream position
+     * @param positionPersistencePolicy The {@link PositionPersistencePolicy} that decides when the position is persisted
+     */
+    public ReactorSubscriptionWithAutomaticPositionPersistence(PositionAwareReactorSubscription subscription, ReactorSubscriptionPositionStorage storage,
+                                                               PositionPersistencePolicy positionPersistencePolicy) {
         requireNonNull(subscription, PositionAwareReactorSubscription.class.getSimpleName() + " cannot be null");
         requireNonNull(storage, ReactorSubscriptionPositionStorage.class.getSimpleName() + " cannot be null");
+        requireNonNull(positionPersistencePolicy, PositionPersistencePolicy.class.getSimpleName() + " cannot be null");
+        this.subscription = subscription;
+        this.storage = storage;
+        this.positionPersistencePolicy = positionPersistencePolicy;
     }
 
     /**
-     * A convenience function that automatically starts from the latest persisted subscription position and saves the new position after each call to {@code action}
-     * has completed successfully. If you don't want to save the position after every event then don't use this method and instead save the position yourself by calling
+     * A convenience function that automatically starts from the latest persisted subscription position and saves the new position after calls to {@code action}
+     * have completed successfully, according to the {@link PositionPersistencePolicy}. If you want full control of when the position is saved then don't use this method and instead save the position yourself by calling
      * {@link ReactorSubscriptionPositionStorage#save(String, SubscriptionPosition)} when appropriate.
      * <p>
      * It's VERY important that side-effects take place within the <code>action</code> function
@@ -70,8 +96,8 @@ public class ReactorSubscriptionWithAutomaticPositionPersistence {
     }
 
     /**
-     * A convenience function that automatically starts from the latest persisted subscription position and saves the new position after each call to {@code action}
-     * has completed successfully. If you don't want to save the position after every event then don't use this method and instead save the position yourself by calling
+     * A convenience function that automatically starts from the latest persisted subscription position and saves the new position after calls to {@code action}
+     * have completed successfully, according to the {@link PositionPersistencePolicy}. If you want full control of when the position is saved then don't use this method and instead save the position yourself by calling
      * {@link ReactorSubscriptionPositionStorage#save(String, SubscriptionPosition)} when appropriate.
      *
      * <p>
@@ -90,10 +116,66 @@ public class ReactorSubscriptionWithAutomaticPositionPersistence {
                 .doOnNext(startAt -> log.info("Starting subscription {} from subscription position {}", subscriptionId, startAt.toString()))
                 .flatMapMany(startAt -> subscription.subscribe(filter, startAt))
                 .flatMap(cloudEventWithStreamPosition -> action.apply(cloudEventWithStreamPosition).thenReturn(cloudEventWithStreamPosition))
-                .flatMap(cloudEventWithStreamPosition -> storage.save(subscriptionId, cloudEventWithStreamPosition.getStreamPosition()).thenReturn(cloudEventWithStreamPosition))
+                .transform(processedCloudEvents -> persistSubscriptionPositions(subscriptionId, processedCloudEvents))
                 .then();
     }
 
+    /**
+     * A convenience function that automatically starts from the latest persisted subscription position, delivers events in batches as specified
+     * by the {@link BatchPolicy} and saves the position of the last event in a batch after calls to {@code action} have completed successfully,
+     * according to the {@link PositionPersistencePolicy}. Batches are processed one at a time, in order. Note that a {@link PositionPersistencePolicy}
+     * based on the number of events counts batches and not the individual events.
+     *
+     * @param subscriptionId The id of the subscription, must be unique!
+     * @param filter         The {@link SubscriptionFilter} to use to limit the events receive by the event store
+     * @param batchPolicy    Specifies the max size of a batch and how long to wait for a batch to fill up.
+     * @param action         This action will be invoked for each batch of cloud events that are stored in the EventStore.
+     * @return A {@link Mono} that completes when the subscription completes
+     */
+    public Mono<Void> subscribeBatch(String subscriptionId, SubscriptionFilter filter, BatchPolicy batchPolicy, Function<List<CloudEvent>, Mono<Void>> action) {
+        requireNonNull(subscriptionId, "Subscription id cannot be null");
+        requireNonNull(batchPolicy, BatchPolicy.class.getSimpleName() + " cannot be null");
+        return findStartAtForSubscription(subscriptionId)
+                .doOnNext(startAt -> log.info("Starting subscription {} from subscription position {}", subscriptionId, startAt.toString()))
+                .flatMapMany(startAt -> subscription.subscribeBatch(filter, startAt, batchPolicy))
+                .concatMap(cloudEventsWithStreamPosition -> action.apply(Collections.unmodifiableList(cloudEventsWithStreamPosition))
+                        .thenReturn(cloudEventsWithStreamPosition.get(cloudEventsWithStreamPosition.size() - 1)))
+                .transform(processedCloudEvents -> persistSubscriptionPositions(subscriptionId, processedCloudEvents))
+                .then();
+    }
+
+    private Flux<SubscriptionPosition> persistSubscriptionPositions(String subscriptionId, Flux<CloudEventWithSubscriptionPosition> processedCloudEvents) {
+        PositionPersistenceTracker tracker = new PositionPersistenceTracker(positionPersistencePolicy, Clock.systemUTC());
+        Flux<Optional<SubscriptionPosition>> signals = processedCloudEvents.map(cloudEvent -> Optional.of(cloudEvent.getStreamPosition()));
+        if (positionPersistencePolicy.isTimeBased()) {
+            // Ticks (empty optionals) make sure that time based thresholds are checked even when no events are received. Events and ticks are merged
+            // into a single stream so that the policy is checked, and positions are written, in order.
+            Duration checkInterval = PositionPersistenceTracker.checkInterval(positionPersistencePolicy);
+            signals = signals.publish(shared -> Flux.merge(shared, Flux.interval(checkInterval).takeUntilOther(shared.then()).map(__ -> Optional.empty())));
+        }
+
+        return signals
+                .<SubscriptionPosition>handle((signal, sink) -> {
+                    signal.ifPresent(tracker::processed);
+                    SubscriptionPosition subscriptionPosition = tracker.positionToPersist();
+                    if (subscriptionPosition != null) {
+                        // A failed write terminates the subscription so the position can be regarded as persisted once it's been handed out
+                        tracker.persisted(subscriptionPosition);
+                        sink.next(subscriptionPosition);
+                    }
+                })
+                .concatWith(Mono.fromSupplier(tracker::unpersistedPosition))
+                .concatMap(subscriptionPosition -> storage.save(subscriptionId, subscriptionPosition))
+                .doFinally(signalType -> {
+                    SubscriptionPosition unpersistedPosition = tracker.unpersistedPosition();
+                    if (signalType == SignalType.CANCEL && unpersistedPosition != null) {
+                        // There's no subscriber to propagate a failure to after cancellation so it's logged instead
+                        storage.save(subscriptionId, unpersistedPosition).subscribe(null, error ->
+                                log.error("Failed to persist subscription position {} of subscription {} after the subscription was cancelled", unpersistedPosition, subscriptionId, error));
+                    }
+                });
+    }
+
     /**
      * Find the calculate the current {@link StartAt} value for the {@code subscriptionId}. It creates the {@link StartAt} instance from the
      * global subscription position (from {@link PositionAwareReactorSubscription#globalSubscriptionPosition()}) if no
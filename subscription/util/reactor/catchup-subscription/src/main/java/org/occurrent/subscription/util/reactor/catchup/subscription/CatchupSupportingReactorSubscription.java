@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.reactor.catchup.subscription;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.eventstore.api.reactor.EventStoreQueries;
+import org.occurrent.eventstore.api.reactor.EventStoreQueries.SortBy;
+import org.occurrent.filter.Filter;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.StartAt.StartAtSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionFilter;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.reactor.PositionAwareReactorSubscription;
+import org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition;
+import org.occurrent.subscription.util.catchup.internal.CatchupHandOver;
+import org.occurrent.subscription.util.catchup.internal.CatchupPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link PositionAwareReactorSubscription} that replays historic events from the event store (the "catch-up" phase) before it continues with the
+ * wrapped subscription when it's started at a {@link TimeBasedSubscriptionPosition}. Other start positions are delegated directly to the wrapped subscription.
+ * <p>
+ * Historic events are read in batches of {@code batchSize} using keyset pagination on the "time", "streamId" and "streamVersion" fields (each query
+ * starts where the previous one ended), so it's recommended to create a compound index on these fields in the event store. The next batch is not queried until the downstream subscriber has requested
+ * the events of the current batch, so the speed of the catch-up phase is bounded by the demand of the subscriber and no events are buffered.
+ * Historic events without time are replayed first, and only when starting from {@link TimeBasedSubscriptionPosition#beginningOfTime()}, since they
+ * can't be ordered by time.
+ * </p>
+ * <p>
+ * Before the catch-up phase starts, the {@link PositionAwareReactorSubscription#globalSubscriptionPosition()} of the wrapped subscription is recorded.
+ * Once the catch-up phase has completed, the wrapped subscription is started at this position, so every event written after the catch-up phase started
+ * is delivered, regardless of its time. The catch-up phase skips the events that a temporary wrapped subscription, also started at the recorded position,
+ * has received (see {@link CatchupHandOver}). An event that the catch-up phase reads before the temporary subscription has received it is delivered twice.
+ * </p>
+ * <p>
+ * The events replayed during the catch-up phase have a {@link TimeBasedSubscriptionPosition}. Use a {@code ReactorSubscriptionWithAutomaticPositionPersistence}
+ * to checkpoint the positions in a {@link org.occurrent.subscription.api.reactor.ReactorSubscriptionPositionStorage}, and use a
+ * {@code PositionPersistencePolicy} to persist the positions in batches. A catch-up phase that is interrupted is then resumed from the
+ * last persisted position (events after that position may be delivered again). To replay all historic events for a new subscription, save
+ * {@link TimeBasedSubscriptionPosition#beginningOfTime()} as the position of the subscription before it's started.
+ * </p>
+ */
+public class CatchupSupportingReactorSubscription implements PositionAwareReactorSubscription {
+    private static final Logger log = LoggerFactory.getLogger(CatchupSupportingReactorSubscription.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final PositionAwareReactorSubscription subscription;
+    private final EventStoreQueries eventStoreQueries;
+    private final int batchSize;
+
+    /**
+     * Create a catch-up subscription that reads 1000 historic events per query.
+     *
+     * @param subscription      The subscription to use once the catch-up phase has completed
+     * @param eventStoreQueries The {@link EventStoreQueries} used to read historic events
+     */
+    public CatchupSupportingReactorSubscription(PositionAwareReactorSubscription subscription, EventStoreQueries eventStoreQueries) {
+        this(subscription, eventStoreQueries, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param subscription      The subscription to use once the catch-up phase has completed
+     * @param eventStoreQueries The {@link EventStoreQueries} used to read historic events
+     * @param batchSize         The maximum number of historic events that are read by each query to the event store
+     */
+    public CatchupSupportingReactorSubscription(PositionAwareReactorSubscription subscription, EventStoreQueries eventStoreQueries, int batchSize) {
+        requireNonNull(subscription, PositionAwareReactorSubscription.class.getSimpleName() + " cannot be null");
+        requireNonNull(eventStoreQueries, EventStoreQueries.class.getSimpleName() + " cannot be null");
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+        this.subscription = subscription;
+        this.eventStoreQueries = eventStoreQueries;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Flux<CloudEventWithSubscriptionPosition> subscribe(SubscriptionFilter filter, StartAt startAt) {
+        TimeBasedSubscriptionPosition subscriptionPosition = startAt instanceof StartAtSubscriptionPosition ?
+                TimeBasedSubscriptionPosition.parseOrNull(((StartAtSubscriptionPosition) startAt).subscriptionPosition) : null;
+        if (subscriptionPosition == null) {
+            return subscription.subscribe(filter, startAt);
+        } else if (filter != null && !(filter instanceof OccurrentSubscriptionFilter)) {
+            return Flux.error(new IllegalArgumentException("Only " + OccurrentSubscriptionFilter.class.getSimpleName() + " is supported when catching up"));
+        }
+
+        Filter userSuppliedFilter = filter == null ? null : ((OccurrentSubscriptionFilter) filter).filter;
+        // The global subscription position is recorded before the catch-up phase starts so that events written during the catch-up phase are not missed
+        return subscription.globalSubscriptionPosition().flatMapMany(globalSubscriptionPosition -> {
+            StartAt handOverPosition = StartAt.subscriptionPosition(globalSubscriptionPosition);
+            CatchupHandOver handOver = new CatchupHandOver();
+            Flux<CloudEventWithSubscriptionPosition> historicEvents = Flux.using(
+                    // If the temporary subscription fails, the events written during the catch-up phase are delivered by both phases
+                    () -> subscription.subscribe(filter, handOverPosition).subscribe(handOver::receivedByWrappedSubscription,
+                            throwable -> log.warn("Temporary subscription used to hand over from the catch-up phase failed, events written during the catch-up phase may be delivered twice", throwable)),
+                    __ -> replayHistoricEvents(new CatchupPosition(userSuppliedFilter, subscriptionPosition), handOver),
+                    Disposable::dispose);
+            return historicEvents.concatWith(subscription.subscribe(filter, handOverPosition));
+        });
+    }
+
+    /**
+     * Delegates to the wrapped subscription
+     */
+    @Override
+    public Mono<SubscriptionPosition> globalSubscriptionPosition() {
+        return subscription.globalSubscriptionPosition();
+    }
+
+    private Flux<CloudEventWithSubscriptionPosition> replayHistoricEvents(CatchupPosition catchupPosition, CatchupHandOver handOver) {
+        // Skip the events that are delivered by the wrapped subscription once the catch-up phase has completed
+        BiConsumer<CloudEvent, SynchronousSink<CloudEventWithSubscriptionPosition>> replay = (cloudEvent, sink) -> {
+            if (handOver.isDeliveredByWrappedSubscription(cloudEvent)) {
+                catchupPosition.handedOver(cloudEvent);
+            } else {
+                catchupPosition.replayed(cloudEvent);
+                sink.next(new CloudEventWithSubscriptionPosition(cloudEvent, catchupPosition.resumePosition()));
+            }
+        };
+
+        Filter eventsWithoutTimeFilter = catchupPosition.eventsWithoutTimeFilter();
+        Flux<CloudEventWithSubscriptionPosition> eventsWithoutTime = eventsWithoutTimeFilter == null ? Flux.empty() :
+                eventStoreQueries.query(eventsWithoutTimeFilter, SortBy.NATURAL_ASC).handle(replay);
+
+        AtomicInteger numberOfEventsInBatch = new AtomicInteger();
+        Flux<CloudEventWithSubscriptionPosition> eventsWithTime = Flux.defer(() -> {
+            numberOfEventsInBatch.set(0);
+            return eventStoreQueries.query(catchupPosition.nextBatchFilter(), 0, batchSize, SortBy.TIME_ASC);
+        })
+                .doOnNext(__ -> numberOfEventsInBatch.incrementAndGet())
+                .handle(replay)
+                // Query the next batch once all events in the current batch have been requested, as long as the batches are full
+                .repeat(() -> numberOfEventsInBatch.get() == batchSize);
+        return eventsWithoutTime.concatWith(eventsWithTime);
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.reactor.catchup.subscription;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ConnectionString;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.occurrent.domain.DomainEvent;
+import org.occurrent.domain.NameDefined;
+import org.occurrent.domain.NameWasChanged;
+import org.occurrent.eventstore.mongodb.spring.reactor.EventStoreConfig;
+import org.occurrent.eventstore.mongodb.spring.reactor.SpringReactorMongoEventStore;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.subscription.CloudEventWithSubscriptionPosition;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.mongodb.spring.reactor.SpringReactorSubscriptionForMongoDB;
+import org.occurrent.subscription.util.catchup.TimeBasedSubscriptionPosition;
+import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.time.ZoneOffset.UTC;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.awaitility.Durations.FIVE_SECONDS;
+import static org.occurrent.functional.CheckedFunction.unchecked;
+import static org.occurrent.time.TimeConversion.toLocalDateTime;
+
+@Testcontainers
+@Timeout(15000)
+public class CatchupSupportingReactorSubscriptionTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.2.8");
+
+    @RegisterExtension
+    FlushMongoDBExtension flushMongoDBExtension = new FlushMongoDBExtension(new ConnectionString(mongoDBContainer.getReplicaSetUrl()));
+
+    private SpringReactorMongoEventStore mongoEventStore;
+    private CatchupSupportingReactorSubscription subscription;
+    private ObjectMapper objectMapper;
+    private MongoClient mongoClient;
+    private CopyOnWriteArrayList<Disposable> disposables;
+
+    @BeforeEach
+    void create_mongo_event_store() {
+        ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl() + ".events");
+        mongoClient = MongoClients.create(connectionString);
+        ReactiveMongoTemplate reactiveMongoTemplate = new ReactiveMongoTemplate(mongoClient, requireNonNull(connectionString.getDatabase()));
+        ReactiveMongoTransactionManager transactionManager = new ReactiveMongoTransactionManager(new SimpleReactiveMongoDatabaseFactory(mongoClient, requireNonNull(connectionString.getDatabase())));
+        EventStoreConfig eventStoreConfig = new EventStoreConfig.Builder().eventStoreCollectionName("events").transactionConfig(transactionManager).timeRepresentation(TimeRepresentation.DATE).build();
+        mongoEventStore = new SpringReactorMongoEventStore(reactiveMongoTemplate, eventStoreConfig);
+        SpringReactorSubscriptionForMongoDB springReactorSubscriptionForMongoDB = new SpringReactorSubscriptionForMongoDB(reactiveMongoTemplate, "events", TimeRepresentation.DATE);
+        subscription = new CatchupSupportingReactorSubscription(springReactorSubscriptionForMongoDB, mongoEventStore, 2);
+        objectMapper = new ObjectMapper();
+        disposables = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    void dispose() {
+        disposables.forEach(Disposable::dispose);
+        mongoClient.close();
+    }
+
+    @Test
+    void replays_historic_events_in_batches_and_then_continues_with_new_events() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.minusSeconds(5), "name3");
+        mongoEventStore.write("1", 0, serialize(nameDefined1)).block();
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1)).block();
+
+        CopyOnWriteArrayList<CloudEventWithSubscriptionPosition> state = new CopyOnWriteArrayList<>();
+        disposables.add(subscription.subscribe(StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime())).subscribe(state::add));
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(3));
+
+        // When
+        NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), LocalDateTime.now().plusSeconds(1), "name4");
+        mongoEventStore.write("2", 1, serialize(nameWasChanged2)).block();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(4));
+        assertThat(state).extracting(CloudEvent::getId).doesNotHaveDuplicates().endsWith(nameWasChanged1.getEventId(), nameWasChanged2.getEventId());
+        assertThat(state.subList(0, 3)).extracting(CloudEventWithSubscriptionPosition::getStreamPosition).hasOnlyElementsOfType(TimeBasedSubscriptionPosition.class);
+    }
+
+    @Test
+    void catchup_is_resumed_from_a_persisted_time_based_subscription_position() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(8), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.minusSeconds(5), "name3");
+        mongoEventStore.write("1", 0, serialize(nameDefined1)).block();
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1)).block();
+        // Position storages typically return the position as a string
+        StringBasedSubscriptionPosition persistedPosition = new StringBasedSubscriptionPosition(TimeBasedSubscriptionPosition.from(toLocalDateTime(nameDefined2.getTimestamp()).atOffset(UTC)).asString());
+
+        // When
+        List<CloudEventWithSubscriptionPosition> cloudEvents = subscription.subscribe(StartAt.subscriptionPosition(persistedPosition)).take(2).collectList().block(Duration.ofSeconds(5));
+
+        // Then
+        assertThat(cloudEvents).extracting(CloudEvent::getId).containsExactly(nameDefined2.getEventId(), nameWasChanged1.getEventId());
+    }
+
+    @Test
+    void catchup_speed_is_bounded_by_downstream_demand() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(9), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.minusSeconds(8), "name3");
+        mongoEventStore.write("1", 0, serialize(nameDefined1)).block();
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1)).block();
+
+        // When
+        List<CloudEventWithSubscriptionPosition> cloudEvents = subscription.subscribe(StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime()))
+                .limitRate(1)
+                .take(1)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        // Then
+        assertThat(cloudEvents).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId());
+    }
+
+    @Test
+    void event_written_after_the_catchup_phase_with_a_time_before_the_catchup_phase_started_is_delivered_by_the_wrapped_subscription() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        mongoEventStore.write("1", 0, serialize(nameDefined1)).block();
+
+        CopyOnWriteArrayList<CloudEventWithSubscriptionPosition> state = new CopyOnWriteArrayList<>();
+        disposables.add(subscription.subscribe(StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime())).subscribe(state::add));
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(1));
+
+        // When
+        // The clock of the writer is one minute behind
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), LocalDateTime.now().minusMinutes(1), "name2");
+        mongoEventStore.write("1", 1, serialize(nameWasChanged1)).block();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameWasChanged1.getEventId()));
+    }
+
+    @Test
+    void backdated_event_written_during_the_catchup_phase_is_delivered_once() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(5), "name2");
+        NameDefined nameDefined3 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(4), "name3");
+        mongoEventStore.write("1", 0, serialize(nameDefined1)).block();
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+        mongoEventStore.write("3", 0, serialize(nameDefined3)).block();
+        // Written when the catch-up phase has passed its time
+        NameWasChanged backdated = new NameWasChanged(UUID.randomUUID().toString(), now.minusDays(1), "name4");
+
+        CopyOnWriteArrayList<CloudEventWithSubscriptionPosition> state = new CopyOnWriteArrayList<>();
+        AtomicBoolean written = new AtomicBoolean();
+
+        // When
+        disposables.add(subscription.subscribe(StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime()))
+                .concatMap(cloudEvent -> written.compareAndSet(false, true) ? mongoEventStore.write("1", 1, serialize(backdated)).thenReturn(cloudEvent) : Mono.just(cloudEvent))
+                .subscribe(state::add));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId(), nameDefined3.getEventId(), backdated.getEventId()));
+    }
+
+    @Test
+    void event_written_during_the_catchup_phase_with_a_time_ahead_of_the_catchup_phase_is_delivered_once() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(5), "name2");
+        NameDefined nameDefined3 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(4), "name3");
+        mongoEventStore.write("1", 0, serialize(nameDefined1)).block();
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+        mongoEventStore.write("3", 0, serialize(nameDefined3)).block();
+        // The clock of the writer is one hour ahead, so the event is read by the catch-up phase as well
+        NameWasChanged skewed = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name4");
+
+        CopyOnWriteArrayList<CloudEventWithSubscriptionPosition> state = new CopyOnWriteArrayList<>();
+        AtomicBoolean written = new AtomicBoolean();
+
+        // When
+        disposables.add(subscription.subscribe(StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime()))
+                // Give the wrapped subscription time to receive the event before the catch-up phase reads it
+                .concatMap(cloudEvent -> written.compareAndSet(false, true) ?
+                        mongoEventStore.write("1", 1, serialize(skewed)).then(Mono.delay(Duration.ofMillis(500))).thenReturn(cloudEvent) : Mono.just(cloudEvent), 1)
+                .subscribe(state::add));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId(), nameDefined3.getEventId(), skewed.getEventId()));
+    }
+
+    @Test
+    void events_without_time_are_delivered_by_the_catchup_phase_and_the_wrapped_subscription() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(10), "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.minusSeconds(5), "name2");
+        mongoEventStore.write("1", 0, serializeWithoutTime(nameDefined1)).block();
+        mongoEventStore.write("2", 0, serialize(nameDefined2)).block();
+
+        CopyOnWriteArrayList<CloudEventWithSubscriptionPosition> state = new CopyOnWriteArrayList<>();
+        disposables.add(subscription.subscribe(StartAt.subscriptionPosition(TimeBasedSubscriptionPosition.beginningOfTime())).subscribe(state::add));
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(2));
+
+        // When
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now, "name3");
+        mongoEventStore.write("1", 1, serializeWithoutTime(nameWasChanged1)).block();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameDefined2.getEventId(), nameWasChanged1.getEventId()));
+    }
+
+    private Flux<CloudEvent> serialize(DomainEvent e) {
+        return Flux.just(CloudEventBuilder.v1()
+                .withId(e.getEventId())
+                .withSource(URI.create("http://name"))
+                .withType(e.getClass().getName())
+                .withTime(toLocalDateTime(e.getTimestamp()).atOffset(UTC))
+                .withSubject(e.getName())
+                .withDataContentType("application/json")
+                .withData(unchecked(objectMapper::writeValueAsBytes).apply(e))
+                .build());
+    }
+
+    private Flux<CloudEvent> serializeWithoutTime(DomainEvent e) {
+        return Flux.just(CloudEventBuilder.v1()
+                .withId(e.getEventId())
+                .withSource(URI.create("http://name"))
+                .withType(e.getClass().getName())
+                .withSubject(e.getName())
+                .withDataContentType("application/json")
+                .withData(unchecked(objectMapper::writeValueAsBytes).apply(e))
+                .build());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.reactor.writebehind;
+
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.reactor.ReactorSubscriptionPositionStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.UnicastProcessor;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link ReactorSubscriptionPositionStorage} that decorates another {@link ReactorSubscriptionPositionStorage} and coalesces writes.
+ * Saved positions are kept in memory (the latest position for each subscription wins) and all positions that have changed since the last flush
+ * are written to the underlying storage using a single call to {@link ReactorSubscriptionPositionStorage#saveAll(Map)} every {@code flushInterval}.
+ * This reduces the number of writes to the underlying storage from one per event to one per flush interval, regardless of the number of subscriptions.
+ * <p>
+ * {@link #read(String)} returns positions that are not yet flushed so a subscription always reads its own writes. Note that positions that are not yet
+ * flushed are lost if the process crashes, which means that more events may be redelivered when the subscription is restarted. Call {@link #shutdown()}
+ * to flush all positions when the application is stopped.
+ * </p>
+ */
+public class WriteBehindReactorSubscriptionPositionStorage implements ReactorSubscriptionPositionStorage {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindReactorSubscriptionPositionStorage.class);
+
+    private final ReactorSubscriptionPositionStorage storage;
+    private final Map<String, SubscriptionPosition> unflushedPositions = new ConcurrentHashMap<>();
+    // Flushes and deletes are executed one at a time so that a flush never writes a position that has been deleted while flushing
+    private final FluxSink<SerializedOperation> serializedOperations;
+    private final Disposable serializedOperationsSubscription;
+    private final Disposable periodicFlush;
+
+    /**
+     * Create a {@link WriteBehindReactorSubscriptionPositionStorage} that writes positions to the supplied {@code storage} every {@code flushInterval}.
+     *
+     * @param storage       The {@link ReactorSubscriptionPositionStorage} that'll be used to persist the subscription positions
+     * @param flushInterval How often positions are written to the {@code storage}
+     */
+    public WriteBehindReactorSubscriptionPositionStorage(ReactorSubscriptionPositionStorage storage, Duration flushInterval) {
+        requireNonNull(storage, ReactorSubscriptionPositionStorage.class.getSimpleName() + " cannot be null");
+        requireNonNull(flushInterval, "Flush interval cannot be null");
+        if (flushInterval.isZero() || flushInterval.isNegative()) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        this.storage = storage;
+
+        UnicastProcessor<SerializedOperation> operations = UnicastProcessor.create();
+        this.serializedOperations = operations.sink();
+        this.serializedOperationsSubscription = operations.concatMap(SerializedOperation::execute).subscribe();
+        this.periodicFlush = Flux.interval(flushInterval)
+                .onBackpressureDrop()
+                .concatMap(__ -> flush().onErrorResume(e -> {
+                    log.warn("Failed to flush {} subscription position(s), will retry on next flush", unflushedPositions.size(), e);
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    @Override
+    public Mono<SubscriptionPosition> read(String subscriptionId) {
+        return Mono.defer(() -> {
+            SubscriptionPosition unflushedPosition = unflushedPositions.get(subscriptionId);
+            return unflushedPosition == null ? storage.read(subscriptionId) : Mono.just(unflushedPosition);
+        });
+    }
+
+    @Override
+    public Mono<SubscriptionPosition> save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        return Mono.fromSupplier(() -> {
+            requireNonNull(subscriptionId, "Subscription id cannot be null");
+            requireNonNull(subscriptionPosition, SubscriptionPosition.class.getSimpleName() + " cannot be null");
+            unflushedPositions.put(subscriptionId, subscriptionPosition);
+            return subscriptionPosition;
+        });
+    }
+
+    @Override
+    public Mono<Void> saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+        requireNonNull(subscriptionPositions, "Subscription positions cannot be null");
+        return Flux.fromIterable(subscriptionPositions.entrySet())
+                .concatMap(entry -> save(entry.getKey(), entry.getValue()))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> delete(String subscriptionId) {
+        return serialized(() -> {
+            unflushedPositions.remove(subscriptionId);
+            return storage.delete(subscriptionId);
+        });
+    }
+
+    /**
+     * Write all positions that have changed since the last flush to the underlying storage. Positions that fail to be written are retried on the next flush.
+     *
+     * @return A Mono that completes when the positions have been written
+     */
+    public Mono<Void> flush() {
+        return serialized(() -> {
+            if (unflushedPositions.isEmpty()) {
+                return Mono.empty();
+            }
+            Map<String, SubscriptionPosition> positionsToFlush = new HashMap<>(unflushedPositions);
+            return storage.saveAll(positionsToFlush)
+                    // Only remove positions that haven't been replaced by a newer position during the flush
+                    .then(Mono.fromRunnable(() -> positionsToFlush.forEach(unflushedPositions::remove)));
+        });
+    }
+
+    /**
+     * Stop the periodic flushing and write all positions that have not yet been flushed to the underlying storage.
+     */
+    @PreDestroy
+    public void shutdown() {
+        periodicFlush.dispose();
+        try {
+            flush().block();
+        } finally {
+            serializedOperations.complete();
+            serializedOperationsSubscription.dispose();
+        }
+    }
+
+    private Mono<Void> serialized(Supplier<Mono<Void>> operation) {
+        return Mono.defer(() -> {
+            SerializedOperation serializedOperation = new SerializedOperation(operation);
+            serializedOperations.next(serializedOperation);
+            return serializedOperation.result;
+        });
+    }
+
+    private static class SerializedOperation {
+        private final Supplier<Mono<Void>> operation;
+        private final MonoProcessor<Void> result = MonoProcessor.create();
+
+        private SerializedOperation(Supplier<Mono<Void>> operation) {
+            this.operation = operation;
+        }
+
+        private Mono<Void> execute() {
+            return Mono.defer(operation)
+                    .doOnSuccess(__ -> result.onComplete())
+                    .doOnError(result::onError)
+                    .onErrorResume(__ -> Mono.empty());
+        }
+    }
+}
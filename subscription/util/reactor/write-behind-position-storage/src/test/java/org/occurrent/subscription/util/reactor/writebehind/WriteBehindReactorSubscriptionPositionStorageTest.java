@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.util.reactor.writebehind;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.reactor.ReactorSubscriptionPositionStorage;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class WriteBehindReactorSubscriptionPositionStorageTest {
+
+    private final RecordingStorage recordingStorage = new RecordingStorage();
+    private final WriteBehindReactorSubscriptionPositionStorage storage = new WriteBehindReactorSubscriptionPositionStorage(recordingStorage, Duration.ofHours(1));
+
+    @AfterEach
+    void shutdown() {
+        storage.shutdown();
+    }
+
+    @Test
+    void read_returns_position_that_is_not_yet_flushed() {
+        // Given
+        storage.save("subscription", position("1")).block();
+
+        // When
+        SubscriptionPosition subscriptionPosition = storage.read("subscription").block();
+
+        // Then
+        assertThat(subscriptionPosition).isEqualTo(position("1"));
+        assertThat(recordingStorage.positions).isEmpty();
+    }
+
+    @Test
+    void flush_writes_the_latest_position_of_each_subscription_in_a_single_batch() {
+        // Given
+        storage.save("subscription1", position("1"))
+                .then(storage.save("subscription1", position("2")))
+                .then(storage.save("subscription2", position("3")))
+                .block();
+
+        // When
+        storage.flush().block();
+
+        // Then
+        assertThat(recordingStorage.batches).containsExactly(2);
+        assertThat(recordingStorage.positions).containsOnly(entry("subscription1", position("2")), entry("subscription2", position("3")));
+    }
+
+    @Test
+    void delete_removes_position_that_is_not_yet_flushed() {
+        // Given
+        storage.save("subscription", position("1")).block();
+
+        // When
+        storage.delete("subscription").then(storage.flush()).block();
+
+        // Then
+        assertThat(storage.read("subscription").block()).isNull();
+        assertThat(recordingStorage.batches).isEmpty();
+    }
+
+    private static SubscriptionPosition position(String value) {
+        return new StringBasedSubscriptionPosition(value);
+    }
+
+    private static class RecordingStorage implements ReactorSubscriptionPositionStorage {
+        private final Map<String, SubscriptionPosition> positions = new ConcurrentHashMap<>();
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Mono<SubscriptionPosition> read(String subscriptionId) {
+            return Mono.justOrEmpty(positions.get(subscriptionId));
+        }
+
+        @Override
+        public Mono<SubscriptionPosition> save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+            return Mono.fromSupplier(() -> {
+                positions.put(subscriptionId, subscriptionPosition);
+                return subscriptionPosition;
+            });
+        }
+
+        @Override
+        public Mono<Void> saveAll(Map<String, SubscriptionPosition> subscriptionPositions) {
+            return Mono.fromRunnable(() -> {
+                batches.add(subscriptionPositions.size());
+                positions.putAll(subscriptionPositions);
+            });
+        }
+
+        @Override
+        public Mono<Void> delete(String subscriptionId) {
+            return Mono.fromRunnable(() -> positions.remove(subscriptionId));
+        }
+    }
+}